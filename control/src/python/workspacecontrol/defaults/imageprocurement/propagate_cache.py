@@ -1,8 +1,67 @@
+import errno
 import fcntl
+import heapq
 import logging
 import os
 import shutil
-import stat
+import tempfile
+import time
+
+# The cache directory holds one "cached_<md5sum>" file per image and an index
+# with one line per image: md5sum, size, last access time and the link count
+# seen last.  The index spares a stat of every image for each decision and
+# survives restarts; if it is missing (older cache, manual cleanup) it is
+# rebuilt from the directory.
+#
+# Locking: lookups and listings take the lock shared, changes to the index
+# take it exclusive and only for as long as the index work takes.  Images
+# are copied into a temporary file in the cache directory without holding
+# the lock and renamed into place afterwards, so a cold fill of a large
+# image no longer holds up every other launch on the node.
+#
+# Eviction is least recently used first and never picks an image that is
+# linked into a VM directory (link count above one): removing it would not
+# free any room.
+#
+# An add reserves the image's size in the index before it copies, so
+# concurrent cold fills on one node all count against the limit and are
+# turned away up front instead of filling the disk together.  Reservations
+# of processes that died are dropped, with their temporary file, by the
+# next change to the index.
+
+INDEX_NAME = "index"
+INCOMING_PREFIX = ".incoming-"
+
+class _CacheEntry(object):
+
+    def __init__(self, md5sum, size, atime, nlink=1):
+        self.md5sum = md5sum
+        self.size = size
+        self.atime = atime
+        self.nlink = nlink
+
+class _Reservation(object):
+
+    def __init__(self, name, size, pid):
+        self.name = name
+        self.size = size
+        self.pid = pid
+
+class _CacheIndex(object):
+
+    def __init__(self):
+        self.budget = 0
+        self.entries = {}
+        # temporary file name -> room held by an add in progress
+        self.reservations = {}
+
+    def used(self):
+        total = 0
+        for entry in self.entries.values():
+            total += entry.size
+        for reservation in self.reservations.values():
+            total += reservation.size
+        return total
 
 class WSCCacheObj(object):
 
@@ -11,137 +70,373 @@ class WSCCacheObj(object):
         self._prefix = "cached"
         self._lockfilepath = lockfilepath
         self._lockfile = None
+        self._indexpath = os.path.join(self._dir, INDEX_NAME)
         if max_size > 0:
             self._max_size = max_size
         else:
             self._max_size = None
         self._log = log
 
-    def _lock(self):
+    def _lock(self, shared=False):
         self._lockfile = open(self._lockfilepath, "r")
-        fcntl.flock(self._lockfile.fileno(), fcntl.LOCK_EX)
+        if shared:
+            fcntl.flock(self._lockfile.fileno(), fcntl.LOCK_SH)
+        else:
+            fcntl.flock(self._lockfile.fileno(), fcntl.LOCK_EX)
 
     def _unlock(self):
         self._lockfile.close()
+        self._lockfile = None
 
     def _mangle_name(self, md5sum):
         name = self._prefix + "_" + md5sum
         return name
 
     def _unmangle_name(self, name):
-        return name.replace(self._prefix + "_", "")
+        return name.replace(self._prefix + "_", "", 1)
 
-    def lookup(self, md5sum, newname, link=False):
-        name = self._mangle_name(md5sum)
-        absname = os.path.abspath(self._dir + "/" + name)
+    def _path(self, md5sum):
+        return os.path.abspath(os.path.join(self._dir, self._mangle_name(md5sum)))
+
+    # ---------------------------------------------------------------------
+    # index
+    # ---------------------------------------------------------------------
+
+    def _load_index(self):
+        """Caller holds the lock (shared is enough)"""
+        if not os.path.exists(self._indexpath):
+            return self._rebuild_index()
+
+        index = _CacheIndex()
+        f = open(self._indexpath, "r")
+        try:
+            for line in f.readlines():
+                fields = line.split()
+                if not fields or fields[0].startswith("#"):
+                    continue
+                if fields[0] == "budget" and len(fields) == 2:
+                    index.budget = long(fields[1])
+                elif fields[0] == "reserved" and len(fields) == 4:
+                    index.reservations[fields[1]] = _Reservation(fields[1],
+                            long(fields[2]), int(fields[3]))
+                elif len(fields) == 4:
+                    index.entries[fields[0]] = _CacheEntry(fields[0],
+                            long(fields[1]), float(fields[2]), int(fields[3]))
+        finally:
+            f.close()
+        return index
+
+    def _rebuild_index(self):
+        index = _CacheIndex()
+        for name in os.listdir(self._dir):
+            if not name.startswith(self._prefix + "_"):
+                continue
+            try:
+                st = os.stat(os.path.join(self._dir, name))
+            except OSError:
+                continue
+            md5sum = self._unmangle_name(name)
+            index.entries[md5sum] = _CacheEntry(md5sum, st.st_size,
+                                                st.st_mtime, st.st_nlink)
+        self._log.info("rebuilt the image cache index, %d entries" % (len(index.entries)))
+        return index
+
+    def _save_index(self, index):
+        """Caller holds the lock exclusive"""
+        (fd, tmppath) = tempfile.mkstemp(prefix=INCOMING_PREFIX, dir=self._dir)
+        try:
+            f = os.fdopen(fd, "w")
+            try:
+                f.write("# md5sum size last-access links\n")
+                f.write("budget %d\n" % (index.budget))
+                for r in index.reservations.values():
+                    f.write("reserved %s %d %d\n" % (r.name, r.size, r.pid))
+                for entry in index.entries.values():
+                    f.write("%s %d %f %d\n" % (entry.md5sum, entry.size,
+                                               entry.atime, entry.nlink))
+            finally:
+                f.close()
+            os.rename(tmppath, self._indexpath)
+        except:
+            if os.path.exists(tmppath):
+                os.remove(tmppath)
+            raise
+
+    def _touch(self, md5sum):
+        """Records an access, takes the lock exclusive briefly"""
         self._lock()
         try:
-            list = os.listdir(self._dir)
-            if name in list:
-                # touch the file
-                os.utime(absname, None)
-
-                if link:
-                    os.link(absname, newname)
-                    # Mark the cache image as read-only
-                    os.chmod(absname, 0400)
-                else:
-                    shutil.copyfile(absname, newname)
-                return True
-            return False
+            index = self._load_index()
+            try:
+                st = os.stat(self._path(md5sum))
+            except OSError:
+                if index.entries.has_key(md5sum):
+                    del index.entries[md5sum]
+                    self._save_index(index)
+                return
+            entry = index.entries.get(md5sum)
+            if entry is None:
+                # placed there by hand, adopt it
+                entry = _CacheEntry(md5sum, st.st_size, 0)
+                index.entries[md5sum] = entry
+            entry.atime = time.time()
+            entry.nlink = st.st_nlink
+            self._save_index(index)
         finally:
             self._unlock()
 
-    def _order_dir(self, list):
-        # We can use getmtime because we call os.utime on each lookup
-        list.sort(key=lambda x : os.path.getmtime(self._dir + "/" + x), reverse=True)
-        return list
+    # ---------------------------------------------------------------------
+    # room
+    # ---------------------------------------------------------------------
 
-    def _get_size(self, list):
-        size_list = [os.path.getsize(self._dir + "/" + f) for f in list if os.path.isfile(self._dir + "/" + f)]
-        return sum(size_list)
+    def _limit(self, index, used, check_fs):
+        limit = self._max_size
+        if index.budget > 0:
+            limit = index.budget
+        if check_fs:
+            fsinfo = os.statvfs(self._dir)
+            fs_limit = used + fsinfo.f_bavail * fsinfo.f_frsize
+            if limit is None or limit > fs_limit:
+                limit = fs_limit
+        return limit
 
-    def _make_room_for(self, list, sz):
+    def _reap_reservations(self, index):
+        """Caller holds the lock exclusive"""
+        for r in index.reservations.values():
+            try:
+                os.kill(r.pid, 0)
+                continue
+            except OSError, ex:
+                if ex.errno != errno.ESRCH:
+                    continue
+            self._log.info("dropping the cache reservation of dead process %d" % (r.pid))
+            del index.reservations[r.name]
+            tmppath = os.path.join(self._dir, r.name)
+            if os.path.exists(tmppath):
+                os.remove(tmppath)
 
-        list = self._order_dir(list)
+    def _make_room_for(self, index, sz, check_fs=True):
+        """Caller holds the lock exclusive.  Evicts the least recently used
+        images that are not in use until sz more bytes fit, or evicts
+        nothing and returns False if they never would.  The heap makes each
+        eviction O(log n)."""
 
-        # Keep only files without hardlinks, because linked files cannot
-        # free any room in cache
-        filter(lambda x: os.stat(os.path.join(self._dir, x))[stat.ST_NLINK] == 1, list)
+        self._reap_reservations(index)
+        used = index.used()
+        limit = self._limit(index, used, check_fs)
+        if limit is None or used + sz <= limit:
+            return True
 
-        current_size = self._get_size(list)
-        max = self._max_size
-        fsinfo = os.statvfs(self._dir)
-        bytes_available = fsinfo.f_bavail * fsinfo.f_frsize
+        heap = [(entry.atime, entry.md5sum) for entry in index.entries.values()]
+        heapq.heapify(heap)
 
-        # adjust to available storage
-        if self._max_size is None or max - current_size > bytes_available:
-            max = current_size + bytes_available
+        victims = []
+        while used + sz > limit and heap:
+            (atime, md5sum) = heapq.heappop(heap)
+            entry = index.entries[md5sum]
+            try:
+                nlink = os.stat(self._path(md5sum)).st_nlink
+            except OSError:
+                # gone already, nothing to free but the index entry
+                del index.entries[md5sum]
+                used -= entry.size
+                continue
+            entry.nlink = nlink
+            if nlink > 1:
+                continue
+            victims.append(entry)
+            used -= entry.size
 
-        remove_list = []
-        new_size = sz + current_size
-        while new_size > max:
-            if len(list) == 0:
+        if used + sz > limit:
+            return False
+
+        for entry in victims:
+            self._log.info("removing %s from the cache" % (self._mangle_name(entry.md5sum)))
+            os.remove(self._path(entry.md5sum))
+            del index.entries[entry.md5sum]
+        return True
+
+    # ---------------------------------------------------------------------
+    # public
+    # ---------------------------------------------------------------------
+
+    def lookup(self, md5sum, newname, link=False):
+        absname = self._path(md5sum)
+        src = None
+        self._lock(shared=True)
+        try:
+            if not os.path.exists(absname):
                 return False
-            short_straw = list.pop()
-            remove_list.append(short_straw)
-            new_size = sz + self._get_size(list)
-
-        # if removing anything actually helps
-        for f in remove_list:
-            self._log.info("removing %s from the cache" % (f))
-            os.remove(self._dir + "/" + f)
+            if link:
+                os.link(absname, newname)
+                # Mark the cache image as read-only
+                os.chmod(absname, 0400)
+            else:
+                # an open file survives eviction, copy without the lock
+                src = open(absname, "rb")
+        finally:
+            self._unlock()
+
+        if src is not None:
+            try:
+                dst = open(newname, "wb")
+                try:
+                    shutil.copyfileobj(src, dst, 1024 * 1024)
+                finally:
+                    dst.close()
+            finally:
+                src.close()
+
+        # touch the file
+        self._touch(md5sum)
         return True
 
     def add(self, src, md5sum):
-        dstname = self._mangle_name(md5sum)
-        dstabsname = os.path.abspath(self._dir + "/" + dstname)
+        dstabsname = self._path(md5sum)
+        sz = os.path.getsize(src)
+
+        # reserve the room up front so the copy does not fill the disk, the
+        # copy itself runs without the lock
         self._lock()
         try:
-            list = os.listdir(self._dir)
-            if dstname in list:
+            index = self._load_index()
+            if index.entries.has_key(md5sum) and os.path.exists(dstabsname):
                 msg = "The file with md5sum %s is already in the cache" % (md5sum)
                 self._log.info(msg)
-                os.utime(dstabsname, None)
+                index.entries[md5sum].atime = time.time()
+                self._save_index(index)
                 return False
-            sz = os.path.getsize(src)
-            if not self._make_room_for(list, sz):
+            if not self._make_room_for(index, sz):
                 msg = "Sorry there is not room for the file %s of size %d" % (src, sz)
                 self._log.info(msg)
                 raise Exception(msg)
-            shutil.copyfile(src, dstabsname)
+            (fd, tmppath) = tempfile.mkstemp(prefix=INCOMING_PREFIX, dir=self._dir)
+            os.close(fd)
+            name = os.path.basename(tmppath)
+            index.reservations[name] = _Reservation(name, sz, os.getpid())
+            try:
+                self._save_index(index)
+            except:
+                os.remove(tmppath)
+                raise
         finally:
             self._unlock()
 
+        reserved = True
+        try:
+            shutil.copyfile(src, tmppath)
+
+            self._lock()
+            try:
+                index = self._load_index()
+                if index.reservations.has_key(name):
+                    del index.reservations[name]
+                if index.entries.has_key(md5sum) and os.path.exists(dstabsname):
+                    # another launch got there first
+                    index.entries[md5sum].atime = time.time()
+                    self._save_index(index)
+                    reserved = False
+                    return False
+                # a smaller budget may have been set in the meantime, the
+                # copy already holds its disk space
+                if not self._make_room_for(index, sz, check_fs=False):
+                    self._save_index(index)
+                    reserved = False
+                    msg = "Sorry there is not room for the file %s of size %d" % (src, sz)
+                    self._log.info(msg)
+                    raise Exception(msg)
+                os.rename(tmppath, dstabsname)
+                index.entries[md5sum] = _CacheEntry(md5sum, sz, time.time())
+                self._save_index(index)
+                reserved = False
+            finally:
+                self._unlock()
+        finally:
+            if reserved:
+                self._release(name)
+            if os.path.exists(tmppath):
+                os.remove(tmppath)
+
         return True
 
+    def _release(self, name):
+        """Drops the reservation of a failed add"""
+        self._lock()
+        try:
+            index = self._load_index()
+            if index.reservations.has_key(name):
+                del index.reservations[name]
+                self._save_index(index)
+        finally:
+            self._unlock()
 
     def remove(self, md5sum):
-        name = self._mangle_name(md5sum)
-        absname = os.path.abspath(self._dir + "/" + name)
+        absname = self._path(md5sum)
         self._lock()
         try:
-            list = os.listdir(self._dir)
-            if name in list:
+            index = self._load_index()
+            found = index.entries.has_key(md5sum)
+            if found:
+                del index.entries[md5sum]
+                self._save_index(index)
+            if os.path.exists(absname):
                 os.remove(absname)
                 return True
-            return False
+            return found
         finally:
             self._unlock()
 
     def list_cache(self):
-        self._lock()
+        """Most recently used first"""
+        self._lock(shared=True)
         try:
-            list = os.listdir(self._dir)
-            list = self._order_dir(list)
+            index = self._load_index()
         finally:
             self._unlock()
 
-        nl = [self._unmangle_name(f) for f in list]
-        return nl
-
+        entries = index.entries.values()
+        entries.sort(key=lambda x : x.atime, reverse=True)
+        return [e.md5sum for e in entries]
 
     def flush_cache(self):
         list = self.list_cache()
         for l in list:
             self.remove(l)
+
+    def get_budget(self):
+        """Bytes the cache may use, None if unlimited (up to the free
+        space of the file system)"""
+        self._lock(shared=True)
+        try:
+            index = self._load_index()
+        finally:
+            self._unlock()
+        if index.budget > 0:
+            return index.budget
+        return self._max_size
+
+    def set_budget(self, budget):
+        """Persists a budget (bytes) that overrides the configured max
+        size, 0 or None goes back to the configured one.  Shrinking the
+        budget evicts right away, as far as images are not in use."""
+        if budget is None or budget < 0:
+            budget = 0
+        self._lock()
+        try:
+            index = self._load_index()
+            if index.budget == budget:
+                return
+            index.budget = budget
+            if not self._make_room_for(index, 0):
+                self._log.info("images in use exceed the new cache budget of %d bytes" % (budget))
+            self._save_index(index)
+        finally:
+            self._unlock()
+
+    def usage(self):
+        """Bytes used by cached images"""
+        self._lock(shared=True)
+        try:
+            return self._load_index().used()
+        finally:
+            self._unlock()
@@ -469,6 +469,15 @@ class DefaultImageProcurement:
                 raise InvalidConfig("The images->cache_size configuration is not an integer: '%s'" % max_size)
             except Exception, ex:
                 self.c.log.warn("failed to create the cache at %s | %s" % (cache_path, str(ex)))
+
+        cache_max = self.p.get_arg_or_none(wc_args.CACHEMAX)
+        if cache and cache_max is not None:
+            try:
+                cache.set_budget(long(cache_max) * 1024 * 1024)
+            except ValueError:
+                raise InvalidInput("The %s argument is not an integer: '%s'" % (wc_args.CACHEMAX.long_syntax, cache_max))
+            except Exception, ex:
+                self.c.log.warn("failed to set the cache budget | %s" % (str(ex)))
                 
         for l_file in l_files:
             
@@ -1,5 +1,6 @@
 from commands import getstatusoutput
 import os
+import re
 from workspacecontrol.api.exceptions import *
 import propagate_scp
 import workspacecontrol.main.wc_args as wc_args
@@ -87,7 +88,9 @@ class LantorrentPropadapter(propagate_scp.propadapter):
     
     def _lt_command(self, local, remote):
         """
-        Remote url: lantorrent://hostname:port/path.
+        Remote url: lantorrent://hostname:port/path, optionally with a
+        ?rid=<id> query when the service registered this transfer as part
+        of a session up front.
         """
 
         if remote[:len(self.scheme)] != self.scheme:
@@ -98,6 +101,18 @@ class LantorrentPropadapter(propagate_scp.propadapter):
         if lt_exe == None:
             raise InvalidInput("the prop-extra-args parameter must be used and be a path to the remote execution script")
 
+        rid = None
+        url_a = url.split("?", 1)
+        url = url_a[0]
+        if len(url_a) > 1:
+            for param in url_a[1].split("&"):
+                kv = param.split("=", 1)
+                if len(kv) == 2 and kv[0] == "rid":
+                    # it ends up on a command line
+                    if not re.match("^[A-Za-z0-9-]+$", kv[1]):
+                        raise InvalidInput("invalid lantorrent request id: %s" % (kv[1]))
+                    rid = kv[1]
+
         (xfer_scheme, xfer_user, xfer_pw, xfer_host, xfer_port, xfer_path) =url_parse(url)
  
         if xfer_port == None:
@@ -119,12 +134,15 @@ class LantorrentPropadapter(propagate_scp.propadapter):
             xfer_user = xfer_user + "@"
         else:
             xfer_user = ""
-        try:
-            import uuid
-            rid = str(uuid.uuid1())
-        except:
-            import commands
-            rid = commands.getoutput("uuidgen")
+        if rid:
+            self.c.log.debug("lantorrent session request id %s" % (rid))
+        else:
+            try:
+                import uuid
+                rid = str(uuid.uuid1())
+            except:
+                import commands
+                rid = commands.getoutput("uuidgen")
         cmd = self.ssh + " %d %s%s %s %s %s %s %s:%d" % (xfer_port, xfer_user, xfer_host, lt_exe, xfer_path, local, rid, self.ltip, self.ltport)
 
         self.c.log.debug("lantorrent command %s " % (cmd))
@@ -4,7 +4,7 @@ import tempfile
 import time
 import os
 import filecmp
-from workspacecontrol.defaults.imageprocurement.propagate_cache import WSCCacheObj
+from workspacecontrol.defaults.imageprocurement.propagate_cache import WSCCacheObj, _Reservation
 
 
 
@@ -169,6 +169,110 @@ class TestCache(unittest.TestCase):
         rc = cache.lookup(work_sums[0], newfile)
         self.assertEqual(rc, False)
 
+    def test_linked_not_evicted(self):
+        sz1 = os.path.getsize(self._work_file)
+        work_sums = ["1", "XX", "III"]
+        max = sz1 * (len(work_sums) - 1)
+
+        cache = WSCCacheObj(self._dir, self.lockfilepath, max_size=max)
+        rc = cache.add(self._work_file, work_sums[0])
+        self.assertEqual(rc, True)
+        linkdir = tempfile.mkdtemp(dir=self._dir)
+        rc = cache.lookup(work_sums[0], os.path.join(linkdir, "vm"), link=True)
+        self.assertEqual(rc, True)
+        for sum in work_sums[1:]:
+            rc = cache.add(self._work_file, sum)
+            self.assertEqual(rc, True)
+
+        # the oldest is in use, the next oldest goes instead
+        list = cache.list_cache()
+        self.assertTrue(work_sums[0] in list)
+        self.assertTrue(work_sums[1] not in list)
+        shutil.rmtree(linkdir)
+
+    def test_index_rebuilt(self):
+        cache = WSCCacheObj(self._dir, self.lockfilepath)
+        rc = cache.add(self._work_file, self._work_sum)
+        self.assertEqual(rc, True)
+        os.remove(os.path.join(self._dir, "index"))
+
+        cache = WSCCacheObj(self._dir, self.lockfilepath)
+        self.assertEqual(cache.list_cache(), [self._work_sum])
+        self.assertEqual(cache.usage(), os.path.getsize(self._work_file))
+
+    def test_budget(self):
+        sz1 = os.path.getsize(self._work_file)
+        work_sums = ["1", "XX", "III"]
+
+        cache = WSCCacheObj(self._dir, self.lockfilepath)
+        for sum in work_sums:
+            rc = cache.add(self._work_file, sum)
+            self.assertEqual(rc, True)
+
+        cache.set_budget(sz1)
+        cache = WSCCacheObj(self._dir, self.lockfilepath, max_size=sz1 * 10)
+        self.assertEqual(cache.get_budget(), sz1)
+        self.assertEqual(cache.list_cache(), [work_sums[2]])
+
+        cache.set_budget(0)
+        self.assertEqual(cache.get_budget(), sz1 * 10)
+
+    def _reserve(self, cache, name, size, pid):
+        cache._lock()
+        try:
+            index = cache._load_index()
+            index.reservations[name] = _Reservation(name, size, pid)
+            cache._save_index(index)
+        finally:
+            cache._unlock()
+
+    def _reservations(self, cache):
+        cache._lock(shared=True)
+        try:
+            return cache._load_index().reservations.keys()
+        finally:
+            cache._unlock()
+
+    def test_reservation_counts(self):
+        sz1 = os.path.getsize(self._work_file)
+        cache = WSCCacheObj(self._dir, self.lockfilepath, max_size=sz1 * 3 / 2)
+
+        # an add in progress elsewhere holds the room
+        self._reserve(cache, ".incoming-other", sz1, os.getpid())
+        self.assertEqual(cache.usage(), sz1)
+        self.assertRaises(Exception, cache.add, self._work_file, self._work_sum)
+        self.assertEqual(self._reservations(cache), [".incoming-other"])
+
+    def test_dead_reservation_dropped(self):
+        sz1 = os.path.getsize(self._work_file)
+        cache = WSCCacheObj(self._dir, self.lockfilepath, max_size=sz1 * 3 / 2)
+
+        pid = os.fork()
+        if pid == 0:
+            os._exit(0)
+        os.waitpid(pid, 0)
+        self._reserve(cache, ".incoming-dead", sz1, pid)
+        open(os.path.join(self._dir, ".incoming-dead"), "w").close()
+
+        rc = cache.add(self._work_file, self._work_sum)
+        self.assertEqual(rc, True)
+        self.assertEqual(self._reservations(cache), [])
+        self.assertFalse(os.path.exists(os.path.join(self._dir, ".incoming-dead")))
+
+    def test_failed_copy_releases(self):
+        cache = WSCCacheObj(self._dir, self.lockfilepath)
+        def fail(src, dst):
+            raise IOError("disk gone")
+        copyfile = shutil.copyfile
+        shutil.copyfile = fail
+        try:
+            self.assertRaises(IOError, cache.add, self._work_file, self._work_sum)
+        finally:
+            shutil.copyfile = copyfile
+        self.assertEqual(self._reservations(cache), [])
+        self.assertEqual(cache.usage(), 0)
+        self.assertEqual(os.listdir(self._dir), ["index"])
+
 
 if __name__ == '__main__':
     unittest.main()
@@ -125,6 +125,10 @@ CACHECKSUM = ControlArg("cachecksum", None, since="2.7.1", metavar="STRING")
 CACHECKSUM.help = "This argument enables a cache lookup for a propagated image based on the associated argument which is the key to the cache.  An md5sum checksum is assumed"
 a.append(CACHECKSUM)
 
+CACHEMAX = ControlArg("cachemax", None, since="2.7.1", metavar="MB")
+CACHEMAX.help = "Size budget of the image cache in MB, kept by the node for later launches and overriding the images->cache_size configuration.  0 goes back to the configured size"
+a.append(CACHEMAX)
+
 ################################################################################
 # DEPRECATED ARGUMENTS
 #
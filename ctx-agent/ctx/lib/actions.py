@@ -17,6 +17,7 @@ from ctx_logging import getlog
 from ctx_types import RetrieveResult
 from utils import runexe, ifconfig, uuidgen, write_repl_file
 from parsers import response2_parse_file, response2_parse_for_fatal
+from conf import LONG_POLL_SECONDS
 from conf import NS_CTX, NS_CTXTYPES, NS_CTXDESC
 
 # #########################################################
@@ -888,11 +889,16 @@ class DefaultRetrieveAction(Action):
     def poll_until_done(self):
         
         result = None
+        held = False
         while (not self.analyze_result(result)):
-            if self.common.trace:
-                self.log.debug("Waiting %d seconds before poll." % self.common.polltime)
-            time.sleep(self.common.polltime)
+            # a broker that held the last retrieve has already waited
+            if not held:
+                if self.common.trace:
+                    self.log.debug("Waiting %d seconds before poll." % self.common.polltime)
+                time.sleep(self.common.polltime)
+            start = time.time()
             result = self.retrieve_result()
+            held = time.time() - start >= self.common.polltime
 
         self.result = result
         
@@ -934,7 +940,7 @@ class DefaultRetrieveAction(Action):
         if not self.runcmd:
             raise ProgrammingError("no runcmd setup for retrieve action")
         
-        (exit, stdout, stderr) = runexe(self.runcmd, killtime=20)
+        (exit, stdout, stderr) = runexe(self.runcmd, killtime=LONG_POLL_SECONDS+20)
         result = "'%s': exit=%s, stdout='%s'," % (self.runcmd, exit, stdout)
         result += " stderr='%s'" % (stderr)
         
@@ -1092,6 +1098,7 @@ class DefaultRetrieveAction(Action):
             text = text.replace("REPLACE_MESSAGE_ID", message_id)
             text = text.replace("REPLACE_SERVICE_URL", r.ctx_url)
             text = text.replace("REPLACE_RESOURCE_KEY", r.ctx_key)
+            text = text.replace("REPLACE_WAIT_MS", str(LONG_POLL_SECONDS*1000))
             
             # iface_name is what the broker knows this as, the real interface
             # name is not relevant to the broker
@@ -36,6 +36,10 @@ permissions and limitations under the License.
 # may even be notification based.
 POLL_DELAY_SECONDS_DEFAULT = 3
 
+# Longest the broker is asked to hold each retrieve until the context is
+# complete (brokers that do not know the header answer right away as before).
+LONG_POLL_SECONDS = 10
+
 # For parsing response
 NS_CTXBROKER = "http://www.globus.org/2008/12/nimbus"
 NS_CTX = NS_CTXBROKER + "/contextualization"
@@ -88,6 +88,10 @@ public class Blackboard {
     private int numNodes = 0;
     private int totalNodes = 0;
 
+    // bumped under dbLock on every change, long-poll callers wait on dbLock
+    // for it to move
+    private long version = 0;
+
 
     // -------------------------------------------------------------------------
     // CONSTRUCTOR
@@ -137,6 +141,7 @@ public class Blackboard {
 
             status.setPresentNodeCount(this.numNodes);
             status.setTotalNodeCount(this.totalNodes);
+            status.setVersion(this.version);
 
             return status;
         }
@@ -163,6 +168,58 @@ public class Blackboard {
     }
 
     
+    // -------------------------------------------------------------------------
+    // CHANGES
+    // -------------------------------------------------------------------------
+
+    // assumed under lock
+    private void changed() {
+        this.version += 1;
+        this.dbLock.notifyAll();
+    }
+
+    /**
+     * For changes made outside of the blackboard that waiting callers care
+     * about, such as the context being locked for injections.
+     */
+    public void markChanged() {
+        synchronized (this.dbLock) {
+            this.changed();
+        }
+    }
+
+    /**
+     * @return counter that moves on every change to this blackboard
+     */
+    public long getVersion() {
+        synchronized (this.dbLock) {
+            return this.version;
+        }
+    }
+
+    /**
+     * Waits until the version is no longer seenVersion or maxWaitMs passes.
+     *
+     * @param seenVersion version the caller last looked at
+     * @param maxWaitMs longest wait
+     * @return current version
+     * @throws InterruptedException interrupted while waiting
+     */
+    public long awaitChange(long seenVersion, long maxWaitMs)
+            throws InterruptedException {
+
+        synchronized (this.dbLock) {
+            final long deadline = System.currentTimeMillis() + maxWaitMs;
+            long left = maxWaitMs;
+            while (this.version == seenVersion && left > 0) {
+                this.dbLock.wait(left);
+                left = deadline - System.currentTimeMillis();
+            }
+            return this.version;
+        }
+    }
+
+    
     // -------------------------------------------------------------------------
     // MATCHING
     // -------------------------------------------------------------------------
@@ -317,6 +374,7 @@ public class Blackboard {
 
         synchronized (this.dbLock) {
             this._newData(dataName, value);
+            this.changed();
         }
     }
     
@@ -427,6 +485,7 @@ public class Blackboard {
 
             this.allNodes.put(workspaceID, node);
             this.refreshNowNeeded();
+            this.changed();
         }
     }
 
@@ -697,6 +756,7 @@ public class Blackboard {
             }
 
             result.setOkOccurred(true);
+            this.changed();
 
             // check if all are now OK
             for (Enumeration<Node> e = this.allNodes.elements(); e.hasMoreElements();) {
@@ -731,6 +791,7 @@ public class Blackboard {
             result.setErrorMessage(errorMessage);
 
             this.oneErrorOccured = true;
+            this.changed();
         }
     }
     
@@ -24,6 +24,8 @@ public class CtxStatus {
     private int presentNodeCount;
     private int totalNodeCount;
 
+    private long version;
+
     public boolean isComplete() {
         return complete;
     }
@@ -63,4 +65,12 @@ public class CtxStatus {
     public void setTotalNodeCount(int totalNodeCount) {
         this.totalNodeCount = totalNodeCount;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
@@ -30,16 +30,19 @@ import org.nimbustools.ctxbroker.blackboard.NodeStatus;
 import org.nimbustools.ctxbroker.service.ContextBrokerHomeImpl;
 import org.nimbustools.ctxbroker.service.ContextBrokerResourceImpl;
 import org.nimbustools.ctxbroker.service.ContextBrokerServiceImpl;
+import org.nimbustools.ctxbroker.service.LongPoll;
 import org.nimbustools.querygeneral.security.QueryUser;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import javax.naming.InitialContext;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
@@ -123,9 +126,18 @@ public class BrokerResource {
                 .build();
     }
 
+    /**
+     * With a version (from an earlier answer) and a wait in ms, the answer
+     * is held until the context changes from that version or the wait is
+     * over.
+     */
     @GET
     @Path("/{id}")
-    public Response checkContext(@PathParam("id") String id) {
+    public Response checkContext(@PathParam("id") String id,
+                                 @QueryParam("version") @DefaultValue("-1")
+                                 final long version,
+                                 @QueryParam("wait") @DefaultValue("0")
+                                 long waitMs) {
 
         final String callerDn = getCallerDn();
 
@@ -147,6 +159,13 @@ public class BrokerResource {
         }
         try {
             final Blackboard blackboard = brokerResource.getBlackboard();
+            if (version >= 0 && waitMs > 0) {
+                LongPoll.await(blackboard, waitMs, new LongPoll.Condition() {
+                    public boolean met() {
+                        return blackboard.getVersion() != version;
+                    }
+                });
+            }
             final CtxStatus status = blackboard.getStatus();
             final List<NodeStatus> identities = blackboard.identities(true, null, null);
 
@@ -156,6 +175,7 @@ public class BrokerResource {
             responseStatus.setErrorOccurred(status.isErrorOccurred());
             responseStatus.setExpectedNodeCount(status.getTotalNodeCount());
             responseStatus.setNodeCount(status.getPresentNodeCount());
+            responseStatus.setVersion(status.getVersion());
 
             responseStatus.setNodes(identities);
 
@@ -27,6 +27,7 @@ public class ContextStatus {
     private int nodeCount;
     private int expectedNodeCount;
     private List<NodeStatus> nodes;
+    private long version;
 
     public boolean isComplete() {
         return isComplete;
@@ -75,4 +76,12 @@ public class ContextStatus {
     public void setNodes(List<NodeStatus> nodes) {
         this.nodes = nodes;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
@@ -86,6 +86,9 @@ public class ContextBrokerHomeImpl extends ResourceHomeImpl
     // the lowest unused integer ID
     private int nextID = 1;
 
+    private long longPollMaxWaitMs = LongPoll.DEFAULT_MAX_WAIT_MS;
+    private int longPollMaxHeld = LongPoll.DEFAULT_MAX_HELD;
+
 
     // -------------------------------------------------------------------------
     // CONSTRUCTOR
@@ -119,11 +122,23 @@ public class ContextBrokerHomeImpl extends ResourceHomeImpl
 
         this.bootstrapFactory = discoverBootstrapFactory();
 
+        LongPoll.configure(this.longPollMaxWaitMs, this.longPollMaxHeld);
+        logger.debug("Long-poll: max wait " + this.longPollMaxWaitMs +
+                     " ms, at most " + this.longPollMaxHeld + " held");
+
         this.initialized = true;
 
         logger.info("Ready: Nimbus Context Broker");
     }
 
+    public void setLongPollMaxWaitMs(long longPollMaxWaitMs) {
+        this.longPollMaxWaitMs = longPollMaxWaitMs;
+    }
+
+    public void setLongPollMaxHeld(int longPollMaxHeld) {
+        this.longPollMaxHeld = longPollMaxHeld;
+    }
+
     public static BootstrapFactory discoverBootstrapFactory() throws Exception {
 
         InitialContext ctx = null;
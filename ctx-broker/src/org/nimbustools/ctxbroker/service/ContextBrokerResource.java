@@ -55,6 +55,13 @@ public interface ContextBrokerResource extends ResourceLifetime,
     )
             throws ContextBrokerException;
 
+    /**
+     * Like retrieve(workspaceID) but holds the call until the node's
+     * information is complete, for up to waitMs.
+     */
+    public Requires_Type retrieve(Integer workspaceID, long waitMs)
+            throws ContextBrokerException;
+
     public void injectData(String dataName, String value)
             throws ContextBrokerException;
 
@@ -191,6 +191,9 @@ public class ContextBrokerResourceImpl implements ContextBrokerResource {
                 this.noMoreInjections = true;
             }
         }
+
+        // agents holding a retrieve are waiting for this too
+        this.getBlackboard().markChanged();
     }
 
     public boolean isNoMoreInjections() {
@@ -335,6 +338,19 @@ public class ContextBrokerResourceImpl implements ContextBrokerResource {
         }
     }
 
+    public Requires_Type retrieve(final Integer workspaceID, long waitMs)
+            throws ContextBrokerException {
+
+        final Requires_Type[] requires = new Requires_Type[1];
+        LongPoll.await(this.getBlackboard(), waitMs, new LongPoll.Condition() {
+            public boolean met() throws ContextBrokerException {
+                requires[0] = retrieve(workspaceID);
+                return requires[0] != null;
+            }
+        });
+        return requires[0];
+    }
+
     private Requires_Type translateNodeManifest(NodeManifest manifest) {
         Requires_Type requires = new Requires_Type();
 
@@ -644,7 +660,20 @@ public class ContextBrokerResourceImpl implements ContextBrokerResource {
 
         final CtxStatus status;
         try {
-            status = this.getBlackboard().getStatus();
+            final Blackboard blackboard = this.getBlackboard();
+
+            // a monitor asking to wait is only interested in the end
+            final long waitMs = LongPoll.headerWaitMs();
+            if (waitMs > 0) {
+                LongPoll.await(blackboard, waitMs, new LongPoll.Condition() {
+                    public boolean met() {
+                        final CtxStatus now = blackboard.getStatus();
+                        return now.isAllOk() || now.isErrorOccurred();
+                    }
+                });
+            }
+
+            status = blackboard.getStatus();
         } catch (ContextBrokerException e) {
             logger.error("Problem: returning null contextualization context " +
                     "RP for '" + this.resourceID + "': " + e.getMessage());
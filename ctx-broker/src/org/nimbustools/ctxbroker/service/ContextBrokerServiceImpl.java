@@ -468,7 +468,7 @@ public class ContextBrokerServiceImpl implements ContextBrokerService {
 
         final Requires_Type requires;
         try {
-            requires = resource.retrieve(id);
+            requires = resource.retrieve(id, LongPoll.headerWaitMs());
         } catch (ContextBrokerException e) {
             if (logger.isDebugEnabled()) {
                 logger.error(e.getMessage(), e);
@@ -0,0 +1,180 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.nimbustools.ctxbroker.service;
+
+import org.apache.axis.MessageContext;
+import org.apache.axis.message.SOAPEnvelope;
+import org.apache.axis.message.SOAPHeaderElement;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nimbustools.ctxbroker.BrokerConstants;
+import org.nimbustools.ctxbroker.ContextBrokerException;
+import org.nimbustools.ctxbroker.blackboard.Blackboard;
+
+import javax.xml.namespace.QName;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Holds a request until the blackboard reaches what the caller is waiting
+ * for, instead of the caller polling at a fixed interval.
+ *
+ * WSRF callers ask for it with an optional LongPollWaitMs SOAP header
+ * (milliseconds), so old agents and clients keep working unchanged and old
+ * brokers ignore the header.  REST callers use query parameters.
+ *
+ * Every held request ties up a container thread, so at most maxHeld are
+ * held at once and the rest are answered right away as before.  Waits are
+ * capped at maxWaitMs.
+ */
+public class LongPoll {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final Log logger =
+            LogFactory.getLog(LongPoll.class.getName());
+
+    public static final QName WAIT_HEADER =
+            new QName(BrokerConstants.NS_CTX, "LongPollWaitMs");
+
+    public static final long DEFAULT_MAX_WAIT_MS = 15000;
+    public static final int DEFAULT_MAX_HELD = 8;
+
+    private static volatile long maxWaitMs = DEFAULT_MAX_WAIT_MS;
+    private static volatile Semaphore held = new Semaphore(DEFAULT_MAX_HELD);
+
+
+    public interface Condition {
+
+        /**
+         * Called once up front and again after every blackboard change.
+         *
+         * @return true if the caller can be answered
+         */
+        boolean met() throws ContextBrokerException;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // CONFIG
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param waitMs longest hold, 0 disables long-polling
+     * @param maxHeld requests that may be held at once
+     */
+    public static synchronized void configure(long waitMs, int maxHeld) {
+        if (waitMs < 0) {
+            throw new IllegalArgumentException("waitMs may not be negative");
+        }
+        if (maxHeld < 1) {
+            throw new IllegalArgumentException("maxHeld must be positive");
+        }
+        maxWaitMs = waitMs;
+        held = new Semaphore(maxHeld);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // WAIT
+    // -------------------------------------------------------------------------
+
+    /**
+     * Checks the condition and, while it is not met, waits for blackboard
+     * changes up to waitMs (capped by the configured maximum).
+     *
+     * @param blackboard blackboard the condition looks at
+     * @param waitMs caller's longest wait, 0 to only check once
+     * @param condition what the caller is waiting for
+     * @return true if the condition was met
+     * @throws ContextBrokerException from the condition
+     */
+    public static boolean await(Blackboard blackboard,
+                                long waitMs,
+                                Condition condition)
+            throws ContextBrokerException {
+
+        // read before the check so a change during the check is not missed
+        long seen = blackboard.getVersion();
+        if (condition.met()) {
+            return true;
+        }
+
+        final long ms = Math.min(waitMs, maxWaitMs);
+        if (ms <= 0) {
+            return false;
+        }
+
+        final Semaphore permits = held;
+        if (!permits.tryAcquire()) {
+            logger.debug("Long-poll limit reached, answering right away");
+            return false;
+        }
+
+        try {
+            final long deadline = System.currentTimeMillis() + ms;
+            while (true) {
+                final long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    return false;
+                }
+                final long now = blackboard.awaitChange(seen, left);
+                if (now == seen) {
+                    return false;
+                }
+                seen = now;
+                if (condition.met()) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return wait the current WSRF request asked for with the
+     *         LongPollWaitMs header, 0 if none
+     */
+    public static long headerWaitMs() {
+
+        final MessageContext ctx = MessageContext.getCurrentContext();
+        if (ctx == null || ctx.getRequestMessage() == null) {
+            return 0;
+        }
+
+        try {
+            final SOAPEnvelope envelope =
+                    ctx.getRequestMessage().getSOAPEnvelope();
+            final SOAPHeaderElement header =
+                    envelope.getHeaderByName(WAIT_HEADER.getNamespaceURI(),
+                                             WAIT_HEADER.getLocalPart());
+            if (header == null || header.getValue() == null) {
+                return 0;
+            }
+            header.setProcessed(true);
+            return Math.max(0, Long.parseLong(header.getValue().trim()));
+        } catch (Exception e) {
+            logger.debug("Ignoring long-poll header: " + e.getMessage());
+            return 0;
+        }
+    }
+}
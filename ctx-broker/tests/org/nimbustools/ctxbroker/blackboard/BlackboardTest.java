@@ -427,4 +427,37 @@ public class BlackboardTest {
         assertNotSame(Blackboard.createOrGetBlackboard(anotherId), blackboard);
     }
 
+    @Test
+    public void testAwaitChange() throws Exception {
+        final Blackboard bb = new Blackboard(UUID.randomUUID().toString());
+
+        final long start = bb.getVersion();
+        assertEquals(bb.awaitChange(start, 20), start);
+
+        final Integer workspaceId = getWorkspaceID();
+        final Identity[] ids = new Identity[] {getIdentity(workspaceId)};
+        final Thread adder = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                    bb.addWorkspace(workspaceId, ids, true, null, null, null, 1);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        adder.start();
+
+        // woken by the registration well before the timeout
+        final long before = System.currentTimeMillis();
+        final long seen = bb.awaitChange(start, 10000);
+        assertTrue(seen != start);
+        assertTrue(System.currentTimeMillis() - before < 5000);
+        adder.join();
+
+        assertEquals(bb.getStatus().getVersion(), bb.getVersion());
+        bb.okExit(workspaceId);
+        assertTrue(bb.getVersion() != seen);
+    }
+
 }
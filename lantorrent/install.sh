@@ -24,12 +24,15 @@ fi
 
 ltrequest="$pylib/bin/ltrequest"
 ltdaemon="$pylib/bin/ltdaemon"
+ltsession="$pylib/bin/ltsession"
 
 sed "s^@PGMNAME@^$ltrequest^" etc/exe.in > $LANTORRENT_HOME/bin/lt-request.sh
 sed "s^@PGMNAME@^$ltdaemon^" etc/exe.in > $LANTORRENT_HOME/bin/lt-daemon.sh
+sed "s^@PGMNAME@^$ltsession^" etc/exe.in > $LANTORRENT_HOME/bin/lt-session.sh
 
 chmod 755 $LANTORRENT_HOME/bin/lt-request.sh
 chmod 755 $LANTORRENT_HOME/bin/lt-daemon.sh
+chmod 755 $LANTORRENT_HOME/bin/lt-session.sh
 
 cp -r tests $LANTORRENT_HOME
 cp etc/xinetd.conf.in $LANTORRENT_HOME/tests
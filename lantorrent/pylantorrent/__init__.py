@@ -78,6 +78,13 @@ class VConfig(object):
         self.dbfile = "%s/reqs.db" % (self.lt_home)
         self.db_error_max = 10
         self.insert_delay = 30
+        # fan-out of the distribution tree, 1 is a chain
+        self.degree = 1
+        # how long a session waits for members that have not asked yet
+        self.session_wait = 10
+        # seconds a peer may block a send before it is dropped, 0 waits
+        # forever
+        self.peer_timeout = 60
 
     def load_settings(self, ini_file):
         log_levels = {'debug': logging.DEBUG,
@@ -100,6 +107,18 @@ class VConfig(object):
             self.dbfile = s.get("db", "file").replace("@LANTORRENT_HOME@", self.lt_home)
         except:
             pass
+        try:
+            self.degree = s.getint("daemon", "degree")
+        except:
+            pass
+        try:
+            self.session_wait = s.getint("daemon", "session_wait")
+        except:
+            pass
+        try:
+            self.peer_timeout = s.getint("daemon", "peer_timeout")
+        except:
+            pass
 
 config = VConfig()
 
@@ -31,6 +31,7 @@ class LTClient(object):
         self.file_data = True
         self.pau = False
         self.incoming_data = ""
+        self.result_callback = None
         first_req = json_header['requests'][0]
         self.first_rid = first_req['id']
 
@@ -93,27 +94,47 @@ class LTClient(object):
         self.md5str = str(self.md5er.hexdigest()).strip()
         self.data_file.close()
 
+    def set_result_callback(self, callback):
+        """callback(rid, result) is called as each destination reports
+        success, not only once the whole transfer is over"""
+        self.result_callback = callback
+
     def write(self, data):
         self.incoming_data = self.incoming_data + data
-
-    def process_incoming_data(self):
-        lines = self.incoming_data.split('\n')
-        for data in lines:
+        if self.result_callback == None:
+            return
+        ndx = self.incoming_data.rfind('\n')
+        if ndx < 0:
+            return
+        lines = self.incoming_data[:ndx]
+        self.incoming_data = self.incoming_data[ndx+1:]
+        self._process_lines(lines)
+
+    def _process_lines(self, lines):
+        for data in lines.split('\n'):
+            data = data.strip()
             if data:
                 try:
                     json_outs = json.loads(data)
-                    rid = json_outs['id']
-                    if int(json_outs['code']) == 0:
-                        if rid != self.first_rid:
-                            c = self.dest.pop(rid)
-                            self.complete[rid] = json_outs
-                            self.success_count = self.success_count + 1
-                    else:
-                        d = self.dest[rid]
-                        d['emsg'] = json_outs
-                except Exception, ex:
-                    raise
+                except ValueError:
+                    pylantorrent.log(logging.WARNING, "a peer returned non json output: %s" % (data))
+                    continue
+                rid = json_outs['id']
+                if int(json_outs['code']) == 0:
+                    if rid != self.first_rid and rid in self.dest:
+                        c = self.dest.pop(rid)
+                        self.complete[rid] = json_outs
+                        self.success_count = self.success_count + 1
+                        if self.result_callback != None:
+                            self.result_callback(rid, json_outs)
+                elif rid in self.dest:
+                    d = self.dest[rid]
+                    d['emsg'] = json_outs
+
+    def process_incoming_data(self):
+        lines = self.incoming_data
         self.incoming_data = ""
+        self._process_lines(lines)
 
     def check_sum(self):
         for rid in self.complete.keys():
@@ -16,10 +16,70 @@ import uuid
 import time
 import datetime
 
+# peers that failed or were dropped for being slow recently, host:port ->
+# time.  They go to the end of the destination list next time, which puts
+# them at the leaves of the tree where they hold up nobody else.
+_suspects = {}
+SUSPECT_SECONDS = 600
+
+def _mark_suspect(host, port):
+    _suspects["%s:%s" % (host, str(port))] = time.time()
+
+def _is_suspect(host, port):
+    key = "%s:%s" % (host, str(port))
+    t = _suspects.get(key)
+    if t == None:
+        return False
+    if t < time.time() - SUSPECT_SECONDS:
+        del _suspects[key]
+        return False
+    return True
+
+def get_session_rows(con):
+    """
+    A session is ready once every member has asked for the file, there is
+    nothing to wait for then.  Members that are late past session_wait are
+    sent on their own as they come in.
+    """
+    c = con.cursor()
+    tm = datetime.datetime.now() - datetime.timedelta(0, pylantorrent.config.session_wait)
+    s = """select s.session_id, s.src_filename, s.degree from sessions s
+        where exists (select 1 from session_members m, requests r
+                      where m.session_id = s.session_id and r.rid = m.rid
+                      and r.src_filename = s.src_filename
+                      and r.state = 0 and r.attempt_count < 3)
+        and (s.entry_time < ? or not exists
+                (select 1 from session_members m
+                 where m.session_id = s.session_id and m.state = 0
+                 and m.rid not in (select rid from requests)))
+        order by s.entry_time limit 1"""
+    data = (tm, )
+    c.execute(s, data)
+    r = c.fetchone()
+    if r == None or len(r) < 1:
+        con.commit()
+        return None
+    (session_id, src_file, degree) = r
+    pylantorrent.log(logging.INFO, "selected rows of session %s" % (session_id))
+
+    s = "select hostname,port,src_filename,dst_filename,rid from requests where src_filename = ? and state = 0 and attempt_count < 3 and rid in (select rid from session_members where session_id = ?) order by hostname,port"
+    data = (src_file, session_id, )
+    c.execute(s, data)
+    rows = c.fetchall()
+    con.commit()
+    return (rows, int(degree), session_id)
+
 def getrows(con):
+    r = get_session_rows(con)
+    if r != None:
+        return r
+
+    # requests that belong to a session wait for it instead
+    not_in_session = "rid not in (select m.rid from session_members m, sessions s where m.session_id = s.session_id and s.src_filename = requests.src_filename)"
+
     c = con.cursor()
     tm = datetime.datetime.now() - datetime.timedelta(0, pylantorrent.config.insert_delay)
-    s = "select distinct src_filename from requests where state = 0 and attempt_count < 3 and entry_time < ? order by entry_time limit 1"
+    s = "select distinct src_filename from requests where state = 0 and attempt_count < 3 and entry_time < ? and " + not_in_session + " order by entry_time limit 1"
     data = (tm, )
     c.execute(s, data)
     r = c.fetchone()
@@ -32,29 +92,33 @@ def getrows(con):
     con.commit()
     pylantorrent.log(logging.INFO, "selected rows with fname %s" % (src_file))
 
-    #  need to find a way to determine that nothing new has been added for this
-    #  file recently
-    #s = 'select max(entry_time) as "e [timestamp]" from requests where src_filename = ? and state = 0 and attempt_count < 3'
-    #data = (src_file, )
-    #done = False
-    #while not done:
-    #    c.execute(s, data)
-    #    row = c.fetchone()
-    #    con.commit()
-    #    td = datetime.datetime.now() - datetime.timedelta(0, 2)
-    #    if row[0] < td:
-    #        done = True
-    #    else:
-    #        time.sleep(0.1)
-
-    s = "select hostname,port,src_filename,dst_filename,rid from requests where src_filename = ? and state = 0 and attempt_count < 3 order by hostname,port"
+    s = "select hostname,port,src_filename,dst_filename,rid from requests where src_filename = ? and state = 0 and attempt_count < 3 and " + not_in_session + " order by hostname,port"
     data = (src_file, )
     c.execute(s, data)
     rows = c.fetchall()
     con.commit()
-    return rows
+    return (rows, pylantorrent.config.degree, None)
+
+def _set_success(con, rid):
+    c = con.cursor()
+    u = "update requests set state = ?, message = ? where rid = ?"
+    data = (1,"Success",rid,)
+    c.execute(u, data)
+    u = "update session_members set state = ?, message = ?, done_time = ? where rid = ?"
+    data = (1,"Success",datetime.datetime.now(),rid,)
+    c.execute(u, data)
+    con.commit()
 
-def do_it_live(con, rows):
+def expire_sessions(con):
+    tm = datetime.datetime.now() - datetime.timedelta(1)
+    c = con.cursor()
+    d = "delete from session_members where session_id in (select session_id from sessions where entry_time < ?)"
+    c.execute(d, (tm,))
+    d = "delete from sessions where entry_time < ?"
+    c.execute(d, (tm,))
+    con.commit()
+
+def do_it_live(con, rows, degree=1, session_id=None):
 
     pylantorrent.log(logging.INFO, "lan torrent daemon setting up to send %d in a group" % (len(rows)))
 
@@ -89,12 +153,15 @@ def do_it_live(con, rows):
             json_dest['port'] = new_port
             json_dest['requests'] = [{"filename" : dst_filename, "id" : rid, 'rename' : True}]
             json_dest['block_size'] = 128*1024
-            json_dest['degree'] = 1
+            json_dest['degree'] = degree
             json_dest['length'] = sz
     
     if json_dest != None:
         dests.append(json_dest)
 
+    # the tail of the list ends up at the leaves of the tree
+    dests.sort(key=lambda d : _is_suspect(d['host'], d['port']))
+
     final = {}
     # for the sake of code resuse this will just be piped into an
     # lt daemon processor.  /dev/null is used to supress a local write
@@ -102,13 +169,19 @@ def do_it_live(con, rows):
     final['host'] = "localhost"
     final['port'] = 2893
     final['block_size'] = 131072
-    final['degree'] = 1
+    final['degree'] = degree
     final['destinations'] = dests
 
     pylantorrent.log(logging.INFO, "request send %s" % (json.dumps(final, sort_keys=True, indent=4)))
     pylantorrent.log(logging.INFO, "sending em!")
 
+    # each destination is marked done as it reports, its lt-request can
+    # return while the rest of the tree is still busy
+    def report(rid, result):
+        _set_success(con, rid)
+
     client = LTClient(src_filename, final)
+    client.set_result_callback(report)
     v = LTServer(client, client)
     try:
         v.store_and_forward()
@@ -121,27 +194,36 @@ def do_it_live(con, rows):
         rc = rc + 1
         e = es[k]
         pylantorrent.log(logging.ERROR, "error trying to send %s" % (str(e)))
+        _mark_suspect(e['host'], e['port'])
         rid = e['id']
         bad_rid.append(rid)
         # set to retry
         u = "update requests set state = ?, message = ?, attempt_count = attempt_count + 1 where rid = ?"
         data = (0,str(e),rid,)
         c.execute(u, data)
+        u = "update session_members set state = ?, message = ?, done_time = ? where rid = ? and rid in (select rid from requests where attempt_count > 2)"
+        data = (2,str(e),datetime.datetime.now(),rid,)
+        c.execute(u, data)
         rids_all.remove(rid)
 
     for rid in rids_all:
-        # set to compelte
+        # set to compelte, the callback may have missed some
         u = "update requests set state = ?, message = ? where rid = ?"
         data = (1,"Success",rid,)
         c.execute(u, data)
+        u = "update session_members set state = ?, message = ?, done_time = ? where rid = ? and state = 0"
+        data = (1,"Success",datetime.datetime.now(),rid,)
+        c.execute(u, data)
 
     con.commit()
 
-    if len(bad_rid) > 0:
+    if len(bad_rid) > 0 and session_id == None:
         # wait for soemthing in the system to change
         # obviously we need something more sophisticated than this
         # eventually
         time.sleep(5)
+    # a session goes right on with the ones that failed, the peers that
+    # failed them are leaves now
     return rc
 
 
@@ -165,12 +247,14 @@ def main(argv=sys.argv[1:]):
     while not done:
         pylantorrent.log(logging.DEBUG, "Top of the getrows loop")
         try:
-            rows = getrows(con)
-            if rows and len(rows) > 0:
+            r = getrows(con)
+            if r and len(r[0]) > 0:
+                (rows, degree, session_id) = r
                 pylantorrent.log(logging.DEBUG, "%d rows found" % (len(rows)))
-                do_it_live(con, rows)
+                do_it_live(con, rows, degree, session_id)
             else:
-                time.sleep(5)
+                expire_sessions(con)
+                time.sleep(1)
         except Exception, ex:
             pylantorrent.log(logging.ERROR, "top level error %s" % (str(ex)), traceback)
             con = sqlite3.connect(con_str, detect_types=sqlite3.PARSE_DECLTYPES|sqlite3.PARSE_COLNAMES)
@@ -27,6 +27,26 @@ request_table = Table('requests', metadata,
     Column('attempt_count', Integer, nullable=False, default=0),
     )
 
+# a session is the full destination set of one launch, registered up front
+# so the daemon knows when every member has asked and need not wait for more
+session_table = Table('sessions', metadata,
+    Column('session_id', String(64), primary_key = True),
+    Column('src_filename', String(1024), nullable=False),
+    Column('degree', Integer, nullable=False, default=1),
+    Column('entry_time', types.TIMESTAMP(), default=datetime.now()),
+    )
+
+# members outlive their requests (lt-request deletes those once it has seen
+# the result), so the outcome of each destination is kept here
+session_member_table = Table('session_members', metadata,
+    Column('rid', String(36), primary_key = True),
+    Column('session_id', String(64), nullable=False),
+    Column('node', String(1024)),
+    Column('state', Integer, nullable=False, default=0),
+    Column('message', String(4096), nullable=True),
+    Column('done_time', types.TIMESTAMP()),
+    )
+
 class RequestTable(object):
     def __init__(self):
         self.id = None
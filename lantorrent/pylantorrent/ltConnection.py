@@ -41,8 +41,14 @@ class LTDestConnection(object):
             pylantorrent.log(logging.ERROR, str(vex), traceback)
             raise vex
 
+        # a peer that stops draining would hold up everyone upstream of
+        # it, past the timeout it is dropped instead
+        self.timeout = None
+        if pylantorrent.config.peer_timeout > 0:
+            self.timeout = pylantorrent.config.peer_timeout
         try:
             s = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
+            s.settimeout(self.timeout)
             s.connect((self.host, self.port))
             self.socket = s
         except Exception, ex:
@@ -89,7 +95,7 @@ class LTDestConnection(object):
         except:
             # there may jsut be no data now
             pass
-        self.socket.settimeout(None)
+        self.socket.settimeout(self.timeout)
 
     def _read_from_socket(self, size):
         data = self.socket.recv(size)
@@ -116,18 +122,28 @@ class LTDestConnection(object):
             self.valid = False
             self.ex = LTException(506, "%s:%s %s" % (self.host, str(self.port), str(ex)), self.host, self.port, self.requests)
             pylantorrent.log(logging.WARNING, "send error " + str(self.ex), traceback)
-            data = self._read_from_socket(self.read_buffer_len)
-            while data:
-                pylantorrent.log(logging.WARNING, "bad data: " + str(data))
+            # whatever the peer reported so far still counts, then cut it
+            # off so its part of the tree fails fast and can be sent again
+            try:
+                self.socket.settimeout(0.0)
                 data = self._read_from_socket(self.read_buffer_len)
-            j = self.ex.get_json()
-            s = json.dumps(j)
-            self.output_printer.print_results(s)
+                while data:
+                    self.output_printer.print_results(data)
+                    data = self._read_from_socket(self.read_buffer_len)
+            except Exception, ex2:
+                pylantorrent.log(logging.WARNING, "dropping peer %s:%s: %s" % (self.host, str(self.port), str(ex2)))
+            self.socket.close()
+            # the peer may have been cut off mid line
+            self.output_printer.print_results(os.linesep + self.ex.get_printable())
+            return
         # see if there is anything to read
         self._poll()
 
 
     def close(self, force=False):
+        if not self.valid:
+            # dropped on a send error, already closed
+            return
         # reading of footer waits for eof so this is needed
         self.socket.shutdown(socket.SHUT_WR)
         self.read_to_eof()
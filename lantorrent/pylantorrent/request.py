@@ -39,7 +39,8 @@ def wait_until_sent(con, rid):
     while not done:
         (done, rc, message) = is_done(con, rid)
         if not done:
-            time.sleep(5)
+            # the daemon marks each destination as it completes
+            time.sleep(1)
     return (rc, message)
 
 #
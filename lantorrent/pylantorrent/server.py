@@ -99,12 +99,16 @@ class LTServer(object):
                 s = vex.get_printable()
                 self.print_results(s)
 
-        each = len(destinations) / self.degree
-        rem = len(destinations) % self.degree
+        # the rest is split among the peers that did connect, the share of
+        # one that could not is routed through the others
+        if len(v_con_array) > 0:
+            each = len(destinations) / len(v_con_array)
+            rem = len(destinations) % len(v_con_array)
         ndx = 0
         for v_con in v_con_array:
             end = ndx + each + rem
             mine = destinations[ndx:end]
+            ndx = end
             rem = 0
             v_con.send_header(mine)
         self.v_con_array = v_con_array
@@ -0,0 +1,127 @@
+import sqlite3
+import logging
+import pylantorrent
+from pylantorrent.db import LantorrentDB
+import os
+import time
+import random
+import datetime
+from pylantorrent import cbOpts
+import sys
+
+def setup_options(argv):
+
+    u = """[options] <session id> [<src file>]
+Register the destinations of a session, one "<request id> <node>" line
+each on stdin, or report on them with --status
+    """
+    (parser, all_opts) = pylantorrent.get_default_options(u)
+
+    opt = cbOpts("degree", "d", "Fan-out of the distribution tree", None, range=(1, 64))
+    all_opts.append(opt)
+    opt = cbOpts("status", "s", "Print the state of each destination", False, flag=True)
+    all_opts.append(opt)
+
+    (o, args) = pylantorrent.parse_args(parser, all_opts, argv)
+    return (o, args, parser)
+
+def _retry(con, f):
+    error_cnt = 0
+    while True:
+        try:
+            return f(con.cursor())
+        except sqlite3.OperationalError, sqlex:
+            con.rollback()
+            error_cnt = error_cnt + 1
+            if error_cnt >= pylantorrent.config.db_error_max:
+                raise sqlex
+            time.sleep(random.random() * 2.0)
+
+def submit(con, session_id, src_filename, degree, members):
+    # fail early, the daemon could never send it
+    os.path.getsize(src_filename)
+
+    now = datetime.datetime.now()
+    def insert(c):
+        i = "insert into sessions(session_id, src_filename, degree, entry_time) values (?, ?, ?, ?)"
+        c.execute(i, (session_id, src_filename, degree, now,))
+        i = "insert into session_members(rid, session_id, node, state) values (?, ?, ?, ?)"
+        for (rid, node) in members:
+            c.execute(i, (rid, session_id, node, 0,))
+        con.commit()
+    _retry(con, insert)
+    pylantorrent.log(logging.INFO, "new session %s, %d destinations of %s" % (session_id, len(members), src_filename))
+
+def status(con, session_id):
+    def select(c):
+        s = "select rid,node,state,message from session_members where session_id = ? order by node"
+        c.execute(s, (session_id,))
+        rows = c.fetchall()
+        con.commit()
+        return rows
+    return _retry(con, select)
+
+def read_members(inf):
+    members = []
+    l = inf.readline()
+    while l:
+        a = l.split()
+        if len(a) == 2:
+            members.append((a[0], a[1]))
+        elif len(a) != 0:
+            raise Exception("destination not properly formatted: %s" % (l))
+        l = inf.readline()
+    return members
+
+def main(argv=sys.argv[1:]):
+    """
+    Registers all destinations of one launch with the lantorrent daemon
+    before the nodes ask for the file.  The daemon sends as soon as every
+    member has asked (lt-request with the member's request id) instead of
+    waiting for stragglers, and records the outcome of each destination so
+    --status can report it after the requests are gone.
+    """
+
+    pylantorrent.log(logging.INFO, "enter")
+    random.seed()
+
+    (o, args, p) = setup_options(argv)
+
+    # use sqlaclh to make sure the db is there
+    x = LantorrentDB("sqlite:///%s" % pylantorrent.config.dbfile)
+    x.close()
+
+    con_str = pylantorrent.config.dbfile
+    con = sqlite3.connect(con_str, isolation_level="EXCLUSIVE")
+
+    if len(args) < 1:
+        raise Exception("You must provide a session id")
+    session_id = args[0]
+
+    if o.status:
+        for r in status(con, session_id):
+            print "%s,%s,%d,%s" % (r[0], r[1], int(r[2]), r[3])
+        return 0
+
+    if len(args) < 2:
+        raise Exception("You must provide the source file of the session")
+    degree = pylantorrent.config.degree
+    if o.degree is not None:
+        degree = int(o.degree)
+    members = read_members(o.in_file)
+    if len(members) == 0:
+        raise Exception("No destinations given on stdin")
+    submit(con, session_id, args[1], degree, members)
+    print session_id
+
+    return 0
+
+
+if __name__ == "__main__":
+    if 'LANTORRENT_HOME' not in os.environ:
+        msg = "The env LANTORRENT_HOME must be set"
+        print msg
+        raise Exception(msg)
+
+    rc = main()
+    sys.exit(rc)
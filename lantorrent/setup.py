@@ -24,6 +24,7 @@ setup(name='lantorrent',
             'ltdaemon = pylantorrent.daemon:main',
             'ltserver = pylantorrent.server:main',
             'ltrequest = pylantorrent.request:main',
+            'ltsession = pylantorrent.session:main',
             'ltclient = pylantorrent.client:main',
         ],
 
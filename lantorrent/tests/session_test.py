@@ -0,0 +1,54 @@
+import os
+import sqlite3
+import datetime
+import unittest
+import tempfile
+import pylantorrent
+from pylantorrent.db import LantorrentDB
+from pylantorrent.session import submit, status
+from pylantorrent.daemon import getrows, _set_success
+
+
+
+class TestSession(unittest.TestCase):
+
+    def setUp(self):
+        self.src_file = "/etc/group"
+        (osf, self.dbfile) = tempfile.mkstemp()
+        os.close(osf)
+        x = LantorrentDB("sqlite:///%s" % self.dbfile)
+        x.close()
+        self.con = sqlite3.connect(self.dbfile, detect_types=sqlite3.PARSE_DECLTYPES|sqlite3.PARSE_COLNAMES)
+
+    def tearDown(self):
+        self.con.close()
+        os.remove(self.dbfile)
+
+    def _request(self, rid):
+        i = "insert into requests(src_filename, dst_filename, hostname, port, rid, entry_time, state, attempt_count) values (?, ?, ?, ?, ?, ?, ?, ?)"
+        data = (self.src_file, "/tmp/" + rid, "host-" + rid, 2893, rid, datetime.datetime.now(), 0, 0, )
+        self.con.execute(i, data)
+        self.con.commit()
+
+    def test_starts_when_all_asked(self):
+        submit(self.con, "s1", self.src_file, 3, [("r1", "n1"), ("r2", "n2")])
+
+        self._request("r1")
+        self.assertEqual(getrows(self.con), None)
+
+        # no insert delay once the set is complete
+        self._request("r2")
+        (rows, degree, session_id) = getrows(self.con)
+        self.assertEqual(len(rows), 2)
+        self.assertEqual(degree, 3)
+        self.assertEqual(session_id, "s1")
+
+    def test_status(self):
+        submit(self.con, "s1", self.src_file, 1, [("r1", "n1"), ("r2", "n2")])
+        self._request("r1")
+        _set_success(self.con, "r1")
+
+        states = {}
+        for r in status(self.con, "s1"):
+            states[r[0]] = int(r[2])
+        self.assertEqual(states, {"r1" : 1, "r2" : 0})
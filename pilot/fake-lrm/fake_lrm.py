@@ -0,0 +1,191 @@
+#!/usr/bin/env python
+
+# Copyright 1999-2010 University of Chicago
+
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+# implied. See the License for the specific language governing
+# permissions and limitations under the License.
+
+"""Stand-in for the Torque qsub/qdel programs, for testing pilot slot
+management without a batch scheduler.
+
+Point pbs.submit.path and pbs.delete.path in pilot.conf at the qsub and
+qdel wrappers next to this file.
+
+qsub reads the job script from stdin (as the service sends it), records the
+job and prints a Torque style job ID, "N.fakelrm" or "N[].fakelrm" when the
+job is an array ("-t"). qdel accepts those IDs and fails like Torque does
+for unknown ones.
+
+Environment:
+
+  FAKE_LRM_DIR          where jobs are recorded (default /tmp/fake-lrm-USER)
+  FAKE_LRM_RUN          if set, run each job (each array member) locally in
+                        the background with PBS_JOBID and PBS_ARRAYID set
+  FAKE_LRM_FAIL_SUBMIT  if set, qsub fails with that text on stderr
+"""
+
+import os
+import signal
+import subprocess
+import sys
+
+SUFFIX = ".fakelrm"
+UNKNOWN_JOB_EXIT = 153  # Torque's PBSE_UNKJOBID
+
+
+def state_dir():
+    default = "/tmp/fake-lrm-%s" % os.environ.get("USER", "nobody")
+    path = os.environ.get("FAKE_LRM_DIR", default)
+    for sub in ("jobs", "deleted"):
+        subpath = os.path.join(path, sub)
+        if not os.path.isdir(subpath):
+            os.makedirs(subpath)
+    return path
+
+
+def next_id(path):
+    counter = os.path.join(path, "counter")
+    num = 0
+    if os.path.exists(counter):
+        f = open(counter)
+        try:
+            num = int(f.read().strip() or "0")
+        finally:
+            f.close()
+    num += 1
+    f = open(counter, "w")
+    try:
+        f.write("%d\n" % num)
+    finally:
+        f.close()
+    return num
+
+
+def parse_qsub_args(args):
+    opts = {"array": None, "output": None, "resources": []}
+    i = 0
+    while i < len(args):
+        arg = args[i]
+        value = None
+        if i + 1 < len(args):
+            value = args[i + 1]
+        if arg == "-t":
+            first, last = value.split("-")
+            opts["array"] = (int(first), int(last))
+            i += 2
+        elif arg == "-o":
+            opts["output"] = value
+            i += 2
+        elif arg == "-l":
+            opts["resources"].append(value)
+            i += 2
+        elif arg in ("-j", "-r", "-m", "-q", "-A"):
+            i += 2
+        else:
+            sys.stderr.write("qsub: unsupported argument '%s'\n" % arg)
+            sys.exit(2)
+    return opts
+
+
+def qsub(args):
+    fail = os.environ.get("FAKE_LRM_FAIL_SUBMIT")
+    if fail:
+        sys.stderr.write("qsub: %s\n" % fail)
+        return 1
+
+    opts = parse_qsub_args(args)
+    script = sys.stdin.read()
+    if not script.strip():
+        sys.stderr.write("qsub: empty job script\n")
+        return 1
+
+    path = state_dir()
+    num = next_id(path)
+    if opts["array"]:
+        jobid = "%d[]%s" % (num, SUFFIX)
+        members = list(range(opts["array"][0], opts["array"][1] + 1))
+    else:
+        jobid = "%d%s" % (num, SUFFIX)
+        members = [None]
+
+    record = open(os.path.join(path, "jobs", str(num)), "w")
+    try:
+        record.write("id=%s\n" % jobid)
+        record.write("args=%s\n" % " ".join(args))
+        record.write("script=%s\n" % script.strip())
+        if os.environ.get("FAKE_LRM_RUN"):
+            for member in members:
+                pid = run(jobid, member, script, opts["output"])
+                record.write("pid=%d\n" % pid)
+    finally:
+        record.close()
+
+    sys.stdout.write(jobid + "\n")
+    return 0
+
+
+def run(jobid, member, script, output):
+    env = dict(os.environ)
+    env["PBS_JOBID"] = jobid
+    if member is not None:
+        env["PBS_ARRAYID"] = str(member)
+    out = open(os.devnull, "w")
+    if output:
+        if member is not None:
+            output = "%s-%d" % (output, member)
+        out = open(output, "w")
+    proc = subprocess.Popen(["/bin/sh", "-c", script], env=env,
+                            stdin=open(os.devnull), stdout=out,
+                            stderr=subprocess.STDOUT)
+    return proc.pid
+
+
+def qdel(args):
+    if not args:
+        sys.stderr.write("qdel: no job ID\n")
+        return 2
+    path = state_dir()
+    ret = 0
+    for jobid in args:
+        num = jobid.split(".")[0].replace("[]", "")
+        record = os.path.join(path, "jobs", num)
+        deleted = os.path.join(path, "deleted", num)
+        if not num.isdigit() or not os.path.exists(record) \
+                or os.path.exists(deleted):
+            sys.stderr.write("qdel: Unknown Job Id %s\n" % jobid)
+            ret = UNKNOWN_JOB_EXIT
+            continue
+        f = open(record)
+        try:
+            for line in f:
+                if line.startswith("pid="):
+                    try:
+                        os.kill(int(line[4:]), signal.SIGTERM)
+                    except OSError:
+                        pass  # already exited
+        finally:
+            f.close()
+        open(deleted, "w").close()
+    return ret
+
+
+def main(argv):
+    if len(argv) < 2 or argv[1] not in ("qsub", "qdel"):
+        sys.stderr.write("usage: %s qsub|qdel [args]\n" % argv[0])
+        return 2
+    if argv[1] == "qsub":
+        return qsub(argv[2:])
+    return qdel(argv[2:])
+
+
+if __name__ == "__main__":
+    sys.exit(main(sys.argv))
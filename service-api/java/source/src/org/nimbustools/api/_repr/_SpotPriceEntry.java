@@ -9,4 +9,8 @@ public interface _SpotPriceEntry extends SpotPriceEntry {
     public void setTimeStamp(Calendar timeStamp);
     
     public void setSpotPrice(Double spotPrice);
+
+    public void setMinPrice(Double minPrice);
+
+    public void setMaxPrice(Double maxPrice);
 }
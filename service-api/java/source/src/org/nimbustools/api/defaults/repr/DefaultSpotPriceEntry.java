@@ -28,6 +28,8 @@ public class DefaultSpotPriceEntry implements _SpotPriceEntry {
 
     private Calendar timeStamp;
     private Double spotPrice;
+    private Double minPrice;
+    private Double maxPrice;
     
     // -------------------------------------------------------------------------
     // implements org.nimbustools.api.repr.SpotPriceEntry
@@ -40,6 +42,20 @@ public class DefaultSpotPriceEntry implements _SpotPriceEntry {
     public Double getSpotPrice() {
         return this.spotPrice;
     }    
+
+    public Double getMinPrice() {
+        if (this.minPrice == null) {
+            return this.spotPrice;
+        }
+        return this.minPrice;
+    }
+
+    public Double getMaxPrice() {
+        if (this.maxPrice == null) {
+            return this.spotPrice;
+        }
+        return this.maxPrice;
+    }
     
     // -------------------------------------------------------------------------
     // implements org.nimbustools.api._repr._SpotPriceEntry
@@ -52,13 +68,22 @@ public class DefaultSpotPriceEntry implements _SpotPriceEntry {
     public void setSpotPrice(Double spotPrice) {
         this.spotPrice = spotPrice;
     }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
     
     // -------------------------------------------------------------------------
     // DEBUG STRING
     // -------------------------------------------------------------------------
 
     public String toString() {
-        return "DefaultSpotPriceEntry [spotPrice=" + spotPrice + ", timeStamp="
+        return "DefaultSpotPriceEntry [spotPrice=" + spotPrice + ", minPrice="
+                + getMinPrice() + ", maxPrice=" + getMaxPrice() + ", timeStamp="
                 + (timeStamp != null? timeStamp.getTime() : null) + "]";
     }    
     
@@ -358,6 +358,13 @@ public class DefaultManager implements Manager {
         return null;
     }
 
+    public SpotPriceEntry[] getSpotPriceHistory(Calendar startDate,
+            Calendar endDate, long resolution) throws ManageException {
+        Logging.debug("Manager.getSpotPriceHistory() startDate: " + startDate +
+                ". endDate: " + endDate + ". resolution: " + resolution);
+        return null;
+    }
+
     public RequestInfo addBackfillRequest(AsyncCreateRequest req, Caller caller)
             throws AuthorizationException, CoSchedulingException,
             CreationException, MetadataException,
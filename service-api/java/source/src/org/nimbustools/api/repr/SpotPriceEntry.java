@@ -7,4 +7,16 @@ public interface SpotPriceEntry {
     public Calendar getTimeStamp();
     
     public Double getSpotPrice();
+
+    /**
+     * @return lowest price in the period this entry covers, equal to
+     *         the spot price for a single (not downsampled) entry
+     */
+    public Double getMinPrice();
+
+    /**
+     * @return highest price in the period this entry covers, equal to
+     *         the spot price for a single (not downsampled) entry
+     */
+    public Double getMaxPrice();
 }
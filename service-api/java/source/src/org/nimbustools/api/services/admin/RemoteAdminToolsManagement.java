@@ -43,6 +43,15 @@ public interface RemoteAdminToolsManagement extends Remote {
     public static final int CLEANUP_GID = 5;
     public static final int CLEANUP_GNAME = 6;
 
+    public static final int LIST_ALL = 0;
+    public static final int LIST_ID = 1;
+    public static final int LIST_HOST = 2;
+    public static final int LIST_UNAME = 3;
+    public static final int LIST_DN = 4;
+    public static final int LIST_GID = 5;
+    public static final int LIST_GNAME = 6;
+    public static final int LIST_STATE = 7;
+
     public String getAllRunningVMs() throws RemoteException;
     public String getVMsByDN(String userDN) throws RemoteException;
     public String getVMsByUser(String user) throws RemoteException;
@@ -53,4 +62,18 @@ public interface RemoteAdminToolsManagement extends Remote {
     public Hashtable<String, String[]> showVMsForAllHosts() throws RemoteException;
     public String shutdown(int type, String typeID, String seconds, boolean force) throws RemoteException;
     public String cleanup(int type, String typeID) throws RemoteException;
+    public String getMetrics() throws RemoteException;
+    public String getLifecycleTrace(String vmid) throws RemoteException;
+
+    /**
+     * Pages through the VMs matching a query, sorted by ID.
+     *
+     * @param type one of the LIST_* constants
+     * @param typeID value to match, ignored for LIST_ALL
+     * @param afterID cursor, 0 for the first page, then the previous page's next
+     * @param limit maximum number of VMs in the page
+     * @return JSON VMPage
+     * @throws RemoteException problem
+     */
+    public String getVMPage(int type, String typeID, int afterID, int limit) throws RemoteException;
 }
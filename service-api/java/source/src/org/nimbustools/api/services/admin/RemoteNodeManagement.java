@@ -45,6 +45,22 @@ public interface RemoteNodeManagement extends Remote {
                               String networks)
             throws RemoteException;
 
+    // same, with the CPU core and scratch disk (MB) capacity of the nodes;
+    // a value of 0 means the node is not limited by that dimension
+    public String updateNodes(String[] hostnames,
+                              Boolean active,
+                              String pool,
+                              Integer memory,
+                              Integer cores,
+                              Integer disk,
+                              String networks)
+            throws RemoteException;
+
+    // budget (MB) of the nodes' image caches, 0 leaves it to each node's
+    // own configuration; allowed while VMs are running
+    public String updateImageCacheBudget(String[] hostnames, int megabytes)
+            throws RemoteException;
+
     //Delete
     public String removeNodes(String[] hostnames) throws RemoteException;
 
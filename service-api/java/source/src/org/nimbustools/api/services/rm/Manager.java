@@ -218,6 +218,19 @@ public interface Manager extends NimbusModule {
     
     public SpotPriceEntry[] getSpotPriceHistory(Calendar startDate, Calendar endDate)
             throws ManageException; 
+
+    /**
+     * @param startDate start of the history, null for no start
+     * @param endDate end of the history, null for no end
+     * @param resolution length in ms of the period each returned entry
+     *        summarizes (its min, max and last price), zero for every
+     *        raw price change
+     * @return price history
+     * @throws ManageException problem
+     */
+    public SpotPriceEntry[] getSpotPriceHistory(Calendar startDate, Calendar endDate,
+                                                long resolution)
+            throws ManageException;
     
     // -------------------------------------------------------------------------
     // BACKFILL OPERATIONS
@@ -66,6 +66,9 @@ public class ContextMonitor extends Mode {
 
     public static final long DEFAULT_POLL_MS = 5000;
     public static final int DEFAULT_POOL_SIZE = 4;
+
+    // longest the broker is asked to hold each status query
+    public static final long LONG_POLL_MS = 10000;
     
 
     // -------------------------------------------------------------------------
@@ -172,6 +175,7 @@ public class ContextMonitor extends Mode {
 
         this.rpQuery =
                 new Ctx_RPQuery(this.epr, this.stubConf, this.pr);
+        this.rpQuery.setWaitMs(LONG_POLL_MS);
         this.identitiesQuery =
                 new Ctx_Identities(this.epr, this.stubConf, this.pr);
     }
@@ -379,11 +383,16 @@ public class ContextMonitor extends Mode {
 
             while (true) {
                 try {
+                    final long start = System.currentTimeMillis();
                     contextRP = this.rpQuery.query();
                     if (this.analyzeResult(contextRP)) {
                         break;
                     }
-                    Thread.sleep(this.pollDelayMs);
+                    // a broker that held the query has already waited
+                    final long elapsed = System.currentTimeMillis() - start;
+                    if (elapsed < this.pollDelayMs) {
+                        Thread.sleep(this.pollDelayMs - elapsed);
+                    }
                 } catch (InterruptedException e) {
                     // ignore
                 }
@@ -29,6 +29,7 @@ import org.nimbustools.ctxbroker.generated.gt4_0.broker.NimbusContextualizationF
 import org.nimbustools.ctxbroker.generated.gt4_0.types.ContextualizationContext;
 import org.globus.wsrf.encoding.ObjectDeserializer;
 import org.globus.wsrf.encoding.DeserializationException;
+import org.apache.axis.client.Stub;
 import org.apache.axis.message.addressing.EndpointReferenceType;
 import org.apache.axis.message.MessageElement;
 import org.oasis.wsrf.properties.GetResourcePropertyResponse;
@@ -37,6 +38,22 @@ import java.rmi.RemoteException;
 
 public class Ctx_RPQuery extends WSAction_Ctx {
 
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    // brokers that do not know it ignore it
+    public static final String LONG_POLL_HEADER = "LongPollWaitMs";
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private long waitMs;
+    private boolean waitHeaderSet;
+
+
     // -------------------------------------------------------------------------
     // CONSTRUCTORS
     // -------------------------------------------------------------------------
@@ -58,6 +75,21 @@ public class Ctx_RPQuery extends WSAction_Ctx {
         super(ctxBrokerPortType, debug);
     }
 
+    // -------------------------------------------------------------------------
+    // GET/SET
+    // -------------------------------------------------------------------------
+
+    /**
+     * Lets the broker hold each query until the context is done (all OK or
+     * an error) for up to waitMs.  Set before the first query.
+     *
+     * @param waitMs 0 for plain queries
+     */
+    public void setWaitMs(long waitMs) {
+        this.waitMs = waitMs;
+    }
+
+
     // -------------------------------------------------------------------------
     // EXECUTE
     // -------------------------------------------------------------------------
@@ -89,6 +121,15 @@ public class Ctx_RPQuery extends WSAction_Ctx {
 
         this.validateAll();
 
+        if (this.waitMs > 0 && !this.waitHeaderSet &&
+                this.portType instanceof Stub) {
+            ((Stub) this.portType).setHeader(
+                    Constants_GT4_0.NS_NIMBUS_CONTEXTUALIZATION,
+                    LONG_POLL_HEADER,
+                    Long.toString(this.waitMs));
+            this.waitHeaderSet = true;
+        }
+
         try {
             final GetResourcePropertyResponse resp =
                     ((NimbusContextBrokerPortType) this.portType)
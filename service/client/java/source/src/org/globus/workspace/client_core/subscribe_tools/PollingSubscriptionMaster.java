@@ -33,7 +33,8 @@ public interface PollingSubscriptionMaster extends SubscriptionMaster {
 
 
     /**
-     * @return milliseconds between polls for each task
+     * @return milliseconds between polls of a factory while its workspaces
+     *         are changing; quiet factories are polled less often
      */
     public long getPollingMs();
 
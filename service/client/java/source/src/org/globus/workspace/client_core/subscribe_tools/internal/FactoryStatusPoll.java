@@ -0,0 +1,396 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.client_core.subscribe_tools.internal;
+
+import edu.emory.mathcs.backport.java.util.concurrent.Callable;
+import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
+import edu.emory.mathcs.backport.java.util.concurrent.Future;
+import edu.emory.mathcs.backport.java.util.concurrent.ScheduledExecutorService;
+import edu.emory.mathcs.backport.java.util.concurrent.ScheduledFuture;
+import edu.emory.mathcs.backport.java.util.concurrent.TimeUnit;
+import org.apache.axis.message.addressing.EndpointReferenceType;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.globus.workspace.client_core.StubConfigurator;
+import org.globus.workspace.client_core.actions.RPQueryCurrentState;
+import org.globus.workspace.client_core.actions.Status_QueryAll;
+import org.globus.workspace.client_core.repr.State;
+import org.globus.workspace.client_core.repr.StateOrTerminated;
+import org.globus.workspace.client_core.repr.Workspace;
+import org.globus.workspace.client_core.utils.EPRUtils;
+import org.globus.workspace.common.print.Print;
+import org.globus.wsrf.utils.AddressingUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Polls every tracked workspace of one factory with a single status
+ * service query (queryCurrentWorkspaces) per round instead of one resource
+ * property query per workspace.
+ *
+ * Workspaces missing from the answer (just terminated, or not the caller's)
+ * and all workspaces of a factory whose status service cannot be used are
+ * queried one by one, as before.
+ *
+ * The delay between rounds starts at the configured poll interval, grows by
+ * half after every round that saw no transition, up to MAX_BACKOFF times the
+ * interval, and drops back as soon as something changes or a workspace is
+ * added.
+ */
+class FactoryStatusPoll {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final Log logger =
+            LogFactory.getLog(FactoryStatusPoll.class.getName());
+
+    static final int MAX_BACKOFF = 8;
+
+    // after a failed batched query, rounds to poll individually before
+    // trying again
+    static final int BATCH_RETRY_ROUNDS = 10;
+
+    private static final String INSTANCE_SERVICE = "WorkspaceService";
+    private static final String STATUS_SERVICE = "WorkspaceStatusService";
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final String address;
+    private final SubscriptionMasterImpl master;
+    private final StubConfigurator stubConf;
+    private final Print pr;
+    private final ScheduledExecutorService scheduled;
+    private final ExecutorService individual;
+    private final long baseMs;
+    private final long maxMs;
+
+    // null if there is no usable status service
+    private Status_QueryAll queryAll;
+
+    // guarded by this
+    private final Map<Integer,EndpointReferenceType> tracked =
+            new HashMap<Integer,EndpointReferenceType>();
+    private final Map<Integer,RPQueryCurrentState> actions =
+            new HashMap<Integer,RPQueryCurrentState>();
+    private final Map<Integer,State> lastSeen = new HashMap<Integer,State>();
+    private long delayMs;
+    private ScheduledFuture next;
+    private long generation;
+    private boolean cancelled;
+    private boolean running;
+    private boolean hurry;
+    private int skipBatchRounds;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    FactoryStatusPoll(String address,
+                      SubscriptionMasterImpl master,
+                      StubConfigurator stubConf,
+                      Print pr,
+                      ScheduledExecutorService scheduled,
+                      ExecutorService individual,
+                      long baseMs) {
+
+        if (address == null) {
+            throw new IllegalArgumentException("address may not be null");
+        }
+        this.address = address;
+        this.master = master;
+        this.stubConf = stubConf;
+        this.pr = pr;
+        this.scheduled = scheduled;
+        this.individual = individual;
+        this.baseMs = baseMs;
+        this.maxMs = baseMs * MAX_BACKOFF;
+        this.delayMs = baseMs;
+
+        final String statusAddress = statusAddress(address);
+        if (statusAddress != null) {
+            try {
+                final EndpointReferenceType statusEPR =
+                        AddressingUtils.createEndpointReference(
+                                statusAddress, EPRUtils.defaultFactoryKey());
+                this.queryAll = new Status_QueryAll(statusEPR, stubConf, pr);
+            } catch (Exception e) {
+                this.debug("No batched status queries for " + address +
+                           ": " + e.getMessage());
+            }
+        }
+    }
+
+
+    // -------------------------------------------------------------------------
+    // TRACKING
+    // -------------------------------------------------------------------------
+
+    synchronized void add(int id, EndpointReferenceType epr) {
+        this.tracked.put(new Integer(id), epr);
+        if (this.cancelled) {
+            return;
+        }
+        // something was just launched or looked at, be prompt
+        if (this.running) {
+            this.delayMs = this.baseMs;
+            this.hurry = true;
+        } else if (this.next == null || this.delayMs > this.baseMs) {
+            if (this.next != null) {
+                this.next.cancel(false);
+            }
+            this.delayMs = this.baseMs;
+            this.schedule();
+        }
+    }
+
+    /**
+     * @return true if nothing is tracked anymore
+     */
+    synchronized boolean remove(int id) {
+        final Integer key = new Integer(id);
+        this.tracked.remove(key);
+        this.actions.remove(key);
+        this.lastSeen.remove(key);
+        return this.tracked.isEmpty();
+    }
+
+    synchronized void cancel() {
+        this.cancelled = true;
+        if (this.next != null) {
+            this.next.cancel(true);
+            this.next = null;
+        }
+    }
+
+    synchronized long getDelayMs() {
+        return this.delayMs;
+    }
+
+    // caller holds lock; a timer that fired but lost the race to a newer
+    // schedule() finds its generation stale and does nothing
+    private void schedule() {
+        final long gen = ++this.generation;
+        this.next = this.scheduled.schedule(new Runnable() {
+            public void run() {
+                poll(gen);
+            }
+        }, this.delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    static long nextDelay(long currentMs, int transitions,
+                          long baseMs, long maxMs) {
+        if (transitions > 0) {
+            return baseMs;
+        }
+        return Math.min(maxMs, currentMs + Math.max(1, currentMs / 2));
+    }
+
+    /**
+     * @param instanceAddress e.g. https://host:8443/wsrf/services/WorkspaceService
+     * @return status service address in the same container, or null
+     */
+    static String statusAddress(String instanceAddress) {
+        if (instanceAddress == null ||
+                !instanceAddress.endsWith(INSTANCE_SERVICE)) {
+            return null;
+        }
+        return instanceAddress.substring(0,
+                instanceAddress.length() - INSTANCE_SERVICE.length()) +
+                STATUS_SERVICE;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // POLL
+    // -------------------------------------------------------------------------
+
+    void poll(long gen) {
+
+        final Map<Integer,EndpointReferenceType> snapshot;
+        synchronized (this) {
+            if (this.cancelled || gen != this.generation) {
+                return;
+            }
+            snapshot = new HashMap<Integer,EndpointReferenceType>(this.tracked);
+            this.running = true;
+        }
+
+        int transitions = 0;
+        try {
+            if (!snapshot.isEmpty()) {
+                transitions = this.pollOnce(snapshot);
+            }
+        } catch (Throwable t) {
+            this.debug("Poll of " + this.address + " failed: " +
+                       t.getMessage());
+        } finally {
+            synchronized (this) {
+                this.running = false;
+                if (!this.cancelled) {
+                    this.delayMs = nextDelay(this.delayMs,
+                                             this.hurry ? 1 : transitions,
+                                             this.baseMs, this.maxMs);
+                    this.hurry = false;
+                    this.schedule();
+                }
+            }
+        }
+    }
+
+    private int pollOnce(Map<Integer,EndpointReferenceType> snapshot)
+            throws Exception {
+
+        boolean useBatch = false;
+        synchronized (this) {
+            if (this.queryAll != null) {
+                if (this.skipBatchRounds > 0) {
+                    this.skipBatchRounds -= 1;
+                } else {
+                    useBatch = true;
+                }
+            }
+        }
+
+        if (!useBatch) {
+            return this.pollIndividually(snapshot.entrySet().iterator());
+        }
+
+        final Workspace[] all;
+        try {
+            all = this.queryAll.queryAll();
+        } catch (Exception e) {
+            this.debug("Batched status query to " + this.address +
+                       " failed, polling individually: " + e.getMessage());
+            synchronized (this) {
+                this.skipBatchRounds = BATCH_RETRY_ROUNDS;
+            }
+            return this.pollIndividually(snapshot.entrySet().iterator());
+        }
+
+        // the status service answers for its own container only, so the
+        // id is enough to match
+        final Map<Integer,State> states = new HashMap<Integer,State>();
+        for (int i = 0; i < all.length; i++) {
+            final EndpointReferenceType epr = all[i].getEpr();
+            if (epr != null && all[i].getCurrentState() != null) {
+                states.put(new Integer(EPRUtils.getIdFromEPR(epr)),
+                           all[i].getCurrentState());
+            }
+        }
+
+        int transitions = 0;
+        final List<Map.Entry<Integer,EndpointReferenceType>> missing =
+                new ArrayList<Map.Entry<Integer,EndpointReferenceType>>();
+        final Iterator<Map.Entry<Integer,EndpointReferenceType>> it =
+                snapshot.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Integer,EndpointReferenceType> entry = it.next();
+            final State state = states.get(entry.getKey());
+            if (state == null) {
+                missing.add(entry);
+                continue;
+            }
+            if (this.seen(entry.getKey(), state)) {
+                transitions += 1;
+            }
+            this.master.stateChange(entry.getValue(), state);
+        }
+
+        if (!missing.isEmpty()) {
+            transitions += this.pollIndividually(missing.iterator());
+        }
+        return transitions;
+    }
+
+    private int pollIndividually(
+            Iterator<Map.Entry<Integer,EndpointReferenceType>> entries)
+            throws Exception {
+
+        final List<Callable> calls = new ArrayList<Callable>();
+        while (entries.hasNext()) {
+            final Map.Entry<Integer,EndpointReferenceType> entry =
+                    entries.next();
+            final RPQueryCurrentState action = this.action(entry);
+            final Integer id = entry.getKey();
+            calls.add(new Callable() {
+                public Object call() throws Exception {
+                    final StateOrTerminated result = action.queryOnce();
+                    if (result.isTerminated()) {
+                        return Boolean.TRUE;
+                    }
+                    return Boolean.valueOf(seen(id, result.getState()));
+                }
+            });
+        }
+
+        int transitions = 0;
+        final List futures = this.individual.invokeAll(calls);
+        for (Iterator it = futures.iterator(); it.hasNext();) {
+            try {
+                if (Boolean.TRUE.equals(((Future) it.next()).get())) {
+                    transitions += 1;
+                }
+            } catch (Exception e) {
+                // RPQueryCurrentState already logged it
+            }
+        }
+        return transitions;
+    }
+
+    private synchronized RPQueryCurrentState action(
+            Map.Entry<Integer,EndpointReferenceType> entry) {
+
+        RPQueryCurrentState action = this.actions.get(entry.getKey());
+        if (action == null) {
+            final EndpointReferenceType epr = entry.getValue();
+            action = new RPQueryCurrentState(epr, this.stubConf, this.pr);
+            action.setStateConduit(this.master, epr);
+            action.setTerminationConduit(this.master, epr);
+            this.actions.put(entry.getKey(), action);
+        }
+        return action;
+    }
+
+    // true if this is a different state than last time
+    private synchronized boolean seen(Integer id, State state) {
+        if (state == null) {
+            return false;
+        }
+        final State last = this.lastSeen.put(id, state);
+        return last != null && !last.equals(state);
+    }
+
+    private void debug(String msg) {
+        if (this.pr.enabled()) {
+            if (this.pr.useThis()) {
+                this.pr.dbg(msg);
+            } else if (this.pr.useLogging()) {
+                logger.debug(msg);
+            }
+        }
+    }
+}
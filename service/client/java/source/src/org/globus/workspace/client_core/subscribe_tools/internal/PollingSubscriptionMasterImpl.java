@@ -21,18 +21,24 @@ import org.globus.workspace.client_core.subscribe_tools.StateChangeListener;
 import org.globus.workspace.client_core.subscribe_tools.TerminationListener;
 import org.globus.workspace.common.print.Print;
 import org.globus.workspace.client_core.repr.Workspace;
-import org.globus.workspace.client_core.actions.RPQueryCurrentState;
 import org.globus.workspace.client_core.StubConfigurator;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.axis.message.addressing.EndpointReferenceType;
 import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
 import edu.emory.mathcs.backport.java.util.concurrent.ScheduledThreadPoolExecutor;
+import edu.emory.mathcs.backport.java.util.concurrent.ThreadPoolExecutor;
 import edu.emory.mathcs.backport.java.util.concurrent.TimeUnit;
-import edu.emory.mathcs.backport.java.util.concurrent.ScheduledFuture;
+import edu.emory.mathcs.backport.java.util.concurrent.LinkedBlockingQueue;
 
 import java.util.Hashtable;
 
+/**
+ * One poll per factory service, not per workspace: all tracked workspaces
+ * of a factory are covered by one status service query per round.
+ *
+ * @see FactoryStatusPoll
+ */
 public class PollingSubscriptionMasterImpl extends SubscriptionMasterImpl
                                            implements PollingSubscriptionMaster {
     
@@ -52,12 +58,13 @@ public class PollingSubscriptionMasterImpl extends SubscriptionMasterImpl
     // -------------------------------------------------------------------------
 
     private final ScheduledThreadPoolExecutor scheduled;
+    private final ThreadPoolExecutor individual;
     private final long pollDelayMs;
     private final StubConfigurator stubConf;
     
-    // key: AddressIDPair
-    // value: FutureTask
-    private final Hashtable currentTasks;
+    // key: service address
+    // value: FactoryStatusPoll
+    private final Hashtable currentPolls;
 
     
     // -------------------------------------------------------------------------
@@ -82,7 +89,15 @@ public class PollingSubscriptionMasterImpl extends SubscriptionMasterImpl
 
         this.scheduled.setMaximumPoolSize(maxThreads);
 
-        this.currentTasks = new Hashtable(8);
+        // For workspaces the batched query did not cover, queried one by one
+        this.individual = new ThreadPoolExecutor(DEFAULT_POOL_SIZE,
+                                                 DEFAULT_POOL_SIZE,
+                                                 60, TimeUnit.SECONDS,
+                                                 new LinkedBlockingQueue());
+        this.individual.setCorePoolSize(Math.min(maxThreads, DEFAULT_POOL_SIZE));
+        this.individual.setMaximumPoolSize(this.individual.getCorePoolSize());
+
+        this.currentPolls = new Hashtable(8);
     }
 
     public PollingSubscriptionMasterImpl(long pollDelayMilliseconds,
@@ -112,6 +127,7 @@ public class PollingSubscriptionMasterImpl extends SubscriptionMasterImpl
 
     public void stopPolling() {
         this.scheduled.shutdownNow();
+        this.individual.shutdownNow();
     }
 
     public long getPollingMs() {
@@ -167,31 +183,27 @@ public class PollingSubscriptionMasterImpl extends SubscriptionMasterImpl
             final WorkspaceAndListeners wal =
                     this.map.getWorkspace(epr, this.pr);
 
-            // if neither is being tracked yet, start a polling thread
+            // if neither is being tracked yet, add it to its factory's poll
             if (wal == null) {
 
                 final AddressIDPair addrID =
                     WorkspaceMap.chooseAddrID(epr, this.pr);
 
-                final RPQueryCurrentState action =
-                        new RPQueryCurrentState(epr, this.stubConf, this.pr);
-                action.setStateConduit(this, epr);
-                action.setTerminationConduit(this, epr);
-
-                // Can't use FutureTask because of the way scheduleWithFixedDelay
-                // will wrap the object.  Results in just one call instead of
-                // repeating (thread state gets put into "RAN" in the inner
-                // callable.  Instead, made RPQueryCurrentState also implement
-                // Runnable interface and so now is native parameter to
-                // scheduleWithFixedDelay method instead of wrapped in FutureTask.
-                //NOPE: final FutureTask task = new FutureTask(action);
-
-                final ScheduledFuture scheduledFuture =
-                        this.scheduled.scheduleWithFixedDelay(
-                                action, this.pollDelayMs, this.pollDelayMs,
-                                TimeUnit.MILLISECONDS);
-
-                this.currentTasks.put(addrID, scheduledFuture);
+                if (addrID != null) {
+                    FactoryStatusPoll poll = (FactoryStatusPoll)
+                            this.currentPolls.get(addrID.getAddress());
+                    if (poll == null) {
+                        poll = new FactoryStatusPoll(addrID.getAddress(),
+                                                     this,
+                                                     this.stubConf,
+                                                     this.pr,
+                                                     this.scheduled,
+                                                     this.individual,
+                                                     this.pollDelayMs);
+                        this.currentPolls.put(addrID.getAddress(), poll);
+                    }
+                    poll.add(addrID.getId().intValue(), epr);
+                }
             }
 
             if (terminationListener != null) {
@@ -223,10 +235,10 @@ public class PollingSubscriptionMasterImpl extends SubscriptionMasterImpl
                 return super.untrackWorkspace(workspace);
             }
 
-            final ScheduledFuture task =
-                    (ScheduledFuture) this.currentTasks.get(addrID);
+            final FactoryStatusPoll poll =
+                    (FactoryStatusPoll) this.currentPolls.get(addrID.getAddress());
             
-            if (task == null) {
+            if (poll == null) {
                 if (this.pr.enabled()) {
                     final String err = "Unexpected: parent tracking this " +
                             "but not the poll subscription manager? " +
@@ -241,9 +253,10 @@ public class PollingSubscriptionMasterImpl extends SubscriptionMasterImpl
                 return super.untrackWorkspace(workspace);
             }
 
-            task.cancel(true);
-            
-            this.currentTasks.remove(addrID);
+            if (poll.remove(addrID.getId().intValue())) {
+                poll.cancel();
+                this.currentPolls.remove(addrID.getAddress());
+            }
 
             return super.untrackWorkspace(workspace);
         }
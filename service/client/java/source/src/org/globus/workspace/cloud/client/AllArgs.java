@@ -100,6 +100,11 @@ public class AllArgs {
     private String xferS3AllowSelfSigned;
     private String xferCanonicalID;
     private String s3Bucket;
+    private int xferPartSizeMB;
+    private int xferConcurrency;
+    private int xferParallelism;
+    private int launchConcurrency;
+    private long launchIntervalMs = -1;
     private String gridftpID;
     private String handle;
     private String hashPrintDN;
@@ -731,6 +736,28 @@ public class AllArgs {
                          sourceName);
         }
 
+        if (this.xferPartSizeMB == 0) {
+            final String mbString =
+                    CloudClientUtil.getProp(props, Props.KEY_XFER_PART_SIZE);
+            if (mbString != null) {
+                this.xferPartSizeMB = Integer.parseInt(mbString);
+                this.gotProp(Props.KEY_XFER_PART_SIZE,
+                             mbString,
+                             sourceName);
+            }
+        }
+
+        if (this.xferConcurrency == 0) {
+            final String numString =
+                    CloudClientUtil.getProp(props, Props.KEY_XFER_CONCURRENCY);
+            if (numString != null) {
+                this.xferConcurrency = Integer.parseInt(numString);
+                this.gotProp(Props.KEY_XFER_CONCURRENCY,
+                             numString,
+                             sourceName);
+            }
+        }
+
         if (this.xferHostPort == null) {
             this.xferHostPort =
                     CloudClientUtil.getProp(props, Props.KEY_XFER_HOSTPORT);
@@ -895,6 +922,39 @@ public class AllArgs {
             }
         }
 
+        if (this.xferParallelism == 0) {
+            final String numString =
+                    CloudClientUtil.getProp(props, Props.KEY_XFER_PARALLELISM);
+            if (numString != null) {
+                this.xferParallelism = Integer.parseInt(numString);
+                this.gotProp(Props.KEY_XFER_PARALLELISM,
+                             numString,
+                             sourceName);
+            }
+        }
+
+        if (this.launchConcurrency == 0) {
+            final String numString =
+                    CloudClientUtil.getProp(props, Props.KEY_LAUNCH_CONCURRENCY);
+            if (numString != null) {
+                this.launchConcurrency = Integer.parseInt(numString);
+                this.gotProp(Props.KEY_LAUNCH_CONCURRENCY,
+                             numString,
+                             sourceName);
+            }
+        }
+
+        if (this.launchIntervalMs < 0) {
+            final String numString =
+                    CloudClientUtil.getProp(props, Props.KEY_LAUNCH_INTERVAL);
+            if (numString != null) {
+                this.launchIntervalMs = Long.parseLong(numString);
+                this.gotProp(Props.KEY_LAUNCH_INTERVAL,
+                             numString,
+                             sourceName);
+            }
+        }
+
         if (this.nimbusCertFile == null) {
             final String key = Props.KEY_NIMBUS_CERT;
             final String val = CloudClientUtil.getProp(props, key);
@@ -1184,6 +1244,46 @@ public class AllArgs {
         this.s3Bucket = s3Bucket;
     }
 
+    public int getXferPartSizeMB() {
+        return this.xferPartSizeMB;
+    }
+
+    public void setXferPartSizeMB(int xferPartSizeMB) {
+        this.xferPartSizeMB = xferPartSizeMB;
+    }
+
+    public int getXferConcurrency() {
+        return this.xferConcurrency;
+    }
+
+    public void setXferConcurrency(int xferConcurrency) {
+        this.xferConcurrency = xferConcurrency;
+    }
+
+    public int getXferParallelism() {
+        return this.xferParallelism;
+    }
+
+    public void setXferParallelism(int xferParallelism) {
+        this.xferParallelism = xferParallelism;
+    }
+
+    public int getLaunchConcurrency() {
+        return this.launchConcurrency;
+    }
+
+    public void setLaunchConcurrency(int launchConcurrency) {
+        this.launchConcurrency = launchConcurrency;
+    }
+
+    public long getLaunchIntervalMs() {
+        return this.launchIntervalMs;
+    }
+
+    public void setLaunchIntervalMs(long launchIntervalMs) {
+        this.launchIntervalMs = launchIntervalMs;
+    }
+
     public void setGridftpID(String gridftpID) {
         this.gridftpID = gridftpID;
     }
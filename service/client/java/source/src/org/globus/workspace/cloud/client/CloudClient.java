@@ -1619,6 +1619,9 @@ public class CloudClient {
             knownHostTasks = null;
         }
 
+        this.executeUtil.setLaunchLimits(this.args.getLaunchConcurrency(),
+                                         this.args.getLaunchIntervalMs());
+
         this.executeUtil.startWorkspaceCluster(this.workspaceFactoryURL,
                                                knownHostTasks,
                                                metadatas,
@@ -66,6 +66,12 @@ public class Props {
     public static final String
             KEY_S3_BUCKET = "vws.repository.s3bucket";
 
+    public static final String
+            KEY_XFER_PART_SIZE = "vws.repository.partsize";
+
+    public static final String
+            KEY_XFER_CONCURRENCY = "vws.repository.concurrency";
+
     public static final String
             KEY_TARGET_BASEDIR = "vws.repository.basedir";
 
@@ -78,6 +84,15 @@ public class Props {
     public static final String
             KEY_XFER_TIMEOUT = "vws.gridftp.timeout";
 
+    public static final String
+            KEY_XFER_PARALLELISM = "vws.gridftp.parallelism";
+
+    public static final String
+            KEY_LAUNCH_CONCURRENCY = "vws.launch.concurrency";
+
+    public static final String
+            KEY_LAUNCH_INTERVAL = "vws.launch.interval";
+
     public static final String
             KEY_CAHASH = "vws.cahash";
 
@@ -0,0 +1,71 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.cluster;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Spaces out requests to the same cloud by a minimum interval.
+ *
+ * Pipelines that send to the same clouds one after the other (the first
+ * cluster member alone, then the rest) share one pacer so the interval
+ * also holds across them.
+ *
+ * Thread safe.
+ */
+public class LaunchPacer {
+
+    private final long cloudIntervalMs;
+
+    // guarded by itself
+    private final Map<String,Long> nextStart = new HashMap<String,Long>();
+
+    /**
+     * @param cloudIntervalMs minimum ms between request starts for one
+     *                        cloud, 0 for no spacing
+     */
+    public LaunchPacer(long cloudIntervalMs) {
+        this.cloudIntervalMs = cloudIntervalMs;
+    }
+
+    /**
+     * Waits until the cloud may get its next request.
+     *
+     * @param cloud cloud key, null for no spacing
+     * @throws InterruptedException interrupted while waiting
+     */
+    public void pace(String cloud) throws InterruptedException {
+
+        if (this.cloudIntervalMs < 1 || cloud == null) {
+            return;
+        }
+
+        final long wait;
+        synchronized (this.nextStart) {
+            final long now = System.currentTimeMillis();
+            final Long next = this.nextStart.get(cloud);
+            final long start =
+                    next == null ? now : Math.max(now, next.longValue());
+            this.nextStart.put(cloud, new Long(start + this.cloudIntervalMs));
+            wait = start - now;
+        }
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.cluster;
+
+import edu.emory.mathcs.backport.java.util.concurrent.Callable;
+import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
+import edu.emory.mathcs.backport.java.util.concurrent.Executors;
+import edu.emory.mathcs.backport.java.util.concurrent.RejectedExecutionException;
+import edu.emory.mathcs.backport.java.util.concurrent.TimeUnit;
+import org.globus.workspace.client_common.BaseClient;
+import org.globus.workspace.client_core.ExecutionProblem;
+import org.globus.workspace.client_core.ExitNow;
+import org.globus.workspace.common.print.Print;
+
+/**
+ * Moves launch jobs (one cluster member, or one cloud of a multi-cloud
+ * launch) through an ordered list of stages.
+ *
+ * Every stage has its own fixed pool, so the number of requests in flight
+ * per stage stays bounded however large the cluster is, and a job enters
+ * its next stage as soon as its own previous stage is done rather than
+ * when every job is.  Stage starts for jobs going to the same cloud can
+ * also be spaced out by a minimum interval.  Each completed stage is
+ * printed as it happens.
+ *
+ * Stage tasks return an Integer exit code like the other cloud client
+ * tasks.  The first failure stops the pipeline: waiting and queued work is
+ * dropped, running work is interrupted and await() throws.
+ */
+public class LaunchPipeline {
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final String[] stageNames;
+    private final ExecutorService[] pools;
+    private final LaunchPacer pacer;
+    private final Print pr;
+
+    // guarded by this
+    private final int[] submitted;
+    private final int[] completed;
+    private int outstanding;
+    private Throwable failure;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param stageNames stage names in order, used in progress messages
+     * @param limits tasks of each stage that may run at once
+     * @param cloudIntervalMs minimum ms between stage starts for one cloud,
+     *                        0 for no spacing
+     * @param print for progress
+     */
+    public LaunchPipeline(String[] stageNames,
+                          int[] limits,
+                          long cloudIntervalMs,
+                          Print print) {
+        this(stageNames, limits, new LaunchPacer(cloudIntervalMs), print);
+    }
+
+    /**
+     * @param stageNames stage names in order, used in progress messages
+     * @param limits tasks of each stage that may run at once
+     * @param pacer spaces out stage starts for one cloud, may be shared
+     *              with other pipelines
+     * @param print for progress
+     */
+    public LaunchPipeline(String[] stageNames,
+                          int[] limits,
+                          LaunchPacer pacer,
+                          Print print) {
+
+        if (stageNames == null || stageNames.length == 0) {
+            throw new IllegalArgumentException("stageNames may not be empty");
+        }
+        if (limits == null || limits.length != stageNames.length) {
+            throw new IllegalArgumentException(
+                    "limits must have one entry per stage");
+        }
+        if (pacer == null) {
+            throw new IllegalArgumentException("pacer may not be null");
+        }
+        if (print == null) {
+            throw new IllegalArgumentException("print may not be null");
+        }
+
+        this.stageNames = stageNames;
+        this.pools = new ExecutorService[stageNames.length];
+        for (int i = 0; i < limits.length; i++) {
+            if (limits[i] < 1) {
+                throw new IllegalArgumentException(
+                        "stage '" + stageNames[i] + "' limit must be positive");
+            }
+            this.pools[i] = Executors.newFixedThreadPool(limits[i]);
+        }
+        this.pacer = pacer;
+        this.pr = print;
+        this.submitted = new int[stageNames.length];
+        this.completed = new int[stageNames.length];
+    }
+
+
+    // -------------------------------------------------------------------------
+    // SUBMIT/AWAIT
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param cloud key for request spacing, may be null
+     * @param name job name for messages
+     * @param steps one task per stage, null to skip that stage
+     */
+    public void submit(String cloud, String name, Callable[] steps) {
+
+        if (steps == null || steps.length != this.stageNames.length) {
+            throw new IllegalArgumentException(
+                    "steps must have one entry per stage");
+        }
+
+        synchronized (this) {
+            if (this.failure != null) {
+                return;
+            }
+            for (int i = 0; i < steps.length; i++) {
+                if (steps[i] != null) {
+                    this.submitted[i] += 1;
+                }
+            }
+            this.outstanding += 1;
+        }
+
+        this.next(new Job(cloud, name, steps), 0);
+    }
+
+    /**
+     * Waits for every submitted job to get through all of its stages.
+     * The pipeline may not be used afterwards.
+     */
+    public void await() throws ExitNow, ExecutionProblem {
+        try {
+            synchronized (this) {
+                while (this.outstanding > 0 && this.failure == null) {
+                    this.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            this.fail(new ExecutionProblem("Interrupted while launching", e));
+        } finally {
+            this.shutdown();
+        }
+
+        final Throwable e;
+        synchronized (this) {
+            e = this.failure;
+        }
+        if (e != null) {
+            // interrupted tasks may be backing out their own work, let them
+            // finish so the caller sees everything they left behind
+            this.awaitTermination();
+        }
+        if (e instanceof ExitNow) {
+            throw (ExitNow) e;
+        } else if (e != null) {
+            throw (ExecutionProblem) e;
+        }
+    }
+
+    public void shutdown() {
+        for (int i = 0; i < this.pools.length; i++) {
+            this.pools[i].shutdownNow();
+        }
+    }
+
+    private void awaitTermination() {
+        try {
+            for (int i = 0; i < this.pools.length; i++) {
+                while (!this.pools[i].awaitTermination(1, TimeUnit.SECONDS)) {
+                    // keep waiting
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized int getCompleted(int stage) {
+        return this.completed[stage];
+    }
+
+
+    // -------------------------------------------------------------------------
+    // IMPL
+    // -------------------------------------------------------------------------
+
+    private void next(final Job job, int from) {
+
+        int stage = from;
+        while (stage < job.steps.length && job.steps[stage] == null) {
+            stage += 1;
+        }
+
+        if (stage == job.steps.length) {
+            synchronized (this) {
+                this.outstanding -= 1;
+                this.notifyAll();
+            }
+            return;
+        }
+
+        final int thisStage = stage;
+        try {
+            this.pools[stage].execute(new Runnable() {
+                public void run() {
+                    step(job, thisStage);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // stopped after a failure, nothing is waiting for this job
+        }
+    }
+
+    private void step(Job job, int stage) {
+
+        synchronized (this) {
+            if (this.failure != null) {
+                return;
+            }
+        }
+
+        final String what = this.stageNames[stage] + " of " + job.name;
+        try {
+            this.pacer.pace(job.cloud);
+            final Object ret = job.steps[stage].call();
+            final int code = ret == null ?
+                    BaseClient.SUCCESS_EXIT_CODE : ((Number) ret).intValue();
+            if (code != BaseClient.SUCCESS_EXIT_CODE) {
+                this.fail(new ExitNow(code, what + " failed"));
+                return;
+            }
+        } catch (ExecutionProblem e) {
+            this.fail(e);
+            return;
+        } catch (InterruptedException e) {
+            this.fail(new ExecutionProblem("Interrupted: " + what, e));
+            return;
+        } catch (Exception e) {
+            this.fail(new ExecutionProblem(
+                    "Problem with " + what + ": " + e.getMessage(), e));
+            return;
+        }
+
+        final int done;
+        final int total;
+        synchronized (this) {
+            this.completed[stage] += 1;
+            done = this.completed[stage];
+            total = this.submitted[stage];
+        }
+        this.pr.infoln("* " + job.name + ": " + this.stageNames[stage] +
+                       " done (" + done + "/" + total + ")");
+
+        this.next(job, stage + 1);
+    }
+
+    private void fail(Throwable e) {
+        synchronized (this) {
+            if (this.failure != null) {
+                return;
+            }
+            this.failure = e;
+            this.notifyAll();
+        }
+        this.shutdown();
+    }
+
+    private static class Job {
+        private final String cloud;
+        private final String name;
+        private final Callable[] steps;
+
+        private Job(String cloud, String name, Callable[] steps) {
+            this.cloud = cloud;
+            this.name = name;
+            this.steps = steps;
+        }
+    }
+}
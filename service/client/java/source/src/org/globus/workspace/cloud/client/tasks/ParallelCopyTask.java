@@ -0,0 +1,133 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.tasks;
+
+import edu.emory.mathcs.backport.java.util.concurrent.Callable;
+import org.globus.ftp.FileRandomIO;
+import org.globus.ftp.GridFTPClient;
+import org.globus.ftp.GridFTPSession;
+import org.globus.ftp.RetrieveOptions;
+import org.globus.ftp.Session;
+import org.globus.gsi.gssapi.auth.Authorization;
+import org.globus.util.GlobusURL;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+/**
+ * Copies a local file to or from a GridFTP server in extended block mode
+ * (MODE E) over several parallel data streams.  In MODE E the sending side
+ * opens the data connections, so a download needs the server to be able
+ * to connect back to this host.
+ */
+public class ParallelCopyTask implements Callable {
+
+    private final GlobusURL remote;
+    private final File local;
+    private final boolean upload;
+    private final int parallelism;
+    private final Authorization authorization;
+
+    /**
+     * @param remote gsiftp URL
+     * @param local local file
+     * @param upload true to send local to remote, false for the reverse
+     * @param parallelism data streams, at least 1
+     * @param authorization how to authorize the server
+     */
+    public ParallelCopyTask(GlobusURL remote,
+                            File local,
+                            boolean upload,
+                            int parallelism,
+                            Authorization authorization) {
+
+        if (remote == null) {
+            throw new IllegalArgumentException("remote may not be null");
+        }
+        if (local == null) {
+            throw new IllegalArgumentException("local may not be null");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        if (authorization == null) {
+            throw new IllegalArgumentException("authorization may not be null");
+        }
+        this.remote = remote;
+        this.local = local;
+        this.upload = upload;
+        this.parallelism = parallelism;
+        this.authorization = authorization;
+    }
+
+    public Object call() throws Exception {
+
+        final GridFTPClient client =
+                new GridFTPClient(this.remote.getHost(), this.remote.getPort());
+        try {
+            client.setAuthorization(this.authorization);
+            client.authenticate(null);
+            client.setType(Session.TYPE_IMAGE);
+            client.setMode(GridFTPSession.MODE_EBLOCK);
+
+            // sets the server's and the local side's stream count
+            client.setOptions(new RetrieveOptions(this.parallelism));
+
+            this.transfer(client, this.remote.getPath());
+        } finally {
+            try {
+                client.close();
+            } catch (Exception e) {
+                // best effort
+            }
+        }
+        return null;
+    }
+
+    // the local file is closed whether or not the transfer succeeds, which
+    // also makes sure a download is completely written
+    void transfer(GridFTPClient client, String path) throws Exception {
+        final RandomAccessFile raf =
+                new RandomAccessFile(this.local, this.upload ? "r" : "rw");
+        try {
+            if (this.upload) {
+                this.put(client, path, raf);
+            } else {
+                // a shorter download must not leave the old file's tail
+                raf.setLength(0);
+                this.get(client, path, raf);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    void put(GridFTPClient client, String path, RandomAccessFile raf)
+            throws Exception {
+        client.setPassive();
+        client.setLocalActive();
+        client.extendedPut(path, new FileRandomIO(raf), null);
+    }
+
+    void get(GridFTPClient client, String path, RandomAccessFile raf)
+            throws Exception {
+        final long size = client.getSize(path);
+        client.setLocalPassive();
+        client.setActive();
+        client.extendedGet(path, size, new FileRandomIO(raf), null);
+    }
+}
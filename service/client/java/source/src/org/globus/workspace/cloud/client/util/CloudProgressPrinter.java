@@ -0,0 +1,194 @@
+/*
+ * Copyright 1999-2008 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.util;
+
+import org.jets3t.service.io.BytesProgressWatcher;
+
+import java.io.PrintStream;
+import java.util.Calendar;
+import java.util.Date;
+
+class CloudProgressPrinter
+    extends BytesProgressWatcher
+{
+    private PrintStream                 pr;
+    private int                         colCount = 80;
+    private Date                        nextUpdate = null;
+    private boolean                     hit100 = false;
+    private boolean                     noprint = false;
+
+    public CloudProgressPrinter(
+        PrintStream                     pr,
+        long                            len)
+    {
+        super(len);
+        this.pr = pr;
+    }
+
+    public CloudProgressPrinter(
+        PrintStream                     pr,
+        long                            len,
+        boolean                         noprint)
+    {
+        super(len);
+        this.pr = pr;
+        this.noprint = noprint;        
+    }
+
+    // return a string with the long value properly suffixed 
+    protected String prettyCount(long tb, int maxLen)
+    {
+        int                             ndx = 0;
+        String suffix[] = {" B", "KB", "MB", "GB"};
+
+        if(tb < 0)
+        {
+            return "Unknown";
+        }
+
+        float tbF = (float) tb;
+        while(tbF > 10240.0f && ndx < suffix.length - 1)
+        {
+            ndx++;
+            tbF = tbF / 1024.0f;
+        }
+        tb = (int)tbF;
+
+        String rc =  new Long(tb).toString();
+
+        if(rc.length() > maxLen)
+        {
+            int endNdx = maxLen - 3;
+            rc = rc.substring(0, endNdx) + "...";
+        }
+        else
+        {
+            // some silliness to get to 2 decimals
+            if(rc.length() < maxLen - 2)
+            {
+                tb = (int)(tbF * 100.0f);
+                tbF = (float)tb / 100.0f;
+                rc = new Float(tbF).toString();
+            }
+            int spaceCount = maxLen - rc.length();
+            for(int i = 0; i < spaceCount; i++)
+            {
+                rc = " " + rc;
+            }
+        }
+        rc = rc + suffix[ndx];
+
+        return rc;
+    }
+
+
+    protected String makeBar(long sofar, long total)
+    {
+        String byteString = this.prettyCount(sofar, 6);
+        String                          doneCh = "X";
+        String                          notDoneCh = ".";
+
+        // there are 9 pad characters: <sp>[]<sp>PPP%<sp>
+        int pad = 9;
+        int pgLen = this.colCount - byteString.length() - pad;
+
+        // this will be rounded down, but who cares?
+        int percent = (int)((sofar * 100) / total);
+        int xCount = (percent * pgLen) / 100;
+
+
+        String bar = byteString + " [";
+        for(int i = 0; i < pgLen; i++)
+        {
+            if(i < xCount)
+            {
+                bar = bar + doneCh;
+            }
+            else
+            {
+                bar = bar + notDoneCh;
+            }
+        }
+        bar = bar + "] " + percent + "% ";
+
+
+        if(sofar  == total)
+        {
+            this.hit100 = true;           
+        }
+
+        return bar;
+    }       
+
+    public void updateBytesTransferred(
+        long                            byteCount)
+    {
+        super.updateBytesTransferred(byteCount);
+        this.print_bar();
+    }
+
+    public void print_bar()
+    {
+        Calendar now = 	Calendar.getInstance();
+        Date nowDt = now.getTime();
+
+        if (this.nextUpdate != null && nowDt.before(this.nextUpdate))
+        {
+            return;
+        }
+        this.nextUpdate = new Date(nowDt.getTime() + 1000);
+        flush();
+    }
+
+    public void print_done()
+    {
+        if(this.noprint)
+        {
+            return;
+        }
+        long total = getBytesToTransfer();
+        String bar = this.makeBar(total, total);
+        System.out.print("\r");
+        System.out.print(bar);
+        System.out.flush();
+    }
+
+    public void flush()
+    {
+        if(this.hit100)
+        {
+            return;
+        }
+        if(this.noprint)
+        {
+            return;
+        }
+        long total = getBytesToTransfer();
+           
+        long sent = getBytesTransferred();
+
+        if(this.pr == null)
+        {
+            return;
+        }
+
+        String bar = this.makeBar(sent, total);
+        System.out.print("\r");
+        System.out.print(bar);
+        System.out.flush();
+    }
+}
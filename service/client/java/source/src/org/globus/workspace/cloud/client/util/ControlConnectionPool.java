@@ -0,0 +1,141 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Keeps a few idle, already authenticated control connections per server
+ * so that listing and deleting do not pay for a new GSI handshake each
+ * time.  A connection is checked with a cheap round trip before it is
+ * handed out again; dead ones are closed and skipped.
+ *
+ * The pool never opens connections itself: take() returns null when
+ * there is nothing idle and the caller connects as before.
+ */
+public class ControlConnectionPool<C> {
+
+    public interface Lifecycle<C> {
+
+        /**
+         * @param conn idle connection
+         * @return true if it still answers
+         */
+        boolean isAlive(C conn);
+
+        /**
+         * Best effort, must not throw.
+         */
+        void close(C conn);
+    }
+
+    private final int maxIdlePerKey;
+    private final Lifecycle<C> lifecycle;
+    private final Map<String,LinkedList<C>> idle =
+            new HashMap<String,LinkedList<C>>();
+
+    /**
+     * @param maxIdlePerKey connections kept per key, more are closed
+     * @param lifecycle liveness check and close
+     */
+    public ControlConnectionPool(int maxIdlePerKey, Lifecycle<C> lifecycle) {
+        if (maxIdlePerKey < 1) {
+            throw new IllegalArgumentException(
+                    "maxIdlePerKey must be positive");
+        }
+        if (lifecycle == null) {
+            throw new IllegalArgumentException("lifecycle may not be null");
+        }
+        this.maxIdlePerKey = maxIdlePerKey;
+        this.lifecycle = lifecycle;
+    }
+
+    /**
+     * @param key server and identity the connection was authenticated for
+     * @return live idle connection, or null if the caller must connect
+     */
+    public C take(String key) {
+        while (true) {
+            final C conn;
+            synchronized (this.idle) {
+                final LinkedList<C> list = this.idle.get(key);
+                if (list == null || list.isEmpty()) {
+                    return null;
+                }
+                conn = list.removeLast();
+            }
+            // round trip outside the lock
+            if (this.lifecycle.isAlive(conn)) {
+                return conn;
+            }
+            this.lifecycle.close(conn);
+        }
+    }
+
+    /**
+     * Hand a connection back after a successful operation.  Connections
+     * that failed mid-operation should be discarded instead.
+     */
+    public void release(String key, C conn) {
+        if (conn == null) {
+            return;
+        }
+        synchronized (this.idle) {
+            LinkedList<C> list = this.idle.get(key);
+            if (list == null) {
+                list = new LinkedList<C>();
+                this.idle.put(key, list);
+            }
+            if (list.size() < this.maxIdlePerKey) {
+                list.addLast(conn);
+                return;
+            }
+        }
+        this.lifecycle.close(conn);
+    }
+
+    public void discard(C conn) {
+        if (conn != null) {
+            this.lifecycle.close(conn);
+        }
+    }
+
+    public int idleCount(String key) {
+        synchronized (this.idle) {
+            final LinkedList<C> list = this.idle.get(key);
+            return list == null ? 0 : list.size();
+        }
+    }
+
+    public void closeAll() {
+        final LinkedList<C> all = new LinkedList<C>();
+        synchronized (this.idle) {
+            final Iterator<LinkedList<C>> it = this.idle.values().iterator();
+            while (it.hasNext()) {
+                all.addAll(it.next());
+            }
+            this.idle.clear();
+        }
+        final Iterator<C> it = all.iterator();
+        while (it.hasNext()) {
+            this.lifecycle.close(it.next());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 1999-2008 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.util;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+
+class CumulusInputStream
+    extends InputStream
+{
+    private InputStream                 is;
+    private PrintStream                 pr;
+    private CloudProgressPrinter        progress;
+    private long                        where = 0;
+    private long                        marked = 0;
+
+    public CumulusInputStream(
+        long                            len,
+        PrintStream                     pr,
+        InputStream                     is,
+        boolean                         noprint)
+    {
+        super();
+        this.is = is;
+        this.pr = pr;   
+
+        progress = new CloudProgressPrinter(this.pr, len, noprint);
+    }
+ 
+    public int available()
+        throws java.io.IOException
+    {
+        return this.is.available();
+    }
+    
+    public void   close()
+        throws java.io.IOException
+    {
+        this.is.close();
+        this.progress.flush();
+        this.progress.print_done();
+    }
+
+    public void   mark(int readlimit)
+    {
+        marked = where;
+        this.is.mark(readlimit);
+    }
+
+    public boolean    markSupported()
+    {
+        return this.is.markSupported();
+    }
+
+    private void updatePosition(int len)
+    {
+        where += len;
+        progress.updateBytesTransferred(len);
+    }
+
+    public int   read()
+        throws java.io.IOException
+    {
+        int len;
+        len = this.is.read();
+        updatePosition(len);
+        return len;
+    }
+ 
+    public int    read(byte[] b)
+        throws java.io.IOException
+    {
+        int len;
+        len = this.is.read(b);
+        updatePosition(len);
+        return len;
+    }
+
+    public int    read(byte[] b, int off, int len)
+        throws java.io.IOException
+    {
+        int lenrc;
+        lenrc = this.is.read(b, off, len);
+        updatePosition(lenrc);
+        return lenrc;
+    }
+
+    public void   reset()
+        throws java.io.IOException
+    {
+        long diff = marked - where;
+        this.is.reset();
+        updatePosition((int)diff);
+    }
+ 
+    public long   skip(long n)
+        throws java.io.IOException
+    {
+        return this.is.skip(n);
+    }
+}
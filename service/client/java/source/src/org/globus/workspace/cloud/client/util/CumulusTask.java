@@ -33,11 +33,9 @@ import org.jets3t.service.S3Service;
 import org.jets3t.service.S3ServiceException;
 import org.jets3t.service.acl.AccessControlList;
 import org.jets3t.service.impl.rest.httpclient.RestS3Service;
-import org.jets3t.service.io.BytesProgressWatcher;
 import org.jets3t.service.model.S3Object;
 import org.jets3t.service.security.AWSCredentials;
 import org.jets3t.service.utils.Mimetypes;
-import org.jets3t.service.utils.ObjectUtils;
 
 
 import java.io.*;
@@ -232,273 +230,6 @@ class CumulusProtocolSocketFactory implements ProtocolSocketFactory
     }
 }
 
-class CumulusInputStream
-    extends InputStream
-{
-    private InputStream                 is;
-    private PrintStream                 pr;
-    private CloudProgressPrinter        progress;
-    private long                        where = 0;
-    private long                        marked = 0;
-
-    public CumulusInputStream(
-        long                            len,
-        PrintStream                     pr,
-        InputStream                     is,
-        boolean                         noprint)
-    {
-        super();
-        this.is = is;
-        this.pr = pr;   
-
-        progress = new CloudProgressPrinter(this.pr, len, noprint);
-    }
- 
-    public int available()
-        throws java.io.IOException
-    {
-        return this.is.available();
-    }
-    
-    public void   close()
-        throws java.io.IOException
-    {
-        this.is.close();
-        this.progress.flush();
-        this.progress.print_done();
-    }
-
-    public void   mark(int readlimit)
-    {
-        marked = where;
-        this.is.mark(readlimit);
-    }
-
-    public boolean    markSupported()
-    {
-        return this.is.markSupported();
-    }
-
-    private void updatePosition(int len)
-    {
-        where += len;
-        progress.updateBytesTransferred(len);
-    }
-
-    public int   read()
-        throws java.io.IOException
-    {
-        int len;
-        len = this.is.read();
-        updatePosition(len);
-        return len;
-    }
- 
-    public int    read(byte[] b)
-        throws java.io.IOException
-    {
-        int len;
-        len = this.is.read(b);
-        updatePosition(len);
-        return len;
-    }
-
-    public int    read(byte[] b, int off, int len)
-        throws java.io.IOException
-    {
-        int lenrc;
-        lenrc = this.is.read(b, off, len);
-        updatePosition(lenrc);
-        return lenrc;
-    }
-
-    public void   reset()
-        throws java.io.IOException
-    {
-        long diff = marked - where;
-        this.is.reset();
-        updatePosition((int)diff);
-    }
- 
-    public long   skip(long n)
-        throws java.io.IOException
-    {
-        return this.is.skip(n);
-    }
-}
-
-
-class CloudProgressPrinter
-    extends BytesProgressWatcher
-{
-    private PrintStream                 pr;
-    private int                         colCount = 80;
-    private Date                        nextUpdate = null;
-    private boolean                     hit100 = false;
-    private boolean                     noprint = false;
-
-    public CloudProgressPrinter(
-        PrintStream                     pr,
-        long                            len)
-    {
-        super(len);
-        this.pr = pr;
-    }
-
-    public CloudProgressPrinter(
-        PrintStream                     pr,
-        long                            len,
-        boolean                         noprint)
-    {
-        super(len);
-        this.pr = pr;
-        this.noprint = noprint;        
-    }
-
-    // return a string with the long value properly suffixed 
-    protected String prettyCount(long tb, int maxLen)
-    {
-        int                             ndx = 0;
-        String suffix[] = {" B", "KB", "MB", "GB"};
-
-        if(tb < 0)
-        {
-            return "Unknown";
-        }
-
-        float tbF = (float) tb;
-        while(tbF > 10240.0f && ndx < suffix.length - 1)
-        {
-            ndx++;
-            tbF = tbF / 1024.0f;
-        }
-        tb = (int)tbF;
-
-        String rc =  new Long(tb).toString();
-
-        if(rc.length() > maxLen)
-        {
-            int endNdx = maxLen - 3;
-            rc = rc.substring(0, endNdx) + "...";
-        }
-        else
-        {
-            // some silliness to get to 2 decimals
-            if(rc.length() < maxLen - 2)
-            {
-                tb = (int)(tbF * 100.0f);
-                tbF = (float)tb / 100.0f;
-                rc = new Float(tbF).toString();
-            }
-            int spaceCount = maxLen - rc.length();
-            for(int i = 0; i < spaceCount; i++)
-            {
-                rc = " " + rc;
-            }
-        }
-        rc = rc + suffix[ndx];
-
-        return rc;
-    }
-
-
-    protected String makeBar(long sofar, long total)
-    {
-        String byteString = this.prettyCount(sofar, 6);
-        String                          doneCh = "X";
-        String                          notDoneCh = ".";
-
-        // there are 9 pad characters: <sp>[]<sp>PPP%<sp>
-        int pad = 9;
-        int pgLen = this.colCount - byteString.length() - pad;
-
-        // this will be rounded down, but who cares?
-        int percent = (int)((sofar * 100) / total);
-        int xCount = (percent * pgLen) / 100;
-
-
-        String bar = byteString + " [";
-        for(int i = 0; i < pgLen; i++)
-        {
-            if(i < xCount)
-            {
-                bar = bar + doneCh;
-            }
-            else
-            {
-                bar = bar + notDoneCh;
-            }
-        }
-        bar = bar + "] " + percent + "% ";
-
-
-        if(sofar  == total)
-        {
-            this.hit100 = true;           
-        }
-
-        return bar;
-    }       
-
-    public void updateBytesTransferred(
-        long                            byteCount)
-    {
-        super.updateBytesTransferred(byteCount);
-        this.print_bar();
-    }
-
-    public void print_bar()
-    {
-        Calendar now = 	Calendar.getInstance();
-        Date nowDt = now.getTime();
-
-        if (this.nextUpdate != null && nowDt.before(this.nextUpdate))
-        {
-            return;
-        }
-        this.nextUpdate = new Date(nowDt.getTime() + 1000);
-        flush();
-    }
-
-    public void print_done()
-    {
-        if(this.noprint)
-        {
-            return;
-        }
-        long total = getBytesToTransfer();
-        String bar = this.makeBar(total, total);
-        System.out.print("\r");
-        System.out.print(bar);
-        System.out.flush();
-    }
-
-    public void flush()
-    {
-        if(this.hit100)
-        {
-            return;
-        }
-        if(this.noprint)
-        {
-            return;
-        }
-        long total = getBytesToTransfer();
-           
-        long sent = getBytesTransferred();
-
-        if(this.pr == null)
-        {
-            return;
-        }
-
-        String bar = this.makeBar(sent, total);
-        System.out.print("\r");
-        System.out.print(bar);
-        System.out.flush();
-    }
-}
-
 public class CumulusTask
     implements Callable
 {
@@ -632,21 +363,10 @@ public class CumulusTask
                 String destUrlString = "cumulus://" + baseBucketName + "/" + key;
                 pr.println("  - Destination: " + destUrlString);
                 pr.println();               
-                pr.println("Preparing the file for transfer:");
             } 
 
-            CloudProgressPrinter progressWatcher =
-                new CloudProgressPrinter(pr, file.length(), this.args.getNoSpinner());
-            S3Object s3Object = ObjectUtils.createObjectForUpload(
-                key, file, null, false, progressWatcher);
-            progressWatcher.flush();
+            S3Object s3Object = new S3Object(key);
             s3Object.setContentType(Mimetypes.MIMETYPE_OCTET_STREAM);
-            if (pr != null) {
-                pr.println("\n\nTransferring the file:");
-            }
-            CumulusInputStream cis = new CumulusInputStream(
-                file.length(), pr, s3Object.getDataInputStream(), this.args.getNoSpinner());
-            s3Object.setDataInputStream(cis);
             if(this.args.getCommonVMSet())
             {
                 if (pr != null) {
@@ -656,10 +376,11 @@ public class CumulusTask
                 acl = AccessControlList.REST_CANNED_PUBLIC_READ;
                 s3Object.setAcl(acl);
             }
-            s3Service.putObject(baseBucketName, s3Object);
-            progressWatcher.flush();
-            s3Object.closeDataInputStream();
-            cis.close();
+            if (pr != null) {
+                pr.println("Transferring the file:");
+            }
+            this.getTransfer(s3Service).upload(
+                baseBucketName, s3Object, file, pr, this.args.getNoSpinner());
 
             if(description != null)
             {
@@ -727,21 +448,8 @@ public class CumulusTask
             }
 
             s3Service = this.getService();
-            S3Object s3Object = s3Service.getObject(baseBucketName, key);
-
-            BytesProgressWatcher progressWatcher = 
-                new CloudProgressPrinter(pr, s3Object.getContentLength(), this.args.getNoSpinner());
-            byte b [] = new byte[1024*64];
-            InputStream dis = s3Object.getDataInputStream();
-            FileOutputStream fos = new FileOutputStream(file);
-            int cnt = dis.read(b);
-            while(cnt != -1)
-            {
-                fos.write(b, 0, cnt); 
-                progressWatcher.updateBytesTransferred((long)cnt);
-                cnt = dis.read(b);
-            }
-            fos.close();
+            this.getTransfer(s3Service).download(
+                baseBucketName, key, file, pr, this.args.getNoSpinner());
         }
         catch(Exception s3ex)
         {
@@ -849,6 +557,9 @@ public class CumulusTask
         j3p.setProperty("s3service.https-only", this.useHttps);
         j3p.setProperty("storage-service.internal-error-retry-max", "0");
         j3p.setProperty("httpclient.socket-timeout-ms", "0");
+        String connections = Integer.toString(this.getConcurrency() + 1);
+        j3p.setProperty("httpclient.max-connections", connections);
+        j3p.setProperty("httpclient.max-connections-per-host", connections);
 
         HostConfiguration hc = new HostConfiguration();
         if(allowSelfSigned && this.useHttps.equalsIgnoreCase("true"))
@@ -877,6 +588,28 @@ public class CumulusTask
         return s3Service;                                           
     }
 
+    private int getConcurrency()
+    {
+        int concurrency = this.args.getXferConcurrency();
+        if(concurrency < 1)
+        {
+            concurrency = CumulusTransfer.DEFAULT_CONCURRENCY;
+        }
+        return concurrency;
+    }
+
+    private CumulusTransfer getTransfer(
+        S3Service                       s3Service)
+    {
+        int partSizeMB = this.args.getXferPartSizeMB();
+        if(partSizeMB < 1)
+        {
+            partSizeMB = CumulusTransfer.DEFAULT_PART_SIZE_MB;
+        }
+        return new CumulusTransfer(
+            s3Service, partSizeMB * 1024L * 1024L, this.getConcurrency());
+    }
+
     private void shutdownService(S3Service service)
     {
         // best effort cleanup
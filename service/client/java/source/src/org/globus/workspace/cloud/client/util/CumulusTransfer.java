@@ -0,0 +1,382 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.util;
+
+import edu.emory.mathcs.backport.java.util.concurrent.Callable;
+import edu.emory.mathcs.backport.java.util.concurrent.ExecutionException;
+import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
+import edu.emory.mathcs.backport.java.util.concurrent.Executors;
+import edu.emory.mathcs.backport.java.util.concurrent.Future;
+import edu.emory.mathcs.backport.java.util.concurrent.TimeUnit;
+import org.globus.workspace.client_core.ExecutionProblem;
+import org.jets3t.service.S3Service;
+import org.jets3t.service.S3ServiceException;
+import org.jets3t.service.io.BytesProgressWatcher;
+import org.jets3t.service.model.S3Object;
+import org.jets3t.service.utils.ServiceUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Moves an image between a local file and a Cumulus key.
+ *
+ * Uploads read the file once, computing the MD5 on the way out, and check
+ * it against the ETag the repository answers with.  Cumulus (and this
+ * jets3t) has no multipart upload, so a single streamed PUT is the best
+ * that can be done on that side.
+ *
+ * Downloads larger than one part are fetched as ranged GETs by several
+ * threads and written in place with positional FileChannel writes.  Parts
+ * that reach the disk are recorded in "&lt;file&gt;.parts" so a rerun after a
+ * failure fetches only what is missing.  If the repository ignores Range,
+ * the first answer is the whole object and it is streamed to disk instead.
+ */
+public class CumulusTransfer {
+
+    public static final int DEFAULT_PART_SIZE_MB = 64;
+    public static final int DEFAULT_CONCURRENCY = 4;
+    public static final String MANIFEST_SUFFIX = ".parts";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final S3Service s3Service;
+    private final long partSize;
+    private final int concurrency;
+
+    /**
+     * @param s3Service connected service, must allow at least concurrency
+     *        connections to the repository
+     * @param partSize bytes per ranged GET
+     * @param concurrency parallel ranged GETs, 1 for a single stream
+     */
+    public CumulusTransfer(S3Service s3Service,
+                           long partSize,
+                           int concurrency) {
+        if (s3Service == null) {
+            throw new IllegalArgumentException("s3Service may not be null");
+        }
+        if (partSize < 1) {
+            throw new IllegalArgumentException("partSize must be positive");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        this.s3Service = s3Service;
+        this.partSize = partSize;
+        this.concurrency = concurrency;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // UPLOAD
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param bucket bucket
+     * @param object key, ACL and content type to store the file under
+     * @param file local image
+     * @param pr progress output, may be null
+     * @param noprint true to suppress the progress bar
+     * @throws S3ServiceException repository problem
+     * @throws IOException could not read the file
+     * @throws ExecutionProblem the repository stored something else
+     */
+    public void upload(String bucket,
+                       S3Object object,
+                       File file,
+                       PrintStream pr,
+                       boolean noprint)
+            throws S3ServiceException, IOException, ExecutionProblem {
+
+        final MessageDigest md5 = newMD5();
+        object.setContentLength(file.length());
+        final CumulusInputStream in = new CumulusInputStream(
+                file.length(), pr,
+                new DigestInputStream(new FileInputStream(file), md5),
+                noprint);
+        object.setDataInputStream(in);
+
+        final S3Object stored;
+        try {
+            stored = this.s3Service.putObject(bucket, object);
+        } finally {
+            in.close();
+        }
+        checkMD5(md5, stored.getETag(), object.getKey());
+    }
+
+
+    // -------------------------------------------------------------------------
+    // DOWNLOAD
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param bucket bucket
+     * @param key key
+     * @param file local destination, resumed if a matching manifest exists
+     * @param pr progress output, may be null
+     * @param noprint true to suppress the progress bar
+     * @throws S3ServiceException repository problem
+     * @throws IOException could not write the file
+     * @throws ExecutionProblem a part or the image came back wrong
+     */
+    public void download(String bucket,
+                         String key,
+                         File file,
+                         PrintStream pr,
+                         boolean noprint)
+            throws S3ServiceException, IOException, ExecutionProblem {
+
+        final S3Object details = this.s3Service.getObjectDetails(bucket, key);
+        final long length = details.getContentLength();
+        final String etag = details.getETag();
+        final CloudProgressPrinter progress =
+                new CloudProgressPrinter(pr, length, noprint);
+        final File manifestFile = new File(file.getPath() + MANIFEST_SUFFIX);
+
+        if (length <= this.partSize || this.concurrency == 1) {
+            manifestFile.delete();
+            this.stream(this.s3Service.getObject(bucket, key),
+                        file, progress, etag, key);
+            progress.print_done();
+            return;
+        }
+
+        final PartManifest manifest = PartManifest.open(
+                manifestFile, etag, length, this.partSize, file.exists());
+        final List<Integer> missing = manifest.missing();
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        boolean complete = false;
+        try {
+            final FileChannel channel = raf.getChannel();
+            if (!missing.isEmpty()) {
+                final int first = missing.remove(0).intValue();
+                final S3Object part = this.range(bucket, key, manifest, first);
+                if (part.getContentLength() != manifest.partLength(first)) {
+                    // Range was ignored, this is the whole object
+                    raf.close();
+                    manifest.delete();
+                    this.stream(part, file, progress, etag, key);
+                    progress.print_done();
+                    return;
+                }
+                progress.updateBytesTransferred(manifest.completedBytes());
+                this.write(part, channel, manifest, first, progress);
+                this.fetch(bucket, key, channel, manifest, missing, progress);
+            }
+            raf.setLength(length);
+            complete = true;
+        } finally {
+            raf.close();
+            if (complete) {
+                manifest.delete();
+            } else {
+                manifest.close();
+            }
+        }
+        progress.print_done();
+    }
+
+    private void fetch(final String bucket,
+                       final String key,
+                       final FileChannel channel,
+                       final PartManifest manifest,
+                       List<Integer> parts,
+                       final BytesProgressWatcher progress)
+            throws S3ServiceException, IOException, ExecutionProblem {
+
+        if (parts.isEmpty()) {
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(this.concurrency, parts.size()));
+        final boolean[] failed = new boolean[1];
+        final List<Future> futures = new ArrayList<Future>(parts.size());
+        for (Iterator<Integer> it = parts.iterator(); it.hasNext();) {
+            final int part = it.next().intValue();
+            futures.add(executor.submit(new Callable() {
+                public Object call() throws Exception {
+                    synchronized (failed) {
+                        if (failed[0]) {
+                            return null;
+                        }
+                    }
+                    write(range(bucket, key, manifest, part),
+                          channel, manifest, part, progress);
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (Iterator<Future> it = futures.iterator(); it.hasNext();) {
+                it.next().get();
+            }
+        } catch (ExecutionException e) {
+            synchronized (failed) {
+                failed[0] = true;
+            }
+            final Throwable t = e.getCause();
+            if (t instanceof S3ServiceException) {
+                throw (S3ServiceException) t;
+            } else if (t instanceof IOException) {
+                throw (IOException) t;
+            } else if (t instanceof ExecutionProblem) {
+                throw (ExecutionProblem) t;
+            }
+            throw new ExecutionProblem(t.toString(), t);
+        } catch (InterruptedException e) {
+            synchronized (failed) {
+                failed[0] = true;
+            }
+            throw new ExecutionProblem("Interrupted", e);
+        } finally {
+            // let parts in flight land on disk and in the manifest
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private S3Object range(String bucket,
+                           String key,
+                           PartManifest manifest,
+                           int part)
+            throws S3ServiceException {
+
+        final long start = manifest.offset(part);
+        final long end = start + manifest.partLength(part) - 1;
+        return this.s3Service.getObject(bucket, key, null, null, null, null,
+                                        new Long(start), new Long(end));
+    }
+
+    private void write(S3Object part,
+                       FileChannel channel,
+                       PartManifest manifest,
+                       int index,
+                       BytesProgressWatcher progress)
+            throws S3ServiceException, IOException, ExecutionProblem {
+
+        final long expected = manifest.partLength(index);
+        long position = manifest.offset(index);
+        long written = 0;
+        final byte[] b = new byte[BUFFER_SIZE];
+        final InputStream in = part.getDataInputStream();
+        try {
+            int cnt = in.read(b);
+            while (cnt != -1) {
+                final ByteBuffer buf = ByteBuffer.wrap(b, 0, cnt);
+                while (buf.hasRemaining()) {
+                    position += channel.write(buf, position);
+                }
+                written += cnt;
+                synchronized (progress) {
+                    progress.updateBytesTransferred(cnt);
+                }
+                cnt = in.read(b);
+            }
+        } finally {
+            in.close();
+        }
+        if (written != expected) {
+            throw new ExecutionProblem("Part " + index + " of " +
+                    part.getKey() + " was " + written + " bytes, expected " +
+                    expected);
+        }
+        channel.force(false);
+        manifest.completed(index);
+    }
+
+    private void stream(S3Object object,
+                        File file,
+                        BytesProgressWatcher progress,
+                        String etag,
+                        String key)
+            throws S3ServiceException, IOException, ExecutionProblem {
+
+        final MessageDigest md5 = newMD5();
+        final InputStream in =
+                new DigestInputStream(object.getDataInputStream(), md5);
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            final byte[] b = new byte[BUFFER_SIZE];
+            int cnt = in.read(b);
+            while (cnt != -1) {
+                out.write(b, 0, cnt);
+                progress.updateBytesTransferred(cnt);
+                cnt = in.read(b);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        checkMD5(md5, etag, key);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // MD5
+    // -------------------------------------------------------------------------
+
+    private static MessageDigest newMD5() throws ExecutionProblem {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ExecutionProblem("No MD5 implementation: " +
+                    e.getMessage(), e);
+        }
+    }
+
+    // ETags that are not a plain MD5 (e.g. S3 multipart objects) are skipped
+    static void checkMD5(MessageDigest md5, String etag, String key)
+            throws ExecutionProblem {
+
+        if (etag == null) {
+            return;
+        }
+        String hex = etag.trim();
+        if (hex.startsWith("\"") && hex.endsWith("\"") && hex.length() > 1) {
+            hex = hex.substring(1, hex.length() - 1);
+        }
+        if (!hex.matches("[0-9a-fA-F]{32}")) {
+            return;
+        }
+        final String actual = ServiceUtils.toHex(md5.digest());
+        if (!actual.equalsIgnoreCase(hex)) {
+            throw new ExecutionProblem("MD5 mismatch for " + key +
+                    ": transferred " + actual + " but repository has " + hex);
+        }
+    }
+}
@@ -16,10 +16,15 @@
 
 package org.globus.workspace.cloud.client.util;
 
+import edu.emory.mathcs.backport.java.util.concurrent.Callable;
 import edu.emory.mathcs.backport.java.util.concurrent.ExecutionException;
 import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
-import edu.emory.mathcs.backport.java.util.concurrent.Executors;
 import edu.emory.mathcs.backport.java.util.concurrent.FutureTask;
+import edu.emory.mathcs.backport.java.util.concurrent.RejectedExecutionException;
+import edu.emory.mathcs.backport.java.util.concurrent.RejectedExecutionHandler;
+import edu.emory.mathcs.backport.java.util.concurrent.SynchronousQueue;
+import edu.emory.mathcs.backport.java.util.concurrent.ThreadPoolExecutor;
+import edu.emory.mathcs.backport.java.util.concurrent.TimeUnit;
 import org.apache.axis.message.addressing.EndpointReferenceType;
 import org.apache.axis.types.URI;
 import org.globus.workspace.client_common.BaseClient;
@@ -33,6 +38,8 @@ import org.globus.workspace.client_core.utils.StringUtils;
 import org.globus.workspace.cloud.client.Opts;
 import org.globus.workspace.cloud.client.cluster.ClusterMember;
 import org.globus.workspace.cloud.client.cluster.KnownHostsTask;
+import org.globus.workspace.cloud.client.cluster.LaunchPacer;
+import org.globus.workspace.cloud.client.cluster.LaunchPipeline;
 import org.globus.workspace.cloud.client.tasks.ClusterDoneTask;
 import org.globus.workspace.cloud.client.tasks.ClusterMonitorTask;
 import org.globus.workspace.cloud.client.tasks.ContextMonitorTask;
@@ -66,6 +73,16 @@ import java.util.List;
 
 public class ExecuteUtil {
 
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    public static final int DEFAULT_LAUNCH_CONCURRENCY = 4;
+
+    // threads of the default executor, when all are busy the submitting
+    // thread runs the task itself
+    public static final int DEFAULT_MAX_THREADS = 8;
+
     // -------------------------------------------------------------------------
     // INSTANCE VARIABLES
     // -------------------------------------------------------------------------
@@ -73,13 +90,21 @@ public class ExecuteUtil {
     final ExecutorService executor;
     final boolean okToShutdownExecutorService;
 
+    // cluster member creation requests in flight per cloud, and minimum
+    // ms between them
+    private int launchConcurrency = DEFAULT_LAUNCH_CONCURRENCY;
+    private long launchIntervalMs;
+
 
     // -------------------------------------------------------------------------
     // CONSTRUCTORS
     // -------------------------------------------------------------------------
 
     public ExecuteUtil() {
-        this.executor = Executors.newCachedThreadPool();
+        this.executor = new ThreadPoolExecutor(
+                0, DEFAULT_MAX_THREADS, 60, TimeUnit.SECONDS,
+                new SynchronousQueue(),
+                new RunInCaller());
         this.okToShutdownExecutorService = true;
     }
 
@@ -101,6 +126,21 @@ public class ExecuteUtil {
     // GENERAL
     // -------------------------------------------------------------------------
 
+    /**
+     * @param concurrency cluster member creation requests in flight per
+     *                    cloud, below 1 for the default
+     * @param intervalMs minimum ms between creation requests to one cloud,
+     *                   0 for no spacing
+     */
+    public void setLaunchLimits(int concurrency, long intervalMs) {
+        if (concurrency < 1) {
+            this.launchConcurrency = DEFAULT_LAUNCH_CONCURRENCY;
+        } else {
+            this.launchConcurrency = concurrency;
+        }
+        this.launchIntervalMs = Math.max(0, intervalMs);
+    }
+
     public synchronized void stopExecutorService() {
 
         if (!this.okToShutdownExecutorService) {
@@ -374,8 +414,8 @@ public class ExecuteUtil {
 
     public void startMultiCloudCluster(Collection<CloudDeployment> deploys,
                                       String historyDir,
-                                      long pollMs,
-                                      Print print,
+                                      final long pollMs,
+                                      final Print print,
                                       String brokerURL,
                                       String brokerIdentityAuthorization,
                                        String sshKeyPath, int durationMinutes
@@ -480,6 +520,14 @@ public class ExecuteUtil {
         print.getOpts().codeRemove(PrCodes.ENSMONITOR__SINGLE_REPORT_NAMES);
         print.getOpts().codeRemove(PrCodes.CTXMONITOR__SINGLE_REPORT_NAMES);
 
+        // Each cloud is its own ensemble, so one cloud's members can be
+        // waited on while another cloud is still taking requests.  Only the
+        // context spans all of them.
+        final LaunchPipeline pipeline =
+                new LaunchPipeline(new String[] {"launch request", "launch"},
+                                   new int[] {clouds.length, clouds.length},
+                                   0, print);
+
         for (int i = 0; i < clouds.length; i++) {
             CloudDeployment cloud = clouds[i];
             final File cloudDir = new File(newdir,
@@ -488,6 +536,7 @@ public class ExecuteUtil {
             if (cloudDir.mkdir()) {
                 print.debugln("Created directory: " + cloudDirPath);
             } else {
+                pipeline.shutdown();
                 throw new ExecutionProblem(
                     "Could not create directory '" + cloudDirPath + "'");
             }
@@ -503,45 +552,50 @@ public class ExecuteUtil {
 
             final String identAuth = cloud.getCloud().getFactoryID();
             final String handle = cloud.getCloud().getName();
-
-            print.infoln("\nLaunching "+handle+"...");
-
-            try {
-            startAllMembersWithBackout(futureTasks, ensembleEprPath,
-                identAuth, handle, print);
-            } catch (ExecutionProblem e) {
-                destroyMultiCloudCluster(clouds, ensembleEprPaths, print);
-                throw e;
-            } catch (ExitNow e) {
-                destroyMultiCloudCluster(clouds, ensembleEprPaths, print);
-                throw e;
-            }
-
-            ensembleEprPaths[i] = ensembleEprPath;
+            final int cloudIndex = i;
+
+            final Callable register = new Callable() {
+                public Object call() throws Exception {
+                    print.infoln("\nLaunching " + handle + "...");
+                    try {
+                        startAllMembersWithBackout(futureTasks,
+                                                   ensembleEprPath,
+                                                   identAuth, handle, print);
+                    } catch (ExitNow e) {
+                        return new Integer(e.exitCode);
+                    }
+                    // startAllMembersWithBackout backs out its own
+                    // failures, only record what is left to destroy
+                    ensembleEprPaths[cloudIndex] = ensembleEprPath;
+                    return new Integer(BaseClient.SUCCESS_EXIT_CODE);
+                }
+            };
+            final Callable monitor = new Callable() {
+                public Object call() throws Exception {
+                    try {
+                        clusterMonitor(ensembleEprPath,
+                                       identAuth,
+                                       handle,
+                                       null, //TODO set up reports dir
+                                       pollMs,
+                                       print);
+                    } catch (ExitNow e) {
+                        return new Integer(e.exitCode);
+                    }
+                    return new Integer(BaseClient.SUCCESS_EXIT_CODE);
+                }
+            };
+            pipeline.submit(handle, handle, new Callable[] {register, monitor});
         }
 
-        print.infoln("\nWaiting for launch updates.");
-         for (int i = 0; i < clouds.length; i++) {
-            CloudDeployment cloud = clouds[i];
-            final String ensembleEprPath = ensembleEprPaths[i];
-            final String identAuth =  cloud.getCloud().getFactoryID();
-            final String handle =  cloud.getCloud().getName();
-
-            try {
-            this.clusterMonitor(ensembleEprPath,
-                identAuth,
-                handle,
-                null, //TODO set up reports dir
-                pollMs,
-                print);
-
-            } catch (ExecutionProblem e) {
-                destroyMultiCloudCluster(clouds, ensembleEprPaths, print);
-                throw e;
-            } catch (ExitNow e) {
-                destroyMultiCloudCluster(clouds, ensembleEprPaths, print);
-                throw e;
-            }
+        try {
+            pipeline.await();
+        } catch (ExecutionProblem e) {
+            destroyMultiCloudCluster(clouds, ensembleEprPaths, print);
+            throw e;
+        } catch (ExitNow e) {
+            destroyMultiCloudCluster(clouds, ensembleEprPaths, print);
+            throw e;
         }
 
         if (!usingContextBroker) {
@@ -1519,10 +1573,12 @@ public class ExecuteUtil {
                                             Print print)
             throws ExitNow, ExecutionProblem {
 
-        // Because this is an ensemble request, we go one by one with
-        // the workspace service requests to make screen printing nice.
-        // Because we've forced no subscriptions, the workspace service
-        // requests will return immediately after creation
+        // The first member creates the ensemble (and the ensemble EPR file
+        // every other member joins with), so it goes alone.  The rest are
+        // sent with at most launchConcurrency requests in flight and each
+        // is reported as soon as it is registered.  Because we've forced no
+        // subscriptions, the workspace service requests will return
+        // immediately after creation.
 
         // Once all the requests are sent to the workspace service, only then
         // does the ensemble "go" signal get sent in a separate operation
@@ -1534,35 +1590,32 @@ public class ExecuteUtil {
 
         try {
 
-            for (int i = 0; i < tasks.length; i++) {
-
-                this.executor.submit(tasks[i]);
-
-                final String memberName = HistoryUtil.getMemberName(i+1);
-
-                try {
-                    final Integer retCode = (Integer) tasks[i].get();
-                    if (retCode.intValue() == BaseClient.SUCCESS_EXIT_CODE) {
-                        print.debugln("* Registered " + memberName);
-                    } else {
-                        print.errln("\nProblem registering " + memberName);
-                        throw new ExitNow(retCode.intValue(),
-                            "Failed to register "+ memberName);
-                    }
-                } catch (InterruptedException e) {
-                    throw new ExecutionProblem(e.getMessage(), e);
-                } catch (ExecutionException e) {
-                    throw new ExecutionProblem(e.getMessage(), e);
-                }
-
-                if (i == 0) {
-                    firstSucceeded = true;
-                    
-                    // only print factory URL once
-                    print.getOpts().codeRemove(
-                            PrCodes.CREATE__FACTORY_ENDPOINT);
-                    print.infoln();
+            // shared so the interval also holds between the first member
+            // and the second
+            final LaunchPacer pacer = new LaunchPacer(this.launchIntervalMs);
+
+            final LaunchPipeline first =
+                    this.newRegistrationPipeline(print, pacer);
+            first.submit(clusterName,
+                         HistoryUtil.getMemberName(1),
+                         new Callable[] {runAndGet(tasks[0])});
+            first.await();
+
+            firstSucceeded = true;
+
+            // only print factory URL once
+            print.getOpts().codeRemove(PrCodes.CREATE__FACTORY_ENDPOINT);
+            print.infoln();
+
+            if (tasks.length > 1) {
+                final LaunchPipeline rest =
+                        this.newRegistrationPipeline(print, pacer);
+                for (int i = 1; i < tasks.length; i++) {
+                    rest.submit(clusterName,
+                                HistoryUtil.getMemberName(i+1),
+                                new Callable[] {runAndGet(tasks[i])});
                 }
+                rest.await();
             }
 
             this.clusterDone(ensembleEprPath,
@@ -1598,6 +1651,32 @@ public class ExecuteUtil {
         }
     }
 
+    private LaunchPipeline newRegistrationPipeline(Print print,
+                                                   LaunchPacer pacer) {
+        return new LaunchPipeline(new String[] {"registration"},
+                                  new int[] {this.launchConcurrency},
+                                  pacer,
+                                  print);
+    }
+
+    // runs a task built by getWorkspaceTask in the calling thread
+    private static Callable runAndGet(final FutureTask task) {
+        return new Callable() {
+            public Object call() throws Exception {
+                task.run();
+                try {
+                    return task.get();
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw e;
+                }
+            }
+        };
+    }
+
     private void destroyCluster(String ensembleEprPath,
                                 String identityAuthorization,
                                 String clusterName,
@@ -1928,4 +2007,14 @@ public class ExecuteUtil {
         return new FutureTask(runTask);
     }
 
+    // unlike CallerRunsPolicy, does not drop tasks after shutdown: callers
+    // block on the task's result
+    private static class RunInCaller implements RejectedExecutionHandler {
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            if (e.isShutdown()) {
+                throw new RejectedExecutionException("executor shut down");
+            }
+            r.run();
+        }
+    }
 }
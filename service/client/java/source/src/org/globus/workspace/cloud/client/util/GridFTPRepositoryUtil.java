@@ -16,6 +16,7 @@
 
 package org.globus.workspace.cloud.client.util;
 
+import edu.emory.mathcs.backport.java.util.concurrent.Callable;
 import edu.emory.mathcs.backport.java.util.concurrent.ExecutionException;
 import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
 import edu.emory.mathcs.backport.java.util.concurrent.FutureTask;
@@ -37,6 +38,7 @@ import org.globus.workspace.cloud.client.Opts;
 import org.globus.workspace.cloud.client.Props;
 import org.globus.workspace.cloud.client.tasks.CopyTask;
 import org.globus.workspace.cloud.client.tasks.CopyWatchTask;
+import org.globus.workspace.cloud.client.tasks.ParallelCopyTask;
 import org.globus.workspace.common.SecurityUtil;
 import org.globus.workspace.common.print.Print;
 
@@ -49,6 +51,40 @@ import java.util.Vector;
 public class GridFTPRepositoryUtil 
     implements RepositoryInterface {
 
+    // authenticated control connections for list and delete, shared by
+    // every instance in this JVM.  Paths from GlobusURL may be relative, so
+    // a reused connection first goes back to its login directory, which
+    // doubles as the liveness check.
+    private static final ControlConnectionPool<ControlClient> controlPool =
+            new ControlConnectionPool<ControlClient>(2,
+                    new ControlConnectionPool.Lifecycle<ControlClient>() {
+                        public boolean isAlive(ControlClient conn) {
+                            try {
+                                conn.client.changeDir(conn.loginDir);
+                                return true;
+                            } catch (Exception e) {
+                                return false;
+                            }
+                        }
+                        public void close(ControlClient conn) {
+                            try {
+                                conn.client.close();
+                            } catch (Exception e) {
+                                // best effort
+                            }
+                        }
+                    });
+
+    private static class ControlClient {
+        final GridFTPClient client;
+        final String loginDir;
+
+        ControlClient(GridFTPClient client, String loginDir) {
+            this.client = client;
+            this.loginDir = loginDir;
+        }
+    }
+
     private AllArgs                     args;
     private final Print print;
     private String remoteUserBaseURLString;
@@ -118,6 +154,8 @@ public class GridFTPRepositoryUtil
         this.sendFile(
             sourceUrlString,
             destUrlString,
+            localfile,
+            true,
             timeoutMinutes,
             identityAuthorization,
             info,
@@ -141,6 +179,8 @@ public class GridFTPRepositoryUtil
         this.sendFile(
             sourceUrlString,
             destUrlString,
+            localfile,
+            false,
             timeoutMinutes,
             identityAuthorization,
             info,
@@ -196,6 +236,8 @@ public class GridFTPRepositoryUtil
 
     private void sendFile(String sourceUrlString,
                                 String destUrlString,
+                                String localfile,
+                                boolean upload,
                                 long timeoutMinutes,
                                 String identityAuthorization,
                                 PrintStream info,
@@ -258,8 +300,32 @@ public class GridFTPRepositoryUtil
             pr.println();
         }
 
+        final Callable copyTask;
+        final int parallelism = this.args.getXferParallelism();
+        if (parallelism > 1) {
+            final String remote = upload ? destUrlString : sourceUrlString;
+            try {
+                copyTask = new ParallelCopyTask(new GlobusURL(remote),
+                                                new File(localfile),
+                                                upload,
+                                                parallelism,
+                                                getAuthorization(
+                                                    identityAuthorization,
+                                                    null));
+            } catch (Exception e) {
+                throw new ExecutionProblem("Problem constructing remote " +
+                                           "URL: " + e.getMessage());
+            }
+            if (debug != null) {
+                debug.println("Using extended block mode with " +
+                              parallelism + " parallel streams");
+            }
+        } else {
+            copyTask = new CopyTask(urlcopy);
+        }
+
         final FutureTask[] tasks = new FutureTask[2];
-        tasks[0] = new FutureTask(new CopyTask(urlcopy));
+        tasks[0] = new FutureTask(copyTask);
 
         if (info != null) {
             tasks[1] = new FutureTask(new CopyWatchTask(info, debug));
@@ -321,30 +387,6 @@ public class GridFTPRepositoryUtil
                                                 e.getMessage());
         }
 
-        final GridFTPClient ftp;
-        try {
-            ftp = new GridFTPClient(delURL.getHost(), delURL.getPort());
-        } catch (Exception e) {
-            throw new ExecutionProblem("Problem constructing GridFTPClient: " +
-                                                e.getMessage());
-        }
-
-        final Authorization auth;
-        if (identityAuthorization == null) {
-            auth = HostAuthorization.getInstance();
-            if (debug != null) {
-                debug.println(
-                        "Using host-based authorization of remote server");
-            }
-        } else {
-            auth = new IdentityAuthorization(identityAuthorization);
-            if (debug != null) {
-                debug.println("Using identity-based authorization of remote " +
-                        "server: '" + identityAuthorization + "'");
-            }
-        }
-        ftp.setAuthorization(auth);
-
         PrintStream pr = null;
         if (info != null) {
             pr = info;
@@ -357,15 +399,28 @@ public class GridFTPRepositoryUtil
             pr.println();
         }
 
+        final String poolKey = poolKey(delURL, identityAuthorization);
+        final ControlClient ftp;
         try {
-            ftp.authenticate(null);
-            ftp.deleteFile(delURL.getPath());
+            ftp = this.borrowClient(delURL, identityAuthorization, debug);
         } catch (IOException e) {
             throw new ExecutionProblem(e.getMessage(), e);
         } catch (ServerException e) {
             throw new ExecutionProblem(e.getMessage(), e);
         }
 
+        try {
+            ftp.client.deleteFile(delURL.getPath());
+        } catch (IOException e) {
+            controlPool.discard(ftp);
+            throw new ExecutionProblem(e.getMessage(), e);
+        } catch (ServerException e) {
+            // the server refused, the connection is still good
+            controlPool.release(poolKey, ftp);
+            throw new ExecutionProblem(e.getMessage(), e);
+        }
+        controlPool.release(poolKey, ftp);
+
         if (info != null) {
             info.println("Deleted.\n");
         } else if (debug != null) {
@@ -421,43 +476,32 @@ public class GridFTPRepositoryUtil
             debug.println("Listing:\n" + listdir.toString());
         }
 
-        final GridFTPClient client =
-                new GridFTPClient(listdir.getHost(), listdir.getPort());
+        final String poolKey = poolKey(listdir, identityAuthorization);
+        final ControlClient conn =
+                this.borrowClient(listdir, identityAuthorization, debug);
+
+        final Vector v;
+        try {
+            final GridFTPClient client = conn.client;
+            client.setType(Session.TYPE_ASCII);
+            client.setPassive();
+            client.setLocalActive();
 
-        if (identityAuthorization == null) {
-            client.setAuthorization(HostAuthorization.getInstance());
             if (debug != null) {
-                debug.println(
-                        "Using host-based authorization of remote server");
+                debug.println("Changing directory (CWD).");
             }
-        } else {
-            final IdentityAuthorization idA =
-                    new IdentityAuthorization(identityAuthorization);
-            client.setAuthorization(idA);
+            client.changeDir(listdir.getPath());
+
             if (debug != null) {
-                debug.println("Using identity-based authorization of remote " +
-                        "server: '" + identityAuthorization + "'");
+                debug.println("Listing.");
             }
-        }
-
-        if (debug != null) {
-            debug.println("Authenticating.");
-        }
-        client.authenticate(null);
-        client.setType(Session.TYPE_ASCII);
-        client.setPassive();
-        client.setLocalActive();
-
-        if (debug != null) {
-            debug.println("Changing directory (CWD).");
-        }
-        client.changeDir(listdir.getPath());
 
-        if (debug != null) {
-            debug.println("Listing.");
+            v = client.mlsd(null);
+        } catch (Exception e) {
+            controlPool.discard(conn);
+            throw e;
         }
-        
-        final Vector v = client.mlsd(null);
+        controlPool.release(poolKey, conn);
 
         int len = v.size();
         if (debug != null) {
@@ -550,11 +594,75 @@ public class GridFTPRepositoryUtil
             files.add(fl);
         }
 
-        client.close();
-
         return (FileListing[]) files.toArray(new FileListing[files.size()]);
     }
 
+
+    // -------------------------------------------------------------------------
+    // CONTROL CONNECTIONS
+    // -------------------------------------------------------------------------
+
+    private static String poolKey(GlobusURL url,
+                                  String identityAuthorization) {
+        return url.getHost() + ":" + url.getPort() + " " +
+                (identityAuthorization == null ? "<host>" : identityAuthorization);
+    }
+
+    private static Authorization getAuthorization(String identityAuthorization,
+                                                  PrintStream debug) {
+        if (identityAuthorization == null) {
+            if (debug != null) {
+                debug.println(
+                        "Using host-based authorization of remote server");
+            }
+            return HostAuthorization.getInstance();
+        } else {
+            if (debug != null) {
+                debug.println("Using identity-based authorization of remote " +
+                        "server: '" + identityAuthorization + "'");
+            }
+            return new IdentityAuthorization(identityAuthorization);
+        }
+    }
+
+    /**
+     * @return an authenticated client, reused if one is idle; hand it back
+     *         with controlPool.release() or controlPool.discard()
+     */
+    private ControlClient borrowClient(GlobusURL url,
+                                       String identityAuthorization,
+                                       PrintStream debug)
+            throws IOException, ServerException {
+
+        final ControlClient pooled =
+                controlPool.take(poolKey(url, identityAuthorization));
+        if (pooled != null) {
+            if (debug != null) {
+                debug.println("Reusing authenticated control connection.");
+            }
+            return pooled;
+        }
+
+        final GridFTPClient client =
+                new GridFTPClient(url.getHost(), url.getPort());
+        client.setAuthorization(
+                getAuthorization(identityAuthorization, debug));
+
+        if (debug != null) {
+            debug.println("Authenticating.");
+        }
+        try {
+            client.authenticate(null);
+            return new ControlClient(client, client.getCurrentDir());
+        } catch (IOException e) {
+            controlPool.discard(new ControlClient(client, null));
+            throw e;
+        } catch (ServerException e) {
+            controlPool.discard(new ControlClient(client, null));
+            throw e;
+        }
+    }
+
     private String parseDate(String modified) {
         if (modified == null || modified.length() != 14) {
             throw new IllegalArgumentException("invalid modified arg");
@@ -0,0 +1,171 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Records which parts of a download are already on disk, one part index per
+ * line after a header naming the object (ETag and length) and the part size.
+ * A manifest left behind by a failed run is only trusted if the header still
+ * matches the object in the repository; anything else starts over.
+ */
+class PartManifest {
+
+    private static final String HEADER = "# cloud-client part manifest";
+
+    private final File file;
+    private final long length;
+    private final long partSize;
+    private final int parts;
+    private final BitSet done;
+    private Writer writer;
+
+    private PartManifest(File file, long length, long partSize, BitSet done) {
+        this.file = file;
+        this.length = length;
+        this.partSize = partSize;
+        this.parts = (int) ((length + partSize - 1) / partSize);
+        this.done = done;
+    }
+
+    /**
+     * @param file manifest location
+     * @param etag ETag of the object, null if the repository gave none (no
+     *        resume is possible then)
+     * @param length object length
+     * @param partSize bytes per part
+     * @param resume false if the data file is gone and any old manifest is
+     *        therefore meaningless
+     * @return manifest, open for recording
+     * @throws IOException could not read or write the manifest
+     */
+    static PartManifest open(File file, String etag, long length,
+                             long partSize, boolean resume)
+            throws IOException {
+
+        if (partSize < 1) {
+            throw new IllegalArgumentException("partSize must be positive");
+        }
+        final String header = etag + " " + length + " " + partSize;
+        BitSet done = null;
+        if (resume && etag != null && file.exists()) {
+            done = read(file, header);
+        }
+        final PartManifest manifest;
+        if (done != null) {
+            manifest = new PartManifest(file, length, partSize, done);
+            manifest.writer = new FileWriter(file, true);
+        } else {
+            manifest = new PartManifest(file, length, partSize, new BitSet());
+            manifest.writer = new FileWriter(file, false);
+            manifest.writer.write(HEADER + "\n" + header + "\n");
+            manifest.writer.flush();
+        }
+        return manifest;
+    }
+
+    // null if the manifest is for something else
+    private static BitSet read(File file, String header) throws IOException {
+        final BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            if (!HEADER.equals(reader.readLine()) ||
+                    !header.equals(reader.readLine())) {
+                return null;
+            }
+            final BitSet done = new BitSet();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    done.set(Integer.parseInt(line.trim()));
+                } catch (NumberFormatException e) {
+                    // torn last line from an interrupted run
+                    break;
+                }
+            }
+            return done;
+        } finally {
+            reader.close();
+        }
+    }
+
+    int getParts() {
+        return this.parts;
+    }
+
+    long offset(int part) {
+        return part * this.partSize;
+    }
+
+    long partLength(int part) {
+        return Math.min(this.partSize, this.length - this.offset(part));
+    }
+
+    synchronized boolean isDone(int part) {
+        return this.done.get(part);
+    }
+
+    synchronized List<Integer> missing() {
+        final List<Integer> missing = new ArrayList<Integer>();
+        for (int i = 0; i < this.parts; i++) {
+            if (!this.done.get(i)) {
+                missing.add(Integer.valueOf(i));
+            }
+        }
+        return missing;
+    }
+
+    synchronized long completedBytes() {
+        long bytes = 0;
+        for (int i = this.done.nextSetBit(0);
+             i >= 0 && i < this.parts;
+             i = this.done.nextSetBit(i + 1)) {
+            bytes += this.partLength(i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Call only once the part's bytes have been forced to disk.
+     */
+    synchronized void completed(int part) throws IOException {
+        this.done.set(part);
+        this.writer.write(part + "\n");
+        this.writer.flush();
+    }
+
+    synchronized void close() {
+        try {
+            this.writer.close();
+        } catch (IOException ignored) {
+            // best effort
+        }
+    }
+
+    void delete() {
+        this.close();
+        this.file.delete();
+    }
+}
@@ -55,6 +55,8 @@ public class AllArgs {
     private String brokerURL;
     private String brokerID;
     private String sshfile;
+    private int launchConcurrency;
+    private long launchIntervalMs;
 
     public String getPropertiesPath() {
         return propertiesPath;
@@ -100,6 +102,14 @@ public class AllArgs {
         return sshfile;
     }
 
+    public int getLaunchConcurrency() {
+        return launchConcurrency;
+    }
+
+    public long getLaunchIntervalMs() {
+        return launchIntervalMs;
+    }
+
 
     public static AllArgs create(String argv[], Print print)
         throws ParameterProblem {
@@ -251,6 +261,18 @@ public class AllArgs {
         String pollMsStr = CloudClientUtil.getProp(props, Props.KEY_POLL_INTERVAL);
         this.pollMs = Integer.parseInt(pollMsStr);
 
+        final String concurrencyStr =
+            CloudClientUtil.getProp(props, Props.KEY_LAUNCH_CONCURRENCY);
+        if (concurrencyStr != null) {
+            this.launchConcurrency = Integer.parseInt(concurrencyStr);
+        }
+
+        final String intervalStr =
+            CloudClientUtil.getProp(props, Props.KEY_LAUNCH_INTERVAL);
+        if (intervalStr != null) {
+            this.launchIntervalMs = Long.parseLong(intervalStr);
+        }
+
     }
 
 
@@ -440,6 +440,9 @@ public class CloudMetaClient {
 
         printDeploymentInfo();
 
+        executeUtil.setLaunchLimits(this.args.getLaunchConcurrency(),
+                                    this.args.getLaunchIntervalMs());
+
         executeUtil.startMultiCloudCluster(
             this.cloudMap.values(),
             this.args.getHistoryDirectory(),
@@ -0,0 +1,74 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.client_core.subscribe_tools.internal;
+
+import edu.emory.mathcs.backport.java.util.concurrent.Executors;
+import edu.emory.mathcs.backport.java.util.concurrent.ScheduledThreadPoolExecutor;
+import org.globus.workspace.common.print.Print;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FactoryStatusPollTest {
+
+    @Test
+    public void testNextDelay() {
+        assertEquals(3000, FactoryStatusPoll.nextDelay(2000, 0, 2000, 16000));
+        assertEquals(16000, FactoryStatusPoll.nextDelay(12000, 0, 2000, 16000));
+        assertEquals(2000, FactoryStatusPoll.nextDelay(12000, 3, 2000, 16000));
+        assertEquals(2, FactoryStatusPoll.nextDelay(1, 0, 1, 8));
+    }
+
+    @Test
+    public void testStatusAddress() {
+        assertEquals("https://h:8443/wsrf/services/WorkspaceStatusService",
+                     FactoryStatusPoll.statusAddress(
+                             "https://h:8443/wsrf/services/WorkspaceService"));
+        assertNull(FactoryStatusPoll.statusAddress(
+                "https://h:8443/wsrf/services/SomethingElse"));
+        assertNull(FactoryStatusPoll.statusAddress(null));
+    }
+
+    @Test
+    public void testBackoffAndHurry() throws Exception {
+        final ScheduledThreadPoolExecutor scheduled =
+                new ScheduledThreadPoolExecutor(1);
+        // no status service at this address and nothing answers, so every
+        // round is quiet
+        final FactoryStatusPoll poll = new FactoryStatusPoll(
+                "https://localhost:1/nothing", null, null, new Print(),
+                scheduled, Executors.newSingleThreadExecutor(), 5);
+        try {
+            poll.add(1, null);
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (poll.getDelayMs() < 5 * FactoryStatusPoll.MAX_BACKOFF &&
+                    System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(5 * FactoryStatusPoll.MAX_BACKOFF, poll.getDelayMs());
+
+            poll.add(2, null);
+            assertEquals(5, poll.getDelayMs());
+
+            assertFalse(poll.remove(1));
+            assertTrue(poll.remove(2));
+        } finally {
+            poll.cancel();
+            scheduled.shutdownNow();
+        }
+    }
+}
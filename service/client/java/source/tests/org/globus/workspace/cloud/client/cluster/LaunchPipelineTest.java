@@ -0,0 +1,177 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.cluster;
+
+import edu.emory.mathcs.backport.java.util.concurrent.Callable;
+import edu.emory.mathcs.backport.java.util.concurrent.CountDownLatch;
+import edu.emory.mathcs.backport.java.util.concurrent.TimeUnit;
+import org.globus.workspace.client_core.ExitNow;
+import org.globus.workspace.common.print.Print;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LaunchPipelineTest {
+
+    @Test
+    public void testStageLimit() throws Throwable {
+        final LaunchPipeline pipeline = new LaunchPipeline(
+                new String[] {"registration"}, new int[] {2}, 0, new Print());
+
+        final int[] running = new int[1];
+        final int[] peak = new int[1];
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(null, "vm-" + i, new Callable[] {new Callable() {
+                public Object call() throws Exception {
+                    synchronized (running) {
+                        running[0] += 1;
+                        peak[0] = Math.max(peak[0], running[0]);
+                    }
+                    Thread.sleep(10);
+                    synchronized (running) {
+                        running[0] -= 1;
+                    }
+                    return new Integer(0);
+                }
+            }});
+        }
+        pipeline.await();
+
+        assertEquals(2, peak[0]);
+        assertEquals(10, pipeline.getCompleted(0));
+    }
+
+    @Test
+    public void testJobsDoNotWaitForEachOther() throws Throwable {
+        final LaunchPipeline pipeline = new LaunchPipeline(
+                new String[] {"launch request", "launch"},
+                new int[] {2, 2}, 0, new Print());
+
+        // the slow job's first stage only finishes once the fast job got
+        // through its second stage, which a barrier between stages would
+        // never allow
+        final CountDownLatch fastDone = new CountDownLatch(1);
+        final List<String> order =
+                Collections.synchronizedList(new ArrayList<String>());
+
+        pipeline.submit("a", "slow", new Callable[] {
+                new Callable() {
+                    public Object call() throws Exception {
+                        assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+                        order.add("slow-1");
+                        return new Integer(0);
+                    }
+                },
+                record(order, "slow-2")});
+        pipeline.submit("b", "fast", new Callable[] {
+                record(order, "fast-1"),
+                new Callable() {
+                    public Object call() throws Exception {
+                        order.add("fast-2");
+                        fastDone.countDown();
+                        return new Integer(0);
+                    }
+                }});
+        pipeline.await();
+
+        assertEquals(4, order.size());
+        assertTrue(order.indexOf("fast-2") < order.indexOf("slow-1"));
+    }
+
+    @Test
+    public void testFailureStops() throws Throwable {
+        final LaunchPipeline pipeline = new LaunchPipeline(
+                new String[] {"registration", "launch"},
+                new int[] {1, 1}, 0, new Print());
+
+        final List<String> order =
+                Collections.synchronizedList(new ArrayList<String>());
+        pipeline.submit(null, "bad", new Callable[] {
+                new Callable() {
+                    public Object call() throws Exception {
+                        return new Integer(3);
+                    }
+                },
+                record(order, "bad-2")});
+        pipeline.submit(null, "later", new Callable[] {
+                record(order, "later-1"), null});
+
+        try {
+            pipeline.await();
+            fail("expected ExitNow");
+        } catch (ExitNow e) {
+            assertEquals(3, e.exitCode);
+        }
+        assertFalse(order.contains("bad-2"));
+        assertFalse(order.contains("later-1"));
+    }
+
+    @Test
+    public void testCloudInterval() throws Throwable {
+        final LaunchPipeline pipeline = new LaunchPipeline(
+                new String[] {"registration"}, new int[] {4}, 50, new Print());
+
+        final List<String> order =
+                Collections.synchronizedList(new ArrayList<String>());
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            pipeline.submit("cloud", "vm-" + i,
+                            new Callable[] {record(order, "vm-" + i)});
+        }
+        pipeline.await();
+
+        // starts at 0, 50, 100 and 150 ms
+        assertTrue(System.currentTimeMillis() - start >= 150);
+        assertEquals(4, order.size());
+    }
+
+    @Test
+    public void testSharedPacer() throws Throwable {
+        final LaunchPacer pacer = new LaunchPacer(100);
+        final List<String> order =
+                Collections.synchronizedList(new ArrayList<String>());
+
+        final LaunchPipeline first = new LaunchPipeline(
+                new String[] {"registration"}, new int[] {1}, pacer, new Print());
+        final long start = System.currentTimeMillis();
+        first.submit("cloud", "vm-1", new Callable[] {record(order, "vm-1")});
+        first.await();
+
+        final LaunchPipeline rest = new LaunchPipeline(
+                new String[] {"registration"}, new int[] {4}, pacer, new Print());
+        rest.submit("cloud", "vm-2", new Callable[] {record(order, "vm-2")});
+        rest.await();
+
+        // the second pipeline still waits out the first one's interval
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        assertEquals(2, order.size());
+    }
+
+    private static Callable record(final List<String> order,
+                                   final String what) {
+        return new Callable() {
+            public Object call() throws Exception {
+                order.add(what);
+                return new Integer(0);
+            }
+        };
+    }
+}
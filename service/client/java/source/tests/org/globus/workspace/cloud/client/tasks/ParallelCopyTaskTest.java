@@ -0,0 +1,135 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.tasks;
+
+import org.globus.ftp.GridFTPClient;
+import org.globus.gsi.gssapi.auth.HostAuthorization;
+import org.globus.util.GlobusURL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class ParallelCopyTaskTest {
+
+    private File local;
+
+    @Before
+    public void setup() throws Exception {
+        this.local = File.createTempFile("parallelcopy", ".img");
+        final FileOutputStream out = new FileOutputStream(this.local);
+        out.write(new byte[100]);
+        out.close();
+    }
+
+    @After
+    public void teardown() {
+        this.local.delete();
+    }
+
+    @Test
+    public void testUploadClosesFile() throws Exception {
+        final Stub task = new Stub(true, null);
+        task.transfer(null, "/img");
+        assertEquals("/img", task.path);
+        assertClosed(task.raf);
+    }
+
+    @Test
+    public void testFailedUploadClosesFile() throws Exception {
+        final Stub task = new Stub(true, new IOException("lost"));
+        try {
+            task.transfer(null, "/img");
+            fail("expected the transfer's exception");
+        } catch (IOException e) {
+            assertEquals("lost", e.getMessage());
+        }
+        assertClosed(task.raf);
+    }
+
+    @Test
+    public void testDownloadTruncatesAndClosesFile() throws Exception {
+        final Stub task = new Stub(false, null);
+        task.transfer(null, "/img");
+        assertEquals(0, task.lengthAtTransfer);
+        assertClosed(task.raf);
+        assertEquals(10, this.local.length());
+    }
+
+    @Test
+    public void testFailedDownloadClosesFile() throws Exception {
+        final Stub task = new Stub(false, new IOException("lost"));
+        try {
+            task.transfer(null, "/img");
+            fail("expected the transfer's exception");
+        } catch (IOException e) {
+            assertEquals("lost", e.getMessage());
+        }
+        assertClosed(task.raf);
+    }
+
+    private static void assertClosed(RandomAccessFile raf) {
+        assertNotNull(raf);
+        try {
+            raf.length();
+            fail("local file left open");
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    private class Stub extends ParallelCopyTask {
+
+        private final Exception failure;
+        RandomAccessFile raf;
+        String path;
+        long lengthAtTransfer = -1;
+
+        Stub(boolean upload, Exception failure) throws Exception {
+            super(new GlobusURL("gsiftp://gridftp.example.org/img"),
+                  local, upload, 4, HostAuthorization.getInstance());
+            this.failure = failure;
+        }
+
+        void put(GridFTPClient client, String path, RandomAccessFile raf)
+                throws Exception {
+            this.record(path, raf);
+        }
+
+        void get(GridFTPClient client, String path, RandomAccessFile raf)
+                throws Exception {
+            this.record(path, raf);
+            raf.write(new byte[10]);
+        }
+
+        private void record(String path, RandomAccessFile raf)
+                throws Exception {
+            this.path = path;
+            this.raf = raf;
+            this.lengthAtTransfer = raf.length();
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ControlConnectionPoolTest {
+
+    private static final String KEY = "gridftp.example.org:2811 <host>";
+
+    private ControlConnectionPool<Conn> pool;
+
+    @Before
+    public void setup() {
+        this.pool = new ControlConnectionPool<Conn>(2,
+                new ControlConnectionPool.Lifecycle<Conn>() {
+                    public boolean isAlive(Conn conn) {
+                        conn.probes++;
+                        return conn.alive;
+                    }
+                    public void close(Conn conn) {
+                        conn.closed = true;
+                    }
+                });
+    }
+
+    @Test
+    public void testReuse() {
+        assertNull(this.pool.take(KEY));
+
+        final Conn conn = new Conn();
+        this.pool.release(KEY, conn);
+        assertEquals(1, this.pool.idleCount(KEY));
+
+        assertSame(conn, this.pool.take(KEY));
+        assertEquals(1, conn.probes);
+        assertFalse(conn.closed);
+        assertNull(this.pool.take(KEY));
+
+        // other servers or identities do not share
+        this.pool.release(KEY, conn);
+        assertNull(this.pool.take("gridftp.example.org:2811 /CN=other"));
+    }
+
+    @Test
+    public void testDeadSkipped() {
+        final Conn dead = new Conn();
+        final Conn live = new Conn();
+        this.pool.release(KEY, live);
+        this.pool.release(KEY, dead);
+        dead.alive = false;
+
+        assertSame(live, this.pool.take(KEY));
+        assertTrue(dead.closed);
+        assertEquals(0, this.pool.idleCount(KEY));
+    }
+
+    @Test
+    public void testBounded() {
+        final Conn a = new Conn();
+        final Conn b = new Conn();
+        final Conn c = new Conn();
+        this.pool.release(KEY, a);
+        this.pool.release(KEY, b);
+        this.pool.release(KEY, c);
+        assertEquals(2, this.pool.idleCount(KEY));
+        assertTrue(c.closed);
+
+        this.pool.closeAll();
+        assertTrue(a.closed);
+        assertTrue(b.closed);
+        assertEquals(0, this.pool.idleCount(KEY));
+    }
+
+    private static class Conn {
+        boolean alive = true;
+        boolean closed;
+        int probes;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.cloud.client.util;
+
+import org.globus.workspace.client_core.ExecutionProblem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.security.MessageDigest;
+
+import static org.junit.Assert.*;
+
+public class PartManifestTest {
+
+    private static final String ETAG = "\"d41d8cd98f00b204e9800998ecf8427e\"";
+
+    private File file;
+
+    @Before
+    public void setup() throws Exception {
+        this.file = File.createTempFile("image", CumulusTransfer.MANIFEST_SUFFIX);
+    }
+
+    @After
+    public void teardown() {
+        this.file.delete();
+    }
+
+    @Test
+    public void testPartLengths() throws Exception {
+        PartManifest manifest = PartManifest.open(this.file, ETAG, 250, 100, false);
+        assertEquals(3, manifest.getParts());
+        assertEquals(200, manifest.offset(2));
+        assertEquals(100, manifest.partLength(1));
+        assertEquals(50, manifest.partLength(2));
+        assertEquals(3, manifest.missing().size());
+        manifest.close();
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        PartManifest manifest = PartManifest.open(this.file, ETAG, 250, 100, false);
+        manifest.completed(0);
+        manifest.completed(2);
+        manifest.close();
+
+        // a torn line from a crash is ignored
+        FileWriter writer = new FileWriter(this.file, true);
+        writer.write("1x");
+        writer.close();
+
+        manifest = PartManifest.open(this.file, ETAG, 250, 100, true);
+        assertTrue(manifest.isDone(0));
+        assertFalse(manifest.isDone(1));
+        assertEquals(150, manifest.completedBytes());
+        assertEquals(1, manifest.missing().size());
+        assertEquals(Integer.valueOf(1), manifest.missing().get(0));
+        manifest.close();
+    }
+
+    @Test
+    public void testStartOver() throws Exception {
+        PartManifest manifest = PartManifest.open(this.file, ETAG, 250, 100, false);
+        manifest.completed(0);
+        manifest.close();
+
+        // the object changed
+        manifest = PartManifest.open(this.file, "\"other\"", 250, 100, true);
+        assertEquals(3, manifest.missing().size());
+        manifest.close();
+
+        // the data file is gone
+        manifest = PartManifest.open(this.file, "\"other\"", 250, 100, false);
+        manifest.completed(0);
+        manifest.close();
+        manifest = PartManifest.open(this.file, "\"other\"", 250, 100, false);
+        assertEquals(3, manifest.missing().size());
+        manifest.delete();
+        assertFalse(this.file.exists());
+    }
+
+    @Test
+    public void testCheckMD5() throws Exception {
+        // MD5 of nothing
+        CumulusTransfer.checkMD5(MessageDigest.getInstance("MD5"), ETAG, "k");
+
+        // not an MD5, e.g. an S3 multipart ETag
+        CumulusTransfer.checkMD5(MessageDigest.getInstance("MD5"),
+                                 "\"abc-2\"", "k");
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            md5.update((byte) 1);
+            CumulusTransfer.checkMD5(md5, ETAG, "k");
+            fail("mismatch not detected");
+        } catch (ExecutionProblem e) {
+            assertTrue(e.getMessage().indexOf("MD5 mismatch") >= 0);
+        }
+    }
+}
@@ -16,39 +16,287 @@
 
 package org.globus.workspace;
 
+import edu.emory.mathcs.backport.java.util.concurrent.TimeUnit;
+import edu.emory.mathcs.backport.java.util.concurrent.locks.Condition;
 import edu.emory.mathcs.backport.java.util.concurrent.locks.Lock;
-import edu.emory.mathcs.backport.java.util.concurrent.locks.ReentrantLock;
+import org.globus.workspace.metrics.Gauge;
+import org.globus.workspace.metrics.LatencyHistogram;
+import org.globus.workspace.metrics.Metrics;
 
-import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * One lock per key, looked up without a monitor and reclaimed as soon as
+ * nobody holds or waits for it.
+ *
+ * getLock returns a light handle.  The lock behind it is found (or made)
+ * when the handle is locked and counts its holders and waiters; the last
+ * one to unlock drops it from the table.  Handles of the same key always
+ * share the lock that is in the table at the time, so removeLock is not
+ * needed anymore and a key's lock costs nothing while it is free.
+ *
+ * int keys are not turned into Strings; a String key that is a plain
+ * number ("42") names the same lock as that int, as it always did.
+ *
+ * Locks are not fair unless configured: an uncontended lock is taken with
+ * one compare-and-set.  Fair locks are handed to waiters in arrival order,
+ * only the untimed tryLock() may barge, as Lock allows.  Acquisitions, the ones that had to wait and how
+ * long they waited are published as "locks.acquired", "locks.contended"
+ * and "locks.wait", the number of live locks as the "locks.live" gauge.
+ *
+ * Conditions are not supported.
+ */
 public class DefaultLockManager implements LockManager {
 
-    private final Map locks;
+    private final ConcurrentMap<Object,Entry> locks =
+            new ConcurrentHashMap<Object,Entry>(512);
+
+    private final boolean fair;
+
+    private final AtomicLong acquired = Metrics.counter("locks.acquired");
+    private final AtomicLong contended = Metrics.counter("locks.contended");
+    private final LatencyHistogram waits = Metrics.histogram("locks.wait");
 
     public DefaultLockManager() {
-        this.locks = new HashMap(512);
+        this(false);
     }
 
-    public synchronized Lock getLock(int key) {
-        return this.getLock(String.valueOf(key));
+    /**
+     * @param fair fair locks (in order, slower) or not
+     */
+    public DefaultLockManager(boolean fair) {
+        this.fair = fair;
     }
 
-    public synchronized Lock getLock(String key) {
-        Lock lock = (Lock)this.locks.get(key);
-        if (lock == null) {
-            lock = new ReentrantLock(true);
-            this.locks.put(key, lock);
+    /**
+     * Publishes the number of live locks as the "locks.live" gauge.
+     * Called by the container, other instances (tests) stay unregistered.
+     */
+    public void registerMetrics() {
+        Metrics.gauge("locks.live", new Gauge() {
+            public long value() {
+                return getLiveLockCount();
+            }
+        });
+    }
+
+    public Lock getLock(int key) {
+        return new KeyedLock(Integer.valueOf(key));
+    }
+
+    public Lock getLock(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key may not be null");
+        }
+        final Integer intKey = intKey(key);
+        if (intKey != null) {
+            return new KeyedLock(intKey);
         }
-        return lock;
+        return new KeyedLock(key);
     }
 
-    public synchronized void removeLock(int key) {
-        this.removeLock(String.valueOf(key));
+    public void removeLock(int key) {
+        // nothing to do, unused locks are reclaimed
     }
 
-    public synchronized void removeLock(String key) {
-        this.locks.remove(key);
+    public void removeLock(String key) {
+        // nothing to do, unused locks are reclaimed
     }
 
+    /**
+     * @return number of keys that are held or waited for
+     */
+    public int getLiveLockCount() {
+        return this.locks.size();
+    }
+
+
+    // -------------------------------------------------------------------------
+    // IMPL
+    // -------------------------------------------------------------------------
+
+    // "42" -> 42, anything that String.valueOf(int) would not produce -> null
+    static Integer intKey(String key) {
+        final int len = key.length();
+        if (len == 0 || len > 11) {
+            return null;
+        }
+        int i = 0;
+        final boolean negative = key.charAt(0) == '-';
+        if (negative) {
+            i = 1;
+            if (len == 1) {
+                return null;
+            }
+        }
+        if (key.charAt(i) == '0' && (len > i + 1 || negative)) {
+            return null;
+        }
+        long value = 0;
+        for (; i < len; i++) {
+            final char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return null;
+        }
+        return Integer.valueOf((int) value);
+    }
+
+    private static final class Entry {
+
+        final ReentrantLock lock;
+
+        // holders (each hold counted) and waiters, -1 once dropped
+        final AtomicInteger refs = new AtomicInteger();
+
+        Entry(boolean fair) {
+            this.lock = new ReentrantLock(fair);
+        }
+    }
+
+    private Entry retain(Object key) {
+        while (true) {
+            Entry entry = this.locks.get(key);
+            if (entry == null) {
+                final Entry created = new Entry(this.fair);
+                entry = this.locks.putIfAbsent(key, created);
+                if (entry == null) {
+                    entry = created;
+                }
+            }
+            final int refs = entry.refs.get();
+            if (refs >= 0 && entry.refs.compareAndSet(refs, refs + 1)) {
+                return entry;
+            }
+            // dropped in the meantime, its successor is (or will be) in
+            // the table
+            if (refs < 0) {
+                this.locks.remove(key, entry);
+            }
+        }
+    }
+
+    private void release(Object key, Entry entry) {
+        if (entry.refs.decrementAndGet() == 0
+                && entry.refs.compareAndSet(0, -1)) {
+            this.locks.remove(key, entry);
+        }
+    }
+
+    // Uncontended acquisition.  tryLock() takes even a fair lock ahead of
+    // its waiters, the timed form does not, so fair locks use that.  An
+    // interrupt is left set for the blocking acquisition that follows.
+    private boolean tryFast(Entry entry) {
+        if (!this.fair) {
+            return entry.lock.tryLock();
+        }
+        try {
+            return entry.lock.tryLock(0L,
+                    java.util.concurrent.TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private final class KeyedLock implements Lock {
+
+        private final Object key;
+
+        KeyedLock(Object key) {
+            this.key = key;
+        }
+
+        public void lock() {
+            final Entry entry = retain(this.key);
+            if (!tryFast(entry)) {
+                contended.incrementAndGet();
+                final long start = System.nanoTime();
+                entry.lock.lock();
+                waits.recordSince(start);
+            }
+            acquired.incrementAndGet();
+        }
+
+        public void lockInterruptibly() throws InterruptedException {
+            final Entry entry = retain(this.key);
+            if (!tryFast(entry)) {
+                contended.incrementAndGet();
+                final long start = System.nanoTime();
+                try {
+                    entry.lock.lockInterruptibly();
+                } catch (InterruptedException e) {
+                    release(this.key, entry);
+                    throw e;
+                }
+                waits.recordSince(start);
+            }
+            acquired.incrementAndGet();
+        }
+
+        public boolean tryLock() {
+            final Entry entry = retain(this.key);
+            if (entry.lock.tryLock()) {
+                acquired.incrementAndGet();
+                return true;
+            }
+            contended.incrementAndGet();
+            release(this.key, entry);
+            return false;
+        }
+
+        public boolean tryLock(long time, TimeUnit unit)
+                throws InterruptedException {
+
+            final Entry entry = retain(this.key);
+            if (tryFast(entry)) {
+                acquired.incrementAndGet();
+                return true;
+            }
+            contended.incrementAndGet();
+            final long start = System.nanoTime();
+            boolean locked = false;
+            try {
+                locked = entry.lock.tryLock(unit.toNanos(time),
+                        java.util.concurrent.TimeUnit.NANOSECONDS);
+            } finally {
+                if (!locked) {
+                    release(this.key, entry);
+                }
+            }
+            if (!locked) {
+                return false;
+            }
+            waits.recordSince(start);
+            acquired.incrementAndGet();
+            return true;
+        }
+
+        public void unlock() {
+            // held, so it cannot have been dropped
+            final Entry entry = locks.get(this.key);
+            if (entry == null || !entry.lock.isHeldByCurrentThread()) {
+                throw new IllegalMonitorStateException(
+                        "lock '" + this.key + "' is not held by this thread");
+            }
+            entry.lock.unlock();
+            release(this.key, entry);
+        }
+
+        public Condition newCondition() {
+            throw new UnsupportedOperationException(
+                    "conditions are not supported");
+        }
+    }
 }
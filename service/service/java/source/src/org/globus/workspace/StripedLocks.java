@@ -0,0 +1,71 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace;
+
+import edu.emory.mathcs.backport.java.util.concurrent.locks.Lock;
+import edu.emory.mathcs.backport.java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed table of locks that keys are hashed onto.
+ *
+ * Unlike a lock per key, nothing is allocated per key and nothing needs to
+ * be returned, so the table never grows, and looking a lock up takes no
+ * monitor.  Two keys may share a lock: callers must not hold one stripe's
+ * lock while taking another's.
+ */
+public class StripedLocks {
+
+    private final Lock[] locks;
+    private final int mask;
+
+    /**
+     * @param stripes number of locks, rounded up to a power of two
+     * @param fair fair locks (slower, in order) or not
+     */
+    public StripedLocks(int stripes, boolean fair) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive");
+        }
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            this.locks[i] = new ReentrantLock(fair);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * @param hash key hash
+     * @return the lock of the key's stripe
+     */
+    public Lock get(int hash) {
+        return this.locks[spread(hash) & this.mask];
+    }
+
+    public int size() {
+        return this.locks.length;
+    }
+
+    // String and Integer hashes differ mostly in their low bits only
+    static int spread(int h) {
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+}
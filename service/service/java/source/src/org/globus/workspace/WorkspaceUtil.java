@@ -18,6 +18,7 @@ package org.globus.workspace;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.globus.workspace.metrics.Metrics;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -42,6 +43,8 @@ public class WorkspaceUtil {
     // TODO: shutdown if container is asking for exit
     private static ExecutorService executor = Executors.newCachedThreadPool();
 
+    private static final String METRICS_GROUP = "command";
+
 
     public static boolean isInvalidState(int newstate) {
         if (newstate == WorkspaceConstants.STATE_DESTROY_SUCCEEDED ||
@@ -150,6 +153,42 @@ public class WorkspaceUtil {
             throw new WorkspaceException("Command cannot be null");
         }
 
+        final long start = System.nanoTime();
+        try {
+            return runCommandImpl(command, event, stdin,
+                                  eventLog, traceLog, trackingID);
+        } finally {
+            Metrics.histogram(METRICS_GROUP,
+                              commandType(command)).recordSince(start);
+        }
+    }
+
+    /**
+     * @param command command array
+     * @return the workspace-control action (first "--" argument) if there
+     *         is one, else the base name of the executable
+     */
+    static String commandType(String[] command) {
+        for (int i = 1; i < command.length; i++) {
+            if (command[i] != null && command[i].startsWith("--")) {
+                return command[i].substring(2);
+            }
+        }
+        if (command.length == 0 || command[0] == null) {
+            return "unknown";
+        }
+        final int slash = command[0].lastIndexOf('/');
+        return slash < 0 ? command[0] : command[0].substring(slash + 1);
+    }
+
+    private static String runCommandImpl(String[] command,
+                                         boolean event,
+                                         String stdin,
+                                         boolean eventLog,
+                                         boolean traceLog,
+                                         int trackingID)
+                                throws WorkspaceException, ReturnException {
+
         if (eventLog && event) {
             logger.info(Lager.ev(trackingID) + printCmd(command));
         } else if (traceLog && event) {
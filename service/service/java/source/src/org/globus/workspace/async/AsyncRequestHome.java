@@ -84,6 +84,25 @@ public interface AsyncRequestHome {
     public List<SpotPriceEntry> getSpotPriceHistory(Calendar startDate, Calendar endDate) 
             throws WorkspaceDatabaseException;
 
+    /**
+     * Retrieves the spot price history downsampled to a
+     * given resolution. Each entry summarizes one period:
+     * its time stamp is the period start, its spot price
+     * the last price in the period, with min and max price
+     * @param startDate the date the history should start. <b>null</b>
+     * indicates there is no start date.
+     * @param endDate the date the history should end. <b>null</b>
+     * indicates there is no end date.
+     * @param resolution period length in milliseconds, zero or
+     * less returns the raw history
+     * @return a list of spot price entries from the start date until the end date
+     * @throws WorkspaceDatabaseException in case there is an error
+     * in the database, while obtaining the history data
+     */
+    public List<SpotPriceEntry> getSpotPriceHistory(Calendar startDate, Calendar endDate,
+                                                    long resolution)
+            throws WorkspaceDatabaseException;
+
     /**
      * Retrieves the Asynchronous request associated with
      * this Virtual Machine ID
@@ -0,0 +1,194 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.async;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory secondary indexes over the asynchronous requests known to
+ * {@link AsyncRequestMap}.
+ *
+ * Spot requests are bucketed by bid so that the allocation engine only
+ * touches the requests on the relevant side of the current price instead
+ * of filtering every request on each market event.  Buckets keep the order
+ * in which requests were first indexed, which is the order the persistence
+ * layer used to return them in.
+ *
+ * Not thread safe, {@link AsyncRequestMap} serializes access.
+ */
+class AsyncRequestIndex {
+
+    // -----------------------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -----------------------------------------------------------------------------------------
+
+    private final Map<String, AsyncRequest> byID =
+            new LinkedHashMap<String, AsyncRequest>();
+
+    private final Map<Integer, String> byVM = new HashMap<Integer, String>();
+    private final Map<String, int[]> indexedVMs = new HashMap<String, int[]>();
+
+    // alive spot requests, by bid
+    private final TreeMap<Double, Map<String, AsyncRequest>> aliveSpot =
+            new TreeMap<Double, Map<String, AsyncRequest>>();
+
+    // spot requests holding at least one VM, by bid
+    private final TreeMap<Double, Map<String, AsyncRequest>> allocatedSpot =
+            new TreeMap<Double, Map<String, AsyncRequest>>();
+
+    private final Map<String, AsyncRequest> aliveBackfill =
+            new LinkedHashMap<String, AsyncRequest>();
+
+
+    // -----------------------------------------------------------------------------------------
+    // MUTATE
+    // -----------------------------------------------------------------------------------------
+
+    void put(AsyncRequest request) {
+        final String id = request.getId();
+        this.byID.put(id, request);
+
+        final int[] oldVMs = this.indexedVMs.get(id);
+        if (oldVMs != null) {
+            for (int vmid : oldVMs) {
+                this.byVM.remove(vmid);
+            }
+        }
+        final int[] newVMs = request.getAllocatedVMs();
+        for (int vmid : newVMs) {
+            this.byVM.put(vmid, id);
+        }
+        this.indexedVMs.put(id, newVMs);
+
+        if (request.isSpotRequest()) {
+            final Double bid = request.getMaxBid();
+            index(this.aliveSpot, bid, request, request.isAlive());
+            index(this.allocatedSpot, bid, request,
+                  request.getAllocatedInstances() > 0);
+        } else if (request.isAlive()) {
+            this.aliveBackfill.put(id, request);
+        } else {
+            this.aliveBackfill.remove(id);
+        }
+    }
+
+    private static void index(TreeMap<Double, Map<String, AsyncRequest>> buckets,
+                              Double bid,
+                              AsyncRequest request,
+                              boolean member) {
+
+        Map<String, AsyncRequest> bucket = buckets.get(bid);
+        if (member) {
+            if (bucket == null) {
+                bucket = new LinkedHashMap<String, AsyncRequest>();
+                buckets.put(bid, bucket);
+            }
+            // replacing an existing key keeps its position in the bucket
+            bucket.put(request.getId(), request);
+        } else if (bucket != null) {
+            bucket.remove(request.getId());
+            if (bucket.isEmpty()) {
+                buckets.remove(bid);
+            }
+        }
+    }
+
+
+    // -----------------------------------------------------------------------------------------
+    // QUERY
+    // -----------------------------------------------------------------------------------------
+
+    AsyncRequest getByID(String id) {
+        return this.byID.get(id);
+    }
+
+    AsyncRequest getByVM(int vmid) {
+        final String id = this.byVM.get(vmid);
+        if (id == null) {
+            return null;
+        }
+        return this.byID.get(id);
+    }
+
+    int size() {
+        return this.byID.size();
+    }
+
+    List<AsyncRequest> getAll() {
+        return new ArrayList<AsyncRequest>(this.byID.values());
+    }
+
+    List<AsyncRequest> getAliveSpot() {
+        return flatten(this.aliveSpot.values());
+    }
+
+    List<AsyncRequest> getAliveSpotAbove(Double price) {
+        return flatten(this.aliveSpot.tailMap(price, false).values());
+    }
+
+    List<AsyncRequest> getAliveSpotAboveOrEqual(Double price) {
+        return flatten(this.aliveSpot.tailMap(price, true).values());
+    }
+
+    List<AsyncRequest> getAliveSpotEqual(Double price) {
+        final Map<String, AsyncRequest> bucket = this.aliveSpot.get(price);
+        if (bucket == null) {
+            return new ArrayList<AsyncRequest>();
+        }
+        return new ArrayList<AsyncRequest>(bucket.values());
+    }
+
+    List<AsyncRequest> getAllocatedSpotBelow(Double price) {
+        return flatten(this.allocatedSpot.headMap(price, false).values());
+    }
+
+    List<AsyncRequest> getAliveBackfill() {
+        return new ArrayList<AsyncRequest>(this.aliveBackfill.values());
+    }
+
+    int getNeededAbove(Double price) {
+        return countNeeded(this.aliveSpot.tailMap(price, false).values());
+    }
+
+    int getNeededAliveSpot() {
+        return countNeeded(this.aliveSpot.values());
+    }
+
+    private static List<AsyncRequest> flatten(Collection<Map<String, AsyncRequest>> buckets) {
+        final List<AsyncRequest> ret = new ArrayList<AsyncRequest>();
+        for (Map<String, AsyncRequest> bucket : buckets) {
+            ret.addAll(bucket.values());
+        }
+        return ret;
+    }
+
+    private static int countNeeded(Collection<Map<String, AsyncRequest>> buckets) {
+        int count = 0;
+        for (Map<String, AsyncRequest> bucket : buckets) {
+            for (AsyncRequest request : bucket.values()) {
+                count += request.getNeededInstances();
+            }
+        }
+        return count;
+    }
+}
@@ -32,6 +32,7 @@ import org.globus.workspace.Lager;
 import org.globus.workspace.WorkspaceConstants;
 import org.globus.workspace.async.pricingmodel.PricingModel;
 import org.globus.workspace.creation.InternalCreationManager;
+import org.globus.workspace.metrics.Metrics;
 import org.globus.workspace.persistence.PersistenceAdapter;
 import org.globus.workspace.persistence.WorkspaceDatabaseException;
 import org.globus.workspace.scheduler.defaults.PreemptableSpaceManager;
@@ -280,6 +281,13 @@ public class AsyncRequestManagerImpl implements AsyncRequestManager {
         
         return persistence.getSpotPriceHistory(startDate, endDate);
     }     
+
+    public List<SpotPriceEntry> getSpotPriceHistory(Calendar startDate, Calendar endDate,
+                                                    long resolution)
+        throws WorkspaceDatabaseException {
+
+        return persistence.getSpotPriceHistory(startDate, endDate, resolution);
+    }
     
     // -------------------------------------------------------------------------
     // Implements org.globus.workspace.scheduler.defaults.PreemptableSpaceManager
@@ -436,12 +444,17 @@ public class AsyncRequestManagerImpl implements AsyncRequestManager {
      * 
      */
     protected synchronized void changePriceAndAllocateRequests(){
-        changePrice();
+        final long start = System.nanoTime();
+        try {
+            changePrice();
 
-        allocateRequests();
+            allocateRequests();
 
-        if(this.getMaxVMs() == 0){
-            changePrice();
+            if(this.getMaxVMs() == 0){
+                changePrice();
+            }
+        } finally {
+            Metrics.histogram("async.allocate").recordSince(start);
         }
     }
 
@@ -513,7 +526,7 @@ public class AsyncRequestManagerImpl implements AsyncRequestManager {
                                                List<AsyncRequest> aliveRequests,
                                                String requestType) {
         
-        Integer availableVMs = Math.max(this.getMaxVMs() - higherPriorityVMs, 0);
+        Integer availableVMs = getAvailableVMs(higherPriorityVMs);
 
         Integer allocatedVMs = 0;
         for (AsyncRequest aliveRequest : aliveRequests) {
@@ -1046,7 +1059,7 @@ public class AsyncRequestManagerImpl implements AsyncRequestManager {
     }    
     
     // -------------------------------------------------------------------------
-    // UTILS - Candidates for moving down to SQL
+    // UTILS - Served from the AsyncRequestMap indexes
     // -------------------------------------------------------------------------  
     
     private void setPrice(Double newPrice) {
@@ -1087,31 +1100,15 @@ public class AsyncRequestManagerImpl implements AsyncRequestManager {
      * @return the request that has this VM allocated
      */
     public AsyncRequest getRequestFromVM(int vmid) {
-        for (AsyncRequest request : this.asyncRequestMap.getAll()) {
-            if(request.isAllocatedVM(vmid)){
-                return request;
-            }
-        }
-        
-        return null;
+        return this.asyncRequestMap.getByVM(vmid);
     }         
     
-    /**
-     * Retrieves ACTIVE or OPEN equal or higher bid requests
-     * @return list of alive equal or higher bid requests
-     */    
-    private List<AsyncRequest> getAliveEqualOrHigherBidRequests() {
-        return AsyncRequestFilter.filterAliveRequestsAboveOrEqualPrice(this.currentPrice,
-                                                                       this.asyncRequestMap.getAll());
-    }        
-    
     /**
      * Retrieves ACTIVE or OPEN equal bid requests
      * @return list of alive equal bid requests
      */
     private List<AsyncRequest> getAliveEqualBidRequests(){
-        return AsyncRequestFilter.filterAliveRequestsEqualPrice(this.currentPrice,
-                                                                this.asyncRequestMap.getAll());
+        return this.asyncRequestMap.getAliveSpotRequestsEqualPrice(this.currentPrice);
     }  
     
     /**
@@ -1119,8 +1116,7 @@ public class AsyncRequestManagerImpl implements AsyncRequestManager {
      * @return list of alive higher bid requests
      */
     private List<AsyncRequest> getAliveHigherBidRequests() {
-        return AsyncRequestFilter.filterAliveRequestsAbovePrice(this.currentPrice,
-                                                                this.asyncRequestMap.getAll());
+        return this.asyncRequestMap.getAliveSpotRequestsAbovePrice(this.currentPrice);
     }
     
     /**
@@ -1128,7 +1124,7 @@ public class AsyncRequestManagerImpl implements AsyncRequestManager {
      * @return list of alive backfill requests
      */
     private List<AsyncRequest> getAliveBackfillRequests(){
-        return AsyncRequestFilter.filterAliveBackfillRequests(this.asyncRequestMap.getAll());
+        return this.asyncRequestMap.getAliveBackfillRequests();
     }     
     
     /**
@@ -1136,8 +1132,7 @@ public class AsyncRequestManagerImpl implements AsyncRequestManager {
      * @return list of alive requests
      */
     private List<AsyncRequest> getAliveSpotRequests() {
-        return AsyncRequestFilter.filterAliveRequestsAboveOrEqualPrice(minPrice,
-                                                                       this.asyncRequestMap.getAll());
+        return this.asyncRequestMap.getAliveSpotRequests();
     }
     
     /**
@@ -1145,8 +1140,7 @@ public class AsyncRequestManagerImpl implements AsyncRequestManager {
      * @return list of lower bid active requests
      */
     private List<AsyncRequest> getLowerBidRequests() {
-        return AsyncRequestFilter.filterAllocatedRequestsBelowPrice(this.currentPrice,
-                                                                    this.asyncRequestMap.getAll());
+        return this.asyncRequestMap.getAllocatedSpotRequestsBelowPrice(this.currentPrice);
     }    
     
     /**
@@ -1154,32 +1148,26 @@ public class AsyncRequestManagerImpl implements AsyncRequestManager {
      * @return number of needed VMs
      */
     protected Integer getGreaterBidVMCount() {
-        Collection<AsyncRequest> priorityRequests = getAliveHigherBidRequests();
-
-        Integer instanceCount = 0;
-
-        for (AsyncRequest request : priorityRequests) {
-            instanceCount += request.getNeededInstances();
-        }
-
-        return instanceCount;
+        return this.asyncRequestMap.getNeededInstancesAbovePrice(this.currentPrice);
     } 
     
     /**
-     * Retrieves the number of needed VMs by greater or equal bid requests
+     * Retrieves the number of needed VMs by greater or equal bid requests.
+     * (counts every alive spot request, whatever its bid)
      * @return number of needed VMs
      */
     protected Integer getGreaterOrEqualBidVMCount() {
-        Collection<AsyncRequest> elegibleRequests = getAliveEqualOrHigherBidRequests();
-
-        Integer instanceCount = 0;
-
-        for (AsyncRequest request : elegibleRequests) {
-            instanceCount += request.getNeededInstances();
-        }
-
-        return instanceCount;
+        return this.asyncRequestMap.getNeededInstancesAliveSpot();
     }    
+
+    /**
+     * Retrieves the number of VMs left to lower priority requests
+     * @param higherPriorityVMs number of VMs needed by higher priority requests
+     * @return number of available VMs
+     */
+    protected Integer getAvailableVMs(Integer higherPriorityVMs) {
+        return Math.max(this.getMaxVMs() - higherPriorityVMs, 0);
+    }
     
     // -------------------------------------------------------------------------
     // MODULE SET (avoids circular dependency problem)
@@ -22,6 +22,7 @@ import org.globus.workspace.persistence.PersistenceAdapter;
 import org.globus.workspace.persistence.WorkspaceDatabaseException;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 
 public class AsyncRequestMap {
@@ -40,6 +41,9 @@ public class AsyncRequestMap {
     // -----------------------------------------------------------------------------------------
 
     private PersistenceAdapter persistence;
+
+    // write-through: the persistence layer is only read at startup
+    private final AsyncRequestIndex index = new AsyncRequestIndex();
     
 
     // -----------------------------------------------------------------------------------------
@@ -76,6 +80,8 @@ public class AsyncRequestMap {
             logger.error("Problem persisting AsyncRequest: ", e);
         }
 
+        this.index.put(asyncRequest);
+
         logger.debug("saved spot request, id: '" + id + "'");
     }
 
@@ -84,22 +90,75 @@ public class AsyncRequestMap {
             return null;
         }
 
-        try {
-            final AsyncRequest asyncRequest = this.persistence.getAsyncRequest(id);
-            if (asyncRequest != null) {
-                return asyncRequest;
-            }
-        } catch(WorkspaceDatabaseException e) {
-            logger.error("Couldn't retrieve " + id + " from persistence");
+        final AsyncRequest asyncRequest = this.index.getByID(id);
+        if (asyncRequest != null) {
+            return asyncRequest;
         }
 
-
-        logger.fatal("illegal object extension, no null values allowed");
+        logger.debug("no async request with id '" + id + "'");
         return null;
     }
 
     synchronized public Collection<AsyncRequest> getAll() {
+        return this.index.getAll();
+    }
+
+    /**
+     * @param vmid VM id
+     * @return the request that has this VM allocated, null if none
+     */
+    synchronized public AsyncRequest getByVM(int vmid) {
+        return this.index.getByVM(vmid);
+    }
+
+
+    // -----------------------------------------------------------------------------------------
+    // INDEXED QUERIES
+    // -----------------------------------------------------------------------------------------
+
+    /**
+     * @return ACTIVE or OPEN spot requests (and cancelled ones still holding VMs)
+     */
+    synchronized public List<AsyncRequest> getAliveSpotRequests() {
+        return this.index.getAliveSpot();
+    }
+
+    synchronized public List<AsyncRequest> getAliveSpotRequestsAbovePrice(Double price) {
+        return this.index.getAliveSpotAbove(price);
+    }
 
+    synchronized public List<AsyncRequest> getAliveSpotRequestsAboveOrEqualPrice(Double price) {
+        return this.index.getAliveSpotAboveOrEqual(price);
+    }
+
+    synchronized public List<AsyncRequest> getAliveSpotRequestsEqualPrice(Double price) {
+        return this.index.getAliveSpotEqual(price);
+    }
+
+    synchronized public List<AsyncRequest> getAllocatedSpotRequestsBelowPrice(Double price) {
+        return this.index.getAllocatedSpotBelow(price);
+    }
+
+    synchronized public List<AsyncRequest> getAliveBackfillRequests() {
+        return this.index.getAliveBackfill();
+    }
+
+    /**
+     * @param price spot price
+     * @return instances needed by alive spot requests bidding above price
+     */
+    synchronized public int getNeededInstancesAbovePrice(Double price) {
+        return this.index.getNeededAbove(price);
+    }
+
+    /**
+     * @return instances needed by all alive spot requests, whatever their bid
+     */
+    synchronized public int getNeededInstancesAliveSpot() {
+        return this.index.getNeededAliveSpot();
+    }
+
+    private void loadAllFromDisk() throws IOException {
         Collection<AsyncRequest> all = null;
         try {
             all = this.persistence.getAllAsyncRequests();
@@ -107,16 +166,12 @@ public class AsyncRequestMap {
             logger.error("Unable to load spot instances from persistence");
         }
 
-        return all;
-    }
-
-    private void loadAllFromDisk() throws IOException {
-        Collection<AsyncRequest> all = this.getAll();
-        int count = 0;
         if (all != null) {
-            count = all.size();
+            for (AsyncRequest asyncRequest : all) {
+                this.index.put(asyncRequest);
+            }
         }
-        logger.info("Found " + count + " spot requests on disk.");
+        logger.info("Found " + this.index.size() + " spot requests on disk.");
     }
 
     void shutdownImmediately() {
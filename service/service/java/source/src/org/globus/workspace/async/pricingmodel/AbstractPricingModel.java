@@ -1,8 +1,6 @@
 package org.globus.workspace.async.pricingmodel;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedList;
 
 import org.globus.workspace.async.AsyncRequest;
 
@@ -29,34 +27,17 @@ public abstract class AbstractPricingModel implements PricingModel{
             return minPrice;
         }
         
-        LinkedList<Double> priceCandidates = getOrderedPriceCandidates(requests);
+        BidDistribution bids = new BidDistribution(requests, minPrice);
         
-        if(totalReservedResources < 1 && !priceCandidates.isEmpty()){
-            Double highestPrice = priceCandidates.getLast();
-            return highestPrice+0.1;
+        if(totalReservedResources < 1 && !bids.isEmpty()){
+            return bids.getHighestBid()+0.1;
         }
         
-        return getNextPriceImpl(totalReservedResources, requests, currentPrice);
+        return getNextPriceImpl(totalReservedResources, bids, currentPrice);
     }
     
     
-    protected abstract Double getNextPriceImpl(Integer totalReservedResources,
-            Collection<AsyncRequest> requests, Double currentPrice);
+    protected abstract Double getNextPriceImpl(int totalReservedResources,
+            BidDistribution bids, Double currentPrice);
 
-
-    protected LinkedList<Double> getOrderedPriceCandidates(Collection<AsyncRequest> requests) {
-        
-        LinkedList<Double> priceCandidates = new LinkedList<Double>();
-        
-        for (AsyncRequest siRequest : requests) {
-            Double requestBid = siRequest.getMaxBid();
-            if(requestBid >= minPrice){
-                priceCandidates.add(requestBid);
-            }
-        }
-        
-        Collections.sort(priceCandidates);
-        
-        return priceCandidates;
-    }
 }
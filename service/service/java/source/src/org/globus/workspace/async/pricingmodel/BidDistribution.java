@@ -0,0 +1,113 @@
+package org.globus.workspace.async.pricingmodel;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.globus.workspace.async.AsyncRequest;
+
+/**
+ * Demand of a set of spot requests laid out by bid.
+ *
+ * Bids are sorted once and the instances needed at each distinct bid
+ * are aggregated into primitive arrays, together with the instances
+ * needed by all strictly higher bids. This lets a pricing model
+ * evaluate every price candidate in one sweep instead of filtering
+ * the whole request collection once per candidate.
+ *
+ * Bids below the minimum price are never price candidates and never
+ * outbid a candidate, so they are left out.
+ */
+public class BidDistribution {
+
+    // distinct bids, ascending
+    private final double[] bids;
+
+    // instances needed by all requests at bids[i]
+    private final int[] needed;
+
+    // instances needed by the single largest request at bids[i]
+    private final int[] largestNeeded;
+
+    // instances needed by all requests bidding more than bids[i]
+    private final int[] neededAbove;
+
+    public BidDistribution(Collection<AsyncRequest> requests, double minPrice) {
+
+        final double[] requestBids = new double[requests.size()];
+        final int[] requestNeeded = new int[requests.size()];
+
+        int count = 0;
+        for (AsyncRequest request : requests) {
+            final double bid = request.getMaxBid();
+            if(bid >= minPrice){
+                requestBids[count] = bid;
+                requestNeeded[count] = request.getNeededInstances();
+                count++;
+            }
+        }
+
+        final double[] sorted = new double[count];
+        System.arraycopy(requestBids, 0, sorted, 0, count);
+        Arrays.sort(sorted);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if(distinct == 0 || sorted[i] != sorted[distinct-1]){
+                sorted[distinct++] = sorted[i];
+            }
+        }
+
+        this.bids = new double[distinct];
+        System.arraycopy(sorted, 0, this.bids, 0, distinct);
+        this.needed = new int[distinct];
+        this.largestNeeded = new int[distinct];
+        this.neededAbove = new int[distinct];
+
+        for (int i = 0; i < count; i++) {
+            final int idx = Arrays.binarySearch(this.bids, requestBids[i]);
+            this.needed[idx] += requestNeeded[i];
+            this.largestNeeded[idx] = Math.max(this.largestNeeded[idx], requestNeeded[i]);
+        }
+
+        int above = 0;
+        for (int i = distinct-1; i >= 0; i--) {
+            this.neededAbove[i] = above;
+            above += this.needed[i];
+        }
+    }
+
+    /**
+     * @return number of distinct bids
+     */
+    public int size() {
+        return this.bids.length;
+    }
+
+    public boolean isEmpty() {
+        return this.bids.length == 0;
+    }
+
+    /**
+     * @param i index, bids are in ascending order
+     * @return the i-th lowest distinct bid
+     */
+    public double getBid(int i) {
+        return this.bids[i];
+    }
+
+    public double getHighestBid() {
+        return this.bids[this.bids.length-1];
+    }
+
+    public int getNeeded(int i) {
+        return this.needed[i];
+    }
+
+    public int getLargestNeeded(int i) {
+        return this.largestNeeded[i];
+    }
+
+    public int getNeededAbove(int i) {
+        return this.neededAbove[i];
+    }
+}
@@ -1,84 +1,42 @@
 package org.globus.workspace.async.pricingmodel;
 
-import java.util.Collection;
-import java.util.LinkedList;
-
-import org.globus.workspace.async.AsyncRequest;
-import org.globus.workspace.async.AsyncRequestFilter;
-
 public class MaximizeProfitPricingModel extends AbstractPricingModel {
 
+    /**
+     * Picks the lowest bid that yields the highest profit, where the profit
+     * of a candidate bid is the candidate times the instances needed by the
+     * higher bids plus the largest request at the candidate bid itself.
+     * Candidates whose higher bids alone fill the reserved resources are
+     * not eligible.
+     */
     @Override
-    public Double getNextPriceImpl(Integer totalReservedResources, Collection<AsyncRequest> requests, Double currentPrice) {
-                
-        LinkedList<Double> priceCandidates = getOrderedPriceCandidates(requests);
+    public Double getNextPriceImpl(int totalReservedResources, BidDistribution bids, Double currentPrice) {
+        
+        if(bids.isEmpty()){
+            return this.minPrice;
+        }
         
-        Double highestProfitPrice = PricingModelConstants.NEGATIVE_INFINITY;
-        Double highestProfit = PricingModelConstants.NEGATIVE_INFINITY;
+        int highestProfitIdx = -1;
+        double highestProfit = PricingModelConstants.NEGATIVE_INFINITY;
         
-        for (Double priceCandidate : priceCandidates) {
-            Double profit = getProfit(priceCandidate, totalReservedResources, requests);
+        for (int i = 0; i < bids.size(); i++) {
+            final int priorityDemand = bids.getNeededAbove(i);
+            if(priorityDemand >= totalReservedResources){
+                continue;
+            }
+            final double priceCandidate = bids.getBid(i);
+            final double profit = (priorityDemand + bids.getLargestNeeded(i))*priceCandidate;
             if(profit > highestProfit){
                 highestProfit = profit;
-                highestProfitPrice = priceCandidate;
+                highestProfitIdx = i;
             }
         }
         
-        if(highestProfitPrice == PricingModelConstants.NEGATIVE_INFINITY){
-            Double highestPrice = priceCandidates.getLast();
-            return highestPrice+1;
-        }
-        
-        return highestProfitPrice;
-    }
-
-
-    private static Double getProfit(Double priceCandidate, Integer availableResources, Collection<AsyncRequest> allRequests){
-        
-        Collection<AsyncRequest> priorityOffers = AsyncRequestFilter.getRequestsAbovePrice(priceCandidate, allRequests);
-        Collection<AsyncRequest> limitOffers = AsyncRequestFilter.getRequestsEqualPrice(priceCandidate, allRequests);
-        
-        Collection<AsyncRequest> eligibleOffers = union(priorityOffers, limitOffers);
-        
-        Double priorityUtilization = getUtilization(priorityOffers, availableResources);
-        
-        if(!priorityOffers.isEmpty() && priorityUtilization >= 1.0){
-            return PricingModelConstants.NEGATIVE_INFINITY;
-        }
-        
-        return getProfitFromEligibleOffers(eligibleOffers, priceCandidate);
-    }
-
-    private static Double getProfitFromEligibleOffers(Collection<AsyncRequest> eligibleOffers, Double priceCandidate) {
-        
-        Double totalProfit = 0.0;
-        
-        for (AsyncRequest siRequest : eligibleOffers) {
-            totalProfit += siRequest.getNeededInstances()*priceCandidate;
-        }
-        
-        return totalProfit;
-    }
-
-    private static Collection<AsyncRequest> union(
-            Collection<AsyncRequest> priorityOffers,
-            Collection<AsyncRequest> limitOffers) {
-        
-        LinkedList<AsyncRequest> union = new LinkedList<AsyncRequest>(priorityOffers);
-        union.addAll(limitOffers);
-        
-        return union;
-    }
-
-    private static Double getUtilization(Collection<AsyncRequest> bids, Integer offeredResources){
-        
-        Double demand = 0.0;
-        
-        for (AsyncRequest siRequest : bids) {
-            demand += siRequest.getNeededInstances();
+        if(highestProfitIdx < 0){
+            return bids.getHighestBid()+1;
         }
         
-        return demand/offeredResources;
+        return bids.getBid(highestProfitIdx);
     }
 
 }
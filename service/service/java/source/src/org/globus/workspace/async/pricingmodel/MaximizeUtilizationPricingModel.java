@@ -1,11 +1,5 @@
 package org.globus.workspace.async.pricingmodel;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedList;
-
-import org.globus.workspace.async.AsyncRequest;
-
 public class MaximizeUtilizationPricingModel extends AbstractPricingModel {
 
     private boolean setMinPrice;
@@ -18,22 +12,17 @@ public class MaximizeUtilizationPricingModel extends AbstractPricingModel {
         this.setMinPrice = setMinPrice;
     }
     
-    protected Double getNextPriceImpl(Integer totalReservedResources,
-            Collection<AsyncRequest> requests, Double currentPrice) {
+    protected Double getNextPriceImpl(int totalReservedResources,
+            BidDistribution bids, Double currentPrice) {
        
-        LinkedList<AsyncRequest> reverseOrderedRequests = new LinkedList<AsyncRequest>(requests);
-        Collections.sort(reverseOrderedRequests, Collections.reverseOrder());
-        
         Double nextPrice = this.minPrice;
-        Integer availableResources = totalReservedResources;
+        int availableResources = totalReservedResources;
         
-        for (AsyncRequest siRequest : reverseOrderedRequests) {
-            if(siRequest.getMaxBid() >= this.minPrice){
-                nextPrice = siRequest.getMaxBid();
-                availableResources -= siRequest.getNeededInstances();
-                if(availableResources <= 0){
-                    break;
-                }
+        for (int i = bids.size()-1; i >= 0; i--) {
+            nextPrice = bids.getBid(i);
+            availableResources -= bids.getNeeded(i);
+            if(availableResources <= 0){
+                break;
             }
         }
         
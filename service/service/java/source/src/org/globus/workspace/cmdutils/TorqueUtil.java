@@ -85,6 +85,35 @@ public class TorqueUtil {
                                    String account)
             throws WorkspaceException {
 
+        return this.constructQsub(destination, memoryMB, nodenum, ppn,
+                                  walltimeSeconds, extraProperties,
+                                  stdoutPath, reRunnable, mail, account, 0);
+    }
+
+    /**
+     * Construct qsub command from given arguments, optionally as a job
+     * array.  Each array job gets the node request on its own; Torque
+     * returns one ID ("123[].server") that qdel accepts for the whole
+     * array and that each job sees as PBS_ARRAYID.
+     *
+     * @param arraySize if greater than zero, submit as "-t 0-(arraySize-1)"
+     * @see #constructQsub(String, int, int, int, long, String, String, boolean, boolean, String)
+     * @return ArrayList of cmdline tokens
+     * @throws org.globus.workspace.WorkspaceException problem with parameters or initialization
+     */
+    public ArrayList constructQsub(String destination,
+                                   int memoryMB,
+                                   int nodenum,
+                                   int ppn,
+                                   long walltimeSeconds,
+                                   String extraProperties,
+                                   String stdoutPath,
+                                   boolean reRunnable,
+                                   boolean mail,
+                                   String account,
+                                   int arraySize)
+            throws WorkspaceException {
+
         if (memoryMB < 1) {
             final String err = "invalid memory " +
                     "request: " + Integer.toString(memoryMB);
@@ -154,6 +183,11 @@ public class TorqueUtil {
             cmd.add(account);
         }
 
+        if (arraySize > 0) {
+            cmd.add("-t");
+            cmd.add("0-" + Integer.toString(arraySize - 1));
+        }
+
         return cmd;
     }
 
@@ -24,6 +24,7 @@ import org.globus.workspace.Lager;
 import org.globus.workspace.LockManager;
 import org.globus.workspace.ProgrammingError;
 import org.globus.workspace.WorkspaceConstants;
+import org.globus.workspace.WorkspaceException;
 import org.globus.workspace.WorkspaceUtil;
 import org.globus.workspace.accounting.AccountingEventAdapter;
 import org.globus.workspace.async.AsyncRequest;
@@ -52,6 +53,7 @@ import org.globus.workspace.service.binding.vm.VirtualMachine;
 import org.globus.workspace.service.binding.vm.VirtualMachineDeployment;
 import org.globus.workspace.creation.InternalCreationManager;
 import org.globus.workspace.service.binding.vm.FileCopyNeed;
+import org.globus.workspace.xen.XenUtil;
 
 import org.nimbustools.api._repr._Advertised;
 import org.nimbustools.api.repr.Advertised;
@@ -865,6 +867,7 @@ public class CreationManagerImpl implements CreationManager, InternalCreationMan
 
         final int memory = dep.getIndividualPhysicalMemory();
         final int cores = dep.getIndividualCPUCount();
+        final int disk = vm.getScratchDisk();
         final int duration = dep.getMinDuration();
 
         // list of associations should be in the DB, perpetuation of
@@ -876,8 +879,23 @@ public class CreationManagerImpl implements CreationManager, InternalCreationMan
         }
 
         final String resourcePool = vm.getResourcePool();
-        return this.scheduler.schedule(memory, cores, duration, assocs, resourcePool, numNodes,
-                                       groupid, coschedid, vm.isPreemptable(), callerID);
+        return this.scheduler.schedule(memory, cores, disk, duration, assocs, resourcePool, numNodes,
+                                       groupid, coschedid, vm.isPreemptable(), callerID,
+                                       this.imageChecksum(vm));
+    }
+
+    // only a placement preference, a failed lookup costs nothing else
+    private String imageChecksum(VirtualMachine vm) {
+        if (!vm.isPropagateRequired()) {
+            return null;
+        }
+        try {
+            return XenUtil.getCacheChecksum(vm);
+        } catch (WorkspaceException e) {
+            logger.warn("Could not find the image checksum, placing " +
+                        "without image affinity: " + e.getMessage());
+            return null;
+        }
     }
 
 
@@ -893,9 +911,10 @@ public class CreationManagerImpl implements CreationManager, InternalCreationMan
 
             final int memory = dep.getIndividualPhysicalMemory();
             final int cores = dep.getIndividualCPUCount();
+            final int disk = vm.getScratchDisk();
             final int duration = dep.getMinDuration();
             this.scheduler.removeScheduling(reservation, memory, cores,
-                    duration, vm.isPreemptable());
+                    disk, duration, vm.isPreemptable());
 
         } catch (Throwable t) {
             logger.error("Problem with removing " +
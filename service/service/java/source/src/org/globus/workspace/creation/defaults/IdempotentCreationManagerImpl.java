@@ -16,25 +16,46 @@
 package org.globus.workspace.creation.defaults;
 
 import edu.emory.mathcs.backport.java.util.concurrent.locks.Lock;
-import org.globus.workspace.DefaultLockManager;
-import org.globus.workspace.LockManager;
+import org.globus.workspace.StripedLocks;
 import org.globus.workspace.creation.IdempotentCreationManager;
 import org.globus.workspace.creation.IdempotentInstance;
 import org.globus.workspace.creation.IdempotentReservation;
 import org.globus.workspace.persistence.PersistenceAdapter;
-import org.globus.workspace.persistence.WorkspaceDatabaseException;
 import org.globus.workspace.service.InstanceResource;
 import org.nimbustools.api.services.rm.ManageException;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Locks come from a fixed table of lock stripes: clients retrying
+ * RunInstances with tokens do not allocate a lock per token or meet on one
+ * monitor to find theirs.
+ *
+ * Reservations, and the absence of one, are cached for cacheTTLSeconds in
+ * front of the idempotency table.  Every write to the table goes through
+ * here under the token's lock, so a cached answer is the table's answer.
+ * Expired entries are dropped in bulk, by whichever call first notices that
+ * a sweep is due.
+ */
 public class IdempotentCreationManagerImpl implements IdempotentCreationManager {
 
-    private LockManager lockManager;
-    private PersistenceAdapter persistence;
+    public static final int LOCK_STRIPES = 256;
+
+    private final StripedLocks locks;
+    private final PersistenceAdapter persistence;
+
+    private final ConcurrentMap<Key,Cached> cache =
+            new ConcurrentHashMap<Key,Cached>();
+    private final AtomicLong nextSweep = new AtomicLong();
+
+    // set via config mechanism (spring), optional:
+    private long cacheTTLMillis = 10 * 60 * 1000;
+    private int cacheMaxEntries = 10000;
 
     public IdempotentCreationManagerImpl(PersistenceAdapter persistenceAdapter) {
 
@@ -43,7 +64,15 @@ public class IdempotentCreationManagerImpl implements IdempotentCreationManager
         }
         this.persistence = persistenceAdapter;
 
-        this.lockManager = new DefaultLockManager();
+        this.locks = new StripedLocks(LOCK_STRIPES, false);
+    }
+
+    public void setCacheTTLSeconds(long seconds) {
+        this.cacheTTLMillis = seconds * 1000;
+    }
+
+    public void setCacheMaxEntries(int max) {
+        this.cacheMaxEntries = max;
     }
 
     public Lock getLock(String creatorID, String clientToken) {
@@ -54,12 +83,11 @@ public class IdempotentCreationManagerImpl implements IdempotentCreationManager
             throw new IllegalArgumentException("clientToken may not be null");
         }
 
-        final String key = creatorID + "|" + clientToken;
-        return this.lockManager.getLock(key);
+        return this.locks.get(31 * creatorID.hashCode() + clientToken.hashCode());
     }
 
     public void returnLock(String creatorID, String clientToken) {
-        // No implementation, we choose to leak references
+        // No implementation, stripes are never freed
     }
 
     public IdempotentReservation getReservation(String creatorID, String clientToken)
@@ -71,7 +99,19 @@ public class IdempotentCreationManagerImpl implements IdempotentCreationManager
             throw new IllegalArgumentException("clientToken may not be null");
         }
 
-        return persistence.getIdempotentReservation(creatorID, clientToken);
+        final long now = this.now();
+        this.sweepIfDue(now);
+
+        final Key key = new Key(creatorID, clientToken);
+        final Cached cached = this.cache.get(key);
+        if (cached != null && cached.expires > now) {
+            return cached.reservation;
+        }
+
+        final IdempotentReservation reservation =
+                persistence.getIdempotentReservation(creatorID, clientToken);
+        this.cache(key, reservation, now);
+        return reservation;
     }
 
     public void addReservation(String creatorID, String clientToken, List<InstanceResource> resources)
@@ -103,12 +143,95 @@ public class IdempotentCreationManagerImpl implements IdempotentCreationManager
                 new IdempotentReservationImpl(creatorID, clientToken, groupId, instances);
 
         this.persistence.addIdempotentReservation(reservation);
+        this.cache(new Key(creatorID, clientToken), reservation, this.now());
     }
 
     public void removeReservation(String creatorID, String clientToken)
             throws ManageException {
 
+        final Key key = new Key(creatorID, clientToken);
+        this.cache.remove(key);
         this.persistence.removeIdempotentReservation(creatorID, clientToken);
+        // a lookup racing the delete could have cached the old rows
+        this.cache.remove(key);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // CACHE
+    // -------------------------------------------------------------------------
 
+    // overridden by tests
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    int cacheSize() {
+        return this.cache.size();
+    }
+
+    private void cache(Key key, IdempotentReservation reservation, long now) {
+        if (this.cacheTTLMillis <= 0) {
+            return;
+        }
+        if (this.cache.size() >= this.cacheMaxEntries) {
+            this.sweep(now);
+            if (this.cache.size() >= this.cacheMaxEntries) {
+                // full of live entries, the table still answers
+                this.cache.remove(key);
+                return;
+            }
+        }
+        this.cache.put(key, new Cached(reservation, now + this.cacheTTLMillis));
+    }
+
+    private void sweepIfDue(long now) {
+        final long due = this.nextSweep.get();
+        if (now >= due && this.nextSweep.compareAndSet(due, now + this.cacheTTLMillis)) {
+            this.sweep(now);
+        }
+    }
+
+    private void sweep(long now) {
+        final Iterator<Cached> iter = this.cache.values().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().expires <= now) {
+                iter.remove();
+            }
+        }
+    }
+
+    private static final class Key {
+        private final String creatorID;
+        private final String clientToken;
+
+        Key(String creatorID, String clientToken) {
+            this.creatorID = creatorID;
+            this.clientToken = clientToken;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return this.creatorID.equals(other.creatorID)
+                    && this.clientToken.equals(other.clientToken);
+        }
+
+        public int hashCode() {
+            return 31 * this.creatorID.hashCode() + this.clientToken.hashCode();
+        }
+    }
+
+    // reservation is null for a token that has none
+    private static final class Cached {
+        final IdempotentReservation reservation;
+        final long expires;
+
+        Cached(IdempotentReservation reservation, long expires) {
+            this.reservation = reservation;
+            this.expires = expires;
+        }
     }
 }
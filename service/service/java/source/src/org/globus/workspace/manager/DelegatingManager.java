@@ -930,6 +930,14 @@ public class DelegatingManager implements Manager {
         return result.toArray(new SpotPriceEntry[0]);
     }
 
+    public SpotPriceEntry[] getSpotPriceHistory(Calendar startDate,
+            Calendar endDate, long resolution) throws ManageException {
+        List<SpotPriceEntry> result =
+                asyncHome.getSpotPriceHistory(startDate, endDate, resolution);
+
+        return result.toArray(new SpotPriceEntry[0]);
+    }
+
     // -------------------------------------------------------------------------
     // BACKFILL OPERATIONS
     // -------------------------------------------------------------------------    
@@ -0,0 +1,191 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with log-linear buckets, in microseconds.
+ *
+ * Every power of two range is split into 16 equal buckets, so a reported
+ * percentile is within 1/16 of the recorded value from one microsecond up
+ * to days.  Recording is a few atomic increments into preallocated
+ * arrays: no locks and no allocation.
+ */
+public class LatencyHistogram {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    // largest trackable value is just under 2^MAX_MAGNITUDE us (~ 12 days),
+    // larger values are counted in the last bucket
+    private static final int MAX_MAGNITUDE = 40;
+
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BITS + 1) * SUB_COUNT;
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    public LatencyHistogram(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("name may not be null");
+        }
+        this.name = name;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // RECORD
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param startNanos value of System.nanoTime() when the operation began
+     */
+    public void recordSince(long startNanos) {
+        this.record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * @param micros latency in microseconds, negative values count as zero
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        this.counts.incrementAndGet(bucket(micros));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(micros);
+        while (true) {
+            final long current = this.max.get();
+            if (micros <= current || this.max.compareAndSet(current, micros)) {
+                break;
+            }
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts.set(i, 0);
+        }
+        this.count.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // READ
+    // -------------------------------------------------------------------------
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    public long getMean() {
+        final long n = this.count.get();
+        if (n == 0) {
+            return 0;
+        }
+        return this.sum.get() / n;
+    }
+
+    /**
+     * Not an atomic snapshot, recordings that race with this call may be
+     * partly visible.
+     *
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket holding that percentile (at most the
+     *         maximum recorded value), 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be 0-100");
+        }
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += this.counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long wanted = (long) Math.ceil(total * percentile / 100.0);
+        if (wanted < 1) {
+            wanted = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if (seen >= wanted) {
+                return Math.min(upperBound(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+
+    // -------------------------------------------------------------------------
+    // IMPL
+    // -------------------------------------------------------------------------
+
+    static int bucket(long micros) {
+        if (micros < SUB_COUNT) {
+            return (int) micros;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if (magnitude >= MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        final int shift = magnitude - SUB_BITS;
+        final int sub = (int) (micros >>> shift) & (SUB_COUNT - 1);
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_COUNT - 1;
+        final long lower = (long) (SUB_COUNT + bucket % SUB_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size ring buffer of VM lifecycle events (state and target state
+ * changes), kept so the recent history of a VM can be looked at without
+ * turning on trace logging.
+ *
+ * Recording claims a slot with one atomic increment and writes three
+ * primitive fields, nothing is allocated and nothing is locked.  The
+ * oldest events are overwritten.  A reader skips slots that were being
+ * overwritten while it looked at them.
+ */
+public class LifecycleTrace {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    public static final int KIND_STATE = 0;
+    public static final int KIND_TARGET_STATE = 1;
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    // slot i holds event number seqs[i] - 1 once written, 0 while empty
+    // or being written; the volatile writes and reads of seqs publish the
+    // plain fields
+    private final AtomicLongArray seqs;
+    private final long[] times;
+    private final int[] ids;
+    private final int[] values;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param capacity number of events kept, rounded up to a power of two
+     */
+    public LifecycleTrace(int capacity) {
+        if (capacity < 1 || capacity > 1 << 24) {
+            throw new IllegalArgumentException(
+                    "capacity must be between 1 and " + (1 << 24));
+        }
+        int n = 1;
+        while (n < capacity) {
+            n <<= 1;
+        }
+        this.mask = n - 1;
+        this.seqs = new AtomicLongArray(n);
+        this.times = new long[n];
+        this.ids = new int[n];
+        this.values = new int[n];
+    }
+
+
+    // -------------------------------------------------------------------------
+    // RECORD
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param id VM ID
+     * @param kind KIND_STATE or KIND_TARGET_STATE
+     * @param state STATE_* in WorkspaceConstants
+     */
+    public void record(int id, int kind, int state) {
+        final long seq = this.next.getAndIncrement();
+        final int slot = (int) (seq & this.mask);
+        this.seqs.set(slot, 0);
+        this.times[slot] = System.currentTimeMillis();
+        this.ids[slot] = id;
+        this.values[slot] = (state << 1) | (kind & 1);
+        this.seqs.set(slot, seq + 1);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // READ
+    // -------------------------------------------------------------------------
+
+    public int getCapacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * @param id VM ID, or -1 for every VM
+     * @return events still in the buffer, oldest first
+     */
+    public List<Event> events(int id) {
+        final List<Event> ret = new ArrayList<Event>();
+        final long end = this.next.get();
+        final long start = Math.max(0, end - this.mask - 1);
+        for (long seq = start; seq < end; seq++) {
+            final int slot = (int) (seq & this.mask);
+            if (this.seqs.get(slot) != seq + 1) {
+                continue;
+            }
+            final long time = this.times[slot];
+            final int slotID = this.ids[slot];
+            final int value = this.values[slot];
+            if (this.seqs.get(slot) != seq + 1) {
+                continue; // overwritten while reading
+            }
+            if (id == -1 || slotID == id) {
+                ret.add(new Event(time, slotID, value & 1, value >> 1));
+            }
+        }
+        return ret;
+    }
+
+    public static class Event {
+
+        private final long time;
+        private final int id;
+        private final int kind;
+        private final int state;
+
+        public Event(long time, int id, int kind, int state) {
+            this.time = time;
+            this.id = id;
+            this.kind = kind;
+            this.state = state;
+        }
+
+        public long getTime() {
+            return this.time;
+        }
+
+        public int getId() {
+            return this.id;
+        }
+
+        public int getKind() {
+            return this.kind;
+        }
+
+        public int getState() {
+            return this.state;
+        }
+    }
+}
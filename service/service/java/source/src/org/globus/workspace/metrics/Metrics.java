@@ -0,0 +1,282 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM wide registry of service metrics: latency histograms, counters,
+ * gauges and the VM lifecycle trace.
+ *
+ * Like RequestDispatch this is classloader wide rather than an IoC module
+ * because some of the code being measured (WorkspaceUtil.runCommand) is
+ * static.  MetricsExporter publishes it over JMX, the admin tools read it
+ * over RMI.
+ *
+ * Histograms are named "group.key".  Looking one up with a constant group
+ * and a key that is already a String (a statement, a state name, a host)
+ * does not allocate once the histogram exists, so hot paths can look up
+ * by key on every call.  Each group holds at most MAX_KEYS_PER_GROUP keys,
+ * the rest are counted under "other".
+ */
+public final class Metrics {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final Log logger =
+            LogFactory.getLog(Metrics.class.getName());
+
+    public static final int DEFAULT_TRACE_CAPACITY = 65536;
+
+    public static final int MAX_KEYS_PER_GROUP = 1000;
+
+    public static final String OTHER_KEY = "other";
+
+    private static final
+        ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> groups =
+            new ConcurrentHashMap<String, ConcurrentMap<String, LatencyHistogram>>();
+
+    private static final ConcurrentMap<String, AtomicLong> counters =
+            new ConcurrentHashMap<String, AtomicLong>();
+
+    private static final ConcurrentMap<String, Gauge> gauges =
+            new ConcurrentHashMap<String, Gauge>();
+
+    private static volatile LifecycleTrace trace =
+            new LifecycleTrace(DEFAULT_TRACE_CAPACITY);
+
+    private static volatile boolean enabled = true;
+
+
+    private Metrics() {
+    }
+
+
+    // -------------------------------------------------------------------------
+    // CONFIG
+    // -------------------------------------------------------------------------
+
+    /**
+     * @return false if instrumentation that costs more than a histogram
+     *         update (statement wrapping, the lifecycle trace) is off
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Replaces the lifecycle trace, dropping what it held.
+     * @param capacity number of events kept
+     */
+    public static void setTraceCapacity(int capacity) {
+        trace = new LifecycleTrace(capacity);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // RECORD
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param group histogram group, e.g. "scheduler.reserve"
+     * @param key key within the group, e.g. a statement name, may be empty
+     * @return histogram, created on first use
+     */
+    public static LatencyHistogram histogram(String group, String key) {
+
+        ConcurrentMap<String, LatencyHistogram> byKey = groups.get(group);
+        if (byKey == null) {
+            byKey = new ConcurrentHashMap<String, LatencyHistogram>();
+            final ConcurrentMap<String, LatencyHistogram> existing =
+                    groups.putIfAbsent(group, byKey);
+            if (existing != null) {
+                byKey = existing;
+            }
+        }
+
+        final LatencyHistogram histogram = byKey.get(key);
+        if (histogram != null) {
+            return histogram;
+        }
+
+        String useKey = key;
+        if (byKey.size() >= MAX_KEYS_PER_GROUP) {
+            useKey = OTHER_KEY;
+            final LatencyHistogram other = byKey.get(useKey);
+            if (other != null) {
+                return other;
+            }
+        }
+
+        final String name =
+                useKey.length() == 0 ? group : group + "." + useKey;
+        final LatencyHistogram created = new LatencyHistogram(name);
+        final LatencyHistogram existing = byKey.putIfAbsent(useKey, created);
+        return existing == null ? created : existing;
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return histogram(name, "");
+    }
+
+    public static AtomicLong counter(String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            counter = new AtomicLong();
+            final AtomicLong existing = counters.putIfAbsent(name, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * @param name gauge name, a previous gauge of that name is replaced
+     * @param gauge read at report time
+     */
+    public static void gauge(String name, Gauge gauge) {
+        if (gauge == null) {
+            throw new IllegalArgumentException("gauge may not be null");
+        }
+        gauges.put(name, gauge);
+    }
+
+    public static void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * Records a state or target state change in the lifecycle trace.
+     * @param id VM ID
+     * @param kind LifecycleTrace.KIND_*
+     * @param state STATE_* in WorkspaceConstants
+     */
+    public static void trace(int id, int kind, int state) {
+        if (enabled) {
+            trace.record(id, kind, state);
+        }
+    }
+
+
+    // -------------------------------------------------------------------------
+    // READ
+    // -------------------------------------------------------------------------
+
+    /**
+     * @return every histogram, ordered by name
+     */
+    public static List<LatencyHistogram> histograms() {
+        final List<LatencyHistogram> ret = new ArrayList<LatencyHistogram>();
+        for (ConcurrentMap<String, LatencyHistogram> byKey : groups.values()) {
+            ret.addAll(byKey.values());
+        }
+        Collections.sort(ret, new Comparator<LatencyHistogram>() {
+            public int compare(LatencyHistogram a, LatencyHistogram b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * @return counter values, ordered by name
+     */
+    public static Map<String, Long> counters() {
+        final Map<String, Long> ret = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            ret.put(entry.getKey(), entry.getValue().get());
+        }
+        return ret;
+    }
+
+    /**
+     * @return gauge values read now, ordered by name; a failing gauge is
+     *         logged and left out
+     */
+    public static Map<String, Long> gauges() {
+        final Map<String, Long> ret = new TreeMap<String, Long>();
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            try {
+                ret.put(entry.getKey(), entry.getValue().value());
+            } catch (Throwable t) {
+                logger.error("Problem reading gauge '" + entry.getKey() +
+                             "': " + t.getMessage(), t);
+            }
+        }
+        return ret;
+    }
+
+    public static LifecycleTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Zeroes histograms and counters, gauges and the trace are untouched.
+     */
+    public static void reset() {
+        for (LatencyHistogram histogram : histograms()) {
+            histogram.reset();
+        }
+        for (AtomicLong counter : counters.values()) {
+            counter.set(0);
+        }
+    }
+
+    /**
+     * @return human readable report, one line per metric
+     */
+    public static String report() {
+        final StringBuilder buf = new StringBuilder(4096);
+        for (LatencyHistogram h : histograms()) {
+            buf.append(h.getName())
+               .append(": count=").append(h.getCount())
+               .append(" mean=").append(h.getMean())
+               .append("us p50=").append(h.getPercentile(50))
+               .append("us p90=").append(h.getPercentile(90))
+               .append("us p99=").append(h.getPercentile(99))
+               .append("us max=").append(h.getMax())
+               .append("us\n");
+        }
+        for (Map.Entry<String, Long> entry : counters().entrySet()) {
+            buf.append(entry.getKey()).append(": ")
+               .append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Long> entry : gauges().entrySet()) {
+            buf.append(entry.getKey()).append(": ")
+               .append(entry.getValue()).append('\n');
+        }
+        return buf.toString();
+    }
+}
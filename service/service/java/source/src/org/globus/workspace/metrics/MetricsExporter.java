@@ -0,0 +1,170 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.globus.workspace.persistence.DataConvert;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Registers Metrics with the platform MBean server.
+ */
+public class MetricsExporter implements MetricsExporterMBean {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final Log logger =
+            LogFactory.getLog(MetricsExporter.class.getName());
+
+    public static final String DEFAULT_OBJECT_NAME =
+            "org.nimbustools.workspace:type=Metrics";
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final DataConvert dataConvert;
+    private String objectName = DEFAULT_OBJECT_NAME;
+    private ObjectName registered;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    public MetricsExporter(DataConvert dataConvert) {
+        if (dataConvert == null) {
+            throw new IllegalArgumentException("dataConvert may not be null");
+        }
+        this.dataConvert = dataConvert;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // SET
+    // -------------------------------------------------------------------------
+
+    public void setObjectName(String objectName) {
+        this.objectName = objectName;
+    }
+
+    public void setTraceCapacity(int capacity) {
+        Metrics.setTraceCapacity(capacity);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // LIFECYCLE
+    // -------------------------------------------------------------------------
+
+    /**
+     * Failure to register is logged, metrics are still collected and
+     * available over the admin tools.
+     */
+    public synchronized void register() {
+        if (this.objectName == null || this.objectName.trim().length() == 0) {
+            logger.info("No metrics MBean name, not registering with JMX");
+            return; // *** EARLY RETURN ***
+        }
+        try {
+            final ObjectName name = new ObjectName(this.objectName);
+            final MBeanServer server =
+                    ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            this.registered = name;
+            logger.debug("Registered metrics MBean '" + name + "'");
+        } catch (Exception e) {
+            logger.error("Could not register metrics MBean '" +
+                         this.objectName + "': " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized void unregister() {
+        if (this.registered == null) {
+            return; // *** EARLY RETURN ***
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                    this.registered);
+        } catch (Exception e) {
+            logger.warn("Could not unregister metrics MBean '" +
+                        this.registered + "': " + e.getMessage());
+        }
+        this.registered = null;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // implements MetricsExporterMBean
+    // -------------------------------------------------------------------------
+
+    public String getReport() {
+        return Metrics.report();
+    }
+
+    public boolean isEnabled() {
+        return Metrics.isEnabled();
+    }
+
+    public void setEnabled(boolean enabled) {
+        Metrics.setEnabled(enabled);
+    }
+
+    public void reset() {
+        Metrics.reset();
+    }
+
+    public String trace(int id) {
+        final List<LifecycleTrace.Event> events =
+                Metrics.getTrace().events(id);
+        final StringBuilder buf = new StringBuilder(events.size() * 64);
+        for (LifecycleTrace.Event event : events) {
+            buf.append(new Date(event.getTime()))
+               .append(" vm-").append(event.getId())
+               .append(' ').append(kindName(event.getKind()))
+               .append(' ').append(this.stateName(event.getState()))
+               .append('\n');
+        }
+        return buf.toString();
+    }
+
+
+    // -------------------------------------------------------------------------
+    // SHARED
+    // -------------------------------------------------------------------------
+
+    public static String kindName(int kind) {
+        return kind == LifecycleTrace.KIND_TARGET_STATE ? "target" : "state";
+    }
+
+    public String stateName(int state) {
+        final String name = this.dataConvert.stateName(state);
+        return name == null ? Integer.toString(state) : name;
+    }
+}
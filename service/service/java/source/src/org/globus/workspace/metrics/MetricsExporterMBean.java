@@ -0,0 +1,37 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.metrics;
+
+/**
+ * JMX view of Metrics.
+ */
+public interface MetricsExporterMBean {
+
+    public String getReport();
+
+    public boolean isEnabled();
+
+    public void setEnabled(boolean enabled);
+
+    public void reset();
+
+    /**
+     * @param id VM ID, or -1 for every VM
+     * @return lifecycle trace of the VM, one event per line
+     */
+    public String trace(int id);
+}
@@ -18,6 +18,7 @@ package org.globus.workspace.persistence;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -399,6 +400,17 @@ public class DataConvert implements WorkspaceConstants {
 
     // TODO: move to sane network representation
     // need for this will go away as we migrate
+
+    /**
+     * The network string is parsed once and the result kept on the VM until
+     * its network is set again, so describes, status queries and IP lookups
+     * do not parse it each time.
+     *
+     * @param vm vm
+     * @return NICs (a new array, the NICs themselves are shared and must
+     *         not be modified), null if the VM has none
+     * @throws CannotTranslateException no network or unparseable network
+     */
     public NIC[] getNICs(VirtualMachine vm) throws CannotTranslateException {
 
         if (vm == null) {
@@ -411,7 +423,16 @@ public class DataConvert implements WorkspaceConstants {
             throw new CannotTranslateException("no network?");
         }
 
-        return getNICs(network);
+        VirtualMachine.ParsedNICs parsed = vm.getParsedNICs();
+
+        // identity: setNetwork may have raced with the last parse
+        if (parsed == null || parsed.getNetwork() != network) {
+            parsed = new VirtualMachine.ParsedNICs(network,
+                                                   getNICs(network));
+            vm.setParsedNICs(parsed);
+        }
+
+        return parsed.getNICs();
     }
 
     public NIC[] getNICs(String network) throws CannotTranslateException {
@@ -423,7 +444,7 @@ public class DataConvert implements WorkspaceConstants {
         }
 
         // Parse network string. Each NIC is separated by ";;"
-        final String[] nicsStr = network.split(XenUtil.WC_GROUP_SEPARATOR);
+        final String[] nicsStr = split(network, XenUtil.WC_GROUP_SEPARATOR);
 
         // this cast is safe
         final int numNics = nicsStr.length;
@@ -437,7 +458,7 @@ public class DataConvert implements WorkspaceConstants {
             nics[i] = nic;
             
             final String[] nicPropertiesStr =
-                    nicsStr[i].split(XenUtil.WC_FIELD_SEPARATOR);
+                    split(nicsStr[i], XenUtil.WC_FIELD_SEPARATOR);
             final int numProps = nicPropertiesStr.length;
 
             // NIC string format:
@@ -482,6 +503,30 @@ public class DataConvert implements WorkspaceConstants {
         return nics;
     }
     
+    // Same result as String.split with a literal separator (trailing empty
+    // strings removed) without compiling a regular expression per call.
+    static String[] split(String str, String separator) {
+        final ArrayList<String> parts = new ArrayList<String>(16);
+        final int seplen = separator.length();
+        int start = 0;
+        int idx;
+        while ((idx = str.indexOf(separator, start)) >= 0) {
+            parts.add(str.substring(start, idx));
+            start = idx + seplen;
+        }
+        parts.add(str.substring(start));
+
+        int size = parts.size();
+        while (size > 1 && parts.get(size - 1).length() == 0) {
+            size--;
+        }
+        if (size == 1 && parts.get(0).length() == 0 && str.length() > 0) {
+            // only separators
+            size = 0;
+        }
+        return parts.subList(0, size).toArray(new String[size]);
+    }
+
     private static String nicPart(String part) {
         final String notset = "null";
         if (part == null) {
@@ -128,6 +128,18 @@ public interface PersistenceAdapter {
             throws DoesNotExistException,
                    WorkspaceDatabaseException;
 
+    /**
+     * Loads every resource in the array with one query per table (per chunk
+     * of IDs for smaller sets) instead of several queries per resource.
+     *
+     * @param resources empty resources with their IDs set
+     * @return the resources that were found, in the same order
+     * @throws WorkspaceDatabaseException problem
+     */
+    public InstanceResource[] loadAll(InstanceResource[] resources)
+
+            throws WorkspaceDatabaseException;
+
     public void loadGroup(String id, GroupResource resource)
 
             throws DoesNotExistException,
@@ -155,9 +167,23 @@ public interface PersistenceAdapter {
 
             throws WorkspaceDatabaseException;
 
-    public void updateResourcepoolEntryAvailableMemory(String hostname,
-                                                       int newAvailMemory, 
-                                                       int preemptibleMemory)
+    public void updateResourcepoolEntryAvailable(String hostname,
+                                                 int newAvailMemory,
+                                                 int preemptibleMemory,
+                                                 int newAvailCores,
+                                                 int newAvailDisk)
+
+            throws WorkspaceDatabaseException;
+
+    /**
+     * Writes the available memory, preemptible memory, cores and disk of
+     * every entry in one transaction: either all of them are stored or
+     * none is.
+     *
+     * @param entries entries whose current values to store
+     * @throws WorkspaceDatabaseException on any failure, nothing stored
+     */
+    public void updateResourcepoolEntriesAvailable(List<ResourcepoolEntry> entries)
 
             throws WorkspaceDatabaseException;
 
@@ -165,6 +191,14 @@ public interface PersistenceAdapter {
 
             throws WorkspaceDatabaseException;
 
+    public int coresUsedOnPoolnode(String poolnode)
+
+            throws WorkspaceDatabaseException;
+
+    public int diskUsedOnPoolnode(String poolnode)
+
+            throws WorkspaceDatabaseException;
+
     public List<ResourcepoolEntry> currentResourcepoolEntries() throws WorkspaceDatabaseException;
 
     public ResourcepoolEntry getResourcepoolEntry(String hostname)
@@ -207,8 +241,11 @@ public interface PersistenceAdapter {
 
     public String[] getResourcePools()  throws WorkspaceDatabaseException;
 
-    // returns true if memory request is bigger than any VMM could ever handle
-    public boolean isInfeasibleRequest(int requestedMem) throws WorkspaceDatabaseException;
+    // returns true if the request is bigger than any VMM could ever handle
+    public boolean isInfeasibleRequest(int requestedMem,
+                                       int requestedCores,
+                                       int requestedDisk)
+            throws WorkspaceDatabaseException;
     
     //Spot Instances
     
@@ -260,6 +297,21 @@ public interface PersistenceAdapter {
                                                     Calendar endDate)
                                                   
             throws WorkspaceDatabaseException;
+
+    /**
+     * @param startDate range start, null for none
+     * @param endDate range end, null for none
+     * @param resolution length in ms of the period each entry summarizes,
+     *        zero or less for the raw history
+     * @return entries stamped with their period start, spot price is the
+     *         last price of the period
+     * @throws WorkspaceDatabaseException DB error
+     */
+    public List<SpotPriceEntry> getSpotPriceHistory(Calendar startDate,
+                                                    Calendar endDate,
+                                                    long resolution)
+
+            throws WorkspaceDatabaseException;
     
     public Double getLastSpotPrice()
             throws WorkspaceDatabaseException;
@@ -269,6 +321,11 @@ public interface PersistenceAdapter {
                                         String networks,
                                         Integer memoryMax,
                                         Integer memoryAvail,
+                                        Integer coresMax,
+                                        Integer coresAvail,
+                                        Integer diskMax,
+                                        Integer diskAvail,
+                                        Integer imageCacheMax,
                                         Boolean active)
             throws WorkspaceDatabaseException;
 
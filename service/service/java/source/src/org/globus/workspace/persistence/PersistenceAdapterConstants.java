@@ -152,6 +152,35 @@ public interface PersistenceAdapterConstants {
             "SELECT sourcepath, destpath, on_image " +
             "FROM file_copy WHERE vmid=?";
 
+    // the bulk loads below select the same columns as the single loads
+    // above, in the same order, with the id appended as the last column
+
+    public static final String SQL_LOAD_ALL_RESOURCES =
+            "SELECT name, state, target_state, term_time, ops_enabled, " +
+                    "creator_dn, start_time, vmm_access_ok, " +
+                    "ensembleid, groupid, groupsize, last_in_group, " +
+                    "launch_index, error_fault, client_token, charge_ratio, " +
+                    "id FROM resources";
+
+    public static final String SQL_LOAD_ALL_VMS =
+            "SELECT name, node, prop_required, unprop_required, network, " +
+                    "kernel_parameters, vmm, vmm_version, assocs_needed, " +
+                    "md_user_data, preemptable, credential_name, id " +
+                    "FROM vms";
+
+    public static final String SQL_LOAD_ALL_VM_PARTITIONS =
+            "SELECT image, imagemount, readwrite, rootdisk, blankspace, " +
+                    "prop_required, unprop_required, alternate_unprop, " +
+                    "vmid FROM vm_partitions";
+
+    public static final String SQL_LOAD_ALL_VM_DEPLOYMENTS =
+            "SELECT requested_state, requested_shutdown, min_duration, " +
+                    "ind_physmem, ind_physcpu, vmid " +
+                    "FROM vm_deployment";
+
+    public static final String SQL_LOAD_ALL_FILE_COPY =
+            "SELECT sourcepath, destpath, on_image, vmid FROM file_copy";
+
     public static final String SQL_UPDATE_ASSOCIATION_ENTRY =
             "UPDATE association_entries SET used=? " +
             "WHERE association=? AND ipaddress=?";
@@ -176,12 +205,13 @@ public interface PersistenceAdapterConstants {
 
     public static final String SQL_INSERT_RESOURCE_POOL_ENTRY =
             "INSERT INTO resourcepool_entries (resourcepool,hostname," +
-                    "associations,maximum_memory,available_memory,active) " +
-                    "VALUES(?,?,?,?,?,?)";
+                    "associations,maximum_memory,available_memory,active," +
+                    "maximum_cores,available_cores,maximum_disk,available_disk," +
+                    "image_cache_max) VALUES(?,?,?,?,?,?,?,?,?,?,?)";
 
-    public static final String SQL_UPDATE_RESOURCE_POOL_ENTRY_MEMORY =
-            "UPDATE resourcepool_entries SET available_memory=?, preemptable_memory=? " +
-            "WHERE hostname=?";
+    public static final String SQL_UPDATE_RESOURCE_POOL_ENTRY_AVAILABLE =
+            "UPDATE resourcepool_entries SET available_memory=?, preemptable_memory=?, " +
+            "available_cores=?, available_disk=? WHERE hostname=?";
 
     // not a prepared statement, the skeleton for custom update queries
     public static final String SQL_UPDATE_RESOURCE_POOL_ENTRY_SKELETAL =
@@ -197,6 +227,14 @@ public interface PersistenceAdapterConstants {
             "SELECT vm_deployment.ind_physmem FROM vm_deployment,vms " +
                     "WHERE vms.node=? AND vm_deployment.vmid=vms.id";
 
+    public static final String SQL_JOIN_SELECT_RESOURCE_POOL_CORES =
+            "SELECT vm_deployment.ind_physcpu FROM vm_deployment,vms " +
+                    "WHERE vms.node=? AND vm_deployment.vmid=vms.id";
+
+    public static final String SQL_JOIN_SELECT_RESOURCE_POOL_DISK =
+            "SELECT vm_partitions.blankspace FROM vm_partitions,vms " +
+                    "WHERE vms.node=? AND vm_partitions.vmid=vms.id";
+
     public static final String SQL_SELECT_ALL_VMS_IN_GROUP =
             "SELECT id FROM resources WHERE groupid=?";
 
@@ -219,7 +257,9 @@ public interface PersistenceAdapterConstants {
 
     public static final String SQL_SELECT_INFEASIBLE_MEMORY =
         "SELECT COUNT(DISTINCT hostname) FROM resourcepool_entries WHERE active = 1 AND " +
-                "? <= maximum_memory";
+                "? <= maximum_memory AND " +
+                "(maximum_cores IS NULL OR maximum_cores < 1 OR ? <= maximum_cores) AND " +
+                "(maximum_disk IS NULL OR maximum_disk < 1 OR ? <= maximum_disk)";
     
     public static final String SQL_INSERT_SPOT_PRICE =
             "INSERT INTO spot_prices VALUES(?,?)";    
@@ -230,6 +270,23 @@ public interface PersistenceAdapterConstants {
     public static final String SQL_SELECT_SPOT_PRICE =
             "SELECT * FROM spot_prices";
 
+    public static final String SQL_SELECT_SPOT_PRICE_SINCE =
+            "SELECT tstamp, price FROM spot_prices WHERE tstamp >= ? ORDER BY tstamp";
+
+    public static final String SQL_INSERT_SPOT_PRICE_ROLLUP =
+            "INSERT INTO spot_price_rollups VALUES(?,?,?,?,?)";
+
+    public static final String SQL_UPDATE_SPOT_PRICE_ROLLUP =
+            "UPDATE spot_price_rollups SET min_price=?, max_price=?, last_price=? " +
+                    "WHERE resolution=? AND bucket=?";
+
+    public static final String SQL_SELECT_SPOT_PRICE_ROLLUPS =
+            "SELECT bucket, min_price, max_price, last_price FROM spot_price_rollups " +
+                    "WHERE resolution=? AND bucket >= ? AND bucket <= ? ORDER BY bucket";
+
+    public static final String SQL_SELECT_LAST_SPOT_PRICE_ROLLUP =
+            "SELECT MAX(bucket) FROM spot_price_rollups WHERE resolution=?";
+
     public static final String SQL_INSERT_BACKFILL =
             "INSERT INTO backfill VALUES(1,?,?,?,?,?,?)";
 
@@ -382,6 +439,11 @@ public interface PersistenceAdapterConstants {
                                     SQL_LOAD_VM_PARTITIONS,
                                     SQL_LOAD_VM_DEPLOYMENT,
                                     SQL_LOAD_FILE_COPY,
+                                    SQL_LOAD_ALL_RESOURCES,
+                                    SQL_LOAD_ALL_VMS,
+                                    SQL_LOAD_ALL_VM_PARTITIONS,
+                                    SQL_LOAD_ALL_VM_DEPLOYMENTS,
+                                    SQL_LOAD_ALL_FILE_COPY,
                                     SQL_UPDATE_ASSOCIATION_ENTRY,
                                     SQL_DELETE_ALL_ASSOCIATIONS,
                                     SQL_DELETE_ALL_ASSOCIATION_ENTRIES,
@@ -389,10 +451,12 @@ public interface PersistenceAdapterConstants {
                                     SQL_SELECT_ALL_RESOURCE_POOL_ENTRIES,
                                     SQL_SELECT_RESOURCE_POOL_ENTRY,
                                     SQL_INSERT_RESOURCE_POOL_ENTRY,
-                                    SQL_UPDATE_RESOURCE_POOL_ENTRY_MEMORY,
+                                    SQL_UPDATE_RESOURCE_POOL_ENTRY_AVAILABLE,
                                     SQL_DELETE_RESOURCE_POOL_ENTRY,
                                     SQL_SELECT_RESOURCE_POOL,
                                     SQL_JOIN_SELECT_RESOURCE_POOL_MEMORY,
+                                    SQL_JOIN_SELECT_RESOURCE_POOL_CORES,
+                                    SQL_JOIN_SELECT_RESOURCE_POOL_DISK,
                                     SQL_SELECT_ALL_VMS_IN_GROUP,
                                     SQL_SELECT_ALL_VMS_IN_ENSEMBLE,
                                     SQL_SELECT_ALL_VMS_BY_OWNER,
@@ -406,6 +470,11 @@ public interface PersistenceAdapterConstants {
                                     SQL_SELECT_USED_NON_PREEMPTABLE_MEMORY,
                                     SQL_INSERT_SPOT_PRICE,
                                     SQL_SELECT_LAST_SPOT_PRICE,
+                                    SQL_SELECT_SPOT_PRICE_SINCE,
+                                    SQL_INSERT_SPOT_PRICE_ROLLUP,
+                                    SQL_UPDATE_SPOT_PRICE_ROLLUP,
+                                    SQL_SELECT_SPOT_PRICE_ROLLUPS,
+                                    SQL_SELECT_LAST_SPOT_PRICE_ROLLUP,
                                     SQL_INSERT_BACKFILL,
                                     SQL_UPDATE_BACKFILL,
                                     SQL_SELECT_BACKFILL,
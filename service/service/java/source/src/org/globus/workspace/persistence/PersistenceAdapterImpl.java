@@ -27,9 +27,13 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.sql.DataSource;
 
 import org.apache.commons.logging.Log;
@@ -41,6 +45,7 @@ import org.globus.workspace.creation.IdempotentInstance;
 import org.globus.workspace.creation.IdempotentReservation;
 import org.globus.workspace.creation.defaults.IdempotentInstanceImpl;
 import org.globus.workspace.creation.defaults.IdempotentReservationImpl;
+import org.globus.workspace.metrics.Metrics;
 import org.globus.workspace.network.Association;
 import org.globus.workspace.network.AssociationEntry;
 import org.globus.workspace.persistence.impls.*;
@@ -71,6 +76,12 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
             LogFactory.getLog(PersistenceAdapterImpl.class.getName());
 
     private static final int[] EMPTY_INT_ARRAY = new int[0];
+
+    // loadAll() queries IDs in chunks of this many...
+    private static final int IN_LIST_SIZE = 100;
+
+    // ...unless there are more than this many, then it reads whole tables
+    private static final int BULK_LOAD_SCAN_THRESHOLD = 2000;
     
 
     // -------------------------------------------------------------------------
@@ -85,6 +96,10 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
     // caches, todo: ehcache
     private Hashtable associations;
 
+    // recent spot prices and open rollups, loaded on first use
+    private final Object spotPriceLock = new Object();
+    private SpotPriceHistoryStore spotPrices;
+
 
     // -------------------------------------------------------------------------
     // CONSTRUCTOR
@@ -1314,89 +1329,8 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
                 logger.debug(err);
                 throw new DoesNotExistException(err);
             } else {
-                final String name = rs.getString(1);
-                resource.setName(name);
-                final int state = rs.getInt(2);
-                final int targetState = rs.getInt(3);
-                resource.setInitialTargetState(targetState);
-                final long t = rs.getLong(4);
-                if (t == 0) {
-                    resource.setTerminationTime(null);
-                } else {
-                    final Calendar term = Calendar.getInstance();
-                    term.setTimeInMillis(t);
-                    resource.setTerminationTime(term);
-                }
-                final boolean opsEnabled = rs.getBoolean(5);
-                resource.setInitialOpsEnabled(opsEnabled);
-                
-                final String dn = rs.getString(6);
-                resource.setCreatorID(dn);
-
-                final long s = rs.getLong(7);
-                if (s == 0) {
-                    resource.setStartTime(null);
-                } else {
-                    final Calendar start = Calendar.getInstance();
-                    start.setTimeInMillis(s);
-                    resource.setStartTime(start);
-                }
-                
-                final boolean vmmAccessOK = rs.getBoolean(8);
-                resource.setInitialVMMaccessOK(vmmAccessOK);
-
-                final String ensembleid = rs.getString(9);
-                resource.setEnsembleId(ensembleid);
-
-                final String groupid = rs.getString(10);
-                resource.setGroupId(groupid);
-
-                final int groupsize = rs.getInt(11);
-                resource.setGroupSize(groupsize);
+                this.populateResource(id, rs, resource);
 
-                final boolean isLastInGroup = rs.getBoolean(12);
-                resource.setLastInGroup(isLastInGroup);
-
-                final int launchIndex = rs.getInt(13);
-                resource.setLaunchIndex(launchIndex);
-
-                final Blob errBlob = rs.getBlob(14);
-                if (errBlob != null) {
-                    // getBytes requires int, cast from long
-                    final int length = (int)errBlob.length();
-                    final Throwable err =
-                           ErrorUtil.getThrowable(errBlob.getBytes(1,length));
-                    resource.setInitialState(state, err);
-                } else {
-                    resource.setInitialState(state, null);
-                }
-
-                final String clientToken = rs.getString(15);
-                resource.setClientToken(clientToken);
-
-                final double chargeRatio = rs.getDouble(16);
-                resource.setChargeRatio(chargeRatio);
-
-                if (this.dbTrace) {
-                    logger.trace("found " + Lager.id(id) +
-                             ": name = " + name +
-                             ", state = " + state +
-                             ", targetState = " + targetState +
-                             ", termination time = " + t +
-                             ", opsEnabled = " + opsEnabled +
-                             ", creator ID = " + dn +
-                             ", start time = " + s +
-                             ", vmmAccessOK = " + vmmAccessOK +
-                             ", ensembleid = " + ensembleid +
-                             ", groupid = " + groupid +
-                             ", groupsize = " + groupsize +
-                             ", isLastInGroup = " + isLastInGroup +
-                             ", launchIndex = " + launchIndex +
-                             ", clientToken = " + clientToken +
-                             ", chargeRatio = " + chargeRatio +
-                             ", error present = " + (errBlob != null));
-                }
-                
                 rs.close();
 
                 if (resource instanceof VMPersistence) {
@@ -1502,6 +1436,332 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
         }
     }
 
+    // columns 1-16 of SQL_LOAD_RESOURCE (and SQL_LOAD_ALL_RESOURCES)
+    private void populateResource(int id, ResultSet rs, InstanceResource resource)
+            throws SQLException, IOException, ClassNotFoundException {
+
+        final String name = rs.getString(1);
+        resource.setName(name);
+        final int state = rs.getInt(2);
+        final int targetState = rs.getInt(3);
+        resource.setInitialTargetState(targetState);
+        final long t = rs.getLong(4);
+        if (t == 0) {
+            resource.setTerminationTime(null);
+        } else {
+            final Calendar term = Calendar.getInstance();
+            term.setTimeInMillis(t);
+            resource.setTerminationTime(term);
+        }
+        final boolean opsEnabled = rs.getBoolean(5);
+        resource.setInitialOpsEnabled(opsEnabled);
+        
+        final String dn = rs.getString(6);
+        resource.setCreatorID(dn);
+
+        final long s = rs.getLong(7);
+        if (s == 0) {
+            resource.setStartTime(null);
+        } else {
+            final Calendar start = Calendar.getInstance();
+            start.setTimeInMillis(s);
+            resource.setStartTime(start);
+        }
+        
+        final boolean vmmAccessOK = rs.getBoolean(8);
+        resource.setInitialVMMaccessOK(vmmAccessOK);
+
+        final String ensembleid = rs.getString(9);
+        resource.setEnsembleId(ensembleid);
+
+        final String groupid = rs.getString(10);
+        resource.setGroupId(groupid);
+
+        final int groupsize = rs.getInt(11);
+        resource.setGroupSize(groupsize);
+
+        final boolean isLastInGroup = rs.getBoolean(12);
+        resource.setLastInGroup(isLastInGroup);
+
+        final int launchIndex = rs.getInt(13);
+        resource.setLaunchIndex(launchIndex);
+
+        final Blob errBlob = rs.getBlob(14);
+        if (errBlob != null) {
+            // getBytes requires int, cast from long
+            final int length = (int)errBlob.length();
+            final Throwable err =
+                   ErrorUtil.getThrowable(errBlob.getBytes(1,length));
+            resource.setInitialState(state, err);
+        } else {
+            resource.setInitialState(state, null);
+        }
+
+        final String clientToken = rs.getString(15);
+        resource.setClientToken(clientToken);
+
+        final double chargeRatio = rs.getDouble(16);
+        resource.setChargeRatio(chargeRatio);
+
+        if (this.dbTrace) {
+            logger.trace("found " + Lager.id(id) +
+                     ": name = " + name +
+                     ", state = " + state +
+                     ", targetState = " + targetState +
+                     ", termination time = " + t +
+                     ", opsEnabled = " + opsEnabled +
+                     ", creator ID = " + dn +
+                     ", start time = " + s +
+                     ", vmmAccessOK = " + vmmAccessOK +
+                     ", ensembleid = " + ensembleid +
+                     ", groupid = " + groupid +
+                     ", groupsize = " + groupsize +
+                     ", isLastInGroup = " + isLastInGroup +
+                     ", launchIndex = " + launchIndex +
+                     ", clientToken = " + clientToken +
+                     ", chargeRatio = " + chargeRatio +
+                     ", error present = " + (errBlob != null));
+        }
+    }
+
+    public InstanceResource[] loadAll(InstanceResource[] resources)
+            throws WorkspaceDatabaseException {
+
+        if (resources == null) {
+            throw new IllegalArgumentException("resources may not be null");
+        }
+
+        if (this.dbTrace) {
+            logger.trace("loadAll(): " + resources.length + " resources");
+        }
+
+        if (resources.length == 0) {
+            return resources;
+        }
+
+        final Map<Integer, InstanceResource> wanted =
+                new HashMap<Integer, InstanceResource>(resources.length * 2);
+        for (InstanceResource resource : resources) {
+            wanted.put(resource.getID(), resource);
+        }
+
+        final BulkLoad bulk = new BulkLoad(wanted);
+
+        Connection c = null;
+        try {
+            c = getConnection();
+
+            if (resources.length > BULK_LOAD_SCAN_THRESHOLD) {
+                // cheaper to read the tables once than page through IDs
+                this.loadAllChunk(c, null, bulk);
+            } else {
+                final int[] ids = new int[resources.length];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = resources[i].getID();
+                }
+                for (int start = 0; start < ids.length; start += IN_LIST_SIZE) {
+                    this.loadAllChunk(c, inListChunk(ids, start), bulk);
+                }
+            }
+
+        } catch(SQLException e) {
+            logger.error("",e);
+            throw new WorkspaceDatabaseException(e);
+        } catch (IOException e) {
+            logger.error("",e);
+            throw new WorkspaceDatabaseException(e);
+        } catch (ClassNotFoundException e) {
+            logger.error("",e);
+            throw new WorkspaceDatabaseException(e);
+        } finally {
+            if (c != null) {
+                returnConnection(c);
+            }
+        }
+
+        final List<InstanceResource> loaded =
+                new ArrayList<InstanceResource>(bulk.found.size());
+        for (InstanceResource resource : resources) {
+            final int id = resource.getID();
+            if (!bulk.found.contains(id)) {
+                logger.debug("resource with id = " + id + " not found");
+                continue;
+            }
+            if (resource instanceof VMPersistence) {
+                final VirtualMachine vm = bulk.vms.get(id);
+                if (vm == null) {
+                    logger.error("resource with id=" + id + " not found");
+                    continue;
+                }
+                if (vm.getDeployment() == null) {
+                    logger.debug("resource with id=" + id + " has no" +
+                            " deployment information");
+                }
+                final List<VirtualMachinePartition> parts =
+                        bulk.partitions.get(id);
+                if (parts == null) {
+                    logger.warn("resource with id=" + id + " has no" +
+                            " partitions");
+                } else {
+                    vm.setPartitions(parts.toArray(
+                            new VirtualMachinePartition[parts.size()]));
+                }
+                ((VMPersistence)resource).setWorkspace(vm);
+            }
+            loaded.add(resource);
+        }
+
+        if (this.dbTrace) {
+            logger.trace("loadAll(): loaded " + loaded.size() + " of " +
+                         resources.length + " resources");
+        }
+
+        return loaded.toArray(new InstanceResource[loaded.size()]);
+    }
+
+    /**
+     * Runs the five bulk load queries, restricted to the given IDs or over
+     * whole tables if ids is null.
+     */
+    private void loadAllChunk(Connection c, int[] ids, BulkLoad bulk)
+            throws SQLException, IOException, ClassNotFoundException,
+                   WorkspaceDatabaseException {
+
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            pstmt = prepareBulkLoad(c, SQL_LOAD_ALL_RESOURCES, "id", ids);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                final int id = rs.getInt(17);
+                final InstanceResource resource = bulk.wanted.get(id);
+                if (resource != null) {
+                    this.populateResource(id, rs, resource);
+                    bulk.found.add(id);
+                }
+            }
+            rs.close();
+            pstmt.close();
+
+            pstmt = prepareBulkLoad(c, SQL_LOAD_ALL_VMS, "id", ids);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                final int id = rs.getInt(13);
+                if (bulk.found.contains(id) &&
+                        bulk.wanted.get(id) instanceof VMPersistence) {
+                    bulk.vms.put(id,
+                            VirtualMachinePersistenceUtil.newVM(id, rs));
+                }
+            }
+            rs.close();
+            pstmt.close();
+
+            pstmt = prepareBulkLoad(c, SQL_LOAD_ALL_VM_DEPLOYMENTS, "vmid", ids);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                final VirtualMachine vm = bulk.vms.get(rs.getInt(6));
+                if (vm != null) {
+                    VirtualMachinePersistenceUtil.addDeployment(vm, rs);
+                }
+            }
+            rs.close();
+            pstmt.close();
+
+            pstmt = prepareBulkLoad(c, SQL_LOAD_ALL_VM_PARTITIONS, "vmid", ids);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                final Integer id = rs.getInt(9);
+                if (bulk.vms.containsKey(id)) {
+                    List<VirtualMachinePartition> parts =
+                            bulk.partitions.get(id);
+                    if (parts == null) {
+                        parts = new ArrayList<VirtualMachinePartition>(4);
+                        bulk.partitions.put(id, parts);
+                    }
+                    parts.add(VirtualMachinePersistenceUtil.getPartition(rs));
+                }
+            }
+            rs.close();
+            pstmt.close();
+
+            pstmt = prepareBulkLoad(c, SQL_LOAD_ALL_FILE_COPY, "vmid", ids);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                final VirtualMachine vm = bulk.vms.get(rs.getInt(4));
+                if (vm != null) {
+                    vm.addFileCopyNeed(
+                            VirtualMachinePersistenceUtil.getNeed(rs));
+                }
+            }
+        } finally {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+            } catch (SQLException sql) {
+                logger.error("SQLException in finally cleanup", sql);
+            }
+        }
+    }
+
+    private static PreparedStatement prepareBulkLoad(Connection c,
+                                                     String select,
+                                                     String idColumn,
+                                                     int[] ids)
+            throws SQLException {
+
+        if (ids == null) {
+            return c.prepareStatement(select);
+        }
+
+        final StringBuilder sql =
+                new StringBuilder(select.length() + 32 + ids.length * 2);
+        sql.append(select).append(" WHERE ").append(idColumn).append(" IN (");
+        for (int i = 0; i < ids.length; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        sql.append(')');
+
+        final PreparedStatement pstmt = c.prepareStatement(sql.toString());
+        for (int i = 0; i < ids.length; i++) {
+            pstmt.setInt(i + 1, ids[i]);
+        }
+        return pstmt;
+    }
+
+    // Always IN_LIST_SIZE long (the last chunk repeats its last ID) so that
+    // every chunk has the same statement text and the database can reuse
+    // the compiled statement.
+    private static int[] inListChunk(int[] ids, int start) {
+        final int[] chunk = new int[IN_LIST_SIZE];
+        final int n = Math.min(IN_LIST_SIZE, ids.length - start);
+        System.arraycopy(ids, start, chunk, 0, n);
+        for (int i = n; i < chunk.length; i++) {
+            chunk[i] = ids[start + n - 1];
+        }
+        return chunk;
+    }
+
+    private static class BulkLoad {
+
+        final Map<Integer, InstanceResource> wanted;
+        final Set<Integer> found;
+        final Map<Integer, VirtualMachine> vms;
+        final Map<Integer, List<VirtualMachinePartition>> partitions;
+
+        BulkLoad(Map<Integer, InstanceResource> wanted) {
+            this.wanted = wanted;
+            this.found = new HashSet<Integer>(wanted.size() * 2);
+            this.vms = new HashMap<Integer, VirtualMachine>(wanted.size() * 2);
+            this.partitions =
+                    new HashMap<Integer, List<VirtualMachinePartition>>(
+                                                        wanted.size() * 2);
+        }
+    }
+
     public VirtualMachine loadVM(int id, Connection c) throws SQLException, DoesNotExistException, WorkspaceDatabaseException {
 
         if (this.dbTrace) {
@@ -1898,13 +2158,15 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
 
     }
 
-    public void updateResourcepoolEntryAvailableMemory(String hostname,
-                                                       int newAvailMemory,
-                                                       int preemptibleMemory)
+    public void updateResourcepoolEntryAvailable(String hostname,
+                                                 int newAvailMemory,
+                                                 int preemptibleMemory,
+                                                 int newAvailCores,
+                                                 int newAvailDisk)
             throws WorkspaceDatabaseException {
 
         if (this.dbTrace) {
-            logger.trace("updateResourcepoolEntryAvailableMemory()");
+            logger.trace("updateResourcepoolEntryAvailable()");
         }
 
         if (hostname == null) {
@@ -1925,11 +2187,13 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
             c = getConnection();
 
             pstmt =
-                    c.prepareStatement(SQL_UPDATE_RESOURCE_POOL_ENTRY_MEMORY);
+                    c.prepareStatement(SQL_UPDATE_RESOURCE_POOL_ENTRY_AVAILABLE);
 
             pstmt.setInt(1, newAvailMemory);
             pstmt.setInt(2, preemptibleMemory);
-            pstmt.setString(3, hostname);
+            pstmt.setInt(3, newAvailCores);
+            pstmt.setInt(4, newAvailDisk);
+            pstmt.setString(5, hostname);
 
             final int updated = pstmt.executeUpdate();
             if (updated != 1) {
@@ -1953,11 +2217,94 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
 
     }
 
+    public void updateResourcepoolEntriesAvailable(List<ResourcepoolEntry> entries)
+            throws WorkspaceDatabaseException {
+
+        if (this.dbTrace) {
+            logger.trace("updateResourcepoolEntriesAvailable()");
+        }
+
+        if (entries == null) {
+            throw new IllegalArgumentException("entries may not be null");
+        }
+
+        for (ResourcepoolEntry entry : entries) {
+            if (entry == null || entry.getHostname() == null) {
+                throw new IllegalArgumentException(
+                        "entries may not contain null or hostname-less entries");
+            }
+            if (entry.getMemCurrent() < 0 || entry.getMemPreemptable() < 0) {
+                throw new IllegalArgumentException("memory of entry '" +
+                        entry.getHostname() + "' must be non-negative");
+            }
+        }
+
+        if (entries.isEmpty()) {
+            return; // *** EARLY RETURN ***
+        }
+
+        Connection c = null;
+        PreparedStatement pstmt = null;
+        boolean committed = false;
+        try {
+            c = getConnection();
+            c.setAutoCommit(false);
+
+            pstmt =
+                    c.prepareStatement(SQL_UPDATE_RESOURCE_POOL_ENTRY_AVAILABLE);
+
+            for (ResourcepoolEntry entry : entries) {
+                pstmt.setInt(1, entry.getMemCurrent());
+                pstmt.setInt(2, entry.getMemPreemptable());
+                pstmt.setInt(3, entry.getCoresCurrent());
+                pstmt.setInt(4, entry.getDiskCurrent());
+                pstmt.setString(5, entry.getHostname());
+                pstmt.addBatch();
+            }
+
+            final int[] updated = pstmt.executeBatch();
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] != 1 && updated[i] != Statement.SUCCESS_NO_INFO) {
+                    throw new WorkspaceDatabaseException("expected row update " +
+                            "for '" + entries.get(i).getHostname() + "'");
+                }
+            }
+
+            c.commit();
+            committed = true;
+
+        } catch(SQLException e) {
+            logger.error("",e);
+            throw new WorkspaceDatabaseException(e);
+        } finally {
+            try {
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+                if (c != null) {
+                    // turning auto-commit back on would commit a partial batch
+                    if (!committed) {
+                        c.rollback();
+                    }
+                    c.setAutoCommit(true);
+                    returnConnection(c);
+                }
+            } catch (SQLException sql) {
+                logger.error("SQLException in finally cleanup", sql);
+            }
+        }
+    }
+
     public boolean updateResourcepoolEntry(String hostname,
                                         String pool,
                                         String networks,
                                         Integer memoryMax,
                                         Integer memoryAvail,
+                                        Integer coresMax,
+                                        Integer coresAvail,
+                                        Integer diskMax,
+                                        Integer diskAvail,
+                                        Integer imageCacheMax,
                                         Boolean active)
             throws WorkspaceDatabaseException {
 
@@ -1969,7 +2316,7 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
         }
 
         final StringBuilder sb = new StringBuilder();
-        final List<Object> params = new ArrayList<Object>(5);
+        final List<Object> params = new ArrayList<Object>(10);
         if (pool != null) {
             appendUpdatePair(sb, "resourcepool");
             params.add(pool);
@@ -1986,6 +2333,26 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
             appendUpdatePair(sb, "available_memory");
             params.add(memoryAvail);
         }
+        if (coresMax != null) {
+            appendUpdatePair(sb, "maximum_cores");
+            params.add(coresMax);
+        }
+        if (coresAvail != null) {
+            appendUpdatePair(sb, "available_cores");
+            params.add(coresAvail);
+        }
+        if (diskMax != null) {
+            appendUpdatePair(sb, "maximum_disk");
+            params.add(diskMax);
+        }
+        if (diskAvail != null) {
+            appendUpdatePair(sb, "available_disk");
+            params.add(diskAvail);
+        }
+        if (imageCacheMax != null) {
+            appendUpdatePair(sb, "image_cache_max");
+            params.add(imageCacheMax);
+        }
 
         if (active != null) {
             appendUpdatePair(sb, "active");
@@ -2107,6 +2474,90 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
         }
     }
 
+    // one can only use result of this safely during service initialization
+    public int coresUsedOnPoolnode(String poolnode)
+
+            throws WorkspaceDatabaseException {
+
+        if (this.dbTrace) {
+            logger.trace("coresUsedOnPoolnode(): poolnode = " + poolnode);
+        }
+        // a VM deployed without a core count still occupies one
+        return this.sumUsedOnPoolnode(SQL_JOIN_SELECT_RESOURCE_POOL_CORES,
+                                      poolnode, 1);
+    }
+
+    // one can only use result of this safely during service initialization
+    public int diskUsedOnPoolnode(String poolnode)
+
+            throws WorkspaceDatabaseException {
+
+        if (this.dbTrace) {
+            logger.trace("diskUsedOnPoolnode(): poolnode = " + poolnode);
+        }
+        return this.sumUsedOnPoolnode(SQL_JOIN_SELECT_RESOURCE_POOL_DISK,
+                                      poolnode, 0);
+    }
+
+    private int sumUsedOnPoolnode(String sql, String poolnode, int minEach)
+
+            throws WorkspaceDatabaseException {
+
+        Connection c = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            c = getConnection();
+
+            pstmt = c.prepareStatement(sql);
+            pstmt.setString(1, poolnode);
+            rs = pstmt.executeQuery();
+
+            int total = 0;
+            while (rs != null && rs.next()) {
+                total += Math.max(minEach, rs.getInt(1));
+            }
+            return total;
+
+        } catch(SQLException e) {
+            logger.error("",e);
+            throw new WorkspaceDatabaseException(e);
+        } finally {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+                if (c != null) {
+                    returnConnection(c);
+                }
+            } catch (SQLException e) {
+                logger.error("SQLException in finally cleanup", e);
+            }
+        }
+    }
+
+
+    // columns as in SELECT * FROM resourcepool_entries
+    private static ResourcepoolEntry resourcepoolEntry(ResultSet rs,
+                                                       String assocs)
+            throws SQLException {
+        final ResourcepoolEntry entry = new ResourcepoolEntry(rs.getString(1),
+                rs.getString(2),
+                rs.getInt(4),
+                rs.getInt(5),
+                rs.getInt(7),
+                assocs,
+                rs.getBoolean(6),
+                rs.getInt(8),
+                rs.getInt(9),
+                rs.getInt(10),
+                rs.getInt(11));
+        entry.setImageCacheMax(rs.getInt(12));
+        return entry;
+    }
 
     public List<ResourcepoolEntry> currentResourcepoolEntries()
             throws WorkspaceDatabaseException {
@@ -2126,14 +2577,7 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
             List<ResourcepoolEntry> list = new ArrayList<ResourcepoolEntry>();
 
             do {
-                final ResourcepoolEntry entry = new ResourcepoolEntry(rs.getString(1),
-                        rs.getString(2),
-                        rs.getInt(4),
-                        rs.getInt(5),
-                        rs.getInt(7),
-                        rs.getString(3),
-                        rs.getBoolean(6));
-                list.add(entry);
+                list.add(resourcepoolEntry(rs, rs.getString(3)));
             }   while (rs.next());
 
             return list;
@@ -2176,13 +2620,7 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
                 return null;
             }
 
-            return new ResourcepoolEntry(rs.getString(1),
-                    rs.getString(2),
-                    rs.getInt(4),
-                    rs.getInt(5),
-                    rs.getInt(7),
-                    rs.getString(3),
-                    rs.getBoolean(6));
+            return resourcepoolEntry(rs, rs.getString(3));
 
         } catch(SQLException e) {
             logger.error("",e);
@@ -2228,6 +2666,11 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
             pstmt.setInt(4, entry.getMemMax());
             pstmt.setInt(5, entry.getMemCurrent());
             pstmt.setInt(6, entry.isActive() ? 1 : 0);
+            pstmt.setInt(7, entry.getCoresMax());
+            pstmt.setInt(8, entry.getCoresCurrent());
+            pstmt.setInt(9, entry.getDiskMax());
+            pstmt.setInt(10, entry.getDiskCurrent());
+            pstmt.setInt(11, entry.getImageCacheMax());
 
             final int updated = pstmt.executeUpdate();
 
@@ -2296,7 +2739,11 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
     }
 
     private Connection getConnection() throws SQLException {
-        return this.dataSource.getConnection();
+        final Connection c = this.dataSource.getConnection();
+        if (c != null && Metrics.isEnabled()) {
+            return StatementMetrics.wrap(c);
+        }
+        return c;
     }
 
     private static void returnConnection(Connection connection) {
@@ -2489,7 +2936,9 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
         }
     }
 
-    public boolean isInfeasibleRequest(int requestedMem)
+    public boolean isInfeasibleRequest(int requestedMem,
+                                       int requestedCores,
+                                       int requestedDisk)
             throws WorkspaceDatabaseException{
 
         Connection c = null;
@@ -2500,6 +2949,8 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
             c = getConnection();
             pstmt = c.prepareStatement(SQL_SELECT_INFEASIBLE_MEMORY);
             pstmt.setInt(1, requestedMem);
+            pstmt.setInt(2, requestedCores);
+            pstmt.setInt(3, requestedDisk);
             rs = pstmt.executeQuery();
 
             if (rs == null || !rs.next()) {
@@ -2561,7 +3012,6 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
                 }
             } else do {
                 // rs was next'd above already
-                String name = rs.getString(1);
                 String hostname = rs.getString(2);
                 String assocs = rs.getString(3);
 
@@ -2575,15 +3025,7 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
                     continue;
                 }
 
-                ResourcepoolEntry entry =
-                    new ResourcepoolEntry(name,
-                            hostname,
-                            rs.getInt(4),
-                            rs.getInt(5),
-                            rs.getInt(7),
-                            assocs,
-                            rs.getBoolean(6));
-                entries.add(entry);
+                entries.add(resourcepoolEntry(rs, assocs));
 
             } while (rs.next());
 
@@ -2823,24 +3265,41 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
             logger.trace("addSpotPriceHistory(): timeStamp = " + timeStamp + ", spot price = " + newPrice);
         }
 
+        final long tstamp;
+        if (timeStamp != null) {
+            tstamp = timeStamp.getTimeInMillis();
+        } else {
+            tstamp = 0;
+        }
+
         Connection c = null;
         PreparedStatement pstmt = null;
         try {
             c = getConnection();
-            pstmt = c.prepareStatement(SQL_INSERT_SPOT_PRICE);
 
-            if (timeStamp != null) {
-                pstmt.setLong(1,
-                    new Long(timeStamp.getTimeInMillis()));
-            } else {
-                pstmt.setInt(1, 0);
-            }
+            synchronized (this.spotPriceLock) {
+                final SpotPriceHistoryStore store = this.getSpotPriceStore(c);
 
-            pstmt.setDouble(2, newPrice);
-            final int updated = pstmt.executeUpdate();
+                pstmt = c.prepareStatement(SQL_INSERT_SPOT_PRICE);
+                pstmt.setLong(1, tstamp);
+                pstmt.setDouble(2, newPrice);
+                final int updated = pstmt.executeUpdate();
 
-            if (this.dbTrace) {
-                logger.trace("addSpotPriceHistory(): updated " + updated + " rows");
+                if (this.dbTrace) {
+                    logger.trace("addSpotPriceHistory(): updated " + updated + " rows");
+                }
+
+                final List<SpotPriceHistoryStore.Rollup> closed =
+                        store.append(tstamp, newPrice);
+                try {
+                    for (SpotPriceHistoryStore.Rollup rollup : closed) {
+                        this.putSpotPriceRollup(c, rollup);
+                    }
+                } catch (SQLException e) {
+                    // next access replays from the last persisted rollups
+                    this.spotPrices = null;
+                    throw e;
+                }
             }
 
         } catch(SQLException e) {
@@ -2874,6 +3333,18 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
 
         try {
             c = getConnection();
+
+            synchronized (this.spotPriceLock) {
+                final SpotPriceHistoryStore store = this.getSpotPriceStore(c);
+                final long start =
+                        startDate == null ? Long.MIN_VALUE : startDate.getTimeInMillis();
+                if (store.covers(start)) {
+                    final long end =
+                            endDate == null ? Long.MAX_VALUE : endDate.getTimeInMillis();
+                    return this.toSpotPriceEntries(store.getRecent(start, end), false);
+                }
+            }
+
             st = c.createStatement();
             
             String statement = SQL_SELECT_SPOT_PRICE;
@@ -2945,6 +3416,310 @@ public class PersistenceAdapterImpl implements WorkspaceConstants,
         }
     }
     
+    public List<SpotPriceEntry> getSpotPriceHistory(Calendar startDate,
+                                                    Calendar endDate,
+                                                    long resolution)
+            throws WorkspaceDatabaseException {
+
+        if (resolution <= 0) {
+            return this.getSpotPriceHistory(startDate, endDate);
+        }
+
+        if (this.dbTrace) {
+            logger.trace("getSpotPriceHistory() resolution: " + resolution);
+        }
+
+        // widen the start to the beginning of its period
+        final long start = startDate == null ? Long.MIN_VALUE :
+                SpotPriceHistoryStore.bucketOf(startDate.getTimeInMillis(), resolution);
+        final long end = endDate == null ? Long.MAX_VALUE : endDate.getTimeInMillis();
+
+        Connection c = null;
+        try {
+            c = getConnection();
+
+            List<SpotPriceHistoryStore.Rollup> rollups;
+            final long stored;
+            synchronized (this.spotPriceLock) {
+                final SpotPriceHistoryStore store = this.getSpotPriceStore(c);
+                stored = store.getStoredResolution(resolution);
+
+                if (stored < 0) {
+                    // finer than any rollup, downsample the raw prices
+                    if (store.covers(start)) {
+                        rollups = store.getRecent(start, end);
+                    } else {
+                        rollups = this.loadSpotPrices(c, start, end);
+                    }
+                } else {
+                    rollups = this.loadSpotPriceRollups(c, stored, start, end);
+                    final SpotPriceHistoryStore.Rollup open = store.getOpen(stored);
+                    if (open != null && open.getBucket() >= start && open.getBucket() <= end) {
+                        if (rollups.isEmpty() ||
+                                rollups.get(rollups.size()-1).getBucket() < open.getBucket()) {
+                            rollups.add(open);
+                        }
+                    }
+                }
+            }
+
+            if (stored != resolution) {
+                rollups = SpotPriceHistoryStore.downsample(rollups, resolution);
+            }
+            return this.toSpotPriceEntries(rollups, true);
+
+        } catch(SQLException e) {
+            logger.error("",e);
+            throw new WorkspaceDatabaseException(e);
+        } finally {
+            if (c != null) {
+                returnConnection(c);
+            }
+        }
+    }
+
+    /**
+     * Must hold spotPriceLock.  The first call replays the raw history
+     * from the oldest point that is either in the recent window or not
+     * yet covered by a persisted rollup of every resolution.
+     */
+    private SpotPriceHistoryStore getSpotPriceStore(Connection c)
+            throws SQLException {
+
+        if (this.spotPrices != null) {
+            return this.spotPrices;
+        }
+
+        long mstart = 0;
+        if (this.lager.perfLog) {
+            mstart = System.currentTimeMillis();
+        }
+
+        final SpotPriceHistoryStore store = new SpotPriceHistoryStore();
+        final long[] resolutions = store.getResolutions();
+        final long[] persisted = new long[resolutions.length];
+
+        long replayFrom =
+                System.currentTimeMillis() - SpotPriceHistoryStore.DEFAULT_WINDOW_MS;
+        for (int i = 0; i < resolutions.length; i++) {
+            persisted[i] = this.getLastSpotPriceRollup(c, resolutions[i]);
+            if (persisted[i] == Long.MIN_VALUE) {
+                replayFrom = Long.MIN_VALUE;
+            } else {
+                replayFrom = Math.min(replayFrom, persisted[i] + resolutions[i]);
+            }
+        }
+        store.setCoveredSince(replayFrom);
+
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        int replayed = 0;
+        try {
+            pstmt = c.prepareStatement(SQL_SELECT_SPOT_PRICE_SINCE);
+            pstmt.setLong(1, replayFrom);
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                final List<SpotPriceHistoryStore.Rollup> closed =
+                        store.append(rs.getLong(1), rs.getDouble(2));
+                replayed++;
+
+                // the replay may start in the middle of an already
+                // persisted rollup, keep the persisted one
+                for (SpotPriceHistoryStore.Rollup rollup : closed) {
+                    for (int i = 0; i < resolutions.length; i++) {
+                        if (resolutions[i] == rollup.getResolution()
+                                && rollup.getBucket() > persisted[i]) {
+                            this.putSpotPriceRollup(c, rollup);
+                        }
+                    }
+                }
+            }
+        } finally {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+            } catch (SQLException sql) {
+                logger.error("SQLException in finally cleanup", sql);
+            }
+        }
+
+        if (this.lager.perfLog) {
+            logger.debug("spot price history: replayed " + replayed + " entries in " +
+                    (System.currentTimeMillis() - mstart) + "ms");
+        }
+
+        this.spotPrices = store;
+        return store;
+    }
+
+    private long getLastSpotPriceRollup(Connection c, long resolution)
+            throws SQLException {
+
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            pstmt = c.prepareStatement(SQL_SELECT_LAST_SPOT_PRICE_ROLLUP);
+            pstmt.setLong(1, resolution);
+            rs = pstmt.executeQuery();
+            if (rs == null || !rs.next()) {
+                return Long.MIN_VALUE;
+            }
+            final long bucket = rs.getLong(1);
+            if (rs.wasNull()) {
+                return Long.MIN_VALUE;
+            }
+            return bucket;
+        } finally {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+            } catch (SQLException sql) {
+                logger.error("SQLException in finally cleanup", sql);
+            }
+        }
+    }
+
+    private void putSpotPriceRollup(Connection c,
+                                    SpotPriceHistoryStore.Rollup rollup)
+            throws SQLException {
+
+        if (this.dbTrace) {
+            logger.trace("putSpotPriceRollup(): " + rollup);
+        }
+
+        PreparedStatement pstmt = null;
+        try {
+            pstmt = c.prepareStatement(SQL_UPDATE_SPOT_PRICE_ROLLUP);
+            pstmt.setDouble(1, rollup.getMin());
+            pstmt.setDouble(2, rollup.getMax());
+            pstmt.setDouble(3, rollup.getLast());
+            pstmt.setLong(4, rollup.getResolution());
+            pstmt.setLong(5, rollup.getBucket());
+            if (pstmt.executeUpdate() > 0) {
+                return;
+            }
+            pstmt.close();
+
+            pstmt = c.prepareStatement(SQL_INSERT_SPOT_PRICE_ROLLUP);
+            pstmt.setLong(1, rollup.getResolution());
+            pstmt.setLong(2, rollup.getBucket());
+            pstmt.setDouble(3, rollup.getMin());
+            pstmt.setDouble(4, rollup.getMax());
+            pstmt.setDouble(5, rollup.getLast());
+            pstmt.executeUpdate();
+        } finally {
+            if (pstmt != null) {
+                pstmt.close();
+            }
+        }
+    }
+
+    private List<SpotPriceHistoryStore.Rollup> loadSpotPriceRollups(Connection c,
+                                                                    long resolution,
+                                                                    long start,
+                                                                    long end)
+            throws SQLException {
+
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            pstmt = c.prepareStatement(SQL_SELECT_SPOT_PRICE_ROLLUPS);
+            pstmt.setLong(1, resolution);
+            pstmt.setLong(2, start);
+            pstmt.setLong(3, end);
+            rs = pstmt.executeQuery();
+
+            final List<SpotPriceHistoryStore.Rollup> result =
+                    new ArrayList<SpotPriceHistoryStore.Rollup>();
+            while (rs.next()) {
+                result.add(new SpotPriceHistoryStore.Rollup(resolution,
+                                                            rs.getLong(1),
+                                                            rs.getDouble(2),
+                                                            rs.getDouble(3),
+                                                            rs.getDouble(4)));
+            }
+            return result;
+        } finally {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+            } catch (SQLException sql) {
+                logger.error("SQLException in finally cleanup", sql);
+            }
+        }
+    }
+
+    // raw prices in time order, as single entry rollups
+    private List<SpotPriceHistoryStore.Rollup> loadSpotPrices(Connection c,
+                                                              long start,
+                                                              long end)
+            throws SQLException {
+
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            pstmt = c.prepareStatement(SQL_SELECT_SPOT_PRICE_SINCE);
+            pstmt.setLong(1, start);
+            rs = pstmt.executeQuery();
+
+            final List<SpotPriceHistoryStore.Rollup> result =
+                    new ArrayList<SpotPriceHistoryStore.Rollup>();
+            while (rs.next()) {
+                final long tstamp = rs.getLong(1);
+                if (tstamp > end) {
+                    break;
+                }
+                result.add(new SpotPriceHistoryStore.Rollup(0, tstamp, rs.getDouble(2)));
+            }
+            return result;
+        } finally {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+            } catch (SQLException sql) {
+                logger.error("SQLException in finally cleanup", sql);
+            }
+        }
+    }
+
+    private List<SpotPriceEntry> toSpotPriceEntries(
+                        List<SpotPriceHistoryStore.Rollup> rollups,
+                        boolean withRange) {
+
+        final List<SpotPriceEntry> result =
+                new ArrayList<SpotPriceEntry>(rollups.size());
+        for (SpotPriceHistoryStore.Rollup rollup : rollups) {
+            final _SpotPriceEntry entry = repr._newSpotPriceEntry();
+            final Calendar timeStamp = Calendar.getInstance();
+            timeStamp.setTimeInMillis(rollup.getBucket());
+            entry.setTimeStamp(timeStamp);
+            entry.setSpotPrice(rollup.getLast());
+            if (withRange) {
+                entry.setMinPrice(rollup.getMin());
+                entry.setMaxPrice(rollup.getMax());
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
     public Double getLastSpotPrice() throws WorkspaceDatabaseException {
         if (this.dbTrace) {
             logger.trace("getLastSpotPrice()");
@@ -0,0 +1,233 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.persistence;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.globus.workspace.metrics.Metrics;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times statement execution per statement, under the name of the
+ * PersistenceAdapterConstants field the SQL came from ("persistence" group,
+ * e.g. "persistence.SQL_UPDATE_STATE").
+ *
+ * Works by wrapping the pooled Connection so that the data access code
+ * does not change.  SQL built from a constant (bulk IN lists, the
+ * skeletal resource pool update) is named after the longest constant
+ * that prefixes it, anything else is counted under "other".
+ */
+class StatementMetrics {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final Log logger =
+            LogFactory.getLog(StatementMetrics.class.getName());
+
+    private static final String METRICS_GROUP = "persistence";
+
+    private static final int MAX_MEMOIZED = 1000;
+
+    // SQL text --> constant name, read only after class init
+    private static final Map<String, String> exact = loadNames();
+
+    // SQL text not among the constants --> resolved name
+    private static final Map<String, String> memoized =
+            new ConcurrentHashMap<String, String>();
+
+
+    private StatementMetrics() {
+    }
+
+
+    // -------------------------------------------------------------------------
+    // ENTRY
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param c connection from the pool, may not be null
+     * @return connection whose statements record their execution time;
+     *         closing it closes c
+     */
+    static Connection wrap(Connection c) {
+        if (c == null) {
+            throw new IllegalArgumentException("c may not be null");
+        }
+        return (Connection) Proxy.newProxyInstance(
+                StatementMetrics.class.getClassLoader(),
+                new Class[]{Connection.class},
+                new ConnectionHandler(c));
+    }
+
+    /**
+     * @param sql statement text
+     * @return PersistenceAdapterConstants field name, or "other"
+     */
+    static String nameOf(String sql) {
+        if (sql == null) {
+            return Metrics.OTHER_KEY;
+        }
+        String name = exact.get(sql);
+        if (name != null) {
+            return name;
+        }
+        name = memoized.get(sql);
+        if (name != null) {
+            return name;
+        }
+
+        String best = null;
+        int bestLength = 0;
+        for (Map.Entry<String, String> entry : exact.entrySet()) {
+            final String prefix = prefixOf(entry.getKey());
+            if (prefix.length() > bestLength && sql.startsWith(prefix)) {
+                best = entry.getValue();
+                bestLength = prefix.length();
+            }
+        }
+        name = best == null ? Metrics.OTHER_KEY : best;
+        if (memoized.size() < MAX_MEMOIZED) {
+            memoized.put(sql, name);
+        }
+        return name;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // IMPL
+    // -------------------------------------------------------------------------
+
+    // format skeletons only match up to their first placeholder
+    private static String prefixOf(String constant) {
+        final int pct = constant.indexOf('%');
+        return pct < 0 ? constant : constant.substring(0, pct);
+    }
+
+    private static Map<String, String> loadNames() {
+        final Map<String, String> names = new HashMap<String, String>();
+        final Field[] fields = PersistenceAdapterConstants.class.getFields();
+        for (int i = 0; i < fields.length; i++) {
+            final Field field = fields[i];
+            if (field.getType() != String.class
+                    || !Modifier.isStatic(field.getModifiers())
+                    || !field.getName().startsWith("SQL_")) {
+                continue;
+            }
+            try {
+                final String sql = (String) field.get(null);
+                if (sql != null && !names.containsKey(sql)) {
+                    names.put(sql, field.getName());
+                }
+            } catch (IllegalAccessException e) {
+                logger.error("Could not read " + field.getName(), e);
+            }
+        }
+        return names;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static class ConnectionHandler implements InvocationHandler {
+
+        private final Connection c;
+
+        ConnectionHandler(Connection c) {
+            this.c = c;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+
+            final Object ret = StatementMetrics.invoke(this.c, method, args);
+
+            final String name = method.getName();
+            if (ret instanceof PreparedStatement
+                    && name.equals("prepareStatement")) {
+                return Proxy.newProxyInstance(
+                        StatementMetrics.class.getClassLoader(),
+                        new Class[]{PreparedStatement.class},
+                        new StatementHandler(ret, nameOf((String) args[0])));
+            }
+            if (ret instanceof Statement && name.equals("createStatement")) {
+                return Proxy.newProxyInstance(
+                        StatementMetrics.class.getClassLoader(),
+                        new Class[]{Statement.class},
+                        new StatementHandler(ret, null));
+            }
+            return ret;
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+
+        private final Object statement;
+
+        // null for plain statements, named per executed SQL instead
+        private final String name;
+
+        StatementHandler(Object statement, String name) {
+            this.statement = statement;
+            this.name = name;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+
+            if (!method.getName().startsWith("execute")) {
+                return StatementMetrics.invoke(this.statement, method, args);
+            }
+
+            String useName = this.name;
+            if (useName == null) {
+                if (args != null && args.length > 0
+                        && args[0] instanceof String) {
+                    useName = nameOf((String) args[0]);
+                } else {
+                    useName = Metrics.OTHER_KEY;
+                }
+            }
+
+            final long start = System.nanoTime();
+            try {
+                return StatementMetrics.invoke(this.statement, method, args);
+            } finally {
+                Metrics.histogram(METRICS_GROUP, useName).recordSince(start);
+            }
+        }
+    }
+}
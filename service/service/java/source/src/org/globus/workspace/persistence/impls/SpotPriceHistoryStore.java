@@ -0,0 +1,341 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.persistence.impls;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory side of the spot price history.
+ *
+ * Keeps every raw price change of a recent window (primitive arrays,
+ * append-only, evicted from the front) and the open min/max/last rollup
+ * bucket of each stored resolution.  Appending a price returns the
+ * rollups it closed so the caller can persist them next to the raw row.
+ *
+ * Not thread safe, the persistence adapter serializes access.
+ */
+public class SpotPriceHistoryStore {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    public static final long DEFAULT_WINDOW_MS = 24L * 60 * 60 * 1000;
+
+    // 5 minutes, 1 hour, 1 day
+    public static final long[] DEFAULT_RESOLUTIONS_MS =
+            {5L * 60 * 1000, 60L * 60 * 1000, 24L * 60 * 60 * 1000};
+
+    private static final int INITIAL_CAPACITY = 256;
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final long windowMs;
+    private final long[] resolutions;
+
+    // recent window, valid entries are [head, tail)
+    private long[] times = new long[INITIAL_CAPACITY];
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private int head;
+    private int tail;
+
+    // every raw entry at or after this time is in the window
+    private long coveredSince;
+
+    // open bucket per resolution, null until the first append
+    private final Rollup[] open;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTORS
+    // -------------------------------------------------------------------------
+
+    public SpotPriceHistoryStore() {
+        this(DEFAULT_WINDOW_MS, DEFAULT_RESOLUTIONS_MS);
+    }
+
+    /**
+     * @param windowMs how long raw price changes are kept in memory
+     * @param resolutions rollup intervals in ms, ascending
+     */
+    public SpotPriceHistoryStore(long windowMs, long[] resolutions) {
+        if (windowMs < 1) {
+            throw new IllegalArgumentException("windowMs must be positive");
+        }
+        if (resolutions == null) {
+            throw new IllegalArgumentException("resolutions may not be null");
+        }
+        for (int i = 0; i < resolutions.length; i++) {
+            if (resolutions[i] < 1 || (i > 0 && resolutions[i] <= resolutions[i-1])) {
+                throw new IllegalArgumentException(
+                        "resolutions must be positive and ascending");
+            }
+        }
+        this.windowMs = windowMs;
+        this.resolutions = resolutions.clone();
+        this.open = new Rollup[resolutions.length];
+        // an empty store holds the (empty) history in full
+        this.coveredSince = Long.MIN_VALUE;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // WRITE
+    // -------------------------------------------------------------------------
+
+    /**
+     * Call before replaying persisted history: every raw entry at or after
+     * since is about to be appended, older ones are not.
+     * @param since start of the replayed range
+     */
+    public void setCoveredSince(long since) {
+        this.coveredSince = since;
+    }
+
+    /**
+     * @param tstamp time of the price change
+     * @param price new price
+     * @return rollups closed by this change, oldest resolution first
+     */
+    public List<Rollup> append(long tstamp, double price) {
+
+        if (this.tail == this.times.length) {
+            this.makeRoom();
+        }
+        this.times[this.tail] = tstamp;
+        this.prices[this.tail] = price;
+        this.tail++;
+
+        final long cutoff = tstamp - this.windowMs;
+        while (this.head < this.tail && this.times[this.head] < cutoff) {
+            this.head++;
+        }
+        if (cutoff > this.coveredSince) {
+            this.coveredSince = cutoff;
+        }
+
+        List<Rollup> closed = null;
+        for (int i = 0; i < this.resolutions.length; i++) {
+            final long bucket = bucketOf(tstamp, this.resolutions[i]);
+            final Rollup current = this.open[i];
+            if (current == null) {
+                this.open[i] = new Rollup(this.resolutions[i], bucket, price);
+            } else if (bucket > current.bucket) {
+                if (closed == null) {
+                    closed = new ArrayList<Rollup>(this.resolutions.length);
+                }
+                closed.add(current);
+                this.open[i] = new Rollup(this.resolutions[i], bucket, price);
+            } else {
+                // same bucket, or the clock stepped back: fold it in
+                current.add(price);
+            }
+        }
+
+        if (closed == null) {
+            return new ArrayList<Rollup>(0);
+        }
+        return closed;
+    }
+
+    private void makeRoom() {
+        final int live = this.tail - this.head;
+        if (live * 2 > this.times.length) {
+            final long[] newTimes = new long[this.times.length * 2];
+            final double[] newPrices = new double[this.prices.length * 2];
+            System.arraycopy(this.times, this.head, newTimes, 0, live);
+            System.arraycopy(this.prices, this.head, newPrices, 0, live);
+            this.times = newTimes;
+            this.prices = newPrices;
+        } else {
+            System.arraycopy(this.times, this.head, this.times, 0, live);
+            System.arraycopy(this.prices, this.head, this.prices, 0, live);
+        }
+        this.head = 0;
+        this.tail = live;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // READ
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param start range start, inclusive
+     * @return true if every raw entry from start on is held in memory
+     */
+    public boolean covers(long start) {
+        return start >= this.coveredSince;
+    }
+
+    /**
+     * @param start range start, inclusive
+     * @param end range end, inclusive
+     * @return raw entries in range as one-entry rollups (resolution 0)
+     */
+    public List<Rollup> getRecent(long start, long end) {
+        final List<Rollup> ret = new ArrayList<Rollup>();
+        for (int i = this.head; i < this.tail; i++) {
+            final long tstamp = this.times[i];
+            if (tstamp >= start && tstamp <= end) {
+                ret.add(new Rollup(0, tstamp, this.prices[i]));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param requested wanted resolution in ms
+     * @return the coarsest stored resolution that is not coarser than
+     *         requested, or -1 if all stored resolutions are coarser
+     */
+    public long getStoredResolution(long requested) {
+        long ret = -1;
+        for (long resolution : this.resolutions) {
+            if (resolution <= requested) {
+                ret = resolution;
+            }
+        }
+        return ret;
+    }
+
+    public long[] getResolutions() {
+        return this.resolutions.clone();
+    }
+
+    /**
+     * @param resolution a stored resolution
+     * @return the open (not yet persisted) bucket, may be null
+     */
+    public Rollup getOpen(long resolution) {
+        for (int i = 0; i < this.resolutions.length; i++) {
+            if (this.resolutions[i] == resolution) {
+                return this.open[i];
+            }
+        }
+        return null;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // UTILS
+    // -------------------------------------------------------------------------
+
+    public static long bucketOf(long tstamp, long resolution) {
+        final long rem = tstamp % resolution;
+        return rem < 0 ? tstamp - rem - resolution : tstamp - rem;
+    }
+
+    /**
+     * Merges time ordered rollups (or raw entries) into buckets of the
+     * given resolution.  A finer bucket that straddles two coarser ones
+     * is counted in the one its start falls in.
+     * @param rollups input, ordered by bucket
+     * @param resolution target resolution in ms
+     * @return merged rollups, ordered by bucket
+     */
+    public static List<Rollup> downsample(List<Rollup> rollups, long resolution) {
+        final Map<Long, Rollup> merged = new LinkedHashMap<Long, Rollup>();
+        for (Rollup rollup : rollups) {
+            final Long bucket = bucketOf(rollup.bucket, resolution);
+            final Rollup target = merged.get(bucket);
+            if (target == null) {
+                final Rollup copy = new Rollup(resolution, bucket, rollup.last);
+                copy.min = rollup.min;
+                copy.max = rollup.max;
+                merged.put(bucket, copy);
+            } else {
+                target.merge(rollup);
+            }
+        }
+        return new ArrayList<Rollup>(merged.values());
+    }
+
+
+    // -------------------------------------------------------------------------
+    // ROLLUP
+    // -------------------------------------------------------------------------
+
+    public static class Rollup {
+
+        private final long resolution;
+        private final long bucket;
+        private double min;
+        private double max;
+        private double last;
+
+        public Rollup(long resolution, long bucket, double price) {
+            this.resolution = resolution;
+            this.bucket = bucket;
+            this.min = price;
+            this.max = price;
+            this.last = price;
+        }
+
+        public Rollup(long resolution, long bucket,
+                      double min, double max, double last) {
+            this.resolution = resolution;
+            this.bucket = bucket;
+            this.min = min;
+            this.max = max;
+            this.last = last;
+        }
+
+        void add(double price) {
+            this.min = Math.min(this.min, price);
+            this.max = Math.max(this.max, price);
+            this.last = price;
+        }
+
+        void merge(Rollup later) {
+            this.min = Math.min(this.min, later.min);
+            this.max = Math.max(this.max, later.max);
+            this.last = later.last;
+        }
+
+        public long getResolution() {
+            return this.resolution;
+        }
+
+        public long getBucket() {
+            return this.bucket;
+        }
+
+        public double getMin() {
+            return this.min;
+        }
+
+        public double getMax() {
+            return this.max;
+        }
+
+        public double getLast() {
+            return this.last;
+        }
+
+        public String toString() {
+            return "Rollup [resolution=" + this.resolution + ", bucket=" + this.bucket +
+                    ", min=" + this.min + ", max=" + this.max + ", last=" + this.last + "]";
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.globus.workspace.remoting.admin;
+
+/*
+ * String translation class for service metrics for sending them through rmi.
+ * Histograms fill in every field, counters and gauges only the value.
+ */
+public class MetricTranslation {
+
+    public static final String TYPE_HISTOGRAM = "histogram";
+    public static final String TYPE_COUNTER = "counter";
+    public static final String TYPE_GAUGE = "gauge";
+
+    private String name;
+    private String type;
+    private String value;
+    private String mean;
+    private String p50;
+    private String p90;
+    private String p99;
+    private String max;
+
+    //Used by Gson
+    public MetricTranslation() {}
+
+    public MetricTranslation(String name, String type, String value, String mean,
+                             String p50, String p90, String p99, String max) {
+        this.name = name;
+        this.type = type;
+        this.value = value;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public String getName() {
+        return name;
+    }
+    public String getType() {
+        return type;
+    }
+    public String getValue() {
+        return value;
+    }
+    public String getMean() {
+        return mean;
+    }
+    public String getP50() {
+        return p50;
+    }
+    public String getP90() {
+        return p90;
+    }
+    public String getP99() {
+        return p99;
+    }
+    public String getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.globus.workspace.remoting.admin;
+
+/*
+ * String translation class for VM lifecycle trace events for sending them
+ * through rmi
+ */
+public class TraceTranslation {
+
+    private String time;
+    private String id;
+    private String kind;
+    private String state;
+
+    //Used by Gson
+    public TraceTranslation() {}
+
+    public TraceTranslation(String time, String id, String kind, String state) {
+        this.time = time;
+        this.id = id;
+        this.kind = kind;
+        this.state = state;
+    }
+
+    public String getTime() {
+        return time;
+    }
+    public String getId() {
+        return id;
+    }
+    public String getKind() {
+        return kind;
+    }
+    public String getState() {
+        return state;
+    }
+}
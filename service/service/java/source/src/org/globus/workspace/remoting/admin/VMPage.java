@@ -0,0 +1,46 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.globus.workspace.remoting.admin;
+
+/*
+ * One page of a VM query for sending through rmi.  Pass next back as the
+ * cursor to get the following page, it is -1 after the last page.
+ */
+public class VMPage {
+
+    private int total;
+    private int next;
+    private VMTranslation[] vms;
+
+    //Used by Gson
+    public VMPage() {}
+
+    public VMPage(int total, int next, VMTranslation[] vms) {
+        this.total = total;
+        this.next = next;
+        this.vms = vms;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+    public int getNext() {
+        return next;
+    }
+    public VMTranslation[] getVms() {
+        return vms;
+    }
+}
@@ -33,11 +33,28 @@ public class VmmNode {
         this.vacant = vacant;
     }
 
+    /**
+     * @param cores CPU cores VMs may use, 0 if not limited by cores
+     * @param disk MB of scratch disk VMs may use, 0 if not limited by disk
+     */
+    public VmmNode(String hostname, boolean active, String poolName,
+                          int memory, int cores, int disk,
+                          String networkAssociations, boolean vacant) {
+        this(hostname, active, poolName, memory, networkAssociations, vacant);
+        this.cores = cores;
+        this.disk = disk;
+    }
+
     private String hostname;
     private boolean active;
     private String poolName;
     private int memory;
     private int memRemain;
+    private int cores;
+    private int coresRemain;
+    private int disk;
+    private int diskRemain;
+    private int imageCache;
     private String networkAssociations;
     private boolean vacant;
 
@@ -62,6 +79,22 @@ public class VmmNode {
         return memRemain;
     }
 
+    public int getCores() {
+        return cores;
+    }
+
+    public int getCoresRemain() {
+        return coresRemain;
+    }
+
+    public int getDisk() {
+        return disk;
+    }
+
+    public int getDiskRemain() {
+        return diskRemain;
+    }
+
     public String getNetworkAssociations() {
         return networkAssociations;
     }
@@ -74,6 +107,25 @@ public class VmmNode {
         this.memRemain = memRemain;
     }
 
+    /**
+     * @return MB budget of the node's image cache, 0 for the node's own
+     */
+    public int getImageCache() {
+        return imageCache;
+    }
+
+    public void setImageCache(int imageCache) {
+        this.imageCache = imageCache;
+    }
+
+    public void setCoresRemain(int coresRemain) {
+        this.coresRemain = coresRemain;
+    }
+
+    public void setDiskRemain(int diskRemain) {
+        this.diskRemain = diskRemain;
+    }
+
     @Override
     public String toString() {
         return "VmmNode{" +
@@ -82,6 +134,11 @@ public class VmmNode {
                 ", poolName='" + poolName + '\'' +
                 ", memory=" + memory +
                 ", memory remaining=" + memRemain +
+                ", cores=" + cores +
+                ", cores remaining=" + coresRemain +
+                ", disk=" + disk +
+                ", disk remaining=" + diskRemain +
+                ", image cache=" + imageCache +
                 ", networkAssociations='" + networkAssociations + '\'' +
                 ", vacant=" + vacant +
                 '}';
@@ -30,6 +30,8 @@ public class AdminClient extends RMIConfig {
 
     private static final String PROP_RMI_BINDING_NODEMGMT_DIR = "rmi.binding.nodemgmt";
     private static final String PROP_DEFAULT_MEMORY = "node.memory.default";
+    private static final String PROP_DEFAULT_CORES = "node.cores.default";
+    private static final String PROP_DEFAULT_DISK = "node.disk.default";
     private static final String PROP_DEFAULT_NETWORKS = "node.networks.default";
     private static final String PROP_DEFAULT_POOL = "node.pool.default";
 
@@ -37,6 +39,11 @@ public class AdminClient extends RMIConfig {
     private static final String FIELD_POOL = "pool";
     private static final String FIELD_MEMORY = "memory";
     private static final String FIELD_MEM_REMAIN = "memory available";
+    private static final String FIELD_CORES = "cores";
+    private static final String FIELD_CORES_REMAIN = "cores available";
+    private static final String FIELD_DISK = "disk";
+    private static final String FIELD_DISK_REMAIN = "disk available";
+    private static final String FIELD_IMAGE_CACHE = "image cache";
     private static final String FIELD_NETWORKS = "networks";
     private static final String FIELD_ACTIVE = "active";
     private static final String FIELD_IN_USE = "in_use";
@@ -51,12 +58,14 @@ public class AdminClient extends RMIConfig {
 
     final static String[] NODE_FIELDS = new String[] {
             FIELD_HOSTNAME, FIELD_POOL, FIELD_MEMORY, FIELD_MEM_REMAIN,
-            FIELD_NETWORKS, FIELD_IN_USE, FIELD_ACTIVE };
+            FIELD_CORES, FIELD_CORES_REMAIN, FIELD_DISK, FIELD_DISK_REMAIN,
+            FIELD_IMAGE_CACHE, FIELD_NETWORKS, FIELD_IN_USE, FIELD_ACTIVE };
 
 
     final static String[] NODE_REPORT_FIELDS = new String[] {
-            FIELD_HOSTNAME, FIELD_POOL, FIELD_MEMORY, FIELD_NETWORKS,
-            FIELD_IN_USE, FIELD_ACTIVE, FIELD_RESULT,
+            FIELD_HOSTNAME, FIELD_POOL, FIELD_MEMORY, FIELD_CORES, FIELD_DISK,
+            FIELD_IMAGE_CACHE, FIELD_NETWORKS, FIELD_IN_USE, FIELD_ACTIVE,
+            FIELD_RESULT,
     };
 
     final static String[] NODE_REPORT_FIELDS_SHORT = new String[] {
@@ -75,6 +84,12 @@ public class AdminClient extends RMIConfig {
     // node options for adding/updating
     private int nodeMemory;
     private boolean nodeMemoryConfigured;
+    private int nodeCores;
+    private boolean nodeCoresConfigured;
+    private int nodeDisk;
+    private boolean nodeDiskConfigured;
+    private int nodeImageCache;
+    private boolean nodeImageCacheConfigured;
     private String nodeNetworks;
     private String nodePool;
     private boolean nodeActive = true;
@@ -185,8 +200,11 @@ public class AdminClient extends RMIConfig {
 
         final List<VmmNode> nodes = new ArrayList<VmmNode>(this.hosts.size());
         for (String hostname : this.hosts) {
-            nodes.add(new VmmNode(hostname, this.nodeActive, this.nodePool,
-                    this.nodeMemory, this.nodeNetworks, true));
+            final VmmNode node = new VmmNode(hostname, this.nodeActive,
+                    this.nodePool, this.nodeMemory, this.nodeCores,
+                    this.nodeDisk, this.nodeNetworks, true);
+            node.setImageCache(this.nodeImageCache);
+            nodes.add(node);
         }
         final String nodesJson = gson.toJson(nodes);
         NodeReport[] reports = null;
@@ -243,14 +261,36 @@ public class AdminClient extends RMIConfig {
         final Boolean active = this.nodeActiveConfigured ? this.nodeActive : null;
         final String resourcepool = this.nodePool;
         final Integer memory = this.nodeMemoryConfigured ? this.nodeMemory : null;
+        final Integer cores = this.nodeCoresConfigured ? this.nodeCores : null;
+        final Integer disk = this.nodeDiskConfigured ? this.nodeDisk : null;
         final String networks = this.nodeNetworks;
 
 
+        final boolean capacity = active != null || resourcepool != null ||
+                memory != null || cores != null || disk != null || networks != null;
+
         NodeReport[] reports = null;
         try {
-            final String reportJson = this.remoteNodeManagement.updateNodes(
-                    hostnames, active, resourcepool, memory, networks);
-            reports = gson.fromJson(reportJson, NodeReport[].class);
+            if (capacity || !this.nodeImageCacheConfigured) {
+                final String reportJson;
+                if (cores == null && disk == null) {
+                    // works against services that predate cores and disk
+                    reportJson = this.remoteNodeManagement.updateNodes(
+                            hostnames, active, resourcepool, memory, networks);
+                } else {
+                    reportJson = this.remoteNodeManagement.updateNodes(
+                            hostnames, active, resourcepool, memory, cores, disk,
+                            networks);
+                }
+                reports = gson.fromJson(reportJson, NodeReport[].class);
+            }
+            if (this.nodeImageCacheConfigured) {
+                final String reportJson =
+                        this.remoteNodeManagement.updateImageCacheBudget(
+                                hostnames, this.nodeImageCache);
+                reports = mergeReports(reports,
+                        gson.fromJson(reportJson, NodeReport[].class));
+            }
         } catch (RemoteException e) {
             super.handleRemoteException(e);
         }
@@ -262,6 +302,25 @@ public class AdminClient extends RMIConfig {
         }
     }
 
+    // the later report shows the final node, unless the first update failed
+    private static NodeReport[] mergeReports(NodeReport[] first,
+                                             NodeReport[] later) {
+        if (first == null) {
+            return later;
+        }
+        final NodeReport[] merged = new NodeReport[later.length];
+        for (int i = 0; i < later.length; i++) {
+            merged[i] = later[i];
+            for (NodeReport report : first) {
+                if (report.getHostname().equals(later[i].getHostname()) &&
+                        !NodeReport.STATE_UPDATED.equals(report.getState())) {
+                    merged[i] = report;
+                }
+            }
+        }
+        return merged;
+    }
+
     private void run_poolAvail() throws ExecutionProblem {
         AssociationEntry[] entries = null;
         try {
@@ -309,6 +368,23 @@ public class AdminClient extends RMIConfig {
                 }
             }
 
+            // optional, nodes are not limited by cores or disk without them
+            if (!this.nodeCoresConfigured) {
+                final String coresString = properties.getProperty(PROP_DEFAULT_CORES);
+                if (coresString != null && coresString.trim().length() > 0) {
+                    this.nodeCores = parseCapacity(coresString, "cores");
+                    this.nodeCoresConfigured = true;
+                }
+            }
+
+            if (!this.nodeDiskConfigured) {
+                final String diskString = properties.getProperty(PROP_DEFAULT_DISK);
+                if (diskString != null && diskString.trim().length() > 0) {
+                    this.nodeDisk = parseCapacity(diskString, "disk");
+                    this.nodeDiskConfigured = true;
+                }
+            }
+
             if (this.nodeNetworks == null) {
                 this.nodeNetworks = properties.getProperty(PROP_DEFAULT_NETWORKS);
             }
@@ -371,6 +447,33 @@ public class AdminClient extends RMIConfig {
                 this.nodeMemoryConfigured = true;
             }
 
+            if (line.hasOption(Opts.CORES)) {
+                final String coresString = line.getOptionValue(Opts.CORES);
+                if (coresString == null || coresString.trim().length() == 0) {
+                    throw new ParameterProblem("Node cores value is empty");
+                }
+                this.nodeCores = parseCapacity(coresString, "cores");
+                this.nodeCoresConfigured = true;
+            }
+
+            if (line.hasOption(Opts.DISK)) {
+                final String diskString = line.getOptionValue(Opts.DISK);
+                if (diskString == null || diskString.trim().length() == 0) {
+                    throw new ParameterProblem("Node disk value is empty");
+                }
+                this.nodeDisk = parseCapacity(diskString, "disk");
+                this.nodeDiskConfigured = true;
+            }
+
+            if (line.hasOption(Opts.IMAGE_CACHE)) {
+                final String cacheString = line.getOptionValue(Opts.IMAGE_CACHE);
+                if (cacheString == null || cacheString.trim().length() == 0) {
+                    throw new ParameterProblem("Node image cache value is empty");
+                }
+                this.nodeImageCache = parseCapacity(cacheString, "image cache");
+                this.nodeImageCacheConfigured = true;
+            }
+
             if (line.hasOption(Opts.NETWORKS)) {
                 this.nodeNetworks = line.getOptionValue(Opts.NETWORKS);
             }
@@ -484,6 +587,20 @@ public class AdminClient extends RMIConfig {
 
     }
 
+    private int parseCapacity(String valueString, String name)
+            throws ParameterProblem {
+        final int value;
+        try {
+            value = Integer.valueOf(valueString.trim());
+        } catch (NumberFormatException e) {
+            throw new ParameterProblem("Node " + name + " value must be numeric");
+        }
+        if (value < 0) {
+            throw new ParameterProblem("Node " + name + " value must be non-negative");
+        }
+        return value;
+    }
+
     private int parseMemory(String memoryString) throws ParameterProblem {
         final int memory;
         try {
@@ -528,11 +645,16 @@ public class AdminClient extends RMIConfig {
 
     private static Map<String,String> nodeToMap(VmmNode node) {
         final HashMap<String, String> map =
-                new HashMap<String, String>(7);
+                new HashMap<String, String>(12);
         map.put(FIELD_HOSTNAME, node.getHostname());
         map.put(FIELD_POOL, node.getPoolName());
         map.put(FIELD_MEMORY, String.valueOf(node.getMemory()));
         map.put(FIELD_MEM_REMAIN, String.valueOf(node.getMemRemain()));
+        map.put(FIELD_CORES, String.valueOf(node.getCores()));
+        map.put(FIELD_CORES_REMAIN, String.valueOf(node.getCoresRemain()));
+        map.put(FIELD_DISK, String.valueOf(node.getDisk()));
+        map.put(FIELD_DISK_REMAIN, String.valueOf(node.getDiskRemain()));
+        map.put(FIELD_IMAGE_CACHE, String.valueOf(node.getImageCache()));
         map.put(FIELD_NETWORKS, node.getNetworkAssociations());
         map.put(FIELD_IN_USE, String.valueOf(!node.isVacant()));
         map.put(FIELD_ACTIVE, String.valueOf(node.isActive()));
@@ -556,12 +678,18 @@ public class AdminClient extends RMIConfig {
         if (node == null) {
             map.put(FIELD_POOL, null);
             map.put(FIELD_MEMORY, null);
+            map.put(FIELD_CORES, null);
+            map.put(FIELD_DISK, null);
+            map.put(FIELD_IMAGE_CACHE, null);
             map.put(FIELD_NETWORKS, null);
             map.put(FIELD_IN_USE, null);
             map.put(FIELD_ACTIVE, null);
         } else {
             map.put(FIELD_POOL, node.getPoolName());
             map.put(FIELD_MEMORY, String.valueOf(node.getMemory()));
+            map.put(FIELD_CORES, String.valueOf(node.getCores()));
+            map.put(FIELD_DISK, String.valueOf(node.getDisk()));
+            map.put(FIELD_IMAGE_CACHE, String.valueOf(node.getImageCache()));
             map.put(FIELD_NETWORKS, node.getNetworkAssociations());
             map.put(FIELD_IN_USE, String.valueOf(!node.isVacant()));
             map.put(FIELD_ACTIVE, String.valueOf(node.isActive()));
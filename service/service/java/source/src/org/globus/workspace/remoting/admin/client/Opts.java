@@ -137,6 +137,21 @@ public class Opts {
     public final Option MEMORY_OPT =
                 OptionBuilder.withLongOpt(MEMORY_LONG).hasArg().create(MEMORY);
 
+    public static final String CORES = "C";
+    public static final String CORES_LONG = "cores";
+    public final Option CORES_OPT =
+                OptionBuilder.withLongOpt(CORES_LONG).hasArg().create(CORES);
+
+    public static final String DISK = "k";
+    public static final String DISK_LONG = "disk";
+    public final Option DISK_OPT =
+                OptionBuilder.withLongOpt(DISK_LONG).hasArg().create(DISK);
+
+    public static final String IMAGE_CACHE = "I";
+    public static final String IMAGE_CACHE_LONG = "image-cache";
+    public final Option IMAGE_CACHE_OPT =
+                OptionBuilder.withLongOpt(IMAGE_CACHE_LONG).hasArg().create(IMAGE_CACHE);
+
     public static final String POOL = "p";
     public static final String POOL_LONG = "pool";
     public final Option POOL_OPT =
@@ -222,13 +237,24 @@ public class Opts {
     public final Option STATE_OPT =
                 OptionBuilder.withLongOpt(STATE_LONG).hasArg().create(STATE);
 
+    public static final String METRICS = "mt";
+    public static final String METRICS_LONG = "metrics";
+    public final Option METRICS_OPT =
+                OptionBuilder.withLongOpt(METRICS_LONG).create(METRICS);
+
+    public static final String TRACE = "T";
+    public static final String TRACE_LONG = "trace";
+    public final Option TRACE_OPT =
+                OptionBuilder.withLongOpt(TRACE_LONG).create(TRACE);
+
     public final Option[] ALL_ENABLED_OPTIONS = {
             HELP_OPT, DEBUG_OPT, CONFIG_OPT, FORCE_OPT, BATCH_OPT, DELIMITER_OPT,
             REPORT_OPT, JSON_OPT, OUTPUT_OPT, ADD_NODES_OPT, LIST_NODES_OPT,
-            REMOVE_NODES_OPT, UPDATE_NODES_OPT, POOL_AVAILABILITY_OPT, NETWORKS_OPT, MEMORY_OPT, POOL_OPT,
+            REMOVE_NODES_OPT, UPDATE_NODES_OPT, POOL_AVAILABILITY_OPT, NETWORKS_OPT, MEMORY_OPT, CORES_OPT, DISK_OPT, IMAGE_CACHE_OPT, POOL_OPT,
             ACTIVE_OPT, INACTIVE_OPT, CLEANUP_VMS_OPT, LIST_VMS_OPT, SHUTDOWN_VMS_OPT, USER_OPT, ID_OPT,
             SECONDS_OPT, ALL_VMS_OPT, HOST_OPT, DN_OPT, GROUP_ID_OPT,
-            GROUP_NAME_OPT, FREE_OPT, USED_OPT, NODE_LIST_OPT, STATE_OPT
+            GROUP_NAME_OPT, FREE_OPT, USED_OPT, NODE_LIST_OPT, STATE_OPT,
+            METRICS_OPT, TRACE_OPT
     };
 
 }
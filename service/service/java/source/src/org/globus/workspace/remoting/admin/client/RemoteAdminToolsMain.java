@@ -19,6 +19,9 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
+import org.globus.workspace.remoting.admin.MetricTranslation;
+import org.globus.workspace.remoting.admin.TraceTranslation;
+import org.globus.workspace.remoting.admin.VMPage;
 import org.globus.workspace.remoting.admin.VMTranslation;
 import org.nimbustools.api.services.admin.RemoteAdminToolsManagement;
 
@@ -35,6 +38,8 @@ public class RemoteAdminToolsMain extends RMIConfig {
 
     private static final String PROP_RMI_BINDING_ADMINTOOLS_DIR = "rmi.binding.admintools";
 
+    private static final int PAGE_SIZE = 200;
+
     private static final String FIELD_ID = "id";
     private static final String FIELD_NODE = "node";
     private static final String FIELD_GROUP_ID = "group_id";
@@ -55,6 +60,25 @@ public class RemoteAdminToolsMain extends RMIConfig {
             FIELD_NODE, FIELD_ID
     };
 
+    private static final String FIELD_NAME = "name";
+    private static final String FIELD_TYPE = "type";
+    private static final String FIELD_VALUE = "value";
+    private static final String FIELD_MEAN = "mean us";
+    private static final String FIELD_P50 = "p50 us";
+    private static final String FIELD_P90 = "p90 us";
+    private static final String FIELD_P99 = "p99 us";
+    private static final String FIELD_MAX = "max us";
+    private static final String FIELD_TIME = "time";
+    private static final String FIELD_KIND = "kind";
+
+    final static String[] METRICS_FIELDS = new String[] {
+            FIELD_NAME, FIELD_TYPE, FIELD_VALUE, FIELD_MEAN, FIELD_P50, FIELD_P90, FIELD_P99, FIELD_MAX
+    };
+
+    final static String[] TRACE_FIELDS = new String[] {
+            FIELD_TIME, FIELD_ID, FIELD_KIND, FIELD_STATE
+    };
+
     private ToolAction action;
     private RemoteAdminToolsManagement remoteAdminToolsManagement;
     private String user;
@@ -145,6 +169,12 @@ public class RemoteAdminToolsMain extends RMIConfig {
             case ShutdownVMs:
                 shutdownVM();
                 break;
+            case Metrics:
+                showMetrics();
+                break;
+            case Trace:
+                showTrace();
+                break;
         }
     }
 
@@ -299,6 +329,16 @@ public class RemoteAdminToolsMain extends RMIConfig {
                 }
         }
 
+        else if(this.action == ToolAction.Trace) {
+                if(line.hasOption(Opts.ID)) {
+                    final String id = line.getOptionValue(Opts.ID);
+                    if(id == null || id.trim().length() == 0) {
+                        throw new ParameterProblem("VM ID value is empty");
+                    }
+                    this.vmIDs = parseValues(id);
+                }
+        }
+
         //finally everything else
         if (!line.hasOption(Opts.CONFIG)) {
             throw new ParameterProblem(Opts.CONFIG_LONG + " option is required");
@@ -363,69 +403,75 @@ public class RemoteAdminToolsMain extends RMIConfig {
     }
 
     private void listVMs() throws ExecutionProblem {
+        if(numOpts > 1) {
+            System.err.println("You may select only one of --user, --dn, --gid, --gname, or --host");
+            return;
+        }
+
+        final int type;
+        final String typeID;
+        final String notFound;
+        if(this.user != null) {
+            type = RemoteAdminToolsManagement.LIST_UNAME;
+            typeID = user;
+            notFound = "No vms with user " + user + " found";
+        }
+        else if(this.userDN != null) {
+            type = RemoteAdminToolsManagement.LIST_DN;
+            typeID = userDN;
+            notFound = "No vms with DN " + userDN + " found";
+        }
+        else if(this.groupId != null) {
+            type = RemoteAdminToolsManagement.LIST_GID;
+            typeID = groupId;
+            notFound = "No vms with group id " + groupId + " found";
+        }
+        else if(this.groupName != null) {
+            type = RemoteAdminToolsManagement.LIST_GNAME;
+            typeID = groupName;
+            notFound = "No vms with group name " + groupName + " found";
+        }
+        else if(this.hostname != null) {
+            type = RemoteAdminToolsManagement.LIST_HOST;
+            typeID = hostname;
+            notFound = "No vms with host " + hostname + " found";
+        }
+        else if(this.state != null) {
+            type = RemoteAdminToolsManagement.LIST_STATE;
+            typeID = state;
+            notFound = "No vms with state " + state + " found";
+        }
+        else {
+            type = RemoteAdminToolsManagement.LIST_ALL;
+            typeID = null;
+            notFound = "No Running vms found";
+        }
+
+        // fetch and print a page at a time so that large listings start
+        // right away and neither side holds all of them
         try {
-            VMTranslation[] vms;
-            if(numOpts > 1) {
-                System.err.println("You may select only one of --user, --dn, --gid, --gname, or --host");
-                return;
-            }
-            if(this.user != null) {
-                final String vmsJson = this.remoteAdminToolsManagement.getVMsByUser(user);
-                if(vmsJson == null) {
-                    System.err.println("No vms with user " + user + " found");
-                    return;
-                }
-                vms = gson.fromJson(vmsJson, VMTranslation[].class);
-            }
-            else if(this.userDN != null) {
-                final String vmsJson = this.remoteAdminToolsManagement.getVMsByDN(userDN);
-                if(vmsJson == null) {
-                    System.err.println("No vms with DN " + userDN + " found");
-                    return;
-                }
-                vms = gson.fromJson(vmsJson, VMTranslation[].class);
-            }
-            else if(this.groupId != null) {
-                final String vmsJson = this.remoteAdminToolsManagement.getAllVMsByGroupId(groupId);
-                if(vmsJson == null) {
-                    System.err.println("No vms with group id " + groupId + " found");
-                    return;
-                }
-                vms = gson.fromJson(vmsJson, VMTranslation[].class);
-            }
-            else if(this.groupName != null) {
-                final String vmsJson = this.remoteAdminToolsManagement.getAllVMsByGroupName(groupName);
-                if(vmsJson == null) {
-                    System.err.println("No vms with group name " + groupName + " found");
-                    return;
-                }
-                vms = gson.fromJson(vmsJson, VMTranslation[].class);
-            }
-            else if(this.hostname != null) {
-                final String vmsJson = this.remoteAdminToolsManagement.getAllVMsByHost(hostname);
-                if(vmsJson == null) {
-                    System.err.println("No vms with host " + hostname + " found");
-                    return;
-                }
-                vms = gson.fromJson(vmsJson, VMTranslation[].class);
-            }
-            else if(this.state != null) {
-                final String vmsJson = this.remoteAdminToolsManagement.getVMsByState(state);
-                if(vmsJson == null) {
-                    System.err.println("No vms with state " + state + " found");
-                    return;
-                }
-                vms = gson.fromJson(vmsJson, VMTranslation[].class);
-            }
-            else {
-                final String vmsJson = this.remoteAdminToolsManagement.getAllRunningVMs();
-                vms = gson.fromJson(vmsJson, VMTranslation[].class);
+            int shown = 0;
+            int after = 0;
+            while(true) {
+                final String pageJson = this.remoteAdminToolsManagement.getVMPage(
+                        type, typeID, after, PAGE_SIZE);
+                final VMPage page = gson.fromJson(pageJson, VMPage.class);
+                if(page == null)
+                    break;
+                final VMTranslation[] vms = page.getVms();
+                if(vms != null && vms.length > 0) {
+                    reporter.reportPart(vmsToMaps(vms), this.outStream);
+                    shown += vms.length;
+                }
+                if(page.getNext() < 0)
+                    break;
+                after = page.getNext();
             }
-            if(vms == null) {
-                System.err.println("No Running vms found");
+            if(shown == 0) {
+                System.err.println(notFound);
                 return;
             }
-            reporter.report(vmsToMaps(vms), this.outStream);
+            reporter.finishParts(this.outStream);
         }
         catch (RemoteException e) {
             super.handleRemoteException(e);
@@ -451,6 +497,58 @@ public class RemoteAdminToolsMain extends RMIConfig {
         }
     }
 
+    private void showMetrics() throws ExecutionProblem {
+        try {
+            final String metricsJson = this.remoteAdminToolsManagement.getMetrics();
+            final MetricTranslation[] metrics = gson.fromJson(metricsJson, MetricTranslation[].class);
+            if(metrics == null || metrics.length == 0) {
+                System.err.println("No metrics recorded yet");
+                return;
+            }
+            reporter.report(metricsToMaps(metrics), this.outStream);
+        }
+        catch (RemoteException e) {
+            super.handleRemoteException(e);
+        }
+        catch (IOException e) {
+            throw new ExecutionProblem("Problem writing output: " + e.getMessage(), e);
+        }
+    }
+
+    private void showTrace() throws ExecutionProblem {
+        try {
+            final List<TraceTranslation> events = new ArrayList<TraceTranslation>();
+            if(vmIDs == null) {
+                addTrace(events, null);
+            }
+            else {
+                for(int i = 0; i < vmIDs.size(); i++) {
+                    addTrace(events, vmIDs.get(i));
+                }
+            }
+            if(events.isEmpty()) {
+                System.err.println("No lifecycle events found");
+                return;
+            }
+            reporter.report(traceToMaps(events), this.outStream);
+        }
+        catch (RemoteException e) {
+            super.handleRemoteException(e);
+        }
+        catch (IOException e) {
+            throw new ExecutionProblem("Problem writing output: " + e.getMessage(), e);
+        }
+    }
+
+    private void addTrace(List<TraceTranslation> events, String vmid) throws RemoteException {
+        final String traceJson = this.remoteAdminToolsManagement.getLifecycleTrace(vmid);
+        if(traceJson == null)
+            return;
+        final TraceTranslation[] tts = gson.fromJson(traceJson, TraceTranslation[].class);
+        if(tts != null)
+            events.addAll(Arrays.asList(tts));
+    }
+
     private void shutdownVM() {
         try {
             String result = "";
@@ -619,6 +717,36 @@ public class RemoteAdminToolsMain extends RMIConfig {
         return map;
     }
 
+    private static List<Map<String,String>> metricsToMaps(MetricTranslation[] mts) {
+        List<Map<String,String>> maps = new ArrayList<Map<String, String>>(mts.length);
+        for (MetricTranslation mt : mts) {
+            final HashMap<String, String> map = new HashMap(8);
+            map.put(FIELD_NAME, mt.getName());
+            map.put(FIELD_TYPE, mt.getType());
+            map.put(FIELD_VALUE, mt.getValue());
+            map.put(FIELD_MEAN, mt.getMean());
+            map.put(FIELD_P50, mt.getP50());
+            map.put(FIELD_P90, mt.getP90());
+            map.put(FIELD_P99, mt.getP99());
+            map.put(FIELD_MAX, mt.getMax());
+            maps.add(map);
+        }
+        return maps;
+    }
+
+    private static List<Map<String,String>> traceToMaps(List<TraceTranslation> tts) {
+        List<Map<String,String>> maps = new ArrayList<Map<String, String>>(tts.size());
+        for (TraceTranslation tt : tts) {
+            final HashMap<String, String> map = new HashMap(4);
+            map.put(FIELD_TIME, tt.getTime());
+            map.put(FIELD_ID, tt.getId());
+            map.put(FIELD_KIND, tt.getKind());
+            map.put(FIELD_STATE, tt.getState());
+            maps.add(map);
+        }
+        return maps;
+    }
+
     private static List<Map<String,String>> nodesToMaps(Hashtable<String, String[]> ht) {
         List<Map<String,String>> maps = new ArrayList<Map<String, String>>(ht.size());
 
@@ -664,6 +792,8 @@ enum ToolAction implements AdminEnum {
     ListVMs(Opts.LIST_VMS, RemoteAdminToolsMain.ADMIN_FIELDS),
     ListNodes(Opts.NODE_LIST, RemoteAdminToolsMain.NODE_LIST_FIELDS),
     ShutdownVMs(Opts.SHUTDOWN_VMS, null),
+    Metrics(Opts.METRICS, RemoteAdminToolsMain.METRICS_FIELDS),
+    Trace(Opts.TRACE, RemoteAdminToolsMain.TRACE_FIELDS),
     Help(Opts.HELP, null);
 
     private final String option;
@@ -33,6 +33,9 @@ class Reporter {
     private final String[] fields;
     private final String delimiter;
 
+    // set once reportPart() has written the opening of a JSON array
+    private boolean partsStarted;
+
     public Reporter(OutputMode mode, String[] fields, String delimiter) {
         this.mode = mode;
         this.fields = new String[fields.length];
@@ -92,6 +95,38 @@ class Reporter {
         writer.flush();
     }
 
+    /**
+     * Reports entries as they arrive, a page at a time.  Output is the same
+     * as one report() call with all entries once finishParts() was called.
+     */
+    public void reportPart(Collection<Map<String,String>> entries, OutputStream stream)
+            throws IOException {
+        if (this.mode != OutputMode.Json) {
+            this.report(entries, stream);
+            return;
+        }
+
+        final OutputStreamWriter writer = new OutputStreamWriter(stream);
+        for (Map<String,String> entry : entries) {
+            writer.append(this.partsStarted ? ",\n" : "[\n");
+            this.partsStarted = true;
+            gson.toJson(_filterMap(entry,
+                    new LinkedHashMap<String, String>(fields.length),
+                    fields), writer);
+        }
+        writer.flush();
+    }
+
+    public void finishParts(OutputStream stream) throws IOException {
+        if (this.mode != OutputMode.Json) {
+            return;
+        }
+        final OutputStreamWriter writer = new OutputStreamWriter(stream);
+        writer.append(this.partsStarted ? "\n]" : "[]");
+        writer.flush();
+        this.partsStarted = false;
+    }
+
     public void report(Map<String,String> entry, OutputStream stream)
             throws IOException {
         final OutputStreamWriter writer = new OutputStreamWriter(stream);
@@ -21,13 +21,23 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.globus.workspace.groupauthz.Group;
 import org.globus.workspace.groupauthz.GroupAuthz;
+import org.globus.workspace.metrics.LatencyHistogram;
+import org.globus.workspace.metrics.LifecycleTrace;
+import org.globus.workspace.metrics.Metrics;
+import org.globus.workspace.metrics.MetricsExporter;
+import org.globus.workspace.persistence.DataConvert;
+import org.globus.workspace.remoting.admin.MetricTranslation;
+import org.globus.workspace.remoting.admin.TraceTranslation;
+import org.globus.workspace.remoting.admin.VMPage;
 import org.globus.workspace.remoting.admin.VMTranslation;
+import org.globus.workspace.service.InstanceResource;
 import org.globus.workspace.service.WorkspaceHome;
 import org.globus.workspace.service.binding.authorization.CreationAuthorizationCallout;
 import org.globus.workspace.service.binding.vm.VirtualMachine;
 import org.nimbus.authz.AuthzDBException;
 import org.nimbus.authz.UserAlias;
 import org.nimbustools.api._repr._Caller;
+import org.nimbustools.api.repr.CannotTranslateException;
 import org.nimbustools.api.repr.Caller;
 import org.nimbustools.api.repr.ReprFactory;
 import org.nimbustools.api.repr.vm.ResourceAllocation;
@@ -42,8 +52,12 @@ import org.nimbustools.api.services.rm.OperationDisabledException;
 import javax.sql.DataSource;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Remote class that connects service and RemoteAdminToolsMain
@@ -59,8 +73,16 @@ public class DefaultRemoteAdminToolsMgmt implements RemoteAdminToolsManagement {
     protected DataSource authzDataSource;
     protected WorkspaceHome workspaceHome;
     protected CreationAuthorizationCallout authzCallout;
+    protected MetricsExporter metricsExporter;
+    protected DataConvert dataConvert;
     private AuthzDBAdapter authz;
 
+    // queries are answered from a snapshot of the active VMs, rebuilt when
+    // older than this
+    private long indexMaxAgeMs = 2000;
+    private int maxPageSize = 1000;
+    private VMIndex index;
+
     private final Gson gson;
     private String errorMsg;
 
@@ -161,57 +183,176 @@ public class DefaultRemoteAdminToolsMgmt implements RemoteAdminToolsManagement {
     }
 
     public String getVMsByState(String state) throws RemoteException {
-        try {
-            VM[] vms = manager.getGlobalAll();
-            final List<VMTranslation> vmts = new ArrayList<VMTranslation>();
-            for(VM vm : vms) {
-                if(vm.getState().getState().equalsIgnoreCase(state))
-                    vmts.add(translateVM(vm));
-            }
+        final List<VMTranslation> vmts = new ArrayList<VMTranslation>();
+        for(VM vm : loadVMs(index().byState(state), LIST_STATE, state)) {
+            vmts.add(translateVM(vm));
+        }
 
-            if(vmts.size() == 0)
-                return null;
+        if(vmts.size() == 0)
+            return null;
 
-            return gson.toJson(vmts);
-        }
-        catch(ManageException e) {
-            throw new RemoteException(e.getMessage());
-        }
+        return gson.toJson(vmts);
     }
 
     public Hashtable<String, String[]> showVMsForAllHosts() throws RemoteException {
-        try {
-            List<String> hostnames = new ArrayList<String>();
-            VM[] vms = manager.getGlobalAll();
-
-            if(vms.length == 0)
-                return null;
+        final VMIndex idx = index();
+        if(idx.size() == 0)
+            return null;
 
-            for(int i = 0; i < vms.length; i++) {
-                String id = vms[i].getID();
-                String host = workspaceHome.find(id).getVM().getNode();
-                if(!hostnames.contains(host))
-                    hostnames.add(host);
+        Hashtable<String, String[]> allVMs = new Hashtable<String, String[]>();
+        for(String hostname : idx.hosts()) {
+            final int[] ids = idx.byHost(hostname);
+            String[] parsedVMs = new String[ids.length];
+            for(int i = 0; i < ids.length; i++) {
+                parsedVMs[i] = Integer.toString(ids[i]);
             }
+            allVMs.put(hostname, parsedVMs);
+        }
+        return allVMs;
+    }
+
+    public String getVMPage(int type, String typeID, int afterID, int limit) throws RemoteException {
+        if(limit < 1)
+            throw new RemoteException("Page size must be positive");
+        if(limit > maxPageSize)
+            limit = maxPageSize;
+
+        final int[] ids = matchingIDs(type, typeID);
+        final int[] page = VMIndex.page(ids, afterID, limit);
+
+        final VM[] vms = loadVMs(page, type, typeID);
+        final VMTranslation[] vmts = new VMTranslation[vms.length];
+        for(int i = 0; i < vms.length; i++) {
+            vmts[i] = translateVM(vms[i]);
+        }
+
+        int next = -1;
+        if(page.length > 0 && page[page.length - 1] < ids[ids.length - 1])
+            next = page[page.length - 1];
+
+        return gson.toJson(new VMPage(ids.length, next, vmts));
+    }
 
-            Hashtable<String, String[]> allVMs = new Hashtable<String, String[]>();
-            for(String hostname : hostnames) {
-                vms = getVMByHost(hostname);
-                String[] parsedVMs = new String[vms.length];
-                for(int i = 0; i < vms.length; i++) {
-                    parsedVMs[i] = vms[i].getID();
+    /*
+     * IDs of the VMs matching a LIST_* query, sorted, from the index
+     */
+    private int[] matchingIDs(int type, String typeID) throws RemoteException {
+        final VMIndex idx = index();
+        if(type == LIST_ALL)
+            return idx.all();
+        if(typeID == null)
+            throw new RemoteException("Query value is missing");
+
+        switch(type) {
+            case LIST_ID:
+                try {
+                    final int id = Integer.parseInt(typeID.trim());
+                    if(Arrays.binarySearch(idx.all(), id) >= 0)
+                        return new int[] {id};
+                    return new int[0];
+                }
+                catch(NumberFormatException e) {
+                    throw new RemoteException("VM ID '" + typeID + "' is not a number");
                 }
-                allVMs.put(hostname, parsedVMs);
+            case LIST_HOST:
+                return idx.byHost(typeID);
+            case LIST_DN:
+                return idx.byDN(typeID);
+            case LIST_STATE:
+                return idx.byState(typeID);
+            case LIST_UNAME:
+                try {
+                    authz = new AuthzDBAdapter(authzDataSource);
+                    final String userId = authz.getCanonicalUserIdFromFriendlyName(typeID);
+                    return idx.byDN(getDNByUserId(userId));
+                }
+                catch(AuthzDBException e) {
+                    return new int[0];
+                }
+            case LIST_GID:
+                return idsForGroup(idx, getGroupByGroupId(typeID));
+            case LIST_GNAME:
+                return idsForGroup(idx, getGroupByGroupName(typeID));
+            default:
+                throw new RemoteException("Unknown query type " + type);
+        }
+    }
+
+    private static int[] idsForGroup(VMIndex idx, Group group) {
+        if(group == null)
+            return new int[0];
+        return idx.byDNs(group.getIdentities());
+    }
+
+    /*
+     * Loads the VMs for IDs taken from the index.  The index may be a
+     * little stale: VMs that are gone or that no longer match a host or
+     * state query are left out.
+     */
+    private VM[] loadVMs(int[] ids, int type, String typeID) throws RemoteException {
+        final List<VM> vms = new ArrayList<VM>(ids.length);
+        for(int id : ids) {
+            try {
+                final String idStr = Integer.toString(id);
+                final VM vm = manager.getInstance(idStr);
+                if(type == LIST_STATE &&
+                        !vm.getState().getState().equalsIgnoreCase(typeID))
+                    continue;
+                if(type == LIST_HOST &&
+                        !typeID.equals(workspaceHome.find(idStr).getVM().getNode()))
+                    continue;
+                vms.add(vm);
+            }
+            catch(DoesNotExistException e) {
+                logger.debug("VM " + id + " went away since the admin index was built");
             }
+            catch(ManageException e) {
+                throw new RemoteException(e.getMessage());
+            }
+        }
+        return vms.toArray(new VM[vms.size()]);
+    }
 
-            return allVMs;
+    /*
+     * Snapshot of the active VMs by host, DN and state.  Built from the
+     * resources the service keeps in memory, no VM is translated.
+     */
+    private synchronized VMIndex index() throws RemoteException {
+        if(index != null &&
+                System.currentTimeMillis() - index.getCreated() < indexMaxAgeMs)
+            return index;
+
+        try {
+            final InstanceResource[] resources = workspaceHome.findAll();
+            final VMIndex.Builder builder = new VMIndex.Builder();
+            final Map<Integer, String> stateNames = new HashMap<Integer, String>();
+            for(InstanceResource resource : resources) {
+                final VirtualMachine vm = resource.getVM();
+                final String node = vm == null ? null : vm.getNode();
+                builder.add(resource.getID(), node, resource.getCreatorID(),
+                        stateName(resource, stateNames));
+            }
+            index = builder.build();
+            return index;
         }
         catch(ManageException e) {
             throw new RemoteException(e.getMessage());
         }
-        catch(DoesNotExistException e) {
-            throw new RemoteException(e.getMessage());
+    }
+
+    private String stateName(InstanceResource resource, Map<Integer, String> stateNames) {
+        final Integer key = new Integer(resource.getState());
+        String name = stateNames.get(key);
+        if(name == null) {
+            try {
+                name = dataConvert.getState(resource).getState();
+                stateNames.put(key, name);
+            }
+            catch(CannotTranslateException e) {
+                logger.warn("No state name for VM " + resource.getID() + ": " + e.getMessage());
+            }
         }
+        return name;
     }
 
     /*
@@ -329,6 +470,57 @@ public class DefaultRemoteAdminToolsMgmt implements RemoteAdminToolsManagement {
         }
     }
 
+    public String getMetrics() throws RemoteException {
+        final List<MetricTranslation> mts = new ArrayList<MetricTranslation>();
+        for(LatencyHistogram h : Metrics.histograms()) {
+            mts.add(new MetricTranslation(h.getName(), MetricTranslation.TYPE_HISTOGRAM,
+                    Long.toString(h.getCount()), Long.toString(h.getMean()),
+                    Long.toString(h.getPercentile(50)), Long.toString(h.getPercentile(90)),
+                    Long.toString(h.getPercentile(99)), Long.toString(h.getMax())));
+        }
+        for(Map.Entry<String, Long> entry : Metrics.counters().entrySet()) {
+            mts.add(new MetricTranslation(entry.getKey(), MetricTranslation.TYPE_COUNTER,
+                    entry.getValue().toString(), null, null, null, null, null));
+        }
+        for(Map.Entry<String, Long> entry : Metrics.gauges().entrySet()) {
+            mts.add(new MetricTranslation(entry.getKey(), MetricTranslation.TYPE_GAUGE,
+                    entry.getValue().toString(), null, null, null, null, null));
+        }
+        return gson.toJson(mts);
+    }
+
+    /*
+     * vmid may be null for the trace of every VM
+     */
+    public String getLifecycleTrace(String vmid) throws RemoteException {
+        int id = -1;
+        if(vmid != null) {
+            try {
+                id = Integer.parseInt(vmid.trim());
+            }
+            catch (NumberFormatException e) {
+                throw new RemoteException("VM ID '" + vmid + "' is not a number");
+            }
+        }
+
+        final List<LifecycleTrace.Event> events = Metrics.getTrace().events(id);
+        if(events.isEmpty())
+            return null;
+
+        final List<TraceTranslation> tts = new ArrayList<TraceTranslation>(events.size());
+        for(LifecycleTrace.Event event : events) {
+            final String state;
+            if(metricsExporter != null)
+                state = metricsExporter.stateName(event.getState());
+            else
+                state = Integer.toString(event.getState());
+            tts.add(new TraceTranslation(new Date(event.getTime()).toString(),
+                    Integer.toString(event.getId()),
+                    MetricsExporter.kindName(event.getKind()), state));
+        }
+        return gson.toJson(tts);
+    }
+
     private VM[] typeSet(int type, String typeID) throws RemoteException {
         try {
             if(type == SHUTDOWN_HOST || type == CLEANUP_HOST)
@@ -386,6 +578,25 @@ public class DefaultRemoteAdminToolsMgmt implements RemoteAdminToolsManagement {
     }
 
     private VM[] getVMsByUserId(String userId) throws RemoteException {
+        try {
+            String aliasDN = getDNByUserId(userId);
+            if(aliasDN == null)
+                return null;
+
+            final _Caller caller = this.reprFactory._newCaller();
+            caller.setIdentity(aliasDN);
+            VM[] vmsByCaller = manager.getAllByCaller(caller);
+            return vmsByCaller;
+        }
+        catch (ManageException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Returns the user's DN alias or null if there is none
+     */
+    private String getDNByUserId(String userId) throws RemoteException {
         try {
             List<UserAlias> userAlias;
             userAlias = authz.getUserAliases(userId);
@@ -401,18 +612,11 @@ public class DefaultRemoteAdminToolsMgmt implements RemoteAdminToolsManagement {
             else if(dnAlias.size() > 1)
                 throw new RemoteException("User_Alias size: " + dnAlias.size());
 
-            String aliasDN = dnAlias.get(0).getAliasName();
-            final _Caller caller = this.reprFactory._newCaller();
-            caller.setIdentity(aliasDN);
-            VM[] vmsByCaller = manager.getAllByCaller(caller);
-            return vmsByCaller;
+            return dnAlias.get(0).getAliasName();
         }
         catch (AuthzDBException e) {
             throw new RemoteException(e.getMessage());
         }
-        catch (ManageException e) {
-            return null;
-        }
     }
 
     private VM[] getVMById(String id) {
@@ -438,37 +642,15 @@ public class DefaultRemoteAdminToolsMgmt implements RemoteAdminToolsManagement {
     }
 
     /*
-     * Looks through all running vms and compares hostnames
+     * Looks up the host's VMs in the index
      */
-    private VM[] getVMByHost(String hostname) {
-        try {
-            ArrayList<VM> vms;
-            VM[] all = manager.getGlobalAll();
-            int cnt = 0;
-
-            vms = new ArrayList<VM>(all.length);
-            for(int i = 0; i < all.length; i++) {
-                String id = all[i].getID();
-                String host = workspaceHome.find(id).getVM().getNode();
-                if(host.equals(hostname))
-                    vms.add(all[i]);
-            }
-
-            if(vms.size() == 0) {
-                errorMsg = "No vms with hostname " + hostname + " found";
-                return null;
-            }
-            else
-                return vms.toArray(new VM[0]);
-        }
-        catch (DoesNotExistException e) {
-            errorMsg = "Hostname " + hostname + " not found";
-            return null;
-        }
-        catch (ManageException e) {
-            errorMsg = "No running VMs found";
+    private VM[] getVMByHost(String hostname) throws RemoteException {
+        final VM[] vms = loadVMs(index().byHost(hostname), LIST_HOST, hostname);
+        if(vms.length == 0) {
+            errorMsg = "No vms with hostname " + hostname + " found";
             return null;
         }
+        return vms;
     }
 
     private VM[] getAllVMsByGroup(Group group) throws RemoteException {
@@ -589,4 +771,20 @@ public class DefaultRemoteAdminToolsMgmt implements RemoteAdminToolsManagement {
     public void setAuthzCallout(CreationAuthorizationCallout authzCallout) {
         this.authzCallout = authzCallout;
     }
+
+    public void setMetricsExporter(MetricsExporter metricsExporter) {
+        this.metricsExporter = metricsExporter;
+    }
+
+    public void setDataConvert(DataConvert dataConvert) {
+        this.dataConvert = dataConvert;
+    }
+
+    public void setIndexMaxAgeMs(long indexMaxAgeMs) {
+        this.indexMaxAgeMs = indexMaxAgeMs;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
 }
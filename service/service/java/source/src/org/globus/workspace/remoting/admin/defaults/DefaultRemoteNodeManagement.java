@@ -84,17 +84,26 @@ public class DefaultRemoteNodeManagement implements RemoteNodeManagement {
             logger.info("Adding VMM node " + hostname);
 
             try {
-                final ResourcepoolEntry entry =
+                ResourcepoolEntry entry =
                         nodeManagement.addNode(hostname,
                                 node.getPoolName(),
                                 node.getNetworkAssociations(),
                                 node.getMemory(),
+                                node.getCores(),
+                                node.getDisk(),
                                 node.isActive());
+                if (node.getImageCache() > 0) {
+                    entry = nodeManagement.setImageCacheMax(
+                            hostname, node.getImageCache());
+                }
 
                 final VmmNode resultNode = translateResourcepoolEntry(entry);
                 reports.add(new NodeReport(hostname,
                         NodeReport.STATE_ADDED, resultNode));
 
+            } catch (NodeNotFoundException e) {
+                throw new RemoteException("VMM node " + hostname +
+                        " disappeared while it was being added");
             } catch (NodeExistsException e) {
                 logger.info("VMM node " + hostname + " already existed");
                 reports.add(new NodeReport(hostname,
@@ -166,6 +175,17 @@ public class DefaultRemoteNodeManagement implements RemoteNodeManagement {
                               String pool,
                               Integer memory,
                               String networks) throws RemoteException {
+        return this.updateNodes(hostnames, active, pool, memory,
+                                null, null, networks);
+    }
+
+    public String updateNodes(String[] hostnames,
+                              Boolean active,
+                              String pool,
+                              Integer memory,
+                              Integer cores,
+                              Integer disk,
+                              String networks) throws RemoteException {
 
         if (hostnames == null) {
             throw new IllegalArgumentException("hostnames may not be null");
@@ -175,7 +195,8 @@ public class DefaultRemoteNodeManagement implements RemoteNodeManagement {
                     "You must specify at least one VMM node to update");
         }
 
-        if (active == null && pool == null && memory == null && networks == null) {
+        if (active == null && pool == null && memory == null &&
+                cores == null && disk == null && networks == null) {
             throw new IllegalArgumentException(
                     "You must specify at least one node parameter to update");
         }
@@ -193,7 +214,7 @@ public class DefaultRemoteNodeManagement implements RemoteNodeManagement {
                 final ResourcepoolEntry entry;
                 try {
                     entry = nodeManagement.updateNode(
-                            hostname, pool, networks, memory, active);
+                            hostname, pool, networks, memory, cores, disk, active);
                 } catch (NodeManagementDisabled e) {
                     throw new RemoteException(e.getMessage());
                 }
@@ -219,6 +240,45 @@ public class DefaultRemoteNodeManagement implements RemoteNodeManagement {
         return gson.toJson(reports);
     }
 
+    public String updateImageCacheBudget(String[] hostnames, int megabytes)
+            throws RemoteException {
+
+        if (hostnames == null || hostnames.length == 0) {
+            throw new IllegalArgumentException(
+                    "You must specify at least one VMM node to update");
+        }
+        if (megabytes < 0) {
+            throw new IllegalArgumentException(
+                    "The image cache budget may not be negative");
+        }
+
+        final List<NodeReport> reports = new ArrayList<NodeReport>(hostnames.length);
+        for (String hostname : hostnames) {
+            if (hostname == null) {
+                throw new IllegalArgumentException("update request has null node hostname");
+            }
+
+            logger.info("Setting image cache budget of VMM node " +
+                        hostname + " to " + megabytes + " MB");
+            try {
+                final ResourcepoolEntry entry =
+                        nodeManagement.setImageCacheMax(hostname, megabytes);
+                reports.add(new NodeReport(hostname, NodeReport.STATE_UPDATED,
+                        translateResourcepoolEntry(entry)));
+            } catch (NodeNotFoundException e) {
+                logger.info("VMM node not found, failed to update: " + hostname);
+                reports.add(
+                        new NodeReport(hostname,
+                                NodeReport.STATE_NODE_NOT_FOUND, null));
+            } catch (NodeManagementDisabled e) {
+                throw new RemoteException(e.getMessage());
+            } catch (WorkspaceDatabaseException e) {
+                throw new RemoteException(e.getMessage());
+            }
+        }
+        return gson.toJson(reports);
+    }
+
     public String removeNode(String hostname) throws RemoteException {
         NodeReport report = _removeNode(hostname);
         return gson.toJson(report);
@@ -361,9 +421,13 @@ public class DefaultRemoteNodeManagement implements RemoteNodeManagement {
         }
         VmmNode vmm = new VmmNode(entry.getHostname(), entry.isActive(),
                 entry.getResourcePool(), entry.getMemMax(),
+                entry.getCoresMax(), entry.getDiskMax(),
                 entry.getSupportedAssociations(), entry.isVacant());
 
         vmm.setMemRemain(entry.getMemCurrent());
+        vmm.setCoresRemain(entry.getCoresCurrent());
+        vmm.setDiskRemain(entry.getDiskCurrent());
+        vmm.setImageCache(entry.getImageCacheMax());
         return vmm;
     }
 }
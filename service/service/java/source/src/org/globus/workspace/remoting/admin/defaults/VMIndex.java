@@ -0,0 +1,250 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.remoting.admin.defaults;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the active VM IDs, indexed by host, creator DN and
+ * state so that admin queries do not translate every VM to find the few
+ * they want.  Every ID list is sorted ascending, which lets a caller page
+ * through a result with the last ID it saw as the cursor.
+ *
+ * The snapshot goes stale as VMs change, callers re-check the attribute
+ * they queried on when they load the VMs of a page.
+ */
+public class VMIndex {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final int[] EMPTY = new int[0];
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final long created;
+    private final int[] all;
+    private final Map<String, int[]> byHost;
+    private final Map<String, int[]> byDN;
+    private final Map<String, int[]> byState;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    private VMIndex(int[] all,
+                    Map<String, int[]> byHost,
+                    Map<String, int[]> byDN,
+                    Map<String, int[]> byState) {
+        this.created = System.currentTimeMillis();
+        this.all = all;
+        this.byHost = byHost;
+        this.byDN = byDN;
+        this.byState = byState;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // QUERY
+    // -------------------------------------------------------------------------
+
+    public long getCreated() {
+        return this.created;
+    }
+
+    public int size() {
+        return this.all.length;
+    }
+
+    public int[] all() {
+        return this.all;
+    }
+
+    /**
+     * @param host VMM hostname
+     * @return sorted IDs, never null
+     */
+    public int[] byHost(String host) {
+        return lookup(this.byHost, host);
+    }
+
+    /**
+     * @param dn creator identity
+     * @return sorted IDs, never null
+     */
+    public int[] byDN(String dn) {
+        return lookup(this.byDN, dn);
+    }
+
+    /**
+     * @param dns creator identities, may be null
+     * @return sorted IDs of VMs created by any of them, never null
+     */
+    public int[] byDNs(String[] dns) {
+        if (dns == null || dns.length == 0) {
+            return EMPTY;
+        }
+        final List<int[]> lists = new ArrayList<int[]>(dns.length);
+        int total = 0;
+        for (String dn : dns) {
+            final int[] ids = this.byDN(dn);
+            if (ids.length > 0) {
+                lists.add(ids);
+                total += ids.length;
+            }
+        }
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        // each VM has one creator, the lists do not overlap
+        final int[] ret = new int[total];
+        int pos = 0;
+        for (int[] ids : lists) {
+            System.arraycopy(ids, 0, ret, pos, ids.length);
+            pos += ids.length;
+        }
+        Arrays.sort(ret);
+        return ret;
+    }
+
+    /**
+     * @param state state name as reported to clients, case is ignored
+     * @return sorted IDs, never null
+     */
+    public int[] byState(String state) {
+        if (state == null) {
+            return EMPTY;
+        }
+        return lookup(this.byState, state.toLowerCase());
+    }
+
+    /**
+     * @return every host that has a VM
+     */
+    public Set<String> hosts() {
+        return Collections.unmodifiableSet(this.byHost.keySet());
+    }
+
+    /**
+     * @param ids sorted IDs
+     * @param afterID cursor, only IDs greater than this are returned
+     * @param limit maximum number of IDs returned
+     * @return the page, never null
+     */
+    public static int[] page(int[] ids, int afterID, int limit) {
+        int start = Arrays.binarySearch(ids, afterID);
+        start = start < 0 ? -start - 1 : start + 1;
+        final int end = Math.min(ids.length, start + Math.max(0, limit));
+        if (start >= end) {
+            return EMPTY;
+        }
+        final int[] ret = new int[end - start];
+        System.arraycopy(ids, start, ret, 0, ret.length);
+        return ret;
+    }
+
+    private static int[] lookup(Map<String, int[]> map, String key) {
+        if (key == null) {
+            return EMPTY;
+        }
+        final int[] ids = map.get(key);
+        return ids == null ? EMPTY : ids;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // BUILD
+    // -------------------------------------------------------------------------
+
+    public static class Builder {
+
+        private final List<Integer> all = new ArrayList<Integer>();
+        private final Map<String, List<Integer>> byHost =
+                new HashMap<String, List<Integer>>();
+        private final Map<String, List<Integer>> byDN =
+                new HashMap<String, List<Integer>>();
+        private final Map<String, List<Integer>> byState =
+                new HashMap<String, List<Integer>>();
+
+        /**
+         * @param id VM ID
+         * @param host VMM hostname, may be null if not scheduled yet
+         * @param dn creator identity, may be null
+         * @param state state name as reported to clients, may be null
+         * @return this
+         */
+        public Builder add(int id, String host, String dn, String state) {
+            final Integer key = new Integer(id);
+            this.all.add(key);
+            add(this.byHost, host, key);
+            add(this.byDN, dn, key);
+            add(this.byState, state == null ? null : state.toLowerCase(), key);
+            return this;
+        }
+
+        public VMIndex build() {
+            return new VMIndex(toSortedArray(this.all),
+                               freeze(this.byHost),
+                               freeze(this.byDN),
+                               freeze(this.byState));
+        }
+
+        private static void add(Map<String, List<Integer>> map,
+                                String key,
+                                Integer id) {
+            if (key == null) {
+                return;
+            }
+            List<Integer> ids = map.get(key);
+            if (ids == null) {
+                ids = new ArrayList<Integer>(4);
+                map.put(key, ids);
+            }
+            ids.add(id);
+        }
+
+        private static Map<String, int[]> freeze(
+                Map<String, List<Integer>> map) {
+            final Map<String, int[]> ret =
+                    new HashMap<String, int[]>(map.size() * 2);
+            for (Map.Entry<String, List<Integer>> entry : map.entrySet()) {
+                ret.put(entry.getKey(), toSortedArray(entry.getValue()));
+            }
+            return ret;
+        }
+
+        private static int[] toSortedArray(List<Integer> ids) {
+            final int[] ret = new int[ids.size()];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = ids.get(i).intValue();
+            }
+            Arrays.sort(ret);
+            return ret;
+        }
+    }
+}
@@ -23,10 +23,17 @@ import java.util.List;
 public interface NodeManagement {
 
     //Create
+
+    /**
+     * @param cores CPU cores VMs may use, 0 if the node is not limited by cores
+     * @param disk MB of scratch disk VMs may use, 0 if not limited by disk
+     */
     public ResourcepoolEntry addNode(String hostname,
                                      String pool,
                                      String networks,
                                      int memory,
+                                     int cores,
+                                     int disk,
                                      boolean active)
             throws NodeExistsException, NodeManagementDisabled, WorkspaceDatabaseException;
 
@@ -47,6 +54,8 @@ public interface NodeManagement {
      * @param pool the new resourcepool name, can be null
      * @param networks the new networks association list, can be null
      * @param memory the new max memory value for the node, can be null
+     * @param cores the new max CPU cores for the node, 0 to stop tracking, can be null
+     * @param disk the new max scratch disk MB for the node, 0 to stop tracking, can be null
      * @param active the new active state for the node, can be null
      * @return the updated ResourcepoolEntry
      * @throws NodeInUseException node was in use and could not be updated
@@ -56,10 +65,27 @@ public interface NodeManagement {
                               String pool,
                               String networks,
                               Integer memory,
+                              Integer cores,
+                              Integer disk,
                               Boolean active)
             throws NodeInUseException, NodeNotFoundException,
                    NodeManagementDisabled, WorkspaceDatabaseException;
 
+    /**
+     * Sets the size budget of the node's image cache.  It reaches the node
+     * with the next image propagation there, so unlike capacity updates
+     * this is allowed while VMs are running.
+     *
+     * @param hostname the node to be updated, required
+     * @param megabytes cache budget in MB, 0 to leave it to the node's own
+     *        workspace-control configuration
+     * @return the updated ResourcepoolEntry
+     * @throws NodeNotFoundException node wasn't found
+     */
+    public ResourcepoolEntry setImageCacheMax(String hostname, int megabytes)
+            throws NodeNotFoundException, NodeManagementDisabled,
+                   WorkspaceDatabaseException;
+
     //Delete                                                            `
     public boolean removeNode(String hostname)
             throws NodeInUseException, NodeManagementDisabled, WorkspaceDatabaseException;
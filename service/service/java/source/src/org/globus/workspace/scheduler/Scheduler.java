@@ -39,6 +39,7 @@ public interface Scheduler extends StateChangeInterested{
      *
      * @param memory MB needed
      * @param cores CPU cores needed
+     * @param disk MB of scratch disk needed
      * @param duration seconds needed
      * @param neededAssociations networks needed
      * @param resourcePool needed
@@ -46,12 +47,15 @@ public interface Scheduler extends StateChangeInterested{
      * @param groupid group ID, can be null
      * @param coschedid co-scheduling ID, can be null
      * @param creatorDN creator's identifying DN, can be null
+     * @param imageChecksum checksum of the image the VMs boot from, used to
+     *        prefer nodes that have it cached, can be null
      * @return reservation never null
      * @throws ResourceRequestDeniedException will not grant
      * @throws SchedulingException internal problem
      */
     public Reservation schedule(int memory,
                                 int cores,
+                                int disk,
                                 int duration,
                                 String[] neededAssociations,
                                 String resourcePool,
@@ -59,7 +63,8 @@ public interface Scheduler extends StateChangeInterested{
                                 String groupid,
                                 String coschedid,
                                 boolean preemptable,
-                                String creatorDN)
+                                String creatorDN,
+                                String imageChecksum)
                 
             throws SchedulingException,
                    ResourceRequestDeniedException;
@@ -139,6 +144,7 @@ public interface Scheduler extends StateChangeInterested{
      * @param reservation reservation from schedule() call
      * @param memory memory amount from schedule() call
      * @param cores core count from schedule() call
+     * @param disk scratch disk amount from schedule() call
      * @param duration duration minutes from schedule() call
      * @param preemptible preemptibility flag from schedule() call
      * @throws ManageException generic failure
@@ -146,6 +152,7 @@ public interface Scheduler extends StateChangeInterested{
     public void removeScheduling(Reservation reservation,
                                  int memory,
                                  int cores,
+                                 int disk,
                                  int duration,
                                  boolean preemptible)
             throws ManageException;
@@ -0,0 +1,510 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.globus.workspace.scheduler.defaults.placement.PlacementStrategy;
+import org.nimbustools.api.services.rm.ImpossibleAmountOfMemoryException;
+import org.nimbustools.api.services.rm.NotEnoughMemoryException;
+import org.nimbustools.api.services.rm.ResourceRequestDeniedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Places all of an ensemble's VMs together, on an in-memory copy of the
+ * resource pool, before anything is written to the database.
+ *
+ * 1. Each request's eligible nodes are worked out once (active, right
+ *    pool, supports the networks, big enough when empty).
+ * 2. Aggregate feasibility: for each request, the number of its VMs the
+ *    eligible nodes could hold right now, and the ensemble's total memory
+ *    (and cores and disk when every eligible node tracks them) against
+ *    what is free.  Most impossible ensembles stop here.
+ * 3. First-fit-decreasing with limited backtracking: VMs are placed
+ *    largest first (most constrained first among equals).  For each VM
+ *    the configured placement strategy's pick is tried first, then every
+ *    other node that fits in pool order.  When a VM fits nowhere the
+ *    previous choice is undone and the next alternative tried, up to a
+ *    limit on the number of backtracks.  Nodes in an identical state are
+ *    only tried once per VM, which keeps the search small on homogeneous
+ *    clusters.
+ *
+ * Not thread safe, the slot manager's lock is assumed to be held.
+ */
+class CoschedulingSolver {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final Log logger =
+        LogFactory.getLog(CoschedulingSolver.class.getName());
+
+    static final int DEFAULT_BACKTRACK_LIMIT = 10000;
+
+    static final Comparator<NodeRequest> LARGEST_FIRST =
+            new Comparator<NodeRequest>() {
+                public int compare(NodeRequest a, NodeRequest b) {
+                    if (a.getMemory() != b.getMemory()) {
+                        return a.getMemory() > b.getMemory() ? -1 : 1;
+                    }
+                    if (a.getCores() != b.getCores()) {
+                        return a.getCores() > b.getCores() ? -1 : 1;
+                    }
+                    if (a.getDisk() != b.getDisk()) {
+                        return a.getDisk() > b.getDisk() ? -1 : 1;
+                    }
+                    return 0;
+                }
+            };
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final PlacementStrategy strategy;
+    private final int backtrackLimit;
+    private final boolean trace;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    CoschedulingSolver(PlacementStrategy strategy,
+                       int backtrackLimit,
+                       boolean trace) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy may not be null");
+        }
+        if (backtrackLimit < 0) {
+            throw new IllegalArgumentException(
+                    "backtrackLimit may not be negative");
+        }
+        this.strategy = strategy;
+        this.backtrackLimit = backtrackLimit;
+        this.trace = trace;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // SOLVE
+    // -------------------------------------------------------------------------
+
+    /**
+     * On success the chosen entries in nodes have had the ensemble's
+     * memory, cores and disk deducted, see Placement#getChanged.  On
+     * failure nodes are left as they were.
+     *
+     * @param requests ensemble's requests
+     * @param nodes every resource pool entry, modified on success
+     * @return hostname for every VM, in order of the requests and their ids
+     * @throws ImpossibleAmountOfMemoryException a request can never fit
+     * @throws NotEnoughMemoryException no placement now (a later attempt or
+     *         preemption may help)
+     * @throws ResourceRequestDeniedException other problem with the request
+     */
+    Placement solve(final NodeRequest[] requests, List<ResourcepoolEntry> nodes)
+            throws ResourceRequestDeniedException {
+
+        if (requests == null || requests.length == 0) {
+            throw new IllegalArgumentException("requests null or length 0?");
+        }
+        if (nodes == null) {
+            throw new IllegalArgumentException("nodes may not be null");
+        }
+
+        final int[] offsets = new int[requests.length];
+        int slotCount = 0;
+        for (int i = 0; i < requests.length; i++) {
+            if (requests[i] == null || requests[i].getIds() == null) {
+                throw new ResourceRequestDeniedException(
+                        "Cannot proceed, no ids in NodeRequest (?)");
+            }
+            offsets[i] = slotCount;
+            slotCount += requests[i].getIds().length;
+        }
+
+        final List<List<ResourcepoolEntry>> eligible =
+                new ArrayList<List<ResourcepoolEntry>>(requests.length);
+        for (NodeRequest request : requests) {
+            eligible.add(this.eligible(request, nodes));
+        }
+
+        this.checkAggregate(requests, eligible);
+
+        // largest first, fewest eligible nodes first among equals
+        final Integer[] order = new Integer[requests.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                final int bySize = LARGEST_FIRST.compare(requests[a], requests[b]);
+                if (bySize != 0) {
+                    return bySize;
+                }
+                return eligible.get(a).size() - eligible.get(b).size();
+            }
+        });
+
+        final int[] slotRequest = new int[slotCount];
+        final int[] slotOut = new int[slotCount];
+        int k = 0;
+        for (Integer r : order) {
+            for (int j = 0; j < requests[r].getIds().length; j++) {
+                slotRequest[k] = r;
+                slotOut[k] = offsets[r] + j;
+                k++;
+            }
+        }
+
+        final ResourcepoolEntry[] chosen = new ResourcepoolEntry[slotCount];
+        final List<List<ResourcepoolEntry>> options =
+                new ArrayList<List<ResourcepoolEntry>>(slotCount);
+        final int[] next = new int[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            options.add(null);
+        }
+
+        int depth = 0;
+        int backtracks = 0;
+        while (depth < slotCount) {
+
+            final NodeRequest request = requests[slotRequest[depth]];
+
+            if (options.get(depth) == null) {
+                options.set(depth, this.options(request,
+                        eligible.get(slotRequest[depth])));
+                next[depth] = 0;
+            }
+
+            final List<ResourcepoolEntry> these = options.get(depth);
+            if (next[depth] < these.size()) {
+                final ResourcepoolEntry entry = these.get(next[depth]);
+                next[depth]++;
+                take(entry, request);
+                chosen[depth] = entry;
+                depth++;
+                continue;
+            }
+
+            // nothing left to try for this VM, undo the previous one
+            options.set(depth, null);
+            if (depth == 0 || backtracks == this.backtrackLimit) {
+                for (int i = 0; i < depth; i++) {
+                    give(chosen[i], requests[slotRequest[i]]);
+                }
+                final String msg;
+                if (depth == 0) {
+                    msg = "No placement for the " + slotCount + " VMs of " +
+                          "this ensemble";
+                } else {
+                    msg = "No placement for the " + slotCount + " VMs of " +
+                          "this ensemble found after " + backtracks +
+                          " backtracks";
+                }
+                logger.error(msg);
+                throw new NotEnoughMemoryException(msg);
+            }
+            backtracks++;
+            depth--;
+            give(chosen[depth], requests[slotRequest[depth]]);
+            chosen[depth] = null;
+        }
+
+        final String[] hostnames = new String[slotCount];
+        final Map<ResourcepoolEntry,Boolean> changed =
+                new IdentityHashMap<ResourcepoolEntry,Boolean>();
+        final List<ResourcepoolEntry> changedList =
+                new ArrayList<ResourcepoolEntry>();
+        for (int i = 0; i < slotCount; i++) {
+            hostnames[slotOut[i]] = chosen[i].getHostname();
+            if (changed.put(chosen[i], Boolean.TRUE) == null) {
+                changedList.add(chosen[i]);
+            }
+        }
+
+        if (this.trace) {
+            logger.trace("placed " + slotCount + " coscheduled VMs on " +
+                         changedList.size() + " nodes with " + backtracks +
+                         " backtracks");
+        }
+
+        return new Placement(hostnames, changedList, backtracks);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // IMPL
+    // -------------------------------------------------------------------------
+
+    private List<ResourcepoolEntry> eligible(NodeRequest request,
+                                             List<ResourcepoolEntry> nodes)
+            throws ResourceRequestDeniedException {
+
+        final String pool = request.getResourcePool();
+        final int mem = request.getMemory();
+        final int cores = cores(request);
+        final int disk = disk(request);
+
+        boolean poolExists = pool == null;
+        final List<ResourcepoolEntry> list = new ArrayList<ResourcepoolEntry>();
+        for (ResourcepoolEntry node : nodes) {
+            if (pool != null && !pool.equals(node.getResourcePool())) {
+                continue;
+            }
+            poolExists = true;
+            if (node.isActive()) {
+                list.add(node);
+            }
+        }
+
+        if (!poolExists) {
+            final String err = "Resource pool (Availability Zone) '" + pool +
+                    "' does not exist.";
+            logger.error(err);
+            throw new ResourceRequestDeniedException(err);
+        }
+        if (list.isEmpty()) {
+            final String err = "No resource is available for this request.";
+            logger.error(err);
+            throw new NotEnoughMemoryException(err);
+        }
+
+        ResourcepoolUtil.netFilter(list, request.getNeededAssociations(),
+                                   this.trace);
+        if (list.isEmpty()) {
+            final String err = "No resource can support the requested network(s).";
+            logger.error(err);
+            throw new ResourceRequestDeniedException(err);
+        }
+
+        for (int i = list.size() - 1; i >= 0; i--) {
+            final ResourcepoolEntry node = list.get(i);
+            if (node.getMemMax() < mem
+                    || (node.isCoresTracked() && node.getCoresMax() < cores)
+                    || (node.isDiskTracked() && node.getDiskMax() < disk)) {
+                list.remove(i);
+            }
+        }
+        if (list.isEmpty()) {
+            throw new ImpossibleAmountOfMemoryException(mem + "MB memory, " +
+                    cores + " core, " + disk + "MB disk request is " +
+                    "too large to ever be fulfilled");
+        }
+        return list;
+    }
+
+    private void checkAggregate(NodeRequest[] requests,
+                                List<List<ResourcepoolEntry>> eligible)
+            throws NotEnoughMemoryException {
+
+        final Set<ResourcepoolEntry> union = new HashSet<ResourcepoolEntry>();
+        long memNeeded = 0;
+        long coresNeeded = 0;
+        long diskNeeded = 0;
+
+        for (int i = 0; i < requests.length; i++) {
+            final NodeRequest request = requests[i];
+            final int count = request.getIds().length;
+            final int mem = request.getMemory();
+            final int cores = cores(request);
+            final int disk = disk(request);
+
+            long room = 0;
+            for (ResourcepoolEntry node : eligible.get(i)) {
+                room += room(node, mem, cores, disk);
+                if (room >= count) {
+                    break;
+                }
+            }
+            if (room < count) {
+                final String err = "Only room for " + room + " of " + count +
+                        " VMs with " + mem + " MB memory, " + cores +
+                        " cores and " + disk + " MB disk";
+                logger.error(err);
+                throw new NotEnoughMemoryException(err);
+            }
+
+            union.addAll(eligible.get(i));
+            memNeeded += (long) count * mem;
+            coresNeeded += (long) count * cores;
+            diskNeeded += (long) count * disk;
+        }
+
+        long memFree = 0;
+        long coresFree = 0;
+        long diskFree = 0;
+        boolean coresBound = true;
+        boolean diskBound = true;
+        for (ResourcepoolEntry node : union) {
+            memFree += node.getMemCurrent();
+            if (node.isCoresTracked()) {
+                coresFree += node.getCoresCurrent();
+            } else {
+                coresBound = false;
+            }
+            if (node.isDiskTracked()) {
+                diskFree += node.getDiskCurrent();
+            } else {
+                diskBound = false;
+            }
+        }
+
+        String err = null;
+        if (memNeeded > memFree) {
+            err = "Ensemble needs " + memNeeded + " MB memory, " + memFree +
+                  " MB available";
+        } else if (coresBound && coresNeeded > coresFree) {
+            err = "Ensemble needs " + coresNeeded + " cores, " + coresFree +
+                  " available";
+        } else if (diskBound && diskNeeded > diskFree) {
+            err = "Ensemble needs " + diskNeeded + " MB disk, " + diskFree +
+                  " MB available";
+        }
+        if (err != null) {
+            logger.error(err);
+            throw new NotEnoughMemoryException(err);
+        }
+    }
+
+    // how many VMs of this size fit on the node as it is now
+    private static long room(ResourcepoolEntry node, int mem, int cores, int disk) {
+        long room = mem < 1 ? Integer.MAX_VALUE : node.getMemCurrent() / mem;
+        if (node.isCoresTracked()) {
+            room = Math.min(room, node.getCoresCurrent() / cores);
+        }
+        if (node.isDiskTracked() && disk > 0) {
+            room = Math.min(room, node.getDiskCurrent() / disk);
+        }
+        return Math.max(0, room);
+    }
+
+    /*
+     * Nodes to try for one VM: the strategy's pick first, then the rest in
+     * pool order.  Of nodes in an identical state only the first is kept,
+     * trying the others could never lead anywhere new.
+     */
+    private List<ResourcepoolEntry> options(NodeRequest request,
+                                            List<ResourcepoolEntry> eligible) {
+
+        final int mem = request.getMemory();
+        final int cores = cores(request);
+        final int disk = disk(request);
+
+        final Set<String> seen = new HashSet<String>();
+        final List<ResourcepoolEntry> fit = new ArrayList<ResourcepoolEntry>();
+        for (ResourcepoolEntry node : eligible) {
+            if (node.fits(mem, cores, disk) && seen.add(stateKey(node))) {
+                fit.add(node);
+            }
+        }
+        if (fit.size() < 2) {
+            return fit;
+        }
+
+        // strategies may reorder the list they are given
+        final ResourcepoolEntry pick = this.strategy.choose(
+                new ArrayList<ResourcepoolEntry>(fit), mem, cores, disk);
+        final int at = pick == null ? -1 : fit.indexOf(pick);
+        if (at > 0) {
+            fit.remove(at);
+            fit.add(0, pick);
+        }
+        return fit;
+    }
+
+    private static String stateKey(ResourcepoolEntry node) {
+        return node.getResourcePool() + '|' + node.getSupportedAssociations() +
+               '|' + node.getMemMax() + '|' + node.getMemCurrent() +
+               '|' + node.getCoresMax() + '|' + node.getCoresCurrent() +
+               '|' + node.getDiskMax() + '|' + node.getDiskCurrent();
+    }
+
+    private static void take(ResourcepoolEntry node, NodeRequest request) {
+        node.addMemCurrent(-request.getMemory());
+        if (node.isCoresTracked()) {
+            node.addCoresCurrent(-cores(request));
+        }
+        if (node.isDiskTracked()) {
+            node.addDiskCurrent(-disk(request));
+        }
+    }
+
+    private static void give(ResourcepoolEntry node, NodeRequest request) {
+        node.addMemCurrent(request.getMemory());
+        if (node.isCoresTracked()) {
+            node.addCoresCurrent(cores(request));
+        }
+        if (node.isDiskTracked()) {
+            node.addDiskCurrent(disk(request));
+        }
+    }
+
+    // same normalization as ResourcepoolUtil
+    private static int cores(NodeRequest request) {
+        return Math.max(1, request.getCores());
+    }
+
+    private static int disk(NodeRequest request) {
+        return Math.max(0, request.getDisk());
+    }
+
+
+    // -------------------------------------------------------------------------
+    // RESULT
+    // -------------------------------------------------------------------------
+
+    static class Placement {
+
+        private final String[] hostnames;
+        private final List<ResourcepoolEntry> changed;
+        private final int backtracks;
+
+        Placement(String[] hostnames,
+                  List<ResourcepoolEntry> changed,
+                  int backtracks) {
+            this.hostnames = hostnames;
+            this.changed = changed;
+            this.backtracks = backtracks;
+        }
+
+        // one per VM, in order of the requests and their ids
+        String[] getHostnames() {
+            return this.hostnames;
+        }
+
+        // entries with capacity deducted, each once
+        List<ResourcepoolEntry> getChanged() {
+            return this.changed;
+        }
+
+        int getBacktracks() {
+            return this.backtracks;
+        }
+    }
+}
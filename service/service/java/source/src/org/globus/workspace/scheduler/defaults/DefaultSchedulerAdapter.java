@@ -22,6 +22,7 @@ import org.globus.workspace.Lager;
 import org.globus.workspace.StateChangeInterested;
 import org.globus.workspace.WorkspaceConstants;
 import org.globus.workspace.LockManager;
+import org.globus.workspace.metrics.Metrics;
 import org.globus.workspace.persistence.DataConvert;
 import org.globus.workspace.persistence.WorkspaceDatabaseException;
 import org.globus.workspace.scheduler.StateChangeEvent;
@@ -225,6 +226,7 @@ public class DefaultSchedulerAdapter implements Scheduler {
 
     public Reservation schedule(int memory,
                                 int cores,
+                                int disk,
                                 int duration,
                                 String[] neededAssociations,
                                 String resourcePool,
@@ -232,7 +234,8 @@ public class DefaultSchedulerAdapter implements Scheduler {
                                 String groupid,
                                 String coschedid,
                                 boolean preemptable,
-								String creatorDN)
+								String creatorDN,
+                                String imageChecksum)
 
             throws SchedulingException,
                    ResourceRequestDeniedException {
@@ -265,7 +268,8 @@ public class DefaultSchedulerAdapter implements Scheduler {
         this.creationPending.pending(ids);
 
         final NodeRequest req =
-                new NodeRequest(ids, memory, cores, duration, assocs, resourcePool, groupid, creatorDN);
+                new NodeRequest(ids, memory, cores, disk, duration, assocs, resourcePool, groupid, creatorDN);
+        req.setImageChecksum(imageChecksum);
 
         try {
 
@@ -295,7 +299,13 @@ public class DefaultSchedulerAdapter implements Scheduler {
         final String invalidResponse = "Implementation problem: slot " +
                 "manager returned invalid response";
 
-        final Reservation res = this.slotManager.reserveSpace(req, preemptable);
+        final Reservation res;
+        final long reserveStart = System.nanoTime();
+        try {
+            res = this.slotManager.reserveSpace(req, preemptable);
+        } finally {
+            Metrics.histogram("scheduler.reserve").recordSince(reserveStart);
+        }
 
         if (res == null) {
             throw new ResourceRequestDeniedException(
@@ -441,8 +451,13 @@ public class DefaultSchedulerAdapter implements Scheduler {
                     " being called?");
         }
 
-        final Reservation res =
-                this.slotManager.reserveCoscheduledSpace(reqs, coschedid);
+        final Reservation res;
+        final long reserveStart = System.nanoTime();
+        try {
+            res = this.slotManager.reserveCoscheduledSpace(reqs, coschedid);
+        } finally {
+            Metrics.histogram("scheduler.reserveCoscheduled").recordSince(reserveStart);
+        }
 
         final String invalidResponse = "Implementation problem: slot " +
                 "manager returned invalid response";
@@ -933,6 +948,7 @@ public class DefaultSchedulerAdapter implements Scheduler {
     public void removeScheduling(Reservation reservation,
                                  int memory,
                                  int cores,
+                                 int disk,
                                  int duration,
                                  boolean preemptible) throws ManageException {
 
@@ -947,7 +963,7 @@ public class DefaultSchedulerAdapter implements Scheduler {
 
         // leaving out some fields that don't matter
         NodeRequest request = new NodeRequest(reservation.getIds(),
-                memory, cores, duration, null, null, null, null);
+                memory, cores, disk, duration, null, null, null, null);
 
         this.slotManager.releaseSpace(request, reservation, preemptible);
     }
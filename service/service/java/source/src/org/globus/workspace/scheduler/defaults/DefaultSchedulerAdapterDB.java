@@ -463,6 +463,9 @@ public class DefaultSchedulerAdapterDB {
                     pstmt.setNull(6, Types.VARCHAR);
                 }
 
+                pstmt.setInt(7, req.getCores());
+                pstmt.setInt(8, req.getDisk());
+
                 pstmt.executeUpdate();
                 pstmt.close();
                 pstmt = null;
@@ -517,6 +520,8 @@ public class DefaultSchedulerAdapterDB {
                     int duration = rs.getInt(3);
                     int memory = rs.getInt(4);
                     String assocStr = rs.getString(5);
+                    int cores = rs.getInt(6);
+                    int disk = rs.getInt(7);
 
                     final NodeRequest req;
                     if (groupid != null) {
@@ -533,6 +538,8 @@ public class DefaultSchedulerAdapterDB {
                     }
 
                     req.addId(id);
+                    req.setCores(cores);
+                    req.setDisk(disk);
 
                     if (assocStr != null) {
                         String[] assocs = assocStr.split(",");
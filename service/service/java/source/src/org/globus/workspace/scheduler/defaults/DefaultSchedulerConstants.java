@@ -54,7 +54,7 @@ public interface DefaultSchedulerConstants {
             "UPDATE default_scheduler_current_tasks SET shutdown=1 WHERE id=?";
 
     public static final String SQL_INSERT_NODE_REQUEST =
-            "INSERT into default_scheduler_pending_ensemb VALUES(?,?,?,?,?,?)";
+            "INSERT into default_scheduler_pending_ensemb VALUES(?,?,?,?,?,?,?,?)";
 
     public static final String SQL_DELETE_NODE_REQUESTS =
             "DELETE FROM default_scheduler_pending_ensemb WHERE coschedid=?";
@@ -63,7 +63,8 @@ public interface DefaultSchedulerConstants {
             "DELETE FROM default_scheduler_pending_ensemb WHERE id=?";
 
     public static final String SQL_SELECT_LOAD_NODE_REQUESTS =
-            "SELECT groupid,id,min_duration,ind_physmem,assocs_needed FROM " +
+            "SELECT groupid,id,min_duration,ind_physmem,assocs_needed," +
+            "ind_physcpu,ind_disk FROM " +
             "default_scheduler_pending_ensemb WHERE coschedid=?";
 
     public static final String SQL_INSERT_NODE_REQUESTS_SENT =
@@ -16,7 +16,6 @@
 
 package org.globus.workspace.scheduler.defaults;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -34,6 +33,9 @@ import org.globus.workspace.scheduler.NodeManagement;
 import org.globus.workspace.scheduler.NodeNotFoundException;
 import org.globus.workspace.scheduler.Reservation;
 import org.globus.workspace.scheduler.Scheduler;
+import org.globus.workspace.scheduler.defaults.placement.ImageAffinityPlacement;
+import org.globus.workspace.scheduler.defaults.placement.PlacementStrategies;
+import org.globus.workspace.scheduler.defaults.placement.PlacementStrategy;
 import org.globus.workspace.service.InstanceResource;
 import org.globus.workspace.service.WorkspaceHome;
 import org.globus.workspace.service.binding.vm.VirtualMachine;
@@ -70,7 +72,16 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
     private WorkspaceHome home;
     private PreemptableSpaceManager preempManager;    
 
-    private boolean greedy;
+    private PlacementStrategy placement =
+            PlacementStrategies.create(PlacementStrategies.ROUND_ROBIN);
+
+    private int coschedulingBacktrackLimit =
+            CoschedulingSolver.DEFAULT_BACKTRACK_LIMIT;
+
+    // may be null, placement then ignores which images nodes hold
+    private ImageCacheRegistry imageCache;
+
+    private double imageAffinityMargin = ImageAffinityPlacement.DEFAULT_MARGIN;
 
 
     // -------------------------------------------------------------------------
@@ -116,21 +127,55 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
     // -------------------------------------------------------------------------
 
 
+    /**
+     * @param selectionStrategy "round-robin", "greedy", "dot-product",
+     *        "best-fit" or a PlacementStrategy class name
+     * @see PlacementStrategies#create
+     */
     public void setSelectionStrategy(String selectionStrategy) {
+        this.placement = PlacementStrategies.create(selectionStrategy);
+    }
 
-        // leave room for more options in the future
-        final String RROBIN = "round-robin";
-        final String GREEDY = "greedy";
-        
-        if (RROBIN.equalsIgnoreCase(selectionStrategy)) {
-            this.greedy = false;
-        } else if (GREEDY.equalsIgnoreCase(selectionStrategy)) {
-            this.greedy = true;
-        } else {
-            throw new IllegalArgumentException(
-                    "Unknown VMM selection strategy: '" + selectionStrategy + "'.  This " +
-                            "scheduler only accepts: '" + RROBIN + "' and '" + GREEDY + '\'');
+    public void setPlacementStrategy(PlacementStrategy placementStrategy) {
+        if (placementStrategy == null) {
+            throw new IllegalArgumentException("placementStrategy may not be null");
+        }
+        this.placement = placementStrategy;
+    }
+
+    public PlacementStrategy getPlacementStrategy() {
+        return this.placement;
+    }
+
+    /**
+     * @param limit how many earlier choices the coscheduling solver may undo
+     *        while looking for a placement of a whole ensemble, 0 for plain
+     *        first-fit-decreasing
+     */
+    public void setCoschedulingBacktrackLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit may not be negative");
         }
+        this.coschedulingBacktrackLimit = limit;
+    }
+
+    /**
+     * @param registry images cached on each node, single and group requests
+     *        then prefer nodes holding their image
+     */
+    public void setImageCache(ImageCacheRegistry registry) {
+        this.imageCache = registry;
+    }
+
+    /**
+     * @param margin how much busier (used fraction of memory, cores or
+     *        disk) than the selection strategy's choice a node holding the
+     *        image may be and still be preferred, negative for no image
+     *        affinity
+     * @see ImageAffinityPlacement
+     */
+    public void setImageAffinityMargin(double margin) {
+        this.imageAffinityMargin = margin;
     }
 
     // -------------------------------------------------------------------------
@@ -233,10 +278,18 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
 
             final int[] vmids = req.getIds();
 
+            final PlacementStrategy strategy =
+                    ImageAffinityPlacement.wrap(this.placement,
+                                                this.imageCache,
+                                                req.getImageChecksum(),
+                                                this.imageAffinityMargin);
+
             final String[] hostnames =
                     this.reserveSpace(vmids, req.getMemory(),
+                                      req.getCores(), req.getDisk(),
                                       req.getNeededAssociations(),
-                                      req.getResourcePool(), preemptable);
+                                      req.getResourcePool(), strategy,
+                                      preemptable);
 
             return new Reservation(vmids, hostnames);
         } finally {
@@ -270,40 +323,36 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
             throw new IllegalArgumentException("requests null or length 0?");
         }
 
-        final ArrayList idInts = new ArrayList(64);
-        final ArrayList allHostnames = new ArrayList(64);
-        final ArrayList allDurations = new ArrayList(64);
-        final ArrayList allMemory = new ArrayList(64); // for backouts if needed
+        // All VMs are placed together in memory first: nothing reaches the
+        // database unless the whole ensemble fits, so there is nothing to
+        // back out and no partial reservation for others to trip over.
+        final CoschedulingSolver solver =
+                new CoschedulingSolver(this.placement,
+                                       this.coschedulingBacktrackLimit,
+                                       this.lager.traceLog);
 
+        CoschedulingSolver.Placement placement = null;
+        boolean reclaimed = false;
         try {
-            for (int i = 0; i < requests.length; i++) {
-
-                final NodeRequest request = requests[i];
-
-                final int[] ids = request.getIds();
-                if (ids == null) {
-                    throw new ResourceRequestDeniedException(
-                            "Cannot proceed, no ids in NodeRequest (?)");
+            while (placement == null) {
+                final List<ResourcepoolEntry> nodes =
+                        this.db.currentResourcepoolEntries();
+                try {
+                    placement = solver.solve(requests, nodes);
+                } catch (ImpossibleAmountOfMemoryException e) {
+                    throw e;
+                } catch (NotEnoughMemoryException e) {
+                    if (reclaimed || !this.reclaimPreemptableSpace(requests)) {
+                        throw e;
+                    }
+                    reclaimed = true;
                 }
+            }
 
-                final String[] hostnames =
-                        this.reserveSpace(ids,
-                                          request.getMemory(),
-                                          request.getNeededAssociations(),
-                                          request.getResourcePool(),
-                                          false);
-
-                final Integer duration = new Integer(request.getDuration());
+            this.db.updateResourcepoolEntriesAvailable(placement.getChanged());
 
-                for (int j = 0; j < ids.length; j++) {
-                    idInts.add(new Integer(ids[j]));
-                    allHostnames.add(hostnames[j]);
-                    allDurations.add(duration);
-                    allMemory.add(new Integer(request.getMemory()));
-                }
-            }
         } catch (Exception e) {
-            String msg = "Problem reserving space for coscheduling group '" +
+            final String msg = "Problem reserving space for coscheduling group '" +
                          coschedid + "': " + e.getMessage();
 
             if (logger.isDebugEnabled()) {
@@ -312,47 +361,80 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
                 logger.error(msg);
             }
 
-            if (allHostnames.size() != allMemory.size()) {
-                logger.fatal("Could not back reservations out, no matching " +
-                        "memory recordings (?)");
-                throw new ResourceRequestDeniedException(msg);
-                }
+            if (e instanceof ImpossibleAmountOfMemoryException) {
+                throw new ImpossibleAmountOfMemoryException(msg);
+            }
+            if (e instanceof NotEnoughMemoryException) {
+                throw new NotEnoughMemoryException(msg);
+            }
+            throw new ResourceRequestDeniedException(msg);
+        }
 
-            final String[] justReservedNodes = (String[])
-                    allHostnames.toArray(new String[allHostnames.size()]);
-            final Integer[] justReservedMemory = (Integer[])
-                    allMemory.toArray(new Integer[allMemory.size()]);
+        final String[] hostnames = placement.getHostnames();
+        final int length = hostnames.length;
 
-            for (int i = 0; i < justReservedNodes.length; i++) {
-                try {
+        final int[] all_ids = new int[length];
+        final int[] all_durations = new int[length];
 
-                    ResourcepoolUtil.retireMem(justReservedNodes[i],
-                                               justReservedMemory[i],
-                                               this.db,
-                                               this.lager.eventLog,
-                                               this.lager.traceLog,
-                                               -1, false);
-            } catch (Exception ee) {
-                    logger.error(ee.getMessage());
+        int k = 0;
+        for (NodeRequest request : requests) {
+            final int[] ids = request.getIds();
+            for (int j = 0; j < ids.length; j++) {
+                all_ids[k] = ids[j];
+                all_durations[k] = request.getDuration();
+                if (this.lager.eventLog) {
+                    logger.info(Lager.ev(ids[j]) + "coscheduling group '" +
+                            coschedid + "': " + request.getMemory() +
+                            " MB reserved on '" + hostnames[k] + "'");
                 }
+                k++;
             }
+        }
 
-            throw new ResourceRequestDeniedException(msg);
+        if (this.lager.traceLog) {
+            logger.trace("coscheduling group '" + coschedid + "': " + length +
+                    " VMs on " + placement.getChanged().size() + " nodes, " +
+                    placement.getBacktracks() + " backtracks");
         }
 
-        final int length = idInts.size();
+        return new Reservation(all_ids, hostnames, all_durations);
+    }
 
-        final int[] all_ids = new int[length];
-        final String[] all_hostnames = new String[length];
-        final int[] all_durations = new int[length];
+    /*
+     * Coscheduled VMs are never preemptible.  If preemptible VMs hold
+     * enough memory to make room for the whole ensemble, ask for it to be
+     * freed.  Returns false if that could not help.
+     */
+    private boolean reclaimPreemptableSpace(NodeRequest[] requests)
+            throws WorkspaceDatabaseException, ResourceRequestDeniedException {
+
+        if (this.preempManager == null) {
+            return false;
+        }
 
-        for (int i = 0; i < length; i++) {
-            all_ids[i] = ((Number)idInts.get(i)).intValue();
-            all_hostnames[i] = (String)allHostnames.get(i);
-            all_durations[i] = ((Integer)allDurations.get(i)).intValue();
+        final Integer usedPreemptable = this.db.getTotalPreemptableMemory();
+        if (usedPreemptable == null || usedPreemptable == 0) {
+            return false;
         }
 
-        return new Reservation(all_ids, all_hostnames, all_durations);
+        int neededMem = 0;
+        for (NodeRequest request : requests) {
+            neededMem += request.getIds().length * request.getMemory();
+        }
+
+        final Integer availableMemory = this.db.getTotalAvailableMemory();
+        if (availableMemory + usedPreemptable < neededMem) {
+            return false;
+        }
+
+        // Read the long locking comment above before using/changing
+        this._releaseDestructionLock();
+        try {
+            this.preempManager.releaseSpace(neededMem);
+        } finally {
+            this._acquireDestructionLock();
+        }
+        return true;
     }
 
     /**
@@ -365,7 +447,10 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
      *        than one VM is mapped to the same node, the returned node
      *        assignment array will include duplicates.
      * @param memory megabytes needed
+     * @param cores CPU cores needed
+     * @param disk megabytes of scratch disk needed
      * @param assocs array of needed associations, can be null
+     * @param strategy picks each VM's node
      * @param preemptable indicates if the space can be pre-empted by higher priority reservations
      * @return Names of resources.  Must match length of vmids input and caller
      *         assumes the ordering in the assignemnt array maps to the input
@@ -375,8 +460,11 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
      */
     private String[] reserveSpace(final int[] vmids,
                                   final int memory,
+                                  final int cores,
+                                  final int disk,
                                   final String[] assocs,
                                   final String availabilityZone,
+                                  final PlacementStrategy strategy,
                                   boolean preemptable)
                   throws ResourceRequestDeniedException {
 
@@ -386,7 +474,7 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
         }
 
         String msg = "request for " + vmids.length + " space(s) with " +
-                "mem = " + memory;
+                "mem = " + memory + ", cores = " + cores + ", disk = " + disk;
 
         if (lager.traceLog) {
 
@@ -424,12 +512,14 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
 
             try {
                 nodes[i] = ResourcepoolUtil.getResourcePoolEntry(memory,
+                                                                 cores,
+                                                                 disk,
                                                                  assocs,
                                                                  availabilityZone,
                                                                  this.db,
                                                                  this.lager,
                                                                  vmids[i],
-                                                                 greedy,
+                                                                 strategy,
                                                                  preemptable);
                 if (nodes[i] == null) {
                     throw new ProgrammingError(
@@ -514,7 +604,8 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
         // back out
         for (int i = 0; i < bailed; i++) {
             try {
-                ResourcepoolUtil.retireMem(nodes[i], memory, this.db,
+                ResourcepoolUtil.retireMem(nodes[i], memory, cores, disk,
+                                           this.db,
                                            this.lager.eventLog,
                                            this.lager.traceLog,
                                            vmids[i], preemptable);
@@ -576,12 +667,14 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
 
         final int nodeCount = reservation.getResponseLength();
         final int memory = nodeRequest.getMemory();
+        final int cores = nodeRequest.getCores();
+        final int disk = nodeRequest.getDisk();
 
         for (int i=0; i<nodeCount; i++) {
             final IdHostnameTuple oneReservation = reservation.getIdHostnamePair(i);
 
             this._releaseSpace(oneReservation.id, oneReservation.hostname,
-                    preemptable, memory);
+                    preemptable, memory, cores, disk);
         }
     }
 
@@ -635,15 +728,19 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
         boolean preemptable = vm.isPreemptable();
 
         final int mem = vmdep.getIndividualPhysicalMemory();
+        final int cores = vmdep.getIndividualCPUCount();
+        final int disk = vm.getScratchDisk();
 
-        _releaseSpace(vmid, node, preemptable, mem);
+        _releaseSpace(vmid, node, preemptable, mem, cores, disk);
     }
 
-    private void _releaseSpace(int vmid, String node, boolean preemptable, int mem) throws ManageException {
+    private void _releaseSpace(int vmid, String node, boolean preemptable,
+                               int mem, int cores, int disk) throws ManageException {
         logger.debug("releaseSpace() retiring mem = " + mem +
+                    ", cores = " + cores + ", disk = " + disk +
                     ", node = '" + node + "' from " + Lager.id(vmid) + ". Preemptable: " + preemptable);
 
-        ResourcepoolUtil.retireMem(node, mem, this.db,
+        ResourcepoolUtil.retireMem(node, mem, cores, disk, this.db,
                 this.lager.eventLog, this.lager.traceLog,
                 vmid, preemptable);
     }
@@ -664,6 +761,12 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
         if (this.preempManager == null) {
             throw new Exception("preempManager was not set");
         }
+        if (this.imageCache != null) {
+            for (ResourcepoolEntry entry : this.db.currentResourcepoolEntries()) {
+                this.imageCache.setBudget(entry.getHostname(),
+                                          entry.getImageCacheMax());
+            }
+        }
     }
 
 
@@ -671,6 +774,8 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
                                      String pool,
                                      String associations,
                                      int memory,
+                                     int cores,
+                                     int disk,
                                      boolean active)
             throws NodeExistsException, WorkspaceDatabaseException {
         try {
@@ -679,7 +784,8 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
             throw new WorkspaceDatabaseException(e.getMessage(), e);
         }
         try {
-            return this._addNode(hostname, pool, associations, memory, active);
+            return this._addNode(hostname, pool, associations,
+                                 memory, cores, disk, active);
         } finally {
             this.releaseWholeManagerLock();
         }
@@ -689,6 +795,8 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
                                        String pool,
                                        String associations,
                                        int memory,
+                                       int cores,
+                                       int disk,
                                        boolean active)
             throws NodeExistsException, WorkspaceDatabaseException {
 
@@ -732,9 +840,21 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
                     correctCurrentMem + " MB.");
         }
 
+        // same corner case for the optional dimensions
+        int currentCores = 0;
+        if (cores > 0) {
+            currentCores = cores - this.db.coresUsedOnPoolnode(hostname);
+        }
+        int currentDisk = 0;
+        if (disk > 0) {
+            currentDisk = disk - this.db.diskUsedOnPoolnode(hostname);
+        }
+
         final ResourcepoolEntry entry =
                 new ResourcepoolEntry(pool, hostname, memory,
-                        correctCurrentMem, 0, associations, active);
+                        correctCurrentMem, 0, associations, active,
+                        Math.max(0, cores), currentCores,
+                        Math.max(0, disk), currentDisk);
 
         //check then act protected by lock
         this.db.addResourcepoolEntry(entry);
@@ -766,6 +886,8 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
      * @param pool the new resourcepool name, can be null
      * @param networks the new networks association list, can be null
      * @param memory the new max memory value for the node, can be null
+     * @param cores the new max CPU cores for the node, 0 to stop tracking, can be null
+     * @param disk the new max scratch disk MB for the node, 0 to stop tracking, can be null
      * @param active the new active state for the node, can be null
      * @return the updated ResourcepoolEntry
      * @throws NodeInUseException
@@ -777,6 +899,8 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
             String pool,
             String networks,
             Integer memory,
+            Integer cores,
+            Integer disk,
             Boolean active)
             throws NodeInUseException, NodeNotFoundException, WorkspaceDatabaseException {
 
@@ -787,8 +911,7 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
         }
         try {
 
-            Integer availMemory = null;
-            if (memory != null) {
+            if (memory != null || cores != null || disk != null) {
                 final ResourcepoolEntry entry = getNode(hostname);
                 if (entry == null) {
                     throw new NodeNotFoundException();
@@ -796,14 +919,20 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
 
                 if (!entry.isVacant()) {
                     logger.info("Refusing to update VMM node "+ hostname+
-                            " memory max while VMs are running");
+                            " capacity max while VMs are running");
                     throw new NodeInUseException();
                 }
-                availMemory = memory;
             }
 
+            // a vacant node has everything available
+            final Integer maxCores =
+                    cores == null ? null : new Integer(Math.max(0, cores.intValue()));
+            final Integer maxDisk =
+                    disk == null ? null : new Integer(Math.max(0, disk.intValue()));
+
             boolean updated = this.db.updateResourcepoolEntry(hostname,
-                    pool, networks, memory, availMemory, active);
+                    pool, networks, memory, memory, maxCores, maxCores,
+                    maxDisk, maxDisk, null, active);
             if (!updated) {
                 throw new NodeNotFoundException();
             }
@@ -816,6 +945,27 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
         }
     }
 
+    public ResourcepoolEntry setImageCacheMax(String hostname, int megabytes)
+            throws NodeNotFoundException, WorkspaceDatabaseException {
+
+        if (hostname == null) {
+            throw new IllegalArgumentException("hostname may not be null");
+        }
+        hostname = hostname.trim();
+
+        // no capacity changes, the pool lock is not needed
+        final boolean updated = this.db.updateResourcepoolEntry(hostname,
+                null, null, null, null, null, null, null, null,
+                new Integer(Math.max(0, megabytes)), null);
+        if (!updated) {
+            throw new NodeNotFoundException();
+        }
+        if (this.imageCache != null) {
+            this.imageCache.setBudget(hostname, megabytes);
+        }
+        return getNode(hostname);
+    }
+
     public boolean removeNode(String hostname)
             throws NodeInUseException, WorkspaceDatabaseException {
         if (hostname == null) {
@@ -846,6 +996,9 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
             }
 
             result = this.db.removeResourcepoolEntry(hostname);
+            if (result && this.imageCache != null) {
+                this.imageCache.forgetNode(hostname);
+            }
             
         } finally {
             this.releaseWholeManagerLock();
@@ -879,6 +1032,17 @@ public class DefaultSlotManagement implements SlotManagement, NodeManagement {
             sb.append("\n     Max mem: ").append(re.getMemMax());
             sb.append("\n  Avail. mem: ").append(re.getMemCurrent());
             sb.append("\n  Percentage: ").append(re.percentEmpty());
+            if (re.isCoresTracked()) {
+                sb.append("\n   Max cores: ").append(re.getCoresMax());
+                sb.append("\nAvail. cores: ").append(re.getCoresCurrent());
+            }
+            if (re.isDiskTracked()) {
+                sb.append("\n    Max disk: ").append(re.getDiskMax());
+                sb.append("\n Avail. disk: ").append(re.getDiskCurrent());
+            }
+            if (re.getImageCacheMax() > 0) {
+                sb.append("\n Image cache: ").append(re.getImageCacheMax());
+            }
             sb.append("\n Preemptable: ").append(re.getMemPreemptable()).append("\n");
         }
         return sb.toString();
@@ -0,0 +1,228 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which image versions each VMM's workspace-control image cache holds, by
+ * checksum (the key workspace-control's --cachecksum option uses).
+ *
+ * Images are recorded when a propagation to a node succeeds and dropped
+ * when the node is removed or a launch that counted on the copy fails.
+ * The VMM cache evicts on its own, so this is a hint: a node listed as
+ * warm may have to fetch the image again, which is only slower.
+ *
+ * Kept in memory only, after a restart nodes warm up again as images are
+ * propagated.  Each node remembers at most maxImagesPerNode images, the
+ * least recently used are forgotten first like in the VMM cache.
+ *
+ * Also holds each node's cache budget from the resource pool so the
+ * propagation commands can pass it along without a database read.  A
+ * cleared budget is kept as 0: workspace-control keeps the last budget it
+ * was sent, so it has to be told to go back to its own configuration.
+ *
+ * Thread safe.
+ */
+public class ImageCacheRegistry {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final Log logger =
+            LogFactory.getLog(ImageCacheRegistry.class.getName());
+
+    public static final int DEFAULT_MAX_IMAGES_PER_NODE = 64;
+
+    // getBudget of a node the pool never gave a budget
+    public static final int NO_BUDGET = -1;
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    // hostname -> checksums in access order
+    private final Map<String, LinkedHashMap<String, Boolean>> nodes =
+            new HashMap<String, LinkedHashMap<String, Boolean>>();
+
+    private int maxImagesPerNode = DEFAULT_MAX_IMAGES_PER_NODE;
+
+    // hostname -> cache budget in MB, 0 if cleared
+    private final Map<String, Integer> budgets = new HashMap<String, Integer>();
+
+
+    // -------------------------------------------------------------------------
+    // SET
+    // -------------------------------------------------------------------------
+
+    public synchronized void setMaxImagesPerNode(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max must be positive");
+        }
+        this.maxImagesPerNode = max;
+    }
+
+    public synchronized int getMaxImagesPerNode() {
+        return this.maxImagesPerNode;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // UPDATES
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param hostname node the image was propagated to
+     * @param checksum image checksum, ignored if null
+     */
+    public synchronized void cached(String hostname, String checksum) {
+        if (hostname == null || checksum == null) {
+            return;
+        }
+        LinkedHashMap<String, Boolean> images = this.nodes.get(hostname);
+        if (images == null) {
+            images = new LinkedHashMap<String, Boolean>(16, 0.75f, true);
+            this.nodes.put(hostname, images);
+        }
+        images.put(checksum, Boolean.TRUE);
+        while (images.size() > this.maxImagesPerNode) {
+            final String eldest = images.keySet().iterator().next();
+            images.remove(eldest);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("image " + checksum + " cached on '" + hostname +
+                         "', " + images.size() + " known there");
+        }
+    }
+
+    /**
+     * @param hostname node
+     * @param checksum image checksum, ignored if null
+     * @return true if the node was listed with the image
+     */
+    public synchronized boolean evicted(String hostname, String checksum) {
+        if (hostname == null || checksum == null) {
+            return false;
+        }
+        final LinkedHashMap<String, Boolean> images = this.nodes.get(hostname);
+        if (images == null || images.remove(checksum) == null) {
+            return false;
+        }
+        if (images.isEmpty()) {
+            this.nodes.remove(hostname);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("image " + checksum + " no longer cached on '" +
+                         hostname + "'");
+        }
+        return true;
+    }
+
+    /**
+     * @param hostname node that left the pool
+     */
+    public synchronized void forgetNode(String hostname) {
+        if (hostname != null) {
+            this.nodes.remove(hostname);
+            this.budgets.remove(hostname);
+        }
+    }
+
+    /**
+     * @param hostname node
+     * @param megabytes the node's cache budget, below 1 for the node's own
+     */
+    public synchronized void setBudget(String hostname, int megabytes) {
+        if (hostname == null) {
+            return;
+        }
+        this.budgets.put(hostname, Math.max(0, megabytes));
+    }
+
+
+    // -------------------------------------------------------------------------
+    // QUERIES
+    // -------------------------------------------------------------------------
+
+    /**
+     * Does not count as a use of the image.
+     *
+     * @param hostname node
+     * @param checksum image checksum
+     * @return true if the node is believed to hold the image
+     */
+    public synchronized boolean isCached(String hostname, String checksum) {
+        if (hostname == null || checksum == null) {
+            return false;
+        }
+        final LinkedHashMap<String, Boolean> images = this.nodes.get(hostname);
+        return images != null && images.containsKey(checksum);
+    }
+
+    /**
+     * @param candidates nodes to look at, not modified
+     * @param checksum image checksum
+     * @return the candidates believed to hold the image, in candidate
+     *         order, may be empty
+     */
+    public synchronized List<ResourcepoolEntry> warmNodes(
+                                        List<ResourcepoolEntry> candidates,
+                                        String checksum) {
+
+        final List<ResourcepoolEntry> warm = new ArrayList<ResourcepoolEntry>();
+        if (checksum == null || candidates == null) {
+            return warm;
+        }
+        for (ResourcepoolEntry entry : candidates) {
+            if (this.isCached(entry.getHostname(), checksum)) {
+                warm.add(entry);
+            }
+        }
+        return warm;
+    }
+
+    /**
+     * @param hostname node
+     * @return the node's cache budget in MB, 0 if it was cleared (the node
+     *         uses its own), NO_BUDGET if the pool never set one
+     */
+    public synchronized int getBudget(String hostname) {
+        final Integer budget = this.budgets.get(hostname);
+        return budget == null ? NO_BUDGET : budget;
+    }
+
+    /**
+     * @param hostname node
+     * @return checksums believed cached there, least recently used first
+     */
+    public synchronized String[] getCachedImages(String hostname) {
+        final LinkedHashMap<String, Boolean> images = this.nodes.get(hostname);
+        if (images == null) {
+            return new String[0];
+        }
+        return images.keySet().toArray(new String[images.size()]);
+    }
+}
@@ -20,6 +20,7 @@ public class NodeRequest {
 
     private int memory; // MBs
     private int cores;
+    private int disk; // MBs of scratch space
     private int duration; // seconds
 
     private int[] ids = null;
@@ -27,6 +28,7 @@ public class NodeRequest {
     private String resourcePool = null;
     private String groupid = null;
     private String creatorDN = null;
+    private String imageChecksum = null; // not persisted
 
     public NodeRequest(int memory,
                        int duration) {
@@ -44,6 +46,7 @@ public class NodeRequest {
     public NodeRequest(int[] ids,
                        int memory,
                        int cores,
+                       int disk,
                        int duration,
                        String[] neededAssociations,
                        String resourcePool,
@@ -52,6 +55,7 @@ public class NodeRequest {
         this(memory, duration);
 
         this.cores = cores;
+        this.disk = disk;
         this.ids = ids;
         this.neededAssociations = neededAssociations;
         this.resourcePool = resourcePool;
@@ -98,6 +102,14 @@ public class NodeRequest {
         this.cores = cores;
     }
 
+    public int getDisk() {
+        return this.disk;
+    }
+
+    public void setDisk(int disk) {
+        this.disk = disk;
+    }
+
     public int getMemory() {
         return this.memory;
     }
@@ -145,4 +157,16 @@ public class NodeRequest {
     public void setCreatorDN(String creatorDN) {
         this.creatorDN = creatorDN;
     }
+
+    /**
+     * @return checksum of the image the VMs boot from, null if unknown
+     * @see ImageCacheRegistry
+     */
+    public String getImageChecksum() {
+        return this.imageChecksum;
+    }
+
+    public void setImageChecksum(String imageChecksum) {
+        this.imageChecksum = imageChecksum;
+    }
 }
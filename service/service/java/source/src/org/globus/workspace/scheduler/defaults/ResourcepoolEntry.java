@@ -27,6 +27,15 @@ public class ResourcepoolEntry {
     private int memPreemptable = -1; // in MBytes    
     private String supportedAssociations;
 
+    // cores and disk are optional dimensions, a max below 1 means untracked
+    private int coresMax = 0;
+    private int coresCurrent = 0;
+    private int diskMax = 0; // in MBytes
+    private int diskCurrent = 0; // in MBytes
+
+    // budget of the node's image cache, below 1 means the node's own setting
+    private int imageCacheMax = 0; // in MBytes
+
     public ResourcepoolEntry(String resourcePool, String hostname, int memMax,
                              int memCurrent, int memPreemptable, String sa, boolean active) {
         this.resourcePool = resourcePool;
@@ -38,6 +47,16 @@ public class ResourcepoolEntry {
         this.active = active;
     }
 
+    public ResourcepoolEntry(String resourcePool, String hostname, int memMax,
+                             int memCurrent, int memPreemptable, String sa, boolean active,
+                             int coresMax, int coresCurrent, int diskMax, int diskCurrent) {
+        this(resourcePool, hostname, memMax, memCurrent, memPreemptable, sa, active);
+        this.coresMax = coresMax;
+        this.coresCurrent = coresCurrent;
+        this.diskMax = diskMax;
+        this.diskCurrent = diskCurrent;
+    }
+
     public String getHostname() {
         return this.hostname;
     }
@@ -78,6 +97,78 @@ public class ResourcepoolEntry {
         this.memPreemptable += add;
     }    
     
+    public int getCoresMax() {
+        return this.coresMax;
+    }
+
+    public void setCoresMax(int coresMax) {
+        this.coresMax = coresMax;
+    }
+
+    public int getCoresCurrent() {
+        return this.coresCurrent;
+    }
+
+    public void setCoresCurrent(int coresCurrent) {
+        this.coresCurrent = coresCurrent;
+    }
+
+    public void addCoresCurrent(int add) {
+        this.coresCurrent += add;
+    }
+
+    public boolean isCoresTracked() {
+        return this.coresMax > 0;
+    }
+
+    public int getDiskMax() {
+        return this.diskMax;
+    }
+
+    public void setDiskMax(int diskMax) {
+        this.diskMax = diskMax;
+    }
+
+    public int getDiskCurrent() {
+        return this.diskCurrent;
+    }
+
+    public void setDiskCurrent(int diskCurrent) {
+        this.diskCurrent = diskCurrent;
+    }
+
+    public void addDiskCurrent(int add) {
+        this.diskCurrent += add;
+    }
+
+    public boolean isDiskTracked() {
+        return this.diskMax > 0;
+    }
+
+    public int getImageCacheMax() {
+        return this.imageCacheMax;
+    }
+
+    public void setImageCacheMax(int imageCacheMax) {
+        this.imageCacheMax = imageCacheMax;
+    }
+
+    /**
+     * @param mem MB needed
+     * @param cores cores needed
+     * @param disk MB of scratch disk needed
+     * @return true if the available capacity covers every tracked dimension
+     */
+    public boolean fits(int mem, int cores, int disk) {
+        if (this.memCurrent < mem) {
+            return false;
+        }
+        if (this.isCoresTracked() && this.coresCurrent < cores) {
+            return false;
+        }
+        return !this.isDiskTracked() || this.diskCurrent >= disk;
+    }
+
     public int percentEmpty() {
         if (this.memCurrent == 0) {
             return 0;
@@ -116,6 +207,11 @@ public class ResourcepoolEntry {
                 ", memMax=" + this.memMax +
                 ", memPreemptable=" + this.getMemPreemptable() +
                 ", memCurrent=" + this.memCurrent +
+                ", coresMax=" + this.coresMax +
+                ", coresCurrent=" + this.coresCurrent +
+                ", diskMax=" + this.diskMax +
+                ", diskCurrent=" + this.diskCurrent +
+                ", imageCacheMax=" + this.imageCacheMax +
                 ", supportedNetworks='" + this.supportedAssociations +
                 ", percentEmpty= " + this.percentEmpty() + '\'' +
                 '}';
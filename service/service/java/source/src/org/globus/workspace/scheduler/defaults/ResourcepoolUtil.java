@@ -21,12 +21,12 @@ import org.apache.commons.logging.LogFactory;
 import org.globus.workspace.Lager;
 import org.globus.workspace.persistence.PersistenceAdapter;
 import org.globus.workspace.persistence.WorkspaceDatabaseException;
+import org.globus.workspace.scheduler.defaults.placement.PlacementStrategy;
 import org.nimbustools.api.services.rm.ImpossibleAmountOfMemoryException;
 import org.nimbustools.api.services.rm.NotEnoughMemoryException;
 import org.nimbustools.api.services.rm.ResourceRequestDeniedException;
 import org.nimbustools.api.services.rm.ManageException;
 
-import java.security.SecureRandom;
 import java.util.*;
 
 /**
@@ -37,84 +37,10 @@ class ResourcepoolUtil {
     private static final Log logger =
         LogFactory.getLog(ResourcepoolUtil.class.getName());
 
-    private static final Random randomGen = new SecureRandom();
-
-    /**
-     * Look at all the available nodes, pick the node with the least amount of available space
-     * on it.  If there are multiple nodes with the same percentage available, choose a random
-     * one. 
-     * @param okNodes list of nodes sorted in ascending percentage memory available order
-     * @param trace log trace messages
-     * @return ResourcepoolEntry randomly selected from all nodes with least available space
-     */
-    private static ResourcepoolEntry randomLeastSpace(List<ResourcepoolEntry> okNodes,
-                                                      boolean trace) {
-        final List<Integer> candidateIndexes = new ArrayList<Integer>();
-        final int percentEmpty = okNodes.get(0).percentEmpty();
-        for (int i = 0; i < okNodes.size(); i++) {
-            final ResourcepoolEntry okNode = okNodes.get(i);
-            if (okNode.percentEmpty() > percentEmpty) {
-                break;
-            } else {
-                candidateIndexes.add(i);
-            }
-        }
-
-        // pick a random node from the list of equally utilized ones
-        return randomSelect(candidateIndexes, okNodes, trace);
-    }
-
-    /**
-     * Look at all the available nodes, pick the node with the most amount of available space
-     * on it.  If there are multiple nodes with the same percentage available, choose a random
-     * one. 
-     * @param okNodes list of nodes sorted in ascending percentage memory available order
-     * @param trace log trace messages
-     * @return ResourcepoolEntry randomly selected from all nodes with highest available space
-     */
-    private static ResourcepoolEntry randomMostSpace(List<ResourcepoolEntry> okNodes,
-                                                     boolean trace) {
-
-        // choosing highest percent that is empty
-        Collections.reverse(okNodes);
-
-        final List<Integer> candidateIndexes = new ArrayList<Integer>();
-        final int percentEmpty = okNodes.get(0).percentEmpty();
-        for (int i = 0; i < okNodes.size(); i++) {
-            final ResourcepoolEntry okNode = okNodes.get(i);
-            if (okNode.percentEmpty() < percentEmpty) {
-                break;
-            } else {
-                candidateIndexes.add(i);
-            }
-        }
-
-        // pick a random node from the list of equally utilized ones
-        return randomSelect(candidateIndexes, okNodes, trace);
-    }
-
-    private static ResourcepoolEntry randomSelect(Collection<Integer> indexes,
-                                                  List<ResourcepoolEntry> okNodes,
-                                                  boolean trace) {
-
-        if (trace) {
-            final StringBuilder buf = new StringBuilder("Final node choices:\n");
-            for (Integer index : indexes) {
-                buf.append("  Candidate #").append(index.toString()).append(": ")
-                        .append(okNodes.get(index).getHostname()).append('\n');
-            }
-            logger.trace(buf.toString());
-        }
-
-        final int numIndexes = indexes.size();
-        final int idx = randomGen.nextInt(numIndexes);
-        return okNodes.get(idx);
-    }
-
     /*
      * remove any candidates that don't support the right networks
      */
-    private static void netFilter(List<ResourcepoolEntry> okNodes,
+    static void netFilter(List<ResourcepoolEntry> okNodes,
                                   String[] neededAssociations,
                                   boolean trace) {
 
@@ -182,23 +108,27 @@ class ResourcepoolUtil {
      * Note: Locking is assumed to be implemented above.
      *
      * @param mem needed memory
+     * @param cores needed CPU cores
+     * @param disk needed scratch disk, MB
      * @param neededAssociations array of needed associations, can be null
      * @param db db
      * @param lager logging switches
      * @param vmid for logging
-     * @param greedy true if VMs should stack up on VMMs first, false if round robin
+     * @param strategy picks the node among those that have room
      * @param preemptable indicates if the space can be pre-empted by higher priority reservations
      * @return node name can not be null
      * @throws ResourceRequestDeniedException exc
      * @throws WorkspaceDatabaseException exc
      */
     static String getResourcePoolEntry(int mem,
+            int cores,
+            int disk,
             String[] neededAssociations,
             String resourcePool,
             final PersistenceAdapter db,
             Lager lager,
             int vmid,
-            boolean greedy,
+            PlacementStrategy strategy,
             boolean preemptable)
     throws ResourceRequestDeniedException,
     WorkspaceDatabaseException {
@@ -209,47 +139,64 @@ class ResourcepoolUtil {
         if (lager == null) {
             throw new IllegalArgumentException("lager may not be null");
         }
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy may not be null");
+        }
 
         final boolean eventLog = lager.eventLog;
         final boolean trace = lager.traceLog;
 
+        final int useCores = Math.max(1, cores);
+        final int useDisk = Math.max(0, disk);
+
         if (trace) {
-            traceLookingForResource(mem, neededAssociations, greedy);
+            traceLookingForResource(mem, useCores, useDisk,
+                                    neededAssociations, strategy);
         }
 
-        if (db.isInfeasibleRequest(mem)) {
-            throw new ImpossibleAmountOfMemoryException(mem + "MB memory request is too " +
-                                            "large to ever be fulfilled");
+        if (db.isInfeasibleRequest(mem, useCores, useDisk)) {
+            throw new ImpossibleAmountOfMemoryException(mem + "MB memory, " +
+                    useCores + " core, " + useDisk + "MB disk request is " +
+                    "too large to ever be fulfilled");
         }
 
         //availableEntries is never empty
         final List<ResourcepoolEntry> availableEntries =
-                getAvailableEntries(mem, neededAssociations, resourcePool, db, trace);
+                getAvailableEntries(mem, useCores, useDisk,
+                                    neededAssociations, resourcePool, db, trace);
         
         if (trace) {
             traceAvailableEntries(availableEntries);
         }
 
-        ResourcepoolEntry entry;
-        if (greedy) {
-            entry = randomLeastSpace(availableEntries, trace);
-        } else {
-            entry = randomMostSpace(availableEntries, trace);
+        final ResourcepoolEntry entry =
+                strategy.choose(availableEntries, mem, useCores, useDisk);
+        if (entry == null) {
+            throw new ResourceRequestDeniedException("'" + strategy.getName() +
+                    "' selection strategy did not choose a node");
         }
 
         entry.addMemCurrent(-mem);
         if(preemptable){
             entry.addMemPreemptable(mem);
         }
-        db.updateResourcepoolEntryAvailableMemory(entry.getHostname(),
-                entry.getMemCurrent(), entry.getMemPreemptable());
+        if (entry.isCoresTracked()) {
+            entry.addCoresCurrent(-useCores);
+        }
+        if (entry.isDiskTracked()) {
+            entry.addDiskCurrent(-useDisk);
+        }
+        db.updateResourcepoolEntryAvailable(entry.getHostname(),
+                entry.getMemCurrent(), entry.getMemPreemptable(),
+                entry.getCoresCurrent(), entry.getDiskCurrent());
 
         if (eventLog) {
             logger.info(Lager.ev(vmid) + "'" + entry.getResourcePool() +
                     "' resource pool entry '" + entry.getHostname() +
                     "': " + mem + " MB reserved, " +
                     entry.getMemCurrent() + " MB left, " +
-                    entry.getMemPreemptable() + " MB preemptible");
+                    entry.getMemPreemptable() + " MB preemptible" +
+                    capacityLeft(entry));
         }
 
         return entry.getHostname();            
@@ -257,6 +204,7 @@ class ResourcepoolUtil {
     }
 
     private static List<ResourcepoolEntry> getAvailableEntries(int mem,
+            int cores, int disk,
             String[] neededAssociations, String resourcePool, final PersistenceAdapter db,
             final boolean trace) throws WorkspaceDatabaseException,
             ResourceRequestDeniedException {
@@ -279,6 +227,22 @@ class ResourcepoolUtil {
             throw new NotEnoughMemoryException(err);
         }
 
+        final Iterator<ResourcepoolEntry> iter = availableEntries.iterator();
+        while (iter.hasNext()) {
+            if (!iter.next().fits(mem, cores, disk)) {
+                iter.remove();
+            }
+        }
+
+        if(availableEntries.isEmpty()){
+            // NotEnoughMemoryException so that preemptible VMs, which
+            // hold cores and disk too, get a chance to make room
+            String err = "No resource is available for this request " +
+                    "(based on CPU cores and disk).";
+            logger.error(err);
+            throw new NotEnoughMemoryException(err);
+        }
+
         netFilter(availableEntries, neededAssociations, trace);
 
         if(availableEntries.isEmpty()){
@@ -294,24 +258,39 @@ class ResourcepoolUtil {
         for (ResourcepoolEntry okNode : availableEntries) {
             logger.trace("available host: " + okNode.getHostname() +
                     ", mem: " + okNode.getMemCurrent() +
+                    ", cores: " + okNode.getCoresCurrent() +
+                    ", disk: " + okNode.getDiskCurrent() +
                     ", percent available: " + okNode.percentEmpty());
         }
     }
 
+    private static String capacityLeft(ResourcepoolEntry entry) {
+        final StringBuilder buf = new StringBuilder();
+        if (entry.isCoresTracked()) {
+            buf.append(", ").append(entry.getCoresCurrent())
+               .append(" cores left");
+        }
+        if (entry.isDiskTracked()) {
+            buf.append(", ").append(entry.getDiskCurrent())
+               .append(" MB disk left");
+        }
+        return buf.toString();
+    }
+
     private static void traceLookingForResource(int mem,
+                                                int cores,
+                                                int disk,
                                                 String[] neededAssociations,
-                                                boolean greedy) {
+                                                PlacementStrategy strategy) {
         
         final StringBuilder buf =
             new StringBuilder("Looking for resource. Mem = ");
 
         buf.append(mem);
-
-        if (greedy) {
-            buf.append(", greedy selection strategy");
-        } else {
-            buf.append(", round robin selection strategy");
-        }
+        buf.append(", cores = ").append(cores);
+        buf.append(", disk = ").append(disk);
+        buf.append(", ").append(strategy.getName())
+           .append(" selection strategy");
 
         buf.append(", needed networks: ");
         if (neededAssociations == null) {
@@ -338,6 +317,8 @@ class ResourcepoolUtil {
      *
      * @param hostname hostname
      * @param mem memory
+     * @param cores CPU cores
+     * @param disk scratch disk, MB
      * @param db db
      * @param eventLog log events
      * @param traceLog log traces
@@ -346,6 +327,8 @@ class ResourcepoolUtil {
      */
     static void retireMem(String hostname,
                           int mem,
+                          int cores,
+                          int disk,
                           PersistenceAdapter db,
                           boolean eventLog,
                           boolean traceLog,
@@ -385,14 +368,30 @@ class ResourcepoolUtil {
                 entry.setMemCurrent(entry.getMemMax());
             }
 
-            db.updateResourcepoolEntryAvailableMemory(entry.getHostname(),
-                entry.getMemCurrent(), entry.getMemPreemptable());
+            // same for the other dimensions, which may also have started
+            // being tracked during the deployment
+            if (entry.isCoresTracked()) {
+                entry.addCoresCurrent(Math.max(1, cores));
+                if (entry.getCoresCurrent() > entry.getCoresMax()) {
+                    entry.setCoresCurrent(entry.getCoresMax());
+                }
+            }
+            if (entry.isDiskTracked()) {
+                entry.addDiskCurrent(Math.max(0, disk));
+                if (entry.getDiskCurrent() > entry.getDiskMax()) {
+                    entry.setDiskCurrent(entry.getDiskMax());
+                }
+            }
+
+            db.updateResourcepoolEntryAvailable(entry.getHostname(),
+                entry.getMemCurrent(), entry.getMemPreemptable(),
+                entry.getCoresCurrent(), entry.getDiskCurrent());
 
             if (eventLog) {
                 logger.info(Lager.ev(vmid) + "'" + poolname +
                         "' resource pool entry '" + hostname + "': " + mem +
                         " MB given back, now has " + entry.getMemCurrent() +
-                        " MB available");
+                        " MB available" + capacityLeft(entry));
             }
 
         } else {
@@ -144,6 +144,7 @@ public class PilotSlotManagement implements SlotManagement,
     private String destination = null; // only one for now
     private String extraProperties = null;
     private String multiJobPrefix = null;
+    private boolean multiJobArray = false;
     private String accounting;
 
     // -------------------------------------------------------------------------
@@ -276,6 +277,11 @@ public class PilotSlotManagement implements SlotManagement,
         }
     }
 
+    public void setMultiJobArray(String multiJobArray) {
+        this.multiJobArray = multiJobArray != null &&
+                multiJobArray.trim().equalsIgnoreCase("true");
+    }
+
     public void setLogdirResource(Resource logdirResource) throws IOException {
         this.logdirPath = logdirResource.getFile().getAbsolutePath();
     }
@@ -662,11 +668,9 @@ public class PilotSlotManagement implements SlotManagement,
         } else {
             slotid = uuid;
             try {
-                for (int i = 0; i < vmids.length; i++) {
-                    // add to our own group register, encapsulated from
-                    // main service group/coscheduling management
-                    this.db.newGroupMember(uuid, vmids[i]);
-                }
+                // add to our own group register, encapsulated from
+                // main service group/coscheduling management
+                this.db.newGroupMembers(uuid, vmids);
             } catch (WorkspaceDatabaseException e) {
                 logger.error(e.getMessage(), e);
                 throw new ResourceRequestDeniedException("internal " +
@@ -707,19 +711,26 @@ public class PilotSlotManagement implements SlotManagement,
 
         String account = getAccountString(creatorDN, this.accounting);
 
+        // A group either goes out as one job spanning all of its nodes, with
+        // the multi-job prefix starting a pilot on each node, or as a job
+        // array of single node jobs.  Either way it is one qsub invocation
+        // and one LRM handle for the whole group.
+        final boolean asArray = this.multiJobArray && vmids.length > 1;
+
         // we know it's torque for now, no casing
         final ArrayList torquecmd;
         try {
             torquecmd = this.torque.constructQsub(this.destination,
                                                   memory,
-                                                  vmids.length,
+                                                  asArray ? 1 : vmids.length,
                                                   ppnRequested,
                                                   wallTime,
                                                   this.extraProperties,
                                                   outputFile,
                                                   false,
                                                   false,
-                                                  account);
+                                                  account,
+                                                  asArray ? vmids.length : 0);
 
         } catch (WorkspaceException e) {
             final String msg = "Problem with Torque argument construction";
@@ -784,7 +795,7 @@ public class PilotSlotManagement implements SlotManagement,
 
         final StringBuffer pilotcmdbuf = new StringBuffer(256);
 
-        if (this.multiJobPrefix != null && vmids.length > 1) {
+        if (this.multiJobPrefix != null && vmids.length > 1 && !asArray) {
             pilotcmdbuf.append(this.multiJobPrefix);
             pilotcmdbuf.append(" ");
         }
@@ -1159,100 +1170,156 @@ public class PilotSlotManagement implements SlotManagement,
         }
 
         try {
-
             final PilotSlot slot = this.getSlotAndAssignVM(slotid, hostname);
-
-            if (hostname == null) {
-
-                logger.error("Pilot '" + slotid + "' sent reserved message " +
-                        "without hostname (?). Cancelling vm #" + slot.vmid +
-                             " and running trash.");
-
-                // this eventually causes this.releaseSpace() to be called
-                // unless there was a race
-                this.cancelWorkspace(slot.vmid, SEVERE_PILOT_FAULT);
-                return;
-            }
-
-            if (timestamp == null) {
-
-                logger.error("Pilot '" + slotid + "' sent reserved message " +
-                        "without timestamp (?). Cancelling vm #" + slot.vmid +
-                             " and running trash.");
-
-                // this eventually causes this.releaseSpace() to be called
-                // unless there was a race
-                this.cancelWorkspace(slot.vmid, SEVERE_PILOT_FAULT);
-                return;
-            }
-
-            final InstanceResource resource;
-            try {
-                resource = this.instHome.find(slot.vmid);
-            } catch (DoesNotExistException e) {
-                final String msg = "workspace #" + slot.vmid + " is unknown " +
-                        "to the service but the pilot tracker has receieved " +
-                        "space for it to run?  pilot ID: '" + slotid + "' " +
-                        "There is nothing we can do about this.";
+            this.reservedImpl(slot, slotid, hostname, timestamp);
+        } catch (ManageException e) {
+            if (logger.isDebugEnabled()) {
+                logger.error(e.getMessage(), e);
+            } else {
                 logger.error(e.getMessage());
-                return;
             }
+        } catch (SlotNotFoundException e) {
+            logger.error(getNoSlotReservedError(slotid, hostname));
+        }
+    }
 
-            final int runningTime =
-                    resource.getVM().getDeployment().getMinDuration();
+    /**
+     * Several pilots of the same slot (a group job) report they reserved,
+     * their VMs are assigned in one database transaction.
+     *
+     * @param slotid    uuid
+     * @param hostnames slot nodes
+     * @param timestamps time of reservation, per node
+     */
+    public void reserved(String slotid, String[] hostnames, Calendar[] timestamps) {
 
-            // double-checking assumptions
-            if (runningTime > slot.duration - this.padding) {
-                logger.error("The running time stored for workspace #" +
-                        slot.vmid + " is greater than slot duration (?). " +
-                        "Implementation error, backing out.");
-                this.cancelWorkspace(slot.vmid, SEVERE_PILOT_FAULT);
-                return;
+        if (this.schedulerAdapter == null) {
+            for (int i = 0; i < hostnames.length; i++) {
+                this.reserved(slotid, hostnames[i], timestamps[i]);
             }
+            return;
+        }
 
-            logger.debug("reserved: running time = " + runningTime +
-                         " (slot duration = " + slot.duration + ")");
-            Calendar stop = (Calendar) timestamp.clone();
-            stop.add(Calendar.SECOND, runningTime);
-
-            Calendar slotstop = (Calendar) timestamp.clone();
-            slotstop.add(Calendar.SECOND, slot.duration);
-
-            String msg = Lager.ev(slot.vmid) +
-                    "Pilot '" + slot.uuid + "' reserved for VM " +
-                    slot.vmid + " @ host '" + hostname + "'.  Started at: " +
-                    localFormat.format(timestamp.getTime()) + ".  VM " +
-                    "running time ends at: " +
-                    localFormat.format(stop.getTime()) + ".  Slot will " +
-                    "end itself at approximately: " +
-                    localFormat.format(slotstop.getTime());
-            if (lager.eventLog) {
-                logger.info(msg);
-            } else {
-                logger.debug(msg);
+        final PilotSlot[] slots;
+        try {
+            synchronized (this.groupLock) {
+                slots = this.db.getSlotsAndAssignVMsImpl(slotid, hostnames);
             }
-
-            this.schedulerAdapter.slotReserved(slot.vmid,
-                                               timestamp, 
-                                               stop,
-                                               hostname);
-            
-        } catch (ManageException e) {
+        } catch (WorkspaceDatabaseException e) {
             if (logger.isDebugEnabled()) {
                 logger.error(e.getMessage(), e);
             } else {
                 logger.error(e.getMessage());
             }
-        } catch (SlotNotFoundException e) {
+            return;
+        }
 
-            String msg = "Severe problem, hearing about a slot being " +
-                    "reserved but service has no record of it.  Slotid: " +
-                    slotid + ", hostname: " + hostname + " (can't qdel or " +
-                    "cancel it, we don't know the LRM handle or workspace ID)";
-            logger.error(msg);
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == null) {
+                logger.error(getNoSlotReservedError(slotid, hostnames[i]));
+                continue;
+            }
+            try {
+                this.reservedImpl(slots[i], slotid, hostnames[i], timestamps[i]);
+            } catch (ManageException e) {
+                if (logger.isDebugEnabled()) {
+                    logger.error(e.getMessage(), e);
+                } else {
+                    logger.error(e.getMessage());
+                }
+            }
         }
     }
 
+    private void reservedImpl(PilotSlot slot,
+                              String slotid,
+                              String hostname,
+                              Calendar timestamp) throws ManageException {
+
+        if (hostname == null) {
+
+            logger.error("Pilot '" + slotid + "' sent reserved message " +
+                    "without hostname (?). Cancelling vm #" + slot.vmid +
+                         " and running trash.");
+
+            // this eventually causes this.releaseSpace() to be called
+            // unless there was a race
+            this.cancelWorkspace(slot.vmid, SEVERE_PILOT_FAULT);
+            return;
+        }
+
+        if (timestamp == null) {
+
+            logger.error("Pilot '" + slotid + "' sent reserved message " +
+                    "without timestamp (?). Cancelling vm #" + slot.vmid +
+                         " and running trash.");
+
+            // this eventually causes this.releaseSpace() to be called
+            // unless there was a race
+            this.cancelWorkspace(slot.vmid, SEVERE_PILOT_FAULT);
+            return;
+        }
+
+        final InstanceResource resource;
+        try {
+            resource = this.instHome.find(slot.vmid);
+        } catch (DoesNotExistException e) {
+            final String msg = "workspace #" + slot.vmid + " is unknown " +
+                    "to the service but the pilot tracker has receieved " +
+                    "space for it to run?  pilot ID: '" + slotid + "' " +
+                    "There is nothing we can do about this.";
+            logger.error(e.getMessage());
+            return;
+        }
+
+        final int runningTime =
+                resource.getVM().getDeployment().getMinDuration();
+
+        // double-checking assumptions
+        if (runningTime > slot.duration - this.padding) {
+            logger.error("The running time stored for workspace #" +
+                    slot.vmid + " is greater than slot duration (?). " +
+                    "Implementation error, backing out.");
+            this.cancelWorkspace(slot.vmid, SEVERE_PILOT_FAULT);
+            return;
+        }
+
+        logger.debug("reserved: running time = " + runningTime +
+                     " (slot duration = " + slot.duration + ")");
+        Calendar stop = (Calendar) timestamp.clone();
+        stop.add(Calendar.SECOND, runningTime);
+
+        Calendar slotstop = (Calendar) timestamp.clone();
+        slotstop.add(Calendar.SECOND, slot.duration);
+
+        String msg = Lager.ev(slot.vmid) +
+                "Pilot '" + slot.uuid + "' reserved for VM " +
+                slot.vmid + " @ host '" + hostname + "'.  Started at: " +
+                localFormat.format(timestamp.getTime()) + ".  VM " +
+                "running time ends at: " +
+                localFormat.format(stop.getTime()) + ".  Slot will " +
+                "end itself at approximately: " +
+                localFormat.format(slotstop.getTime());
+        if (lager.eventLog) {
+            logger.info(msg);
+        } else {
+            logger.debug(msg);
+        }
+
+        this.schedulerAdapter.slotReserved(slot.vmid,
+                                           timestamp, 
+                                           stop,
+                                           hostname);
+    }
+
+    private static String getNoSlotReservedError(String slotid,
+                                                 String hostname) {
+        return "Severe problem, hearing about a slot being " +
+                "reserved but service has no record of it.  Slotid: " +
+                slotid + ", hostname: " + hostname + " (can't qdel or " +
+                "cancel it, we don't know the LRM handle or workspace ID)";
+    }
+
     /**
      * The pilot reports it started running but the slot was not successfully
      * reserved beacuse of some problem.
@@ -1719,7 +1786,7 @@ public class PilotSlotManagement implements SlotManagement,
     }
 
     public ResourcepoolEntry addNode(String hostname, String pool, String networks, int memory,
-                                     boolean active)
+                                     int cores, int disk, boolean active)
             throws NodeExistsException, NodeManagementDisabled {
         throw new NodeManagementDisabled(REMOTE_NODE_MGR_DISABLED);
     }
@@ -1733,11 +1800,17 @@ public class PilotSlotManagement implements SlotManagement,
     }
 
     public ResourcepoolEntry updateNode(String hostname, String pool, String networks,
-                                        Integer memory, Boolean active)
+                                        Integer memory, Integer cores, Integer disk,
+                                        Boolean active)
             throws NodeInUseException, NodeNotFoundException, NodeManagementDisabled {
         throw new NodeManagementDisabled(REMOTE_NODE_MGR_DISABLED);
     }
 
+    public ResourcepoolEntry setImageCacheMax(String hostname, int megabytes)
+            throws NodeManagementDisabled {
+        throw new NodeManagementDisabled(REMOTE_NODE_MGR_DISABLED);
+    }
+
     public boolean removeNode(String hostname)
             throws NodeInUseException, NodeManagementDisabled {
         throw new NodeManagementDisabled(REMOTE_NODE_MGR_DISABLED);
@@ -151,6 +151,91 @@ public class PilotSlotManagementDB implements PilotSlotManagementConstants {
         }
     }
 
+    /**
+     * Assigns a VM to each of the hostnames in one transaction, for when
+     * several pilots of the same group report in together.
+     *
+     * @param uuid slot (group) id
+     * @param hostnames nodes that reported, in order
+     * @return slot per hostname, null where the group had no unassigned
+     *         VM left for it
+     * @throws WorkspaceDatabaseException problem
+     */
+    PilotSlot[] getSlotsAndAssignVMsImpl(String uuid,
+                                         String[] hostnames)
+            throws WorkspaceDatabaseException {
+
+        final PilotSlot[] slots = new PilotSlot[hostnames.length];
+
+        Connection c = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            c = getConnection();
+            c.setAutoCommit(false);
+
+            pstmt = c.prepareStatement(SQL_LOAD_SLOTS_NOHOSTNAME);
+            pstmt.setString(1, uuid);
+            rs = pstmt.executeQuery();
+
+            int assigned = 0;
+            while (assigned < hostnames.length && rs.next()) {
+                slots[assigned] = new PilotSlot(uuid, rs.getInt(1), false,
+                                                rs.getBoolean(2),
+                                                rs.getString(3),
+                                                rs.getInt(4),
+                                                hostnames[assigned],
+                                                rs.getBoolean(5),
+                                                rs.getBoolean(6));
+                assigned++;
+            }
+            rs.close();
+            rs = null;
+            pstmt.close();
+            pstmt = null;
+
+            if (assigned > 0) {
+                pstmt = c.prepareStatement(SQL_UPDATE_SLOT_NODENAME);
+                for (int i = 0; i < assigned; i++) {
+                    pstmt.setString(1, slots[i].nodename);
+                    pstmt.setString(2, uuid);
+                    pstmt.setInt(3, slots[i].vmid);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+
+            c.commit();
+
+            if (this.lager.dbLog) {
+                logger.trace("Assigned " + assigned + " vm ids in slot '" +
+                             uuid + "' to " + hostnames.length +
+                             " reporting hosts");
+            }
+
+            return slots;
+
+        } catch(SQLException e) {
+            logger.error("",e);
+            throw new WorkspaceDatabaseException(e);
+        } finally {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+                if (c != null) {
+                    c.setAutoCommit(true);
+                    returnConnection(c);
+                }
+            } catch (SQLException sql) {
+                logger.error("SQLException in finally cleanup", sql);
+            }
+        }
+    }
+
     PilotSlot getSlot(String uuid, String hostname)
             throws WorkspaceDatabaseException, SlotNotFoundException {
 
@@ -400,6 +485,45 @@ public class PilotSlotManagementDB implements PilotSlotManagementConstants {
         }
     }
 
+    void newGroupMembers(String groupid, int[] vmids)
+            throws WorkspaceDatabaseException {
+
+        Connection c = null;
+        PreparedStatement pstmt = null;
+        try {
+            c = getConnection();
+            c.setAutoCommit(false);
+            pstmt = c.prepareStatement(SQL_INSERT_GROUP_MEMBER);
+            for (int i = 0; i < vmids.length; i++) {
+                pstmt.setString(1, groupid);
+                pstmt.setInt(2, vmids[i]);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            c.commit();
+
+            if (this.lager.dbLog) {
+                logger.trace("inserted " + vmids.length + " rows");
+            }
+
+        } catch(SQLException e) {
+            logger.error("",e);
+            throw new WorkspaceDatabaseException(e);
+        } finally {
+            try {
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+                if (c != null) {
+                    c.setAutoCommit(true);
+                    returnConnection(c);
+                }
+            } catch (SQLException sql) {
+                logger.error("SQLException in finally cleanup", sql);
+            }
+        }
+    }
+
     int[] findVMsInGroup(String groupID)
 
             throws WorkspaceDatabaseException {
@@ -504,16 +628,18 @@ public class PilotSlotManagementDB implements PilotSlotManagementConstants {
         PreparedStatement pstmt = null;
         try {
             c = getConnection();
+            c.setAutoCommit(false);
+            pstmt = c.prepareStatement(SQL_INSERT_GROUP_SLOT);
             for (int i = 0; i < vmids.length; i++) {
-                pstmt = c.prepareStatement(SQL_INSERT_GROUP_SLOT);
                 pstmt.setString(1, uuid);
                 pstmt.setInt(2, vmids[i]);
                 pstmt.setString(3, lrmid);
                 pstmt.setLong(4, duration);
                 pstmt.setNull(5, Types.VARCHAR);
-
-                pstmt.executeUpdate();
+                pstmt.addBatch();
             }
+            pstmt.executeBatch();
+            c.commit();
 
         } catch(SQLException e) {
             logger.error("",e);
@@ -524,6 +650,7 @@ public class PilotSlotManagementDB implements PilotSlotManagementConstants {
                     pstmt.close();
                 }
                 if (c != null) {
+                    c.setAutoCommit(true);
                     returnConnection(c);
                 }
             } catch (SQLException sql) {
@@ -0,0 +1,41 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults.placement;
+
+/**
+ * Vector best-fit: picks the node that has the least free capacity left
+ * over after the placement, measured as the mean square of the remaining
+ * fractions over every tracked dimension.
+ *
+ * With coscheduled requests placed largest first (DefaultSlotManagement
+ * does this) this is best-fit-decreasing.
+ */
+public class BestFitPlacement extends VectorPlacement {
+
+    public String getName() {
+        return PlacementStrategies.BEST_FIT;
+    }
+
+    protected double score(double[] demand, double[] free, int dims) {
+        double sum = 0;
+        for (int i = 0; i < dims; i++) {
+            final double left = free[i] - demand[i];
+            sum += left * left;
+        }
+        return sum / dims;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults.placement;
+
+/**
+ * Dot-product heuristic: picks the node whose free capacity points the
+ * same way as the request (highest cosine between the two vectors).  A
+ * CPU-heavy VM goes where cores are what is left over, a memory-heavy VM
+ * where memory is, so no single dimension runs out while the others are
+ * stranded.
+ */
+public class DotProductPlacement extends VectorPlacement {
+
+    public String getName() {
+        return PlacementStrategies.DOT_PRODUCT;
+    }
+
+    protected double score(double[] demand, double[] free, int dims) {
+        double dot = 0;
+        double demandNorm = 0;
+        double freeNorm = 0;
+        for (int i = 0; i < dims; i++) {
+            dot += demand[i] * free[i];
+            demandNorm += demand[i] * demand[i];
+            freeNorm += free[i] * free[i];
+        }
+        if (demandNorm == 0 || freeNorm == 0) {
+            return 0;
+        }
+        return -dot / Math.sqrt(demandNorm * freeNorm);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults.placement;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.globus.workspace.scheduler.defaults.ResourcepoolEntry;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Stacks VMs up: picks the node with the lowest percentage of free memory,
+ * randomly among equals.
+ */
+public class GreedyPlacement implements PlacementStrategy {
+
+    private static final Log logger =
+        LogFactory.getLog(GreedyPlacement.class.getName());
+
+    private static final Random randomGen = new SecureRandom();
+
+    public String getName() {
+        return PlacementStrategies.GREEDY;
+    }
+
+    public ResourcepoolEntry choose(List<ResourcepoolEntry> candidates,
+                                    int mem,
+                                    int cores,
+                                    int disk) {
+
+        final List<Integer> candidateIndexes = new ArrayList<Integer>();
+        final int percentEmpty = candidates.get(0).percentEmpty();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (candidates.get(i).percentEmpty() > percentEmpty) {
+                break;
+            }
+            candidateIndexes.add(i);
+        }
+
+        // pick a random node from the list of equally utilized ones
+        return randomSelect(candidateIndexes, candidates);
+    }
+
+    // indexes are always a prefix of okNodes
+    static ResourcepoolEntry randomSelect(List<Integer> indexes,
+                                          List<ResourcepoolEntry> okNodes) {
+
+        if (logger.isTraceEnabled()) {
+            final StringBuilder buf = new StringBuilder("Final node choices:\n");
+            for (Integer index : indexes) {
+                buf.append("  Candidate #").append(index.toString()).append(": ")
+                        .append(okNodes.get(index).getHostname()).append('\n');
+            }
+            logger.trace(buf.toString());
+        }
+
+        return okNodes.get(randomGen.nextInt(indexes.size()));
+    }
+}
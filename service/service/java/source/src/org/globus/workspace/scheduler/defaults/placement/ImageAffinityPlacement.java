@@ -0,0 +1,137 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults.placement;
+
+import org.globus.workspace.scheduler.defaults.ImageCacheRegistry;
+import org.globus.workspace.scheduler.defaults.ResourcepoolEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Weighs nodes that already hold the VM's image against the wrapped
+ * strategy's choice.  The strategy first chooses among all candidates as
+ * usual; if that node is cold and the strategy's pick among the warm nodes
+ * is at most margin busier (load being the largest used fraction of memory,
+ * cores or disk), the warm node is taken instead.
+ *
+ * A margin of 0 only breaks ties towards warm nodes, 1 or more always
+ * prefers them (every launch of a popular image then piles onto the nodes
+ * holding it until they are full).
+ *
+ * Made per request, the image is part of the request.
+ */
+public class ImageAffinityPlacement implements PlacementStrategy {
+
+    public static final double DEFAULT_MARGIN = 0.25;
+
+    private final PlacementStrategy strategy;
+    private final ImageCacheRegistry registry;
+    private final String checksum;
+    private final double margin;
+
+    /**
+     * @param strategy strategy to wrap
+     * @param registry image caches, may be null
+     * @param checksum the request's image checksum, may be null
+     * @param margin how much busier a warm node may be, negative for no
+     *        image affinity
+     * @return strategy, or strategy wrapped if there is an image to look for
+     */
+    public static PlacementStrategy wrap(PlacementStrategy strategy,
+                                         ImageCacheRegistry registry,
+                                         String checksum,
+                                         double margin) {
+        if (registry == null || checksum == null || margin < 0) {
+            return strategy;
+        }
+        return new ImageAffinityPlacement(strategy, registry, checksum, margin);
+    }
+
+    public ImageAffinityPlacement(PlacementStrategy strategy,
+                                  ImageCacheRegistry registry,
+                                  String checksum,
+                                  double margin) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy may not be null");
+        }
+        if (registry == null) {
+            throw new IllegalArgumentException("registry may not be null");
+        }
+        if (checksum == null) {
+            throw new IllegalArgumentException("checksum may not be null");
+        }
+        if (margin < 0) {
+            throw new IllegalArgumentException("margin may not be negative");
+        }
+        this.strategy = strategy;
+        this.registry = registry;
+        this.checksum = checksum;
+        this.margin = margin;
+    }
+
+    public String getName() {
+        return this.strategy.getName() + " (image affinity)";
+    }
+
+    public ResourcepoolEntry choose(List<ResourcepoolEntry> candidates,
+                                    int mem,
+                                    int cores,
+                                    int disk) {
+
+        // strategies may reorder what they are given (round-robin reverses
+        // it), every pass gets the candidates in the order they came in
+        final ResourcepoolEntry choice = this.strategy.choose(
+                new ArrayList<ResourcepoolEntry>(candidates), mem, cores, disk);
+        if (choice == null
+                || this.registry.isCached(choice.getHostname(), this.checksum)) {
+            return choice;
+        }
+
+        final List<ResourcepoolEntry> warm =
+                this.registry.warmNodes(
+                        new ArrayList<ResourcepoolEntry>(candidates),
+                        this.checksum);
+        if (warm.isEmpty()) {
+            return choice;
+        }
+        final ResourcepoolEntry warmChoice =
+                this.strategy.choose(warm, mem, cores, disk);
+        if (warmChoice != null
+                && load(warmChoice) <= load(choice) + this.margin) {
+            return warmChoice;
+        }
+        return choice;
+    }
+
+    // largest used fraction over the tracked dimensions
+    static double load(ResourcepoolEntry entry) {
+        double load = 0;
+        if (entry.getMemMax() > 0) {
+            load = 1 - entry.getMemCurrent() / (double) entry.getMemMax();
+        }
+        if (entry.isCoresTracked()) {
+            load = Math.max(load, 1 - entry.getCoresCurrent()
+                                      / (double) entry.getCoresMax());
+        }
+        if (entry.getDiskMax() > 0) {
+            load = Math.max(load, 1 - entry.getDiskCurrent()
+                                      / (double) entry.getDiskMax());
+        }
+        return load;
+    }
+}
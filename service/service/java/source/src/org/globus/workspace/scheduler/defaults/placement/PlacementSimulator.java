@@ -0,0 +1,332 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults.placement;
+
+import org.globus.workspace.scheduler.defaults.ResourcepoolEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Packing density benchmark for placement strategies, no database or
+ * service involved.
+ *
+ * Requests drawn from a weighted mix of VM shapes arrive one at a time
+ * until a run of them in a row find no room; a request that does not fit
+ * anywhere is rejected and the next one is tried.  The result is how much
+ * of each dimension ended up allocated and how many free cores are
+ * stranded on nodes that no longer have memory for even the smallest VM
+ * in the mix.
+ *
+ * Run with no arguments for the built in scenario, or:
+ *   PlacementSimulator seed nodes node-mem node-cores node-disk
+ */
+public class PlacementSimulator {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    // memory MB, cores, disk MB, weight
+    public static final int[][] DEFAULT_MIX = {
+            {2048, 4, 10240, 3},   // CPU heavy
+            {8192, 1, 10240, 3},   // memory heavy
+            {4096, 2, 40960, 2},   // balanced, scratch disk heavy
+            {1024, 1, 0, 2},       // small
+    };
+
+    // stop after this many rejections in a row, the pool is full
+    private static final int FULL_AFTER = 200;
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final int nodeCount;
+    private final int nodeMem;
+    private final int nodeCores;
+    private final int nodeDisk;
+    private final int[][] mix;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param nodeCount number of identical nodes
+     * @param nodeMem memory MB per node
+     * @param nodeCores cores per node
+     * @param nodeDisk scratch disk MB per node
+     * @param mix rows of {memory MB, cores, disk MB, weight}
+     */
+    public PlacementSimulator(int nodeCount, int nodeMem, int nodeCores,
+                              int nodeDisk, int[][] mix) {
+        if (nodeCount < 1 || nodeMem < 1 || nodeCores < 1 || nodeDisk < 1) {
+            throw new IllegalArgumentException("node count and capacities " +
+                    "must be positive");
+        }
+        if (mix == null || mix.length == 0) {
+            throw new IllegalArgumentException("mix may not be empty");
+        }
+        for (int[] shape : mix) {
+            if (shape == null || shape.length != 4 || shape[3] < 1) {
+                throw new IllegalArgumentException("mix rows must be " +
+                        "{memory, cores, disk, weight} with a positive weight");
+            }
+        }
+        this.nodeCount = nodeCount;
+        this.nodeMem = nodeMem;
+        this.nodeCores = nodeCores;
+        this.nodeDisk = nodeDisk;
+        this.mix = mix;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // RUN
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param strategy strategy to measure
+     * @param seed the request sequence only depends on this, every
+     *        strategy run with the same seed sees the same requests
+     * @return result
+     */
+    public Result run(PlacementStrategy strategy, long seed) {
+
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy may not be null");
+        }
+
+        final List<ResourcepoolEntry> nodes =
+                new ArrayList<ResourcepoolEntry>(this.nodeCount);
+        for (int i = 0; i < this.nodeCount; i++) {
+            nodes.add(new ResourcepoolEntry("sim", "node" + i,
+                    this.nodeMem, this.nodeMem, 0, "*", true,
+                    this.nodeCores, this.nodeCores,
+                    this.nodeDisk, this.nodeDisk));
+        }
+
+        int totalWeight = 0;
+        int smallestMem = Integer.MAX_VALUE;
+        for (int[] shape : this.mix) {
+            totalWeight += shape[3];
+            smallestMem = Math.min(smallestMem, shape[0]);
+        }
+
+        final Random random = new Random(seed);
+        final List<ResourcepoolEntry> candidates =
+                new ArrayList<ResourcepoolEntry>(this.nodeCount);
+        int placed = 0;
+        int rejected = 0;
+        int rejectedInARow = 0;
+        long elapsed = 0;
+
+        while (rejectedInARow < FULL_AFTER) {
+
+            final int[] shape = this.pick(random, totalWeight);
+            final int mem = shape[0];
+            final int cores = shape[1];
+            final int disk = shape[2];
+
+            candidates.clear();
+            for (ResourcepoolEntry node : nodes) {
+                if (node.fits(mem, cores, disk)) {
+                    candidates.add(node);
+                }
+            }
+            if (candidates.isEmpty()) {
+                rejected++;
+                rejectedInARow++;
+                continue;
+            }
+            rejectedInARow = 0;
+
+            // same order the database hands the slot manager
+            Collections.sort(candidates, BY_FREE_MEMORY);
+
+            final long start = System.nanoTime();
+            final ResourcepoolEntry node =
+                    strategy.choose(candidates, mem, cores, disk);
+            elapsed += System.nanoTime() - start;
+
+            node.addMemCurrent(-mem);
+            node.addCoresCurrent(-cores);
+            node.addDiskCurrent(-disk);
+            placed++;
+        }
+
+        long memUsed = 0;
+        long coresUsed = 0;
+        long diskUsed = 0;
+        long coresStranded = 0;
+        for (ResourcepoolEntry node : nodes) {
+            memUsed += node.getMemMax() - node.getMemCurrent();
+            coresUsed += node.getCoresMax() - node.getCoresCurrent();
+            diskUsed += node.getDiskMax() - node.getDiskCurrent();
+            if (node.getMemCurrent() < smallestMem) {
+                coresStranded += node.getCoresCurrent();
+            }
+        }
+
+        final double memTotal = (double) this.nodeCount * this.nodeMem;
+        final double coresTotal = (double) this.nodeCount * this.nodeCores;
+        final double diskTotal = (double) this.nodeCount * this.nodeDisk;
+
+        return new Result(strategy.getName(), placed, rejected,
+                          memUsed / memTotal,
+                          coresUsed / coresTotal,
+                          diskUsed / diskTotal,
+                          coresStranded / coresTotal,
+                          placed == 0 ? 0 : elapsed / placed);
+    }
+
+    private int[] pick(Random random, int totalWeight) {
+        int r = random.nextInt(totalWeight);
+        for (int[] shape : this.mix) {
+            r -= shape[3];
+            if (r < 0) {
+                return shape;
+            }
+        }
+        return this.mix[this.mix.length - 1];
+    }
+
+    private static final Comparator<ResourcepoolEntry> BY_FREE_MEMORY =
+            new Comparator<ResourcepoolEntry>() {
+                public int compare(ResourcepoolEntry a, ResourcepoolEntry b) {
+                    final double fa = a.getMemCurrent() / (double) a.getMemMax();
+                    final double fb = b.getMemCurrent() / (double) b.getMemMax();
+                    return Double.compare(fa, fb);
+                }
+            };
+
+
+    // -------------------------------------------------------------------------
+    // RESULT
+    // -------------------------------------------------------------------------
+
+    public static class Result {
+
+        private final String strategy;
+        private final int placed;
+        private final int rejected;
+        private final double memDensity;
+        private final double coresDensity;
+        private final double diskDensity;
+        private final double coresStranded;
+        private final long nanosPerPlacement;
+
+        Result(String strategy, int placed, int rejected, double memDensity,
+               double coresDensity, double diskDensity, double coresStranded,
+               long nanosPerPlacement) {
+            this.strategy = strategy;
+            this.placed = placed;
+            this.rejected = rejected;
+            this.memDensity = memDensity;
+            this.coresDensity = coresDensity;
+            this.diskDensity = diskDensity;
+            this.coresStranded = coresStranded;
+            this.nanosPerPlacement = nanosPerPlacement;
+        }
+
+        public String getStrategy() {
+            return this.strategy;
+        }
+
+        public int getPlaced() {
+            return this.placed;
+        }
+
+        public int getRejected() {
+            return this.rejected;
+        }
+
+        // fraction of all memory allocated when the pool filled up
+        public double getMemDensity() {
+            return this.memDensity;
+        }
+
+        public double getCoresDensity() {
+            return this.coresDensity;
+        }
+
+        public double getDiskDensity() {
+            return this.diskDensity;
+        }
+
+        // fraction of all cores free on nodes out of memory
+        public double getCoresStranded() {
+            return this.coresStranded;
+        }
+
+        public long getNanosPerPlacement() {
+            return this.nanosPerPlacement;
+        }
+
+        public String toString() {
+            return String.format("%-12s placed=%5d mem=%5.1f%% cores=%5.1f%% " +
+                                 "disk=%5.1f%% stranded-cores=%5.1f%% " +
+                                 "choose=%dns",
+                                 this.strategy, this.placed,
+                                 this.memDensity * 100,
+                                 this.coresDensity * 100,
+                                 this.diskDensity * 100,
+                                 this.coresStranded * 100,
+                                 this.nanosPerPlacement);
+        }
+    }
+
+
+    // -------------------------------------------------------------------------
+    // MAIN
+    // -------------------------------------------------------------------------
+
+    public static void main(String[] args) {
+
+        long seed = 1;
+        int nodes = 64;
+        int mem = 65536;
+        int cores = 32;
+        int disk = 512000;
+        if (args.length > 0) {
+            if (args.length != 5) {
+                System.err.println("usage: PlacementSimulator [seed nodes " +
+                                   "node-mem node-cores node-disk]");
+                System.exit(1);
+            }
+            seed = Long.parseLong(args[0]);
+            nodes = Integer.parseInt(args[1]);
+            mem = Integer.parseInt(args[2]);
+            cores = Integer.parseInt(args[3]);
+            disk = Integer.parseInt(args[4]);
+        }
+
+        final PlacementSimulator sim =
+                new PlacementSimulator(nodes, mem, cores, disk, DEFAULT_MIX);
+        System.out.println(nodes + " nodes of " + mem + " MB, " + cores +
+                           " cores, " + disk + " MB disk; seed " + seed);
+        for (String name : PlacementStrategies.NAMES) {
+            System.out.println(sim.run(PlacementStrategies.create(name), seed));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults.placement;
+
+/**
+ * The built in strategies, by configuration name.
+ */
+public final class PlacementStrategies {
+
+    public static final String ROUND_ROBIN = "round-robin";
+    public static final String GREEDY = "greedy";
+    public static final String DOT_PRODUCT = "dot-product";
+    public static final String BEST_FIT = "best-fit";
+
+    public static final String[] NAMES =
+            {ROUND_ROBIN, GREEDY, DOT_PRODUCT, BEST_FIT};
+
+    private PlacementStrategies() {
+    }
+
+    /**
+     * @param name one of NAMES (case is ignored) or the class name of a
+     *        PlacementStrategy implementation with a no-arg constructor
+     * @return new strategy instance
+     * @throws IllegalArgumentException unknown name or unusable class
+     */
+    public static PlacementStrategy create(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("name may not be null");
+        }
+        final String trimmed = name.trim();
+        if (ROUND_ROBIN.equalsIgnoreCase(trimmed)) {
+            return new RoundRobinPlacement();
+        } else if (GREEDY.equalsIgnoreCase(trimmed)) {
+            return new GreedyPlacement();
+        } else if (DOT_PRODUCT.equalsIgnoreCase(trimmed)) {
+            return new DotProductPlacement();
+        } else if (BEST_FIT.equalsIgnoreCase(trimmed)) {
+            return new BestFitPlacement();
+        }
+
+        final Object instance;
+        try {
+            instance = Class.forName(trimmed).newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException(
+                    "Unknown VMM selection strategy: '" + name + "'.  This " +
+                    "scheduler accepts: '" + ROUND_ROBIN + "', '" + GREEDY +
+                    "', '" + DOT_PRODUCT + "', '" + BEST_FIT + "' or the " +
+                    "name of a " + PlacementStrategy.class.getName() +
+                    " implementation (" + e.getMessage() + ")");
+        }
+        if (!(instance instanceof PlacementStrategy)) {
+            throw new IllegalArgumentException("'" + name + "' is not a " +
+                    PlacementStrategy.class.getName() + " implementation");
+        }
+        return (PlacementStrategy) instance;
+    }
+}
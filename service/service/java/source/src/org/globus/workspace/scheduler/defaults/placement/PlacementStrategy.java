@@ -0,0 +1,52 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults.placement;
+
+import org.globus.workspace.scheduler.defaults.ResourcepoolEntry;
+
+import java.util.List;
+
+/**
+ * Picks the VMM a VM is placed on.  DefaultSlotManagement has already
+ * removed every node that is inactive, in the wrong pool, missing a needed
+ * network or short on any tracked capacity dimension.
+ *
+ * Implementations must be thread safe, the slot manager lock is the only
+ * thing serializing calls.
+ *
+ * @see PlacementStrategies
+ */
+public interface PlacementStrategy {
+
+    /**
+     * @return name used in logs and configuration, e.g. "best-fit"
+     */
+    public String getName();
+
+    /**
+     * @param candidates nodes with room for the request, ordered by ascending
+     *        free memory percentage, never empty; may be reordered
+     * @param mem MB of memory needed
+     * @param cores CPU cores needed, at least one
+     * @param disk MB of scratch disk needed
+     * @return one of the candidates, never null
+     */
+    public ResourcepoolEntry choose(List<ResourcepoolEntry> candidates,
+                                    int mem,
+                                    int cores,
+                                    int disk);
+}
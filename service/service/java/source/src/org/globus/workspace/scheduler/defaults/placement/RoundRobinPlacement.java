@@ -0,0 +1,55 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults.placement;
+
+import org.globus.workspace.scheduler.defaults.ResourcepoolEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Spreads VMs out: picks the node with the highest percentage of free
+ * memory, randomly among equals.
+ */
+public class RoundRobinPlacement implements PlacementStrategy {
+
+    public String getName() {
+        return PlacementStrategies.ROUND_ROBIN;
+    }
+
+    public ResourcepoolEntry choose(List<ResourcepoolEntry> candidates,
+                                    int mem,
+                                    int cores,
+                                    int disk) {
+
+        // choosing highest percent that is empty
+        Collections.reverse(candidates);
+
+        final List<Integer> candidateIndexes = new ArrayList<Integer>();
+        final int percentEmpty = candidates.get(0).percentEmpty();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (candidates.get(i).percentEmpty() < percentEmpty) {
+                break;
+            }
+            candidateIndexes.add(i);
+        }
+
+        // pick a random node from the list of equally utilized ones
+        return GreedyPlacement.randomSelect(candidateIndexes, candidates);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults.placement;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.globus.workspace.scheduler.defaults.ResourcepoolEntry;
+
+import java.util.List;
+
+/**
+ * Base for strategies that look at memory, cores and disk together.
+ *
+ * Each node is seen as two vectors in the space of the dimensions it
+ * tracks (memory always, cores and disk if the node has a maximum for
+ * them): the request's demand and the node's free capacity, each
+ * dimension as a fraction of the node's maximum so that a core and a
+ * gigabyte are comparable.  The node with the lowest score wins, ties go
+ * to the node with less free capacity so that empty nodes stay empty.
+ */
+public abstract class VectorPlacement implements PlacementStrategy {
+
+    private static final Log logger =
+        LogFactory.getLog(VectorPlacement.class.getName());
+
+    private static final double TIE = 1e-9;
+
+    public ResourcepoolEntry choose(List<ResourcepoolEntry> candidates,
+                                    int mem,
+                                    int cores,
+                                    int disk) {
+
+        final boolean trace = logger.isTraceEnabled();
+        final double[] demand = new double[3];
+        final double[] free = new double[3];
+
+        ResourcepoolEntry best = null;
+        double bestScore = 0;
+        double bestFree = 0;
+        for (ResourcepoolEntry entry : candidates) {
+            final int dims = vectors(entry, mem, cores, disk, demand, free);
+            final double score = this.score(demand, free, dims);
+            double freeSum = 0;
+            for (int i = 0; i < dims; i++) {
+                freeSum += free[i];
+            }
+            freeSum /= dims;
+
+            if (trace) {
+                logger.trace(this.getName() + " score for '" +
+                             entry.getHostname() + "': " + score);
+            }
+
+            if (best == null
+                    || score < bestScore - TIE
+                    || (score <= bestScore + TIE && freeSum < bestFree)) {
+                best = entry;
+                bestScore = score;
+                bestFree = freeSum;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param demand request as fractions of the node's maximums
+     * @param free node's free capacity as fractions of its maximums
+     * @param dims number of valid dimensions in both arrays
+     * @return score, lower is better
+     */
+    protected abstract double score(double[] demand, double[] free, int dims);
+
+    // fills the normalized vectors, returns how many dimensions are tracked
+    static int vectors(ResourcepoolEntry entry,
+                       int mem,
+                       int cores,
+                       int disk,
+                       double[] demand,
+                       double[] free) {
+        int dims = 0;
+        final double memMax = Math.max(1, entry.getMemMax());
+        demand[dims] = mem / memMax;
+        free[dims] = entry.getMemCurrent() / memMax;
+        dims++;
+        if (entry.isCoresTracked()) {
+            demand[dims] = cores / (double) entry.getCoresMax();
+            free[dims] = entry.getCoresCurrent() / (double) entry.getCoresMax();
+            dims++;
+        }
+        if (entry.isDiskTracked()) {
+            demand[dims] = disk / (double) entry.getDiskMax();
+            free[dims] = entry.getDiskCurrent() / (double) entry.getDiskMax();
+            dims++;
+        }
+        return dims;
+    }
+}
@@ -45,6 +45,18 @@ public interface WorkspaceHome {
 
             throws ManageException, DoesNotExistException;
 
+    /**
+     * Find many resources at once, loading the ones that are not cached
+     * with a few bulk queries.
+     *
+     * @param ids vm ids
+     * @return the resources that exist, in id order given, never null
+     * @throws ManageException problem retrieving resources
+     */
+    public InstanceResource[] find(int[] ids)
+
+            throws ManageException;
+
     public InstanceResource[] findByCaller(String callerID)
 
             throws ManageException;
@@ -21,6 +21,7 @@ import org.globus.workspace.Lager;
 import org.globus.workspace.service.binding.WorkspaceInstantiation;
 import org.nimbustools.api.services.rm.ManageException;
 import org.apache.commons.logging.Log;
+import org.nimbustools.api.repr.vm.NIC;
 
 import java.io.Serializable;
 
@@ -38,6 +39,9 @@ public class VirtualMachine extends WorkspaceInstantiation implements Serializab
 
     private String network;
 
+    // parsed form of network, filled in by DataConvert, never persisted
+    private transient volatile ParsedNICs parsedNICs;
+
     private String kernel;
 
     private String kernelParameters;
@@ -46,6 +50,12 @@ public class VirtualMachine extends WorkspaceInstantiation implements Serializab
     
     private boolean preemptable;
 
+    // start takes the image from the node's image cache, never persisted
+    private transient volatile boolean propagateFromCache;
+
+    // node's image cache budget in MB for the commands, never persisted
+    private transient volatile int imageCacheMax = -1;
+
     private String associationsNeeded;
 
     private VirtualMachinePartition[] partitions;
@@ -96,6 +106,21 @@ public class VirtualMachine extends WorkspaceInstantiation implements Serializab
 
     public void setNetwork(String network) {
         this.network = network;
+        this.parsedNICs = null;
+    }
+
+    /**
+     * @return NICs last parsed from a network string of this VM, may be
+     *         null; only valid if its network is the current network
+     *         (same instance)
+     * @see org.globus.workspace.persistence.DataConvert#getNICs(VirtualMachine)
+     */
+    public ParsedNICs getParsedNICs() {
+        return this.parsedNICs;
+    }
+
+    public void setParsedNICs(ParsedNICs parsedNICs) {
+        this.parsedNICs = parsedNICs;
     }
 
     public String getAssociationsNeeded() {
@@ -160,6 +185,31 @@ public class VirtualMachine extends WorkspaceInstantiation implements Serializab
         this.preemptable = preemptable;
     }
 
+    /**
+     * @return true if the create command is to propagate the image itself,
+     *         out of the node's image cache, instead of expecting an
+     *         earlier propagate-only command to have done it
+     */
+    public boolean isPropagateFromCache() {
+        return this.propagateFromCache;
+    }
+
+    public void setPropagateFromCache(boolean propagateFromCache) {
+        this.propagateFromCache = propagateFromCache;
+    }
+
+    /**
+     * @return budget to send along with cache lookups, 0 to go back to the
+     *         node's own, negative to send none
+     */
+    public int getImageCacheMax() {
+        return this.imageCacheMax;
+    }
+
+    public void setImageCacheMax(int imageCacheMax) {
+        this.imageCacheMax = imageCacheMax;
+    }
+
     public String getCredentialName() {
         return this.credentialName;
     }
@@ -325,6 +375,23 @@ public class VirtualMachine extends WorkspaceInstantiation implements Serializab
                this.fileCopyNeeds.length <= 0;
     }
 
+    /**
+     * @return MB of blank scratch space the VMM has to provide
+     */
+    public int getScratchDisk() {
+        if (this.partitions == null) {
+            return 0;
+        }
+        int total = 0;
+        for (int i = 0; i < this.partitions.length; i++) {
+            if (this.partitions[i] != null
+                    && this.partitions[i].getBlankspace() > 0) {
+                total += this.partitions[i].getBlankspace();
+            }
+        }
+        return total;
+    }
+
     // part of the instantiation interface, nothing about VM deployment
     // class is known there
     public int getRequestedShutdownMechanism() {
@@ -352,6 +419,7 @@ public class VirtualMachine extends WorkspaceInstantiation implements Serializab
         newvm.kernelParameters = vm.kernelParameters;
         newvm.name = vm.name;
         newvm.network = vm.network;
+        newvm.parsedNICs = vm.parsedNICs;
         newvm.resourcePool = vm.resourcePool;
         newvm.node = vm.node;
         newvm.propagateRequired = vm.propagateRequired;
@@ -383,4 +451,40 @@ public class VirtualMachine extends WorkspaceInstantiation implements Serializab
 
         return newvm;
     }
+
+    /**
+     * A network string and the NICs parsed from it.  Neither the array nor
+     * the NICs may be modified once this is created, hand out copies of
+     * the array.
+     */
+    public static final class ParsedNICs {
+
+        private final String network;
+        private final NIC[] nics;
+
+        /**
+         * @param network network string that was parsed
+         * @param nics result, null if the VM has no NICs
+         */
+        public ParsedNICs(String network, NIC[] nics) {
+            this.network = network;
+            this.nics = nics;
+        }
+
+        public String getNetwork() {
+            return this.network;
+        }
+
+        /**
+         * @return copy of the parsed NICs, null if the VM has no NICs
+         */
+        public NIC[] getNICs() {
+            if (this.nics == null) {
+                return null;
+            }
+            final NIC[] copy = new NIC[this.nics.length];
+            System.arraycopy(this.nics, 0, copy, 0, this.nics.length);
+            return copy;
+        }
+    }
 }
@@ -32,8 +32,6 @@ import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
 
-import java.util.List;
-import java.util.LinkedList;
 
 import edu.emory.mathcs.backport.java.util.concurrent.locks.Lock;
 
@@ -210,33 +208,11 @@ public abstract class CoschedHomeImpl implements WorkspaceCoschedHome {
         // check-then-act problem with findVMsInEnsemble result and some instance
         // destruction in the meantime (which is not a problem for this query
         // so far, todo: more docs)
-        final List retlist = new LinkedList();
 
         // will never be null return array, just empty
         final int[] ids = this.findMemberIDs(coschedid);
 
-        for (int i = 0; i < ids.length; i++) {
-
-            final InstanceResource rsrc;
-
-            try {
-                rsrc = this.whome.find(ids[i]);
-            } catch (DoesNotExistException e) {
-                continue; // *** SKIP ***
-            } catch (Throwable t) {
-                if (logger.isDebugEnabled()) {
-                    logger.error(t.getMessage(), t);
-                } else {
-                    logger.error(t.getMessage());
-                }
-                continue; // *** SKIP ***
-            }
-
-            retlist.add(rsrc);
-        }
-
-        return (InstanceResource[]) retlist.toArray(
-                    new InstanceResource[retlist.size()]);
+        return this.whome.find(ids);
     }
 
 
@@ -33,8 +33,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.safehaus.uuid.UUIDGenerator;
 
-import java.util.List;
-import java.util.LinkedList;
 
 import edu.emory.mathcs.backport.java.util.concurrent.locks.Lock;
 
@@ -210,33 +208,11 @@ public abstract class GroupHomeImpl implements WorkspaceGroupHome {
         // check-then-act problem with findVMsInGroup result and some instance
         // destruction in the meantime (which is no big deal, groups are just
         // shortcuts for dispatching work to the locked, consistent instances)
-        final List retlist = new LinkedList();
 
         // will never be null return array, just empty
         final int[] ids = this.findMemberIDs(groupid);
 
-        for (int i = 0; i < ids.length; i++) {
-
-            final InstanceResource rsrc;
-            
-            try {
-                rsrc = this.whome.find(ids[i]);
-            } catch (DoesNotExistException e) {
-                continue; // *** SKIP ***
-            } catch (Throwable t) {
-                if (logger.isDebugEnabled()) {
-                    logger.error(t.getMessage(), t);
-                } else {
-                    logger.error(t.getMessage());
-                }
-                continue; // *** SKIP ***
-            }
-
-            retlist.add(rsrc);
-        }
-
-        return (InstanceResource[]) retlist.toArray(
-                    new InstanceResource[retlist.size()]);
+        return this.whome.find(ids);
     }
 
 
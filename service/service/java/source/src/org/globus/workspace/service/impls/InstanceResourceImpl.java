@@ -83,6 +83,9 @@ public abstract class InstanceResourceImpl implements InstanceResource {
     // optionally set
     protected AccountingEventAdapter accounting;
     protected CreationAuthorizationCallout authzCallout;
+
+    // the home holding this resource, told when it is removed
+    protected WorkspaceHomeImpl home;
     
     protected int id = -1;
     protected String name;
@@ -168,6 +171,10 @@ public abstract class InstanceResourceImpl implements InstanceResource {
         this.accounting = events;
     }
 
+    void setHome(WorkspaceHomeImpl homeImpl) {
+        this.home = homeImpl;
+    }
+
 
     // -------------------------------------------------------------------------
     // CREATION
@@ -867,6 +874,12 @@ public abstract class InstanceResourceImpl implements InstanceResource {
                             + " from persistence layer: " + t.getMessage(), t);
         }
 
+        // destroys that finish asynchronously (setState) end up here without
+        // passing through the home, which would otherwise keep it forever
+        if (this.home != null) {
+            this.home.resourceRemoved(this.id);
+        }
+
         // After remove is done, home notifies subscribers of termination
     }
 
@@ -0,0 +1,316 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.service.impls;
+
+import org.globus.workspace.service.InstanceResource;
+
+/**
+ * Holds every active instance resource, keyed by its int ID.
+ *
+ * Nothing is ever evicted: a resource stays until the home removes it on
+ * destroy or cleanup, so lookups never fall back to the database for a
+ * live workspace no matter how many there are.
+ *
+ * Each segment is an open addressing table (linear probing, backward shift
+ * deletion) of int keys and resource references, so an entry costs two
+ * array slots rather than a String key, a cache element and a hash entry.
+ * Segments are locked independently.  IDs must be positive, zero marks an
+ * empty slot.
+ */
+public class InstanceStore {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    // Segments are picked by the low bits of the hash, slots within a
+    // segment by the bits above these.
+    private static final int SLOT_SHIFT = 8;
+
+    private static final int MAX_SEGMENTS = 1 << SLOT_SHIFT;
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTORS
+    // -------------------------------------------------------------------------
+
+    public InstanceStore() {
+        this(DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * @param concurrency number of independently locked segments, rounded
+     *        up to a power of two, at most 256
+     */
+    public InstanceStore(int concurrency) {
+        if (concurrency < 1 || concurrency > MAX_SEGMENTS) {
+            throw new IllegalArgumentException(
+                    "concurrency must be between 1 and " + MAX_SEGMENTS);
+        }
+        int n = 1;
+        while (n < concurrency) {
+            n <<= 1;
+        }
+        this.segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            this.segments[i] = new Segment(INITIAL_SEGMENT_CAPACITY);
+        }
+        this.segmentMask = n - 1;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // ACCESS
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param id workspace ID
+     * @return the resource or null
+     */
+    public InstanceResource get(int id) {
+        return this.segmentFor(checkID(id)).get(id);
+    }
+
+    /**
+     * @param id workspace ID
+     * @param resource may not be null
+     * @return the resource previously stored under the ID or null
+     */
+    public InstanceResource put(int id, InstanceResource resource) {
+        if (resource == null) {
+            throw new IllegalArgumentException("resource may not be null");
+        }
+        return this.segmentFor(checkID(id)).put(id, resource, true);
+    }
+
+    /**
+     * @param id workspace ID
+     * @param resource may not be null
+     * @return the resource already stored under the ID (in which case
+     *         nothing changed) or null if the given one was stored
+     */
+    public InstanceResource putIfAbsent(int id, InstanceResource resource) {
+        if (resource == null) {
+            throw new IllegalArgumentException("resource may not be null");
+        }
+        return this.segmentFor(checkID(id)).put(id, resource, false);
+    }
+
+    /**
+     * @param id workspace ID
+     * @return the removed resource or null
+     */
+    public InstanceResource remove(int id) {
+        return this.segmentFor(checkID(id)).remove(id);
+    }
+
+    public void clear() {
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return number of allocated slots (for footprint reporting)
+     */
+    public int capacity() {
+        int capacity = 0;
+        for (Segment segment : this.segments) {
+            capacity += segment.capacity();
+        }
+        return capacity;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // IMPL
+    // -------------------------------------------------------------------------
+
+    private Segment segmentFor(int id) {
+        return this.segments[hash(id) & this.segmentMask];
+    }
+
+    private static int checkID(int id) {
+        if (id < 1) {
+            throw new IllegalArgumentException("ID may not be less than one");
+        }
+        return id;
+    }
+
+    // IDs are sequential, spread them over segments and slots
+    private static int hash(int id) {
+        final int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static class Segment {
+
+        private int[] keys;
+        private InstanceResource[] values;
+        private int size;
+
+        Segment(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new InstanceResource[capacity];
+        }
+
+        synchronized InstanceResource get(int id) {
+            final int mask = this.keys.length - 1;
+            int i = slot(id, mask);
+            while (true) {
+                final int key = this.keys[i];
+                if (key == id) {
+                    return this.values[i];
+                }
+                if (key == 0) {
+                    return null;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        synchronized InstanceResource put(int id,
+                                          InstanceResource resource,
+                                          boolean replace) {
+
+            // keep the load factor at or below 3/4
+            if ((this.size + 1) * 4 > this.keys.length * 3) {
+                this.resize(this.keys.length * 2);
+            }
+
+            final int mask = this.keys.length - 1;
+            int i = slot(id, mask);
+            while (true) {
+                final int key = this.keys[i];
+                if (key == id) {
+                    final InstanceResource previous = this.values[i];
+                    if (replace) {
+                        this.values[i] = resource;
+                    }
+                    return previous;
+                }
+                if (key == 0) {
+                    this.keys[i] = id;
+                    this.values[i] = resource;
+                    this.size++;
+                    return null;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        synchronized InstanceResource remove(int id) {
+            final int mask = this.keys.length - 1;
+            int i = slot(id, mask);
+            while (true) {
+                final int key = this.keys[i];
+                if (key == 0) {
+                    return null;
+                }
+                if (key == id) {
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+
+            final InstanceResource removed = this.values[i];
+            this.size--;
+
+            // Shift back later entries of the probe run so that lookups
+            // never need tombstones.
+            int hole = i;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                final int key = this.keys[j];
+                if (key == 0) {
+                    break;
+                }
+                final int home = slot(key, mask);
+                // move it unless its home lies cyclically in (hole, j]
+                final boolean stays = hole <= j
+                        ? hole < home && home <= j
+                        : hole < home || home <= j;
+                if (!stays) {
+                    this.keys[hole] = key;
+                    this.values[hole] = this.values[j];
+                    hole = j;
+                }
+            }
+            this.keys[hole] = 0;
+            this.values[hole] = null;
+            return removed;
+        }
+
+        synchronized void clear() {
+            this.keys = new int[INITIAL_SEGMENT_CAPACITY];
+            this.values = new InstanceResource[INITIAL_SEGMENT_CAPACITY];
+            this.size = 0;
+        }
+
+        synchronized int size() {
+            return this.size;
+        }
+
+        synchronized int capacity() {
+            return this.keys.length;
+        }
+
+        private void resize(int capacity) {
+            final int[] oldKeys = this.keys;
+            final InstanceResource[] oldValues = this.values;
+            this.keys = new int[capacity];
+            this.values = new InstanceResource[capacity];
+            final int mask = capacity - 1;
+            for (int k = 0; k < oldKeys.length; k++) {
+                final int key = oldKeys[k];
+                if (key != 0) {
+                    int i = slot(key, mask);
+                    while (this.keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    this.keys[i] = key;
+                    this.values[i] = oldValues[k];
+                }
+            }
+        }
+
+        private static int slot(int key, int mask) {
+            return (hash(key) >>> SLOT_SHIFT) & mask;
+        }
+    }
+}
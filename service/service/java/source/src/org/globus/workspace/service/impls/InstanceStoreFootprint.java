@@ -0,0 +1,114 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.service.impls;
+
+import org.globus.workspace.service.InstanceResource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Heap footprint benchmark for InstanceStore, no database or service
+ * involved.
+ *
+ * Fills the store and a String keyed HashMap (how the old instance cache
+ * keyed its entries) with the same number of VMs and prints the heap
+ * each one grew by per entry.  Every entry holds one shared resource, so
+ * only the per-entry overhead of the index is measured.  Numbers depend
+ * on the JVM and its GC, run with a fixed heap for comparable results:
+ *
+ *   java -Xms512m -Xmx512m InstanceStoreFootprint [vms]
+ */
+public class InstanceStoreFootprint {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    public static final int DEFAULT_VMS = 100000;
+
+
+    // -------------------------------------------------------------------------
+    // MAIN
+    // -------------------------------------------------------------------------
+
+    public static void main(String[] args) {
+
+        int vms = DEFAULT_VMS;
+        if (args.length > 0) {
+            if (args.length != 1) {
+                System.err.println("usage: InstanceStoreFootprint [vms]");
+                System.exit(1);
+            }
+            vms = Integer.parseInt(args[0]);
+        }
+
+        final InstanceResource resource = sharedResource();
+
+        long before = usedHeap();
+        final InstanceStore store = new InstanceStore();
+        for (int id = 1; id <= vms; id++) {
+            store.put(id, resource);
+        }
+        final long storeBytes = usedHeap() - before;
+
+        before = usedHeap();
+        final Map<String,InstanceResource> map =
+                new HashMap<String,InstanceResource>();
+        for (int id = 1; id <= vms; id++) {
+            map.put(String.valueOf(id), resource);
+        }
+        final long mapBytes = usedHeap() - before;
+
+        System.out.println(vms + " VMs");
+        System.out.println("InstanceStore:           " + storeBytes / vms +
+                           " bytes/entry (" + store.capacity() + " slots, " +
+                           store.size() + " entries)");
+        System.out.println("String keyed HashMap:    " + mapBytes / vms +
+                           " bytes/entry (" + map.size() + " entries)");
+    }
+
+
+    // -------------------------------------------------------------------------
+    // IMPL
+    // -------------------------------------------------------------------------
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // never called, it only has to be there
+    private static InstanceResource sharedResource() {
+        return (InstanceResource) Proxy.newProxyInstance(
+                InstanceResource.class.getClassLoader(),
+                new Class[]{InstanceResource.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                                         Object[] args) {
+                        throw new UnsupportedOperationException(
+                                method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.service.impls;
+
+import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
+import edu.emory.mathcs.backport.java.util.concurrent.Executors;
+import edu.emory.mathcs.backport.java.util.concurrent.RejectedExecutionException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.globus.workspace.Lager;
+import org.globus.workspace.metrics.Gauge;
+import org.globus.workspace.metrics.Metrics;
+import org.nimbustools.api.repr.vm.State;
+import org.nimbustools.api.services.rm.StateChangeCallback;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delivers state change notifications to registered StateChangeCallback
+ * listeners off the thread that made the transition.
+ *
+ * Each listener has its own bounded queue holding at most one pending
+ * state per resource, drained by one task at a time.  If a resource
+ * changes state again before the listener got the previous change, the
+ * pending entry is overwritten with the newer state: a slow listener
+ * sees fewer intermediate states but never an older state after a newer
+ * one.  Listeners do not hold each other up.
+ *
+ * When a queue is full the publisher waits up to fullWaitMs for room,
+ * after that the notification is dropped and counted.
+ */
+public class StateNotificationBus {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final Log logger =
+            LogFactory.getLog(StateNotificationBus.class.getName());
+
+    public static final int DEFAULT_THREADS = 4;
+
+    public static final int DEFAULT_MAX_PENDING = 10000;
+
+    public static final long DEFAULT_FULL_WAIT_MS = 5000;
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final ExecutorService executor;
+    private final int maxPending;
+    private long fullWaitMs = DEFAULT_FULL_WAIT_MS;
+
+    // listener --> its queue, only present while something is pending or
+    // being delivered; guarded by itself, also guards every queue's state
+    private final Map<StateChangeCallback, ListenerQueue> queues =
+            new IdentityHashMap<StateChangeCallback, ListenerQueue>();
+
+    // metrics, guarded by queues
+    private long published;
+    private long coalesced;
+    private long dropped;
+
+    // metrics, guarded by this
+    private long delivered;
+    private long totalLagMs;
+    private long maxLagMs;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTORS
+    // -------------------------------------------------------------------------
+
+    public StateNotificationBus() {
+        this(DEFAULT_THREADS, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * @param threads delivery threads
+     * @param maxPending per listener, number of resources that may have a
+     *        notification waiting
+     */
+    public StateNotificationBus(int threads, int maxPending) {
+        this(newExecutor(threads), maxPending);
+    }
+
+    /**
+     * @param executorService runs the delivery tasks
+     * @param maxPending per listener, number of resources that may have a
+     *        notification waiting
+     */
+    public StateNotificationBus(ExecutorService executorService,
+                                int maxPending) {
+        if (executorService == null) {
+            throw new IllegalArgumentException(
+                    "executorService may not be null");
+        }
+        if (maxPending < 1) {
+            throw new IllegalArgumentException(
+                    "maxPending must be positive");
+        }
+        this.executor = executorService;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Publishes the pending count as the "queue.notifications" gauge.
+     * Called by the container, other instances (tests) stay unregistered.
+     */
+    public void registerMetrics() {
+        Metrics.gauge("queue.notifications", new Gauge() {
+            public long value() {
+                return getPendingCount();
+            }
+        });
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // SET
+    // -------------------------------------------------------------------------
+
+    public void setFullWaitMs(long ms) {
+        if (ms < 0) {
+            throw new IllegalArgumentException("fullWaitMs may not be negative");
+        }
+        this.fullWaitMs = ms;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // ENTRY
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns once the state is queued for the listener (or coalesced into
+     * what is already queued), delivery happens on the executor.
+     *
+     * @param id resource ID
+     * @param state new state of the resource
+     * @param listener may not be null
+     */
+    public void publish(int id, State state, StateChangeCallback listener) {
+
+        if (listener == null) {
+            throw new IllegalArgumentException("listener may not be null");
+        }
+
+        final Integer key = new Integer(id);
+        final long deadline = System.currentTimeMillis() + this.fullWaitMs;
+
+        ListenerQueue submit = null;
+        synchronized (this.queues) {
+
+            this.published += 1;
+
+            while (true) {
+
+                ListenerQueue queue = this.queues.get(listener);
+                if (queue == null) {
+                    queue = new ListenerQueue(listener);
+                    this.queues.put(listener, queue);
+                }
+
+                final Pending pending = queue.pending.get(key);
+                if (pending != null) {
+                    // keeps its place and its original enqueue time
+                    pending.state = state;
+                    this.coalesced += 1;
+                    return; // *** EARLY RETURN ***
+                }
+
+                if (queue.pending.size() < this.maxPending) {
+                    queue.pending.put(key, new Pending(id, state));
+                    if (!queue.draining) {
+                        queue.draining = true;
+                        submit = queue;
+                    }
+                    break;
+                }
+
+                final long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    this.dropped += 1;
+                    logger.error(Lager.id(id) + ": state notification " +
+                            "queue is full (" + this.maxPending + "), " +
+                            "dropping notification");
+                    return; // *** EARLY RETURN ***
+                }
+                try {
+                    this.queues.wait(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    this.dropped += 1;
+                    logger.error(Lager.id(id) + ": interrupted waiting " +
+                            "for room in state notification queue, " +
+                            "dropping notification");
+                    return; // *** EARLY RETURN ***
+                }
+            }
+        }
+
+        if (submit != null) {
+            try {
+                this.executor.execute(submit);
+            } catch (RejectedExecutionException e) {
+                // shutting down, deliver on this thread
+                logger.warn("state notification task rejected, " +
+                            "delivering on the calling thread");
+                submit.run();
+            }
+        }
+    }
+
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+
+    // -------------------------------------------------------------------------
+    // METRICS
+    // -------------------------------------------------------------------------
+
+    public long getPublishedCount() {
+        synchronized (this.queues) {
+            return this.published;
+        }
+    }
+
+    /**
+     * @return notifications folded into one already pending for the same
+     *         resource and listener
+     */
+    public long getCoalescedCount() {
+        synchronized (this.queues) {
+            return this.coalesced;
+        }
+    }
+
+    public long getDroppedCount() {
+        synchronized (this.queues) {
+            return this.dropped;
+        }
+    }
+
+    /**
+     * @return number of resources with a notification waiting, summed over
+     *         all listeners
+     */
+    public int getPendingCount() {
+        synchronized (this.queues) {
+            int count = 0;
+            for (ListenerQueue queue : this.queues.values()) {
+                count += queue.pending.size();
+            }
+            return count;
+        }
+    }
+
+    public synchronized long getDeliveredCount() {
+        return this.delivered;
+    }
+
+    /**
+     * Lag is measured from the oldest transition a delivery stands for
+     * to the start of the listener call.
+     * @return average delivery lag in ms, 0 if nothing was delivered
+     */
+    public synchronized long getAverageLagMs() {
+        if (this.delivered == 0) {
+            return 0;
+        }
+        return this.totalLagMs / this.delivered;
+    }
+
+    public synchronized long getMaxLagMs() {
+        return this.maxLagMs;
+    }
+
+    private synchronized void recordLag(long lagMs) {
+        this.delivered += 1;
+        this.totalLagMs += lagMs;
+        if (lagMs > this.maxLagMs) {
+            this.maxLagMs = lagMs;
+        }
+    }
+
+
+    // -------------------------------------------------------------------------
+    // IMPL
+    // -------------------------------------------------------------------------
+
+    private void drain(ListenerQueue queue) {
+        while (true) {
+            final List<Pending> batch;
+            synchronized (this.queues) {
+                if (queue.pending.isEmpty()) {
+                    queue.draining = false;
+                    this.queues.remove(queue.listener);
+                    return;
+                }
+                batch = new ArrayList<Pending>(queue.pending.values());
+                queue.pending.clear();
+                // publishers waiting for room
+                this.queues.notifyAll();
+            }
+
+            for (Pending pending : batch) {
+                final long lag = System.currentTimeMillis() - pending.enqueued;
+                this.recordLag(lag);
+                try {
+                    queue.listener.newState(pending.state);
+                } catch (Throwable t) {
+                    final String err = "Problem with asynchronous state " +
+                            "change notification for " +
+                            Lager.id(pending.id) + ": " + t.getMessage();
+                    logger.error(err, t);
+                }
+            }
+        }
+    }
+
+    private class ListenerQueue implements Runnable {
+
+        final StateChangeCallback listener;
+
+        // resource ID --> latest undelivered state, first queued first
+        final Map<Integer, Pending> pending =
+                new LinkedHashMap<Integer, Pending>();
+
+        // true while a drain task is submitted or running
+        boolean draining;
+
+        ListenerQueue(StateChangeCallback listener) {
+            this.listener = listener;
+        }
+
+        public void run() {
+            drain(this);
+        }
+    }
+
+    private static class Pending {
+
+        final int id;
+        final long enqueued;
+        State state;
+
+        Pending(int id, State state) {
+            this.id = id;
+            this.state = state;
+            this.enqueued = System.currentTimeMillis();
+        }
+    }
+}
@@ -23,14 +23,19 @@ import org.globus.workspace.Lager;
 import org.globus.workspace.LockManager;
 import org.globus.workspace.ProgrammingError;
 import org.globus.workspace.WorkspaceConstants;
+import org.globus.workspace.WorkspaceException;
+import org.globus.workspace.metrics.Metrics;
 import org.globus.workspace.persistence.DataConvert;
+import org.globus.workspace.scheduler.defaults.ImageCacheRegistry;
 import org.globus.workspace.service.impls.async.RequestDispatch;
 import org.globus.workspace.service.impls.async.RequestFactory;
 import org.globus.workspace.service.impls.async.TaskNotImplementedException;
 import org.globus.workspace.service.impls.async.WorkspaceRequest;
 import org.globus.workspace.service.impls.async.WorkspaceRequestContext;
 import org.globus.workspace.service.binding.GlobalPolicies;
+import org.globus.workspace.service.binding.vm.VirtualMachine;
 import org.globus.workspace.TempLocator;
+import org.globus.workspace.xen.XenUtil;
 import org.nimbustools.api.services.rm.ManageException;
 
 /**
@@ -47,6 +52,8 @@ public class StateTransition implements WorkspaceConstants {
     private static final Log logger =
                         LogFactory.getLog(StateTransition.class.getName());
 
+    private static final String METRICS_GROUP = "transition";
+
 
     // -------------------------------------------------------------------------
     // INSTANCE VARIABLES
@@ -61,6 +68,9 @@ public class StateTransition implements WorkspaceConstants {
     protected final boolean trace;
     protected final boolean event;
 
+    // may be null, every launch then propagates
+    protected ImageCacheRegistry imageCache;
+
     
     // -------------------------------------------------------------------------
     // CONSTRUCTOR
@@ -101,6 +111,15 @@ public class StateTransition implements WorkspaceConstants {
     }
 
 
+    // -------------------------------------------------------------------------
+    // OPTIONAL MODULES SETTERS
+    // -------------------------------------------------------------------------
+
+    public void setImageCache(ImageCacheRegistry registry) {
+        this.imageCache = registry;
+    }
+
+
     // -------------------------------------------------------------------------
     // ENTRY
     // -------------------------------------------------------------------------
@@ -133,14 +152,23 @@ public class StateTransition implements WorkspaceConstants {
 
         final int state = resource.getState();
         final int targetState = resource.getTargetState();
-
-        _run(resource,
-             state,
-             targetState,
-             id,
-             idStr,
-             this.dataConvert.stateName(state),
-             this.dataConvert.stateName(targetState));
+        final String targetStr = this.dataConvert.stateName(targetState);
+
+        final long start = System.nanoTime();
+        try {
+            _run(resource,
+                 state,
+                 targetState,
+                 id,
+                 idStr,
+                 this.dataConvert.stateName(state),
+                 targetStr);
+        } finally {
+            // keyed by target, which picks the phase that runs
+            Metrics.histogram(METRICS_GROUP,
+                              targetStr == null ? "unknown" : targetStr)
+                   .recordSince(start);
+        }
 
         if (this.trace) {
             logger.trace(idStr + ": state transition over");
@@ -652,6 +680,19 @@ public class StateTransition implements WorkspaceConstants {
             throw wexc;
         }
 
+        if (this.imageCache != null && resource.getVM() != null) {
+            final VirtualMachine vm = resource.getVM();
+            vm.setImageCacheMax(this.imageCache.getBudget(vm.getNode()));
+        }
+
+        if (target != STATE_PROPAGATED &&
+                this.propagateFromCache(resource, id)) {
+            resource.setStateUnderLock(STATE_PROPAGATED, null);
+            _runStart(resource, STATE_PROPAGATED, target, id,
+                      idStr, this.dataConvert.stateName(STATE_PROPAGATED), tarStr);
+            return true;
+        }
+
         WorkspaceRequest req;
         boolean fallback = false;
         final boolean propstartOK = resource.isPropagateStartOK();
@@ -863,6 +904,45 @@ public class StateTransition implements WorkspaceConstants {
     }
 
 
+    /*
+     * A VM placed on a node that holds its image skips the propagate
+     * command and its notification: the create command takes the image
+     * out of the node's cache (or fetches it, if the cache let it go).
+     */
+    private boolean propagateFromCache(final StatefulResourceImpl resource,
+                                       final int id) {
+
+        if (this.imageCache == null) {
+            return false;
+        }
+
+        final VirtualMachine vm = resource.getVM();
+        if (vm == null || vm.getNode() == null) {
+            return false;
+        }
+
+        final String checksum;
+        try {
+            checksum = XenUtil.getCacheChecksum(vm);
+        } catch (WorkspaceException e) {
+            logger.warn(Lager.id(id) + ": could not find the image " +
+                        "checksum, propagating: " + e.getMessage());
+            return false;
+        }
+
+        if (!this.imageCache.isCached(vm.getNode(), checksum)) {
+            return false;
+        }
+
+        vm.setPropagateFromCache(true);
+        if (this.event) {
+            logger.info(Lager.ev(id) + "image is cached on '" +
+                        vm.getNode() + "', starting from the cache");
+        }
+        return true;
+    }
+
+
     /* ***** */
     /* start */
     /* ***** */
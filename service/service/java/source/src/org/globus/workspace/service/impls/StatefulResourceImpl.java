@@ -21,9 +21,12 @@ import edu.emory.mathcs.backport.java.util.concurrent.locks.Lock;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.globus.workspace.*;
+import org.globus.workspace.metrics.LifecycleTrace;
+import org.globus.workspace.metrics.Metrics;
 import org.globus.workspace.persistence.PersistenceAdapter;
 import org.globus.workspace.persistence.DataConvert;
 import org.globus.workspace.scheduler.Scheduler;
+import org.globus.workspace.scheduler.defaults.ImageCacheRegistry;
 import org.globus.workspace.service.binding.BindNetwork;
 import org.globus.workspace.service.binding.BindingAdapter;
 import org.globus.workspace.service.binding.GlobalPolicies;
@@ -71,6 +74,12 @@ public abstract class StatefulResourceImpl extends InstanceResourceImpl
     protected final StateTransition stateTransition;
     protected final TimerManager timerManager;
 
+    // may be null, listeners are then called on the transitioning thread
+    protected StateNotificationBus notificationBus;
+
+    // may be null, nothing then tracks which images nodes hold
+    protected ImageCacheRegistry imageCache;
+
 
     // -------------------------------------------------------------------------
     // CONSTRUCTOR
@@ -111,6 +120,18 @@ public abstract class StatefulResourceImpl extends InstanceResourceImpl
         this.timerManager = timerManagerImpl;
     }
 
+    // -------------------------------------------------------------------------
+    // OPTIONAL MODULES SETTERS
+    // -------------------------------------------------------------------------
+
+    public void setStateNotificationBus(StateNotificationBus bus) {
+        this.notificationBus = bus;
+    }
+
+    public void setImageCache(ImageCacheRegistry registry) {
+        this.imageCache = registry;
+    }
+
     // -------------------------------------------------------------------------
     // ACCESSORS
     // -------------------------------------------------------------------------
@@ -245,6 +266,53 @@ public abstract class StatefulResourceImpl extends InstanceResourceImpl
     }
 
 
+    /*
+     * A finished propagation leaves the image in the node's cache.  When a
+     * propagation or a launch that took the image from the cache fails,
+     * the cached copy is not counted on anymore.
+     */
+    private void imageCacheUpdate(int oldState, int newstate) {
+
+        final boolean propagating = oldState == STATE_PROPAGATING ||
+                                    oldState == STATE_PROPAGATING_TO_START ||
+                                    oldState == STATE_PROPAGATING_TO_PAUSE;
+
+        final VirtualMachine vm = this.getVM();
+        if (vm == null || vm.getNode() == null) {
+            return;
+        }
+        final boolean fromCache = vm.isPropagateFromCache();
+        if (!propagating && !fromCache) {
+            return;
+        }
+
+        final boolean failed = newstate >= STATE_CORRUPTED_GENERIC;
+        final boolean done = newstate == STATE_STARTED ||
+                             newstate == STATE_PAUSED ||
+                             (propagating && newstate == STATE_PROPAGATED);
+        if (!failed && !done) {
+            return;
+        }
+        if (fromCache && newstate != STATE_PROPAGATED) {
+            vm.setPropagateFromCache(false);
+        }
+
+        final String checksum;
+        try {
+            checksum = XenUtil.getCacheChecksum(vm);
+        } catch (WorkspaceException e) {
+            logger.warn(Lager.id(this.id) + ": could not find the image " +
+                        "checksum: " + e.getMessage());
+            return;
+        }
+
+        if (failed) {
+            this.imageCache.evicted(vm.getNode(), checksum);
+        } else {
+            this.imageCache.cached(vm.getNode(), checksum);
+        }
+    }
+
     private void setStateImpl(int newstate,
                               Throwable t,
                               boolean evaluate) {
@@ -376,6 +444,10 @@ public abstract class StatefulResourceImpl extends InstanceResourceImpl
                          "  = " + this.dataConvert.stateName(newstate));
         }
 
+        if (this.imageCache != null) {
+            this.imageCacheUpdate(oldState, newstate);
+        }
+
         if (newstate == STATE_DESTROY_SUCCEEDED) {
             do_remove();
             return;
@@ -426,30 +498,32 @@ public abstract class StatefulResourceImpl extends InstanceResourceImpl
                                this.dataConvert.stateName(newstate) + faultStr);
         }
 
-        // todo: assuming listeners will quickly return from the notification,
-        // should not assume that about all future messaging layers, so in the
-        // future launch a separate thread to then make the callbacks (there
-        // are many articles about this to consult)
+        final StateChangeCallback[] listeners;
         synchronized(this.stateListeners) {
-            
-            for (int i = 0; i < this.stateListeners.size(); i++) {
+            listeners = (StateChangeCallback[]) this.stateListeners.toArray(
+                    new StateChangeCallback[this.stateListeners.size()]);
+        }
 
-                try {
+        for (int i = 0; i < listeners.length; i++) {
 
-                    final StateChangeCallback scc =
-                            (StateChangeCallback) this.stateListeners.get(i);
-                    
-                    if (scc != null) {
-                        final State stateRepr = this.dataConvert.getState(this);
-                        scc.newState(stateRepr);
-                    }
+            final StateChangeCallback scc = listeners[i];
+            if (scc == null) {
+                continue;
+            }
+
+            try {
 
-                } catch (Throwable t) {
-                    final String err = "Problem with asynchronous state " +
-                            "change notification: " + t.getMessage();
-                    logger.error(err, t);
+                final State stateRepr = this.dataConvert.getState(this);
+                if (this.notificationBus != null) {
+                    this.notificationBus.publish(this.id, stateRepr, scc);
+                } else {
+                    scc.newState(stateRepr);
                 }
-                
+
+            } catch (Throwable t) {
+                final String err = "Problem with asynchronous state " +
+                        "change notification: " + t.getMessage();
+                logger.error(err, t);
             }
         }
     }
@@ -476,6 +550,7 @@ public abstract class StatefulResourceImpl extends InstanceResourceImpl
 
         this.state = state;
         this.throwableForState = t;
+        Metrics.trace(this.id, LifecycleTrace.KIND_STATE, state);
 
         try {
             this.scheduler.stateNotification(this.id, state);
@@ -487,6 +562,8 @@ public abstract class StatefulResourceImpl extends InstanceResourceImpl
             logger.fatal(errMsg, e);
 
             this.state = STATE_CORRUPTED_GENERIC;
+            Metrics.trace(this.id, LifecycleTrace.KIND_STATE,
+                          STATE_CORRUPTED_GENERIC);
 
             try {
                 this.persistence.setState(this.id,
@@ -600,6 +677,7 @@ public abstract class StatefulResourceImpl extends InstanceResourceImpl
 
         final int oldTargetState = this.targetState;
         this.targetState = target;
+        Metrics.trace(this.id, LifecycleTrace.KIND_TARGET_STATE, target);
 
         if (evaluate) {
             try {
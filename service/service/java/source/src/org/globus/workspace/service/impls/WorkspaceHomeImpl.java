@@ -16,15 +16,13 @@
 
 package org.globus.workspace.service.impls;
 
+import edu.emory.mathcs.backport.java.util.concurrent.Callable;
 import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
 import edu.emory.mathcs.backport.java.util.concurrent.Executors;
 import edu.emory.mathcs.backport.java.util.concurrent.FutureTask;
 import edu.emory.mathcs.backport.java.util.concurrent.ScheduledThreadPoolExecutor;
 import edu.emory.mathcs.backport.java.util.concurrent.TimeUnit;
 import edu.emory.mathcs.backport.java.util.concurrent.locks.Lock;
-import net.sf.ehcache.Cache;
-import net.sf.ehcache.CacheManager;
-import net.sf.ehcache.Element;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.globus.workspace.Lager;
@@ -47,7 +45,9 @@ import org.nimbustools.api.repr.CannotTranslateException;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public abstract class WorkspaceHomeImpl implements WorkspaceHome,
                                                    CurrentVMs {
@@ -70,7 +70,7 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
     protected final PersistenceAdapter persistence;
     protected final LockManager lockManager;
     protected final ExecutorService executor;
-    protected final Cache cache;
+    protected final InstanceStore instances;
     protected final Lager lager;
     protected final DataConvert dataConvert;
     protected Scheduler scheduler;
@@ -91,6 +91,7 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
     private String threadPoolInitialSize;
     private String threadPoolMaxSize;
     private long sweeperDelay = 60000;
+    private int recoveryThreads = 8;
 
 
     // -------------------------------------------------------------------------
@@ -102,7 +103,6 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
      */
     public WorkspaceHomeImpl(PersistenceAdapter db,
                              LockManager lockManagerImpl,
-                             CacheManager cacheManager,
                              DataConvert dataConvert,
                              Lager lagerImpl) {
 
@@ -116,15 +116,8 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
         }
         this.lockManager = lockManagerImpl;
 
-        if (cacheManager == null) {
-            throw new IllegalArgumentException("cacheManager may not be null");
-        }
-
-        this.cache = cacheManager.getCache("instanceCache");
-        if (this.cache == null) {
-            throw new IllegalArgumentException(
-                    "cacheManager does not provide 'instanceCache'");
-        }
+        // holds every active resource, entries leave on destroy/cleanup
+        this.instances = new InstanceStore();
 
         if (dataConvert == null) {
             throw new IllegalArgumentException("dataConvert may not be null");
@@ -193,6 +186,10 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
         this.sweeperDelay = delay;
     }
 
+    public void setRecoveryThreads(int recoveryThreads) {
+        this.recoveryThreads = recoveryThreads;
+    }
+
 
     // -------------------------------------------------------------------------
     // IoC INIT METHOD
@@ -267,6 +264,15 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
     // default configuration has this provided on the fly via IoC
     protected abstract InstanceResource newEmptyResource();
 
+    // resources this home keeps tell it when they are removed
+    private InstanceResource newTrackedResource() {
+        final InstanceResource resource = this.newEmptyResource();
+        if (resource instanceof InstanceResourceImpl) {
+            ((InstanceResourceImpl) resource).setHome(this);
+        }
+        return resource;
+    }
+
     public InstanceResource newInstance(int id) throws CreationException {
         final String idStr;
         try {
@@ -284,6 +290,7 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
             throw new IllegalArgumentException("idStr may not be null");
         }
 
+        final int id = this.convertID(idStr);
         final InstanceResource resource;
 
         final Lock lock = this.lockManager.getLock(idStr);
@@ -295,10 +302,9 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
 
         try {
 
-            final Element el = this.cache.get(idStr);
-            if (el == null) {
-                resource = this.newEmptyResource();
-                this.cache.put(new Element(idStr, resource));
+            if (this.instances.get(id) == null) {
+                resource = this.newTrackedResource();
+                this.instances.put(id, resource);
             } else {
                 throw new CreationException(
                         "ID collision, ID '" + idStr + "' already in cache");
@@ -324,7 +330,8 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
             throw new ManageException("id may not be null");
         }
 
-        final InstanceResource resource;
+        final int idInt = this.convertID(id);
+        InstanceResource resource;
 
         final Lock lock = this.lockManager.getLock(id);
         try {
@@ -335,8 +342,8 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
 
         try {
 
-            final Element el = this.cache.get(id);
-            if (el == null) {
+            resource = this.instances.get(idInt);
+            if (resource == null) {
                 resource = this.newInstance(id);
                 resource.load(id); // throws DoesNotExistException if not in db
 
@@ -348,13 +355,10 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
                       throw new DoesNotExistException(Lager.id(id) + " expired");
                     }
                 }
-
-            } else {
-                resource = (InstanceResource) el.getObjectValue();
             }
 
         } catch (DoesNotExistException e) {
-            this.cache.remove(id);
+            this.instances.remove(idInt);
             throw e;
         } catch (CreationException e) {
             throw new ManageException(e.getMessage(), e); // ...
@@ -371,6 +375,114 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
         return this.find(this.convertID(id));
     }
 
+    public InstanceResource[] find(int[] ids) throws ManageException {
+
+        if (ids == null) {
+            throw new ManageException("ids may not be null");
+        }
+
+        final InstanceResource[] found = new InstanceResource[ids.length];
+
+        final List<InstanceResource> missing = new ArrayList<InstanceResource>();
+        for (int i = 0; i < ids.length; i++) {
+            this.convertID(ids[i]); // validates
+            found[i] = this.instances.get(ids[i]);
+            if (found[i] == null) {
+                final InstanceResource resource = this.newEmptyResource();
+                resource.setID(ids[i]);
+                missing.add(resource);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            this.loadMissing(missing, ids, found);
+        }
+
+        int count = 0;
+        for (InstanceResource resource : found) {
+            if (resource != null) {
+                count += 1;
+            }
+        }
+        if (count == found.length) {
+            return found;
+        }
+        final InstanceResource[] ret = new InstanceResource[count];
+        int j = 0;
+        for (InstanceResource resource : found) {
+            if (resource != null) {
+                ret[j++] = resource;
+            }
+        }
+        return ret;
+    }
+
+    // Loads the cache misses of find(int[]) in bulk, then caches them under
+    // the same per-ID lock and expiration rules as find(String).
+    private void loadMissing(List<InstanceResource> missing,
+                             int[] ids,
+                             InstanceResource[] found)
+            throws ManageException {
+
+        if (lager.traceLog) {
+            logger.trace("find(): bulk loading " + missing.size() + " of " +
+                         ids.length + " resources");
+        }
+
+        final InstanceResource[] loaded;
+        try {
+            loaded = this.persistence.loadAll(missing.toArray(
+                    new InstanceResource[missing.size()]));
+        } catch (WorkspaceDatabaseException e) {
+            throw new ManageException(e.getMessage(), e);
+        }
+
+        final Map<Integer, InstanceResource> byId =
+                new HashMap<Integer, InstanceResource>(loaded.length * 2);
+        final Calendar currTime = Calendar.getInstance();
+        for (InstanceResource candidate : loaded) {
+
+            final int idInt = candidate.getID();
+            final String id = this.convertID(idInt);
+            final Lock lock = this.lockManager.getLock(id);
+            try {
+                lock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                throw new ManageException(e.getMessage(), e);
+            }
+
+            InstanceResource resource;
+            try {
+                resource = this.instances.putIfAbsent(idInt, candidate);
+                if (resource == null) {
+                    resource = candidate;
+
+                    final Calendar termTime = resource.getTerminationTime();
+                    if (termTime != null && termTime.before(currTime)) {
+                        if (this.destroy(id)) {
+                            resource = null;
+                        }
+                    }
+                }
+            } catch (DoesNotExistException e) {
+                this.instances.remove(idInt);
+                resource = null;
+            } finally {
+                lock.unlock();
+            }
+
+            if (resource != null) {
+                byId.put(resource.getID(), resource);
+            }
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            if (found[i] == null) {
+                found[i] = byId.get(ids[i]);
+            }
+        }
+    }
+
     // TODO: make this termination process less expensive and memory consuming
     // TODO: in particular, push this responsibility to Scheduler, right now
     //       this is just quickly mimicking the old, inefficient setup from GT.
@@ -387,24 +499,16 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
             return null; // *** EARLY RETURN ***
         }
 
-        final Sweepable[] sweeps = new Sweepable[keys.length];
-        for (int i = 0; i < keys.length; i++) {
-            final int key = keys[i];
-            try {
-                sweeps[i] = this.find(key);
-            } catch (ManageException e) {
-                final String err = Lager.id(keys[i]) + " " + e.getMessage();
-                if (logger.isDebugEnabled()) {
-                    logger.error(err, e);
-                } else {
-                    logger.error(err);
-                }
-            } catch (DoesNotExistException e) {
-                logger.debug(Lager.id(keys[i]) + " " + e.getMessage());
+        try {
+            return this.find(keys);
+        } catch (ManageException e) {
+            if (logger.isDebugEnabled()) {
+                logger.error(e.getMessage(), e);
+            } else {
+                logger.error(e.getMessage());
             }
+            return null;
         }
-
-        return sweeps;
     }
 
     // -------------------------------------------------------------------------
@@ -418,8 +522,19 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
             throw new IllegalArgumentException("id may not be null");
         }
 
-        this._cleanup(this.convertID(id));
-        this.cache.remove(id);
+        final int idInt = this.convertID(id);
+        this._cleanup(idInt);
+        this.instances.remove(idInt);
+    }
+
+    /**
+     * Called by a resource once it is gone from persistence, whether the
+     * destroy went through this home or finished asynchronously.
+     *
+     * @param id key
+     */
+    void resourceRemoved(int id) {
+        this.instances.remove(id);
     }
 
     public void _cleanup(int id)
@@ -493,7 +608,7 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
             final InstanceResource resource = this.find(id);
             destroyed = resource.remove();
             if (destroyed) {
-                this.cache.remove(id);
+                this.instances.remove(this.convertID(id));
             }
 
         } finally {
@@ -562,9 +677,7 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
         if (this.executor != null) {
             this.executor.shutdownNow();
         }
-        if (this.cache != null) {
-            this.cache.removeAll();
-        }
+        this.instances.clear();
     }
 
     /**
@@ -646,38 +759,121 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
 
         // TODO: add bit to set notification pending counter
 
-        int numRecovered = 0;
+        // One query per table for the whole fleet instead of several
+        // database round trips per workspace
+        final InstanceResource[] empty = new InstanceResource[keys.length];
         for (int i = 0; i < keys.length; i++) {
+            empty[i] = this.newTrackedResource();
+            empty[i].setID(keys[i]);
+        }
+
+        final InstanceResource[] loaded;
+        try {
+            loaded = this.persistence.loadAll(empty);
+        } catch (WorkspaceDatabaseException e) {
+            throw new ManageException(e.getMessage(), e);
+        }
+
+        final Calendar currTime = Calendar.getInstance();
+        final List<InstanceResource> expired = new ArrayList<InstanceResource>();
+        int numRecovered = 0;
+        for (InstanceResource resource : loaded) {
+            final int id = resource.getID();
             if (lager.traceLog) {
-                logger.trace("found #" + keys[i] + " in DB");
+                logger.trace("found #" + id + " in DB");
             }
 
-            // To better support 1000s of resources, we should create a custom
-            // query for ones that need to be terminated
+            this.instances.put(id, resource);
 
-            try {
-                this.find(keys[i]);
+            final Calendar termTime = resource.getTerminationTime();
+            if (termTime != null && termTime.before(currTime)) {
+                expired.add(resource);
+            } else {
                 if (lager.eventLog) {
-                    logger.info(Lager.ev(keys[i]) + "recovered");
+                    logger.info(Lager.ev(id) + "recovered");
                 }
                 numRecovered += 1;
-            } catch (DoesNotExistException e) {
-                // if the workspace is terminated during the load process,
-                // that is OK; but, it will return NoSuchResourceException
-                if (lager.eventLog) {
-                    logger.info(Lager.ev(keys[i]) + "resource terminated " +
-                            "during recovery");
+            }
+        }
+
+        if (expired.isEmpty()) {
+            this.scheduler.recover(numRecovered);
+            return;
+        }
+
+        // Everything is in the cache now, so the service can answer while
+        // the workspaces that expired during the downtime are destroyed
+        // (which involves the VMM).  The per-workspace locks serialize
+        // those destroys with any request that touches the same workspace.
+        final int alreadyRecovered = numRecovered;
+        this.executor.submit(new Runnable() {
+            public void run() {
+                recover_expired(expired, alreadyRecovered);
+            }
+        });
+    }
+
+    private void recover_expired(List<InstanceResource> expired,
+                                 int numRecovered) {
+
+        final int threads = Math.max(1, Math.min(this.recoveryThreads,
+                                                 expired.size()));
+        logger.info("Destroying " + expired.size() + " workspaces that " +
+                    "expired while the service was down, " + threads +
+                    " at a time");
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            final FutureTask[] tasks = new FutureTask[expired.size()];
+            for (int i = 0; i < tasks.length; i++) {
+                final String id = String.valueOf(expired.get(i).getID());
+                tasks[i] = new FutureTask(new Callable() {
+                    public Object call() throws Exception {
+                        return Boolean.valueOf(destroy(id));
+                    }
+                });
+                pool.submit(tasks[i]);
+            }
+
+            // The ones terminated during recovery will generate a
+            // notification to the scheduler before this is sent (when
+            // state is set to destroying, while the destroy process does
+            // block in StateTransition, the notification to scheduler is
+            // sent before that happens).
+            for (int i = 0; i < tasks.length; i++) {
+                final int id = expired.get(i).getID();
+                try {
+                    final Boolean destroyed = (Boolean) tasks[i].get();
+                    if (destroyed.booleanValue()) {
+                        if (lager.eventLog) {
+                            logger.info(Lager.ev(id) + "resource terminated " +
+                                    "during recovery");
+                        }
+                    } else {
+                        numRecovered += 1;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    final Throwable t = e.getCause() == null ? e : e.getCause();
+                    if (t instanceof DoesNotExistException) {
+                        if (lager.eventLog) {
+                            logger.info(Lager.ev(id) + "resource terminated " +
+                                    "during recovery");
+                        }
+                    } else {
+                        logger.error(Lager.id(id) + " problem destroying " +
+                                "expired workspace during recovery: " +
+                                t.getMessage(), t);
+                        numRecovered += 1;
+                    }
                 }
-            } catch (ManageException e) {
-                throw e;
             }
+        } finally {
+            pool.shutdown();
         }
 
-        // The ones terminated during the load process will generate a
-        // notification to the scheduler before this is sent (when state
-        // is set to destroying, while the destroy process does block in
-        // StateTransition, the notification to scheduler is sent before
-        // that happens).
         this.scheduler.recover(numRecovered);
     }
 
@@ -710,35 +906,14 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
 
             throws ManageException {
 
-        // not an efficient way to do this, waiting on some object model
-        // revisions to do anything about it
         final int[] ids = this.findIDsByCaller(callerID);
 
         if (ids == null || ids.length == 0) {
             return EMPTY_RESOURCE_ARRAY;
         }
 
-        final List resourceList = new ArrayList(ids.length);
-
         // Not worried about races w/ destruction here.
-
-        for (int i = 0; i < ids.length; i++) {
-            try {
-                resourceList.add(this.find(ids[i]));
-            } catch (DoesNotExistException e) {
-                if (lager.traceLog) {
-                    logger.trace("findByCaller could not retrieve " +
-                            Lager.id(ids[i]));
-                }
-            }
-        }
-
-        if (resourceList.isEmpty()) {
-            return EMPTY_RESOURCE_ARRAY;
-        } else {
-            return (InstanceResource[]) resourceList.toArray(
-                            new InstanceResource[resourceList.size()]);
-        }
+        return this.find(ids);
     }
 
     public InstanceResource[] findByIP(String ip) throws ManageException {
@@ -762,9 +937,8 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
 
         // Not worried about races w/ destruction here.
 
-        for (int key : keys) {
+        for (InstanceResource resource : this.find(keys)) {
             try {
-                InstanceResource resource = this.find(key);
                 NIC[] nics = this.dataConvert.getNICs(resource.getVM());
                 for (NIC nic : nics) {
                     if (nic.getIpAddress().equals(ip)) {
@@ -772,11 +946,6 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
                         break;
                     }
                 }
-            } catch (DoesNotExistException e) {
-                if (lager.traceLog) {
-                    logger.trace("findByIP could not retrieve " +
-                            Lager.id(key));
-                }
             } catch (CannotTranslateException e) {
                 logger.warn(e.getMessage());
             }
@@ -802,8 +971,6 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
 
             throws ManageException {
 
-        // not an efficient way to do this, waiting on some object model
-        // revisions to do anything about it
         final int[] keys;
         try {
             keys = this.persistence.findActiveWorkspacesIDs();
@@ -815,29 +982,8 @@ public abstract class WorkspaceHomeImpl implements WorkspaceHome,
             return EMPTY_RESOURCE_ARRAY;
         }
 
-        final List resourceList = new ArrayList(keys.length);
-
         // Not worried about races w/ destruction here.
-
-        for (int i = 0; i < keys.length; i++) {
-            try {
-                resourceList.add(this.find(keys[i]));
-            } catch (DoesNotExistException e) {
-                if (lager.traceLog) {
-                    logger.trace("findGlobalAll could not retrieve " +
-                            Lager.id(keys[i]));
-                }
-            }
-        }
-
-        final InstanceResource[] ret;
-
-        if (resourceList.isEmpty()) {
-            ret = EMPTY_RESOURCE_ARRAY;
-        } else {
-            ret = (InstanceResource[]) resourceList.toArray(
-                            new InstanceResource[resourceList.size()]);
-        }
+        final InstanceResource[] ret = this.find(keys);
 
         if (lager.traceLog) {
             logger.trace("findAll found " + ret.length);
@@ -18,6 +18,8 @@ package org.globus.workspace.service.impls.async;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.globus.workspace.metrics.Gauge;
+import org.globus.workspace.metrics.Metrics;
 
 public class RequestDispatch {
 
@@ -66,6 +68,13 @@ public class RequestDispatch {
             opts = new Options(5,50,20);
         }
         threadPool = new WorkspaceThreadPool(queue);
+
+        final WorkspaceRequestQueue registered = queue;
+        Metrics.gauge("queue.requests", new Gauge() {
+            public long value() {
+                return registered.size();
+            }
+        });
     }
 
     /**
@@ -52,6 +52,13 @@ public class WorkspaceRequestQueue {
         return this.waitingThreads;
     }
 
+    /**
+     * @return requests waiting for a thread
+     */
+    public synchronized int size() {
+        return this.requests.size();
+    }
+
     public synchronized void stopThreads(int threads) {
         for (int i = 0; i < threads; i++) {
             this.requests.addFirst(null);
@@ -18,6 +18,7 @@ package org.globus.workspace.service.impls.async;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.globus.workspace.metrics.Metrics;
 
 // TODO: move to executor
 public class WorkspaceThread extends Thread {
@@ -25,6 +26,8 @@ public class WorkspaceThread extends Thread {
     private static final Log logger =
                     LogFactory.getLog(WorkspaceThread.class.getName());
 
+    private static final String METRICS_GROUP = "request";
+
     private final WorkspaceRequestQueue queue;
     private final WorkspaceThreadPool threadPool;
 
@@ -43,11 +46,15 @@ public class WorkspaceThread extends Thread {
                     break;
                 }
 
+                final long start = System.nanoTime();
                 try {
                     request.execute();
                 } catch (Throwable t) {
                     logger.error("runtime exception from task " +
                                  "implementation: " + t.getMessage(), t);
+                } finally {
+                    Metrics.histogram(METRICS_GROUP,
+                            request.getClass().getName()).recordSince(start);
                 }
 
             } catch (Throwable e) {
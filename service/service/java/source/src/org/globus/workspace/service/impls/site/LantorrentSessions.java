@@ -0,0 +1,373 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.service.impls.site;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.globus.workspace.Lager;
+import org.globus.workspace.WorkspaceUtil;
+import org.globus.workspace.persistence.PersistenceAdapter;
+import org.globus.workspace.service.InstanceResource;
+import org.globus.workspace.service.WorkspaceHome;
+import org.globus.workspace.service.binding.vm.VirtualMachine;
+import org.globus.workspace.service.binding.vm.VirtualMachinePartition;
+import org.globus.workspace.xen.XenUtil;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Submits the destinations of a group or ensemble launch to the LanTorrent
+ * daemon as one session, the first time one of its VMs propagates.
+ *
+ * Each VM is registered under a request ID that its propagate command
+ * carries in the image URL (lantorrent://host/path?rid=ID); workspace-control
+ * asks for the file under that ID.  Knowing the full destination set, the
+ * daemon starts sending as soon as every member asked instead of waiting out
+ * its batching delay, and reports each destination done as it completes, so
+ * each propagate notification reaches the service without waiting for the
+ * rest of the launch.
+ *
+ * Anything going wrong here only costs the session: the VM then propagates
+ * with a plain URL, as it would without sessions.
+ */
+public class LantorrentSessions {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final Log logger =
+            LogFactory.getLog(LantorrentSessions.class.getName());
+
+    public static final String SCHEME = "lantorrent://";
+
+    // members that never propagate (failed before, cancelled) would
+    // otherwise keep their session around
+    private static final long SESSION_TTL_MS = 30 * 60 * 1000;
+
+    // how long other members wait for the session to be submitted before
+    // propagating on their own
+    private static final long SUBMIT_WAIT_MS = 60 * 1000;
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final PersistenceAdapter persistence;
+    private final WorkspaceHome whome;
+    private final Lager lager;
+    private final String sessionScript;
+    private final int degree;
+
+    // group or ensemble ID + image URL --> session
+    private final Map<String,Session> sessions = new HashMap<String,Session>();
+
+    // fields other than created are guarded by the session's own monitor,
+    // lt-session runs without holding the sessions map's
+    private static class Session {
+        final long created = System.currentTimeMillis();
+        // submission over, whether it worked or not
+        boolean done;
+        boolean submitted;
+        // vm id --> request ID, removed when handed out
+        final Map<Integer,String> rids = new HashMap<Integer,String>();
+    }
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param persistenceAdapter to find the other members of the launch
+     * @param workspaceHome to find their VMs
+     * @param lagerImpl logging switches
+     * @param sessionScript path to lt-session on this host
+     * @param degree fan-out of the distribution tree, 0 or less for the
+     *        daemon's configured one
+     */
+    public LantorrentSessions(PersistenceAdapter persistenceAdapter,
+                              WorkspaceHome workspaceHome,
+                              Lager lagerImpl,
+                              String sessionScript,
+                              int degree) {
+
+        if (persistenceAdapter == null) {
+            throw new IllegalArgumentException("persistenceAdapter may not be null");
+        }
+        this.persistence = persistenceAdapter;
+
+        if (workspaceHome == null) {
+            throw new IllegalArgumentException("workspaceHome may not be null");
+        }
+        this.whome = workspaceHome;
+
+        if (lagerImpl == null) {
+            throw new IllegalArgumentException("lagerImpl may not be null");
+        }
+        this.lager = lagerImpl;
+
+        if (sessionScript == null || sessionScript.trim().length() == 0) {
+            throw new IllegalArgumentException("sessionScript may not be empty");
+        }
+        this.sessionScript = sessionScript.trim();
+        this.degree = degree;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // PROPAGATE COMMAND
+    // -------------------------------------------------------------------------
+
+    /**
+     * Adds the session request ID to the image URL of a propagate command,
+     * if the VM is part of a multi-VM launch from a LanTorrent repository.
+     *
+     * @param vm vm being propagated
+     * @param cmd workspace-control command, changed in place
+     */
+    public void addRequestID(VirtualMachine vm, ArrayList cmd) {
+
+        final int idx = cmd.indexOf("--images") + 1;
+        if (idx == 0 || idx >= cmd.size()) {
+            return;
+        }
+
+        final String url = unquote((String) cmd.get(idx));
+        if (!url.startsWith(SCHEME)) {
+            return;
+        }
+
+        final String rid;
+        try {
+            rid = this.requestID(vm, url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            logger.warn(Lager.id(vm.getID()) + ": could not set up a " +
+                    "LanTorrent session, propagating on its own: " +
+                    e.getMessage());
+            return;
+        }
+
+        if (rid != null) {
+            cmd.set(idx, "'" + withRequestID(url, rid) + "'");
+        }
+    }
+
+    private String requestID(VirtualMachine vm, String url) throws Exception {
+
+        final InstanceResource resource = this.whome.find(vm.getID());
+
+        final String key;
+        final int[] ids;
+        if (resource.getEnsembleId() != null) {
+            key = "ensemble " + resource.getEnsembleId() + " " + url;
+            ids = this.persistence.findVMsInEnsemble(resource.getEnsembleId());
+        } else if (resource.getGroupId() != null) {
+            key = "group " + resource.getGroupId() + " " + url;
+            ids = this.persistence.findVMsInGroup(resource.getGroupId());
+        } else {
+            return null;
+        }
+
+        if (ids == null || ids.length < 2) {
+            return null;
+        }
+
+        final Session session;
+        boolean submitter = false;
+        synchronized (this.sessions) {
+            this.expire();
+            Session existing = this.sessions.get(key);
+            if (existing == null) {
+                // stored even if the submission fails, the other members
+                // do not try again
+                existing = new Session();
+                this.sessions.put(key, existing);
+                submitter = true;
+            }
+            session = existing;
+        }
+
+        if (submitter) {
+            Map<Integer,String> rids = null;
+            try {
+                rids = this.submit(url, ids, vm.getID());
+            } finally {
+                synchronized (session) {
+                    if (rids != null) {
+                        session.rids.putAll(rids);
+                        session.submitted = true;
+                    }
+                    session.done = true;
+                    session.notifyAll();
+                }
+            }
+        }
+
+        final String rid;
+        final boolean handedOut;
+        synchronized (session) {
+            final long deadline = System.currentTimeMillis() + SUBMIT_WAIT_MS;
+            long left = SUBMIT_WAIT_MS;
+            while (!session.done && left > 0) {
+                session.wait(left);
+                left = deadline - System.currentTimeMillis();
+            }
+            if (!session.done) {
+                throw new Exception("LanTorrent session still being submitted");
+            }
+            rid = session.rids.remove(vm.getID());
+            handedOut = session.submitted && session.rids.isEmpty();
+        }
+
+        if (handedOut) {
+            synchronized (this.sessions) {
+                if (this.sessions.get(key) == session) {
+                    this.sessions.remove(key);
+                }
+            }
+        }
+        return rid;
+    }
+
+    // returns vm id --> request ID, null if there is no session to submit
+    private Map<Integer,String> submit(String url,
+                                       int[] ids,
+                                       int trackingID) throws Exception {
+
+        final String source = sourcePath(url);
+        if (source == null) {
+            throw new Exception("no path in '" + url + "'");
+        }
+
+        final InstanceResource[] members = this.whome.find(ids);
+        final StringBuffer stdin = new StringBuffer(members.length * 64);
+        final Map<Integer,String> rids = new HashMap<Integer,String>();
+        for (int i = 0; i < members.length; i++) {
+            final VirtualMachine member = members[i].getVM();
+            if (member == null || member.getNode() == null
+                    || !member.isPropagateRequired()
+                    || !url.equals(rootImageURL(member))) {
+                continue;
+            }
+            final String rid = UUID.randomUUID().toString();
+            rids.put(member.getID(), rid);
+            stdin.append(rid).append(' ').append(member.getNode()).append('\n');
+        }
+
+        if (rids.size() < 2) {
+            return null;
+        }
+
+        final String sessionID = UUID.randomUUID().toString();
+        final ArrayList<String> cmd = new ArrayList<String>(6);
+        cmd.add(this.sessionScript);
+        if (this.degree > 0) {
+            cmd.add("--degree");
+            cmd.add(Integer.toString(this.degree));
+        }
+        cmd.add(sessionID);
+        cmd.add(source);
+
+        WorkspaceUtil.runCommand(cmd.toArray(new String[cmd.size()]),
+                                 true, stdin.toString(),
+                                 this.lager.eventLog, this.lager.traceLog,
+                                 trackingID);
+
+        if (this.lager.eventLog) {
+            logger.info(Lager.ev(trackingID) + "LanTorrent session " +
+                    sessionID + " for " + rids.size() + " destinations of '" +
+                    source + "'");
+        }
+        return rids;
+    }
+
+    private void expire() {
+        final long oldest = System.currentTimeMillis() - SESSION_TTL_MS;
+        final Iterator<Session> iter = this.sessions.values().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().created < oldest) {
+                iter.remove();
+            }
+        }
+    }
+
+    private static String rootImageURL(VirtualMachine vm) throws Exception {
+        final VirtualMachinePartition[] partitions = vm.getPartitions();
+        if (partitions == null) {
+            return null;
+        }
+        for (int i = 0; i < partitions.length; i++) {
+            if (partitions[i].isRootdisk()) {
+                String img = partitions[i].getImage();
+                if (XenUtil.getNsTrans() != null) {
+                    img = XenUtil.getNsTrans().translateExternaltoInternal(img, vm);
+                }
+                return img;
+            }
+        }
+        return null;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // URL HANDLING
+    // -------------------------------------------------------------------------
+
+    static String unquote(String arg) {
+        if (arg.length() > 1 && arg.startsWith("'") && arg.endsWith("'")) {
+            return arg.substring(1, arg.length() - 1);
+        }
+        return arg;
+    }
+
+    /**
+     * @param url lantorrent URL
+     * @param rid session request ID
+     * @return url with the request ID as a query parameter
+     */
+    static String withRequestID(String url, String rid) {
+        final String sep = url.indexOf('?') < 0 ? "?" : "&";
+        return url + sep + "rid=" + rid;
+    }
+
+    /**
+     * @param url lantorrent URL
+     * @return the file's path on the repository node (the one lt-request
+     *         is given), null if there is none
+     */
+    static String sourcePath(String url) {
+        try {
+            final String path = new URI(url).getRawPath();
+            if (path == null || path.length() == 0) {
+                return null;
+            }
+            return path;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
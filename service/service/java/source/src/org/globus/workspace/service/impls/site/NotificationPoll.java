@@ -23,13 +23,30 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.globus.workspace.Lager;
 
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.RandomAccessFile;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Polls for asynchronous notifications coming from outside of the service
  * via the filesystem.
+ *
+ * The file is tailed through one open channel: a poll that finds the file
+ * the same size as last time costs one size check, otherwise everything
+ * past the cursor is read in large chunks into a reused buffer and decoded
+ * as UTF-8 one line at a time.  All notifications read in one poll are
+ * handed to {@link #oneNotification} implementations through
+ * {@link #notifications}, which subclasses can override to apply a batch
+ * at once.
  */
 public abstract class NotificationPoll implements TimerListener {
 
@@ -40,6 +57,12 @@ public abstract class NotificationPoll implements TimerListener {
     protected static final Log logger =
         LogFactory.getLog(NotificationPoll.class.getName());
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int READ_CHUNK = 64 * 1024;
+
+    private static final String EON = "<eon>";
+
 
     // -------------------------------------------------------------------------
     // INSTANCE VARIABLES
@@ -54,8 +77,17 @@ public abstract class NotificationPoll implements TimerListener {
     private final String polledObjectNoun;
 
     private Timer timer;
-    private RandomAccessFile raf = null;
-    private long filepos;    
+    private FileInputStream stream = null;
+    private FileChannel channel = null;
+    private long filepos;
+
+    // reused between polls, only touched from the timer thread
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_CHUNK);
+    private byte[] lineBytes = new byte[256];
+    private CharBuffer lineChars = CharBuffer.allocate(256);
+    private final CharsetDecoder decoder =
+            UTF8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                             .onUnmappableCharacter(CodingErrorAction.REPLACE);
 
     public NotificationPoll(TimerManager timerManager,
                             Lager lagerImpl,
@@ -116,6 +148,36 @@ public abstract class NotificationPoll implements TimerListener {
                                                int code,
                                                String message);
 
+    /**
+     * Applies everything read in one poll, in order.  The default consumes
+     * the notifications one by one through oneNotification().
+     *
+     * @param batch parsed notifications, never empty
+     * @return how many concerned the implementation (see oneNotification)
+     */
+    protected int notifications(List<Notification> batch) {
+        int concerned = 0;
+        for (Notification notification : batch) {
+            try {
+                if (oneNotification(notification.name,
+                                    notification.state,
+                                    notification.code,
+                                    notification.message)) {
+                    concerned += 1;
+                }
+            } catch (Exception e) {
+                String msg =
+                        "Exception in notificationWatch: " + e.getMessage();
+                if (logger.isDebugEnabled()) {
+                    logger.error(msg, e);
+                } else {
+                    logger.error(msg);
+                }
+            }
+        }
+        return concerned;
+    }
+
     
     // TimerListener interface
     public void timerExpired(Timer timer) {
@@ -196,16 +258,19 @@ public abstract class NotificationPoll implements TimerListener {
             return;
         }
 
-        // minimum 3 tokens required
-
-        // NAME::state::code[::message][::message word #2][etc]]
+        final List<Notification> batch =
+                new ArrayList<Notification>(notifications.length);
+        for (int i = 0; i < notifications.length; i++) {
+            final Notification notification = parse(notifications[i]);
+            if (notification != null) {
+                batch.add(notification);
+            }
+        }
 
         int decrease = 0;
-        for (int i = 0; i < notifications.length; i++) {
+        if (!batch.isEmpty()) {
             try {
-                if (processOneNotification(notifications[i])) {
-                    decrease += 1;
-                }
+                decrease = this.notifications(batch);
             } catch (Exception e) {
                 String msg =
                         "Exception in notificationWatch: " + e.getMessage();
@@ -234,8 +299,9 @@ public abstract class NotificationPoll implements TimerListener {
 
         try {
             try {
-                if (this.raf == null) {
-                    this.raf = new RandomAccessFile(this.path, "r");
+                if (this.channel == null) {
+                    this.stream = new FileInputStream(this.path);
+                    this.channel = this.stream.getChannel();
                 }
             } catch (FileNotFoundException e) {
                 if (lager.pollLog) {
@@ -252,46 +318,92 @@ public abstract class NotificationPoll implements TimerListener {
             } else {
                 logger.error(e.getMessage());
             }
-            this.raf = null;
+            this.closeChannel();
             // this is as far as the problem goes:
             return null;
         }
     }
 
+    private void closeChannel() {
+        try {
+            if (this.stream != null) {
+                this.stream.close();
+            }
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+        }
+        this.stream = null;
+        this.channel = null;
+    }
+
     private String[] readNotificationsImpl()
             throws Exception {
 
-        if (this.raf == null) {
-            throw new Exception("raf should be opened before calling");
+        if (this.channel == null) {
+            throw new Exception("channel should be opened before calling");
         }
-        
-        if (this.filepos > this.raf.length()) {
+
+        final long size = this.channel.size();
+        if (this.filepos > size) {
             logger.warn("Notification cursor reset, file is new/truncated?");
             this.filepos = 0;
         }
-
-        this.raf.seek(this.filepos);
+        if (this.filepos == size) {
+            return null;
+        }
 
         final ArrayList notifs = new ArrayList(64);
-        while (true) {
-            String line = this.raf.readLine();
 
-            if (line == null) {
-                break;
+        // position of the next byte read, filepos only moves past
+        // complete notifications
+        long readpos = this.filepos;
+        int lineLen = 0;
+        boolean done = false;
+
+        while (!done) {
+            this.readBuffer.clear();
+            final int read = this.channel.read(this.readBuffer, readpos);
+            final boolean eof = read <= 0;
+            if (!eof) {
+                readpos += read;
             }
-            
-            if (!line.endsWith("<eon>")) {
-                logger.debug("race with a notification writer (unless " +
-                        "there is a severe, odd issue, line='" + line + "'");
-
-                // next readNotificationsImpl invocation should start this
-                // line over, so filepos is not updated
-                break;
+            this.readBuffer.flip();
+
+            final byte[] chunk = this.readBuffer.array();
+            final int limit = this.readBuffer.limit();
+            for (int i = 0; i < limit && !done; i++) {
+                final byte b = chunk[i];
+                if (b != '\n' && b != '\r') {
+                    this.appendLineByte(lineLen, b);
+                    lineLen++;
+                    continue;
+                }
+
+                // line terminator, "\r\n" ends one line (the empty line
+                // that follows is skipped below like any blank line)
+                final long lineEnd = readpos - (limit - i) + 1;
+                if (lineLen > 0) {
+                    final String line = this.decodeLine(lineLen);
+                    if (!this.acceptLine(line, notifs)) {
+                        done = true;
+                        break;
+                    }
+                }
+                this.filepos = lineEnd;
+                lineLen = 0;
             }
 
-            this.filepos = this.raf.getFilePointer();
-            // chop off <eon>
-            notifs.add(line.substring(0, line.length() - 5));
+            if (eof && !done) {
+                // readLine semantics: a last line without terminator counts
+                // if it is complete
+                if (lineLen > 0) {
+                    final String line = this.decodeLine(lineLen);
+                    if (this.acceptLine(line, notifs)) {
+                        this.filepos = readpos;
+                    }
+                }
+                done = true;
+            }
         }
 
         if (notifs.isEmpty()) {
@@ -302,10 +414,47 @@ public abstract class NotificationPoll implements TimerListener {
         return (String[]) notifs.toArray(new String[notifs.size()]);
     }
 
+    private boolean acceptLine(String line, List notifs) {
+        if (!line.endsWith(EON)) {
+            logger.debug("race with a notification writer (unless " +
+                    "there is a severe, odd issue, line='" + line + "'");
+
+            // next readNotificationsImpl invocation should start this
+            // line over, so filepos is not updated
+            return false;
+        }
+        // chop off <eon>
+        notifs.add(line.substring(0, line.length() - EON.length()));
+        return true;
+    }
 
-    // true if a message is sent to impl and the impl cares about it,
-    // see this.oneNotification()
-    private boolean processOneNotification(String line) {
+    private void appendLineByte(int lineLen, byte b) {
+        if (lineLen == this.lineBytes.length) {
+            final byte[] bigger = new byte[this.lineBytes.length * 2];
+            System.arraycopy(this.lineBytes, 0, bigger, 0, lineLen);
+            this.lineBytes = bigger;
+        }
+        this.lineBytes[lineLen] = b;
+    }
+
+    private String decodeLine(int lineLen) throws CharacterCodingException {
+        if (this.lineChars.capacity() < lineLen) {
+            this.lineChars = CharBuffer.allocate(lineLen);
+        }
+        this.lineChars.clear();
+        this.decoder.reset();
+        this.decoder.decode(ByteBuffer.wrap(this.lineBytes, 0, lineLen),
+                            this.lineChars, true);
+        this.decoder.flush(this.lineChars);
+        this.lineChars.flip();
+        return this.lineChars.toString();
+    }
+
+
+    // minimum 3 tokens required
+    // NAME::state::code[::message][::message word #2][etc]]
+    // null if the line is not a valid notification
+    private static Notification parse(String line) {
         final String[] notification = line.trim().split("::");
 
         if (notification.length < 3) {
@@ -313,7 +462,7 @@ public abstract class NotificationPoll implements TimerListener {
                 logger.error("invalid notification line, less than " +
                         "three tokens: " + line);
             }
-            return false;
+            return null;
         }
 
         // notification encoder will not send blankspace, trimming
@@ -327,7 +476,7 @@ public abstract class NotificationPoll implements TimerListener {
         } catch (NumberFormatException e) {
             logger.error("invalid notification line, code is " +
                     "not an integer: '" + code + "', line = " + line);
-            return false;
+            return null;
         }
 
         String message = null;
@@ -349,6 +498,21 @@ public abstract class NotificationPoll implements TimerListener {
             message = buf.toString();
         }
 
-        return oneNotification(name, state, codeInt, message);
+        return new Notification(name, state, codeInt, message);
+    }
+
+    protected static class Notification {
+
+        public final String name;
+        public final String state;
+        public final int code;
+        public final String message;
+
+        Notification(String name, String state, int code, String message) {
+            this.name = name;
+            this.state = state;
+            this.code = code;
+            this.message = message;
+        }
     }
 }
@@ -0,0 +1,265 @@
+/*
+ * Copyright 1999-2008 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.service.impls.site;
+
+import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
+import edu.emory.mathcs.backport.java.util.concurrent.RejectedExecutionException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queues pilot notifications and consumes them from a single task at a time,
+ * in batches.
+ *
+ * When a group job starts, every pilot in it sends its reserved notification
+ * within moments of the others.  Successful reserved notifications of the
+ * same slot that are waiting together are handed to the slot manager in one
+ * call, so it can assign all of their VMs in one database transaction instead
+ * of taking the group lock and a connection once per pilot.
+ *
+ * Notifications are otherwise consumed in arrival order: pending reserved
+ * notifications are flushed before any notification of another kind.
+ *
+ * {@link #consume} is also used directly by PilotPoll for the batches it
+ * reads from the notification file.
+ */
+public class PilotNotificationCoalescer implements Runnable {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final Log logger =
+            LogFactory.getLog(PilotNotificationCoalescer.class.getName());
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final SlotPollCallback slotcall;
+    private final ExecutorService executor;
+
+    // guarded by itself
+    private final List<Notification> queue = new ArrayList<Notification>();
+
+    // guarded by queue; true while a drain task is submitted or running
+    private boolean draining;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    public PilotNotificationCoalescer(SlotPollCallback slotcallback,
+                                      ExecutorService executorService) {
+        if (slotcallback == null) {
+            throw new IllegalArgumentException("slotcallback may not be null");
+        }
+        if (executorService == null) {
+            throw new IllegalArgumentException("executorService may not be null");
+        }
+        this.slotcall = slotcallback;
+        this.executor = executorService;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // ENTRY
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns right away, the notification is consumed by the drain task.
+     */
+    public void add(String name,
+                    String state,
+                    int code,
+                    String message,
+                    String log_msg) {
+
+        final Notification notification =
+                new Notification(name, state, code, message, log_msg);
+
+        final boolean submit;
+        synchronized (this.queue) {
+            this.queue.add(notification);
+            submit = !this.draining;
+            this.draining = true;
+        }
+
+        if (submit) {
+            try {
+                this.executor.submit(this);
+            } catch (RejectedExecutionException e) {
+                // shutting down, consume on this thread
+                logger.warn("pilot notification task rejected, " +
+                            "consuming on the calling thread");
+                this.run();
+            }
+        }
+    }
+
+
+    // -------------------------------------------------------------------------
+    // implements Runnable
+    // -------------------------------------------------------------------------
+
+    public void run() {
+        while (true) {
+            final List<Notification> batch;
+            synchronized (this.queue) {
+                if (this.queue.isEmpty()) {
+                    this.draining = false;
+                    return;
+                }
+                batch = new ArrayList<Notification>(this.queue);
+                this.queue.clear();
+            }
+            try {
+                consume(batch, this.slotcall);
+            } catch (Throwable t) {
+                logger.error("Problem consuming pilot notifications: " +
+                             t.getMessage(), t);
+            }
+        }
+    }
+
+
+    // -------------------------------------------------------------------------
+    // IMPL
+    // -------------------------------------------------------------------------
+
+    /**
+     * Consumes a batch in order, coalescing reserved notifications.
+     *
+     * @param batch notifications to consume
+     * @param slotcall slot manager
+     * @return how many of the notifications the slot manager cared about
+     */
+    static int consume(List<Notification> batch, SlotPollCallback slotcall) {
+
+        int concerned = 0;
+
+        // slotid --> successful reserved notifications, first seen first
+        final Map<String, List<Reserved>> reserved =
+                new LinkedHashMap<String, List<Reserved>>();
+
+        for (Notification n : batch) {
+
+            if (n.code == 0 &&
+                    PilotNotificationUtil.STATE_PILOT_RESERVED.equals(n.state)) {
+                try {
+                    final String[] nameParts =
+                            PilotNotificationUtil.splitName(n.name, n.log_msg);
+                    final Calendar cal =
+                            PilotNotificationUtil.parseTimestamp(n.name, n.message);
+                    List<Reserved> slot = reserved.get(nameParts[0]);
+                    if (slot == null) {
+                        slot = new ArrayList<Reserved>();
+                        reserved.put(nameParts[0], slot);
+                    }
+                    slot.add(new Reserved(nameParts[1], cal));
+                    concerned += 1;
+                } catch (Exception e) {
+                    logger.error("Problem consuming notification: " +
+                                 e.getMessage());
+                }
+                continue;
+            }
+
+            flush(reserved, slotcall);
+            try {
+                if (PilotNotificationUtil.oneNotification(n.name, n.state,
+                                                          n.code, n.message,
+                                                          n.log_msg,
+                                                          slotcall)) {
+                    concerned += 1;
+                }
+            } catch (Exception e) {
+                logger.error("Problem consuming notification: " +
+                             e.getMessage());
+            }
+        }
+
+        flush(reserved, slotcall);
+        return concerned;
+    }
+
+    private static void flush(Map<String, List<Reserved>> reserved,
+                              SlotPollCallback slotcall) {
+
+        final Iterator<Map.Entry<String, List<Reserved>>> iter =
+                reserved.entrySet().iterator();
+        while (iter.hasNext()) {
+            final Map.Entry<String, List<Reserved>> entry = iter.next();
+            final String slotid = entry.getKey();
+            final List<Reserved> hosts = entry.getValue();
+            iter.remove();
+
+            if (hosts.size() == 1) {
+                final Reserved one = hosts.get(0);
+                slotcall.reserved(slotid, one.hostname, one.timestamp);
+                continue;
+            }
+
+            final String[] hostnames = new String[hosts.size()];
+            final Calendar[] timestamps = new Calendar[hosts.size()];
+            for (int i = 0; i < hostnames.length; i++) {
+                hostnames[i] = hosts.get(i).hostname;
+                timestamps[i] = hosts.get(i).timestamp;
+            }
+
+            logger.debug("consuming " + hostnames.length + " coalesced " +
+                         "reserved notifications for slot '" + slotid + "'");
+            slotcall.reserved(slotid, hostnames, timestamps);
+        }
+    }
+
+    static class Notification {
+        final String name;
+        final String state;
+        final int code;
+        final String message;
+        final String log_msg;
+
+        Notification(String name, String state, int code,
+                     String message, String log_msg) {
+            this.name = name;
+            this.state = state;
+            this.code = code;
+            this.message = message;
+            this.log_msg = log_msg;
+        }
+    }
+
+    private static class Reserved {
+        final String hostname;
+        final Calendar timestamp;
+
+        Reserved(String hostname, Calendar timestamp) {
+            this.hostname = hostname;
+            this.timestamp = timestamp;
+        }
+    }
+}
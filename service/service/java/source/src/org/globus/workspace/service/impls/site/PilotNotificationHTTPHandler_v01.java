@@ -40,7 +40,7 @@ public class PilotNotificationHTTPHandler_v01 extends AbstractHandler {
     public final static String urlPath = "/pilot_notification/v01/";
 
     private final SlotPollCallback slotcall;
-    private final ExecutorService executorService;
+    private final PilotNotificationCoalescer coalescer;
     private final Lager lager;
 
     public PilotNotificationHTTPHandler_v01(SlotPollCallback slotcallback,
@@ -53,7 +53,12 @@ public class PilotNotificationHTTPHandler_v01 extends AbstractHandler {
             throw new IllegalArgumentException("lagerImpl may not be null");
         }
         this.slotcall = slotcallback;
-        this.executorService = execService;
+        if (execService != null) {
+            this.coalescer =
+                    new PilotNotificationCoalescer(slotcallback, execService);
+        } else {
+            this.coalescer = null;
+        }
         this.lager = lagerImpl;
     }
 
@@ -156,13 +161,11 @@ public class PilotNotificationHTTPHandler_v01 extends AbstractHandler {
         // true/false return just a signal if impl cared about it or not
         // in this notification consumer, we do not care
 
-        if (this.executorService != null) {
+        if (this.coalescer != null) {
             // get out of http response thread, ensure pilot does not hang on
-            // notification processing
-            final PilotNotifyTask task =
-                    new PilotNotifyTask(name, state, code, message,
-                                        log_msg, this.slotcall);
-            this.executorService.submit(task);
+            // notification processing; notifications arriving together (a
+            // group job starting) are consumed as one batch
+            this.coalescer.add(name, state, code, message, log_msg);
         } else {
             PilotNotificationUtil.oneNotification(name, state, code, message,
                                                   log_msg, this.slotcall);
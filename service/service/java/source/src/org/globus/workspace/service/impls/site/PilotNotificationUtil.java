@@ -54,12 +54,7 @@ public class PilotNotificationUtil {
             throw new Exception("state is not a pilot state: " + log_msg);
         }
 
-        final String[] nameParts = name.split("\\+\\+\\+");
-        if (nameParts.length != 2) {
-            String msg = "name is not a valid pilot name, length split by " +
-                    "+++ != 2, received: " + log_msg;
-            throw new Exception(msg);
-        }
+        final String[] nameParts = splitName(name, log_msg);
 
         // the way split is called, neither of these will be empty or null
         final String slotid = nameParts[0];
@@ -127,6 +122,25 @@ public class PilotNotificationUtil {
 
     }
 
+    /**
+     * @param name pilot name, "slotid+++hostname"
+     * @param log_msg for errors
+     * @return slotid and hostname
+     * @throws Exception not a valid pilot name
+     */
+    static String[] splitName(String name, String log_msg) throws Exception {
+        if (name == null) {
+            throw new Exception("name may not be null: " + log_msg);
+        }
+        final String[] nameParts = name.split("\\+\\+\\+");
+        if (nameParts.length != 2) {
+            String msg = "name is not a valid pilot name, length split by " +
+                    "+++ != 2, received: " + log_msg;
+            throw new Exception(msg);
+        }
+        return nameParts;
+    }
+
     static boolean isPilotState(String state) {
         return state != null && state.startsWith("pilot");
     }
@@ -19,6 +19,9 @@ package org.globus.workspace.service.impls.site;
 import commonj.timers.TimerManager;
 import org.globus.workspace.Lager;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class PilotPoll extends NotificationPoll {
 
     private final SlotPollCallback slotcall;
@@ -63,25 +66,34 @@ public class PilotPoll extends NotificationPoll {
     // state values from workspace-pilot: error code ignored
     //   pilot-killed
 
+    /**
+     * Everything read in one poll goes to the slot manager together so that
+     * the reserved notifications of a group job are applied in one call.
+     */
+    protected int notifications(List<Notification> batch) {
+
+        if (this.slotcall == null) {
+            return super.notifications(batch);
+        }
+
+        final List<PilotNotificationCoalescer.Notification> pilotBatch =
+                new ArrayList<PilotNotificationCoalescer.Notification>(
+                                                            batch.size());
+        for (Notification n : batch) {
+            pilotBatch.add(new PilotNotificationCoalescer.Notification(
+                                n.name, n.state, n.code, n.message,
+                                logMessage(n.name, n.state, n.code, n.message)));
+        }
+        return PilotNotificationCoalescer.consume(pilotBatch, this.slotcall);
+    }
+
     protected boolean oneNotification(String name,
                                       String state,
                                       int code,
                                       String message) {
 
-        String log_msg = "pilot file-based notification read, name = '" +
-                         name + "', state = '" + state + "', " +
-                         "code = " + code;
+        final String log_msg = logMessage(name, state, code, message);
 
-        if (message != null) {
-            log_msg += ", message = " + message;
-        } else {
-            log_msg += ", no message";
-        }
-
-        if (lager.pollLog) {
-            logger.trace(log_msg);
-        }
-        
         if (this.slotcall == null) {
             logger.error("received pilot notification but " +
                   "no SlotPollCallback is configured: " + log_msg);
@@ -97,4 +109,25 @@ public class PilotPoll extends NotificationPoll {
             return false;
         }
     }
+
+    private String logMessage(String name,
+                              String state,
+                              int code,
+                              String message) {
+
+        String log_msg = "pilot file-based notification read, name = '" +
+                         name + "', state = '" + state + "', " +
+                         "code = " + code;
+
+        if (message != null) {
+            log_msg += ", message = " + message;
+        } else {
+            log_msg += ", no message";
+        }
+
+        if (lager.pollLog) {
+            logger.trace(log_msg);
+        }
+        return log_msg;
+    }
 }
@@ -69,6 +69,11 @@ public class PropagationAdapterImpl implements PropagationAdapter,
     private long watcherDelay = 2000;
 
     private String extraArgs = null;
+    private String ltSessionScript = null;
+    private String ltDegree = null;
+
+    // created in init if ltSessionScript is set
+    private LantorrentSessions ltSessions;
 
     // -------------------------------------------------------------------------
     // CONSTRUCTOR
@@ -125,6 +130,18 @@ public class PropagationAdapterImpl implements PropagationAdapter,
         return this.extraArgs;
     }
 
+    // optional, path to lt-session: group and ensemble launches from a
+    // LanTorrent repository are then submitted as one session
+    public void setLtSessionScript(String ltSessionScript) {
+        this.ltSessionScript = ltSessionScript;
+    }
+
+    // optional, fan-out of the LanTorrent distribution tree, the daemon's
+    // own setting if empty
+    public void setLtDegree(String ltDegree) {
+        this.ltDegree = ltDegree;
+    }
+
     public void setNotificationInfo(String notifInfo) {
             this.notificationInfo = notifInfo;
         }
@@ -252,6 +269,21 @@ public class PropagationAdapterImpl implements PropagationAdapter,
             this.watcher.scheduleNotificationWatcher();
         }
 
+        if (!fake && this.ltSessionScript != null
+                && this.ltSessionScript.trim().length() > 0) {
+
+            int degree = 0;
+            if (this.ltDegree != null && this.ltDegree.trim().length() > 0) {
+                degree = Integer.parseInt(this.ltDegree.trim());
+            }
+            this.ltSessions = new LantorrentSessions(this.persistence,
+                                                     this.whome,
+                                                     this.lager,
+                                                     this.ltSessionScript,
+                                                     degree);
+            logger.debug("LanTorrent sessions enabled: " + this.ltSessionScript);
+        }
+
         this.globals.setPropagateEnabled(true);
         this.globals.setUnpropagateEnabled(true);
 
@@ -264,6 +296,9 @@ public class PropagationAdapterImpl implements PropagationAdapter,
 
     public ArrayList constructPropagateCommand(VirtualMachine vm) throws WorkspaceException {
         ArrayList al = XenUtil.constructPropagateCommand(vm, this.notify);
+        if (this.ltSessions != null) {
+            this.ltSessions.addRequestID(vm, al);
+        }
         if(this.extraArgs != null && !this.extraArgs.trim().equals(""))
         {
             al.add("--prop-extra-args");
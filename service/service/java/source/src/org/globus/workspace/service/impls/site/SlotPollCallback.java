@@ -33,6 +33,19 @@ public interface SlotPollCallback extends NotificationPollCallback {
                          String hostname,
                          Calendar timestamp);
 
+    /**
+     * Several pilots of the same slot report reserved together, which is
+     * what happens when a group job starts.  Equivalent to calling
+     * reserved() for each host, in order.
+     *
+     * @param slotid uuid
+     * @param hostnames slot nodes
+     * @param timestamps time of reservation, per node
+     */
+    public void reserved(String slotid,
+                         String[] hostnames,
+                         Calendar[] timestamps);
+
     /**
      * The pilot reports it started running but the slot was not successfully
      * reserved beacuse of some problem.
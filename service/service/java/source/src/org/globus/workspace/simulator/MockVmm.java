@@ -0,0 +1,192 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.simulator;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Stands in for the xenssh command set: every command the service would
+ * run on a VMM (see RequestFactoryImpl) completes after a modelled delay
+ * on the virtual clock instead of over SSH.
+ *
+ * Propagation is a fixed overhead plus the image size over the per
+ * transfer bandwidth; everything else is a fixed delay.  Propagations
+ * can be made to fail at a given rate, the way MockShutdownTrash can be
+ * made to fail in the functional suites.
+ */
+public class MockVmm {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    // same actions as RequestFactoryImpl's command sets
+    public static final String PROPAGATE = "propagate";
+    public static final String PROPAGATE_START = "propagate-start";
+    public static final String START = "start";
+    public static final String PAUSE = "pause";
+    public static final String UNPAUSE = "unpause";
+    public static final String REBOOT = "reboot";
+    public static final String SHUTDOWN_NORMAL = "shutdown-normal";
+    public static final String SHUTDOWN_TRASH = "shutdown-trash";
+    public static final String READY_FOR_TRANSPORT = "ready-for-transport";
+    public static final String CANCEL_ALL_AT_VMM = "cancel-all-at-vmm";
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final Map<String,Long> issued = new TreeMap<String,Long>();
+    private final Random random;
+
+    private long propagateOverheadMs = 2000;
+    private double bandwidthMBps = 50;
+    private long startMs = 15000;
+    private long pauseMs = 1000;
+    private long rebootMs = 30000;
+    private long shutdownNormalMs = 20000;
+    private long shutdownTrashMs = 3000;
+    private long readyForTransportMs = 5000;
+    private double propagateFailureRate = 0;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    public MockVmm(long seed) {
+        this.random = new Random(seed);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // COMMANDS
+    // -------------------------------------------------------------------------
+
+    /**
+     * Issues a command and returns how long it takes.
+     *
+     * @param command one of the command constants
+     * @param imageMB image size, only used by commands that move the image
+     * @return virtual milliseconds until the command completes
+     */
+    public long issue(String command, int imageMB) {
+        if (command == null) {
+            throw new IllegalArgumentException("command may not be null");
+        }
+        final Long count = this.issued.get(command);
+        this.issued.put(command, count == null ? 1L : count + 1);
+
+        if (PROPAGATE.equals(command)) {
+            return this.transferMs(imageMB);
+        } else if (PROPAGATE_START.equals(command)) {
+            return this.transferMs(imageMB) + this.startMs;
+        } else if (START.equals(command)) {
+            return this.startMs;
+        } else if (PAUSE.equals(command) || UNPAUSE.equals(command)) {
+            return this.pauseMs;
+        } else if (REBOOT.equals(command)) {
+            return this.rebootMs;
+        } else if (SHUTDOWN_NORMAL.equals(command)) {
+            return this.shutdownNormalMs;
+        } else if (SHUTDOWN_TRASH.equals(command)
+                || CANCEL_ALL_AT_VMM.equals(command)) {
+            return this.shutdownTrashMs;
+        } else if (READY_FOR_TRANSPORT.equals(command)) {
+            return this.readyForTransportMs + this.transferMs(imageMB);
+        }
+        throw new IllegalArgumentException("unknown command '" + command + "'");
+    }
+
+    /**
+     * @return true if the propagation just issued should be treated as
+     *         failed, drawn at the configured failure rate
+     */
+    public boolean propagationFails() {
+        return this.propagateFailureRate > 0
+                && this.random.nextDouble() < this.propagateFailureRate;
+    }
+
+    private long transferMs(int imageMB) {
+        return this.propagateOverheadMs +
+                Math.round(Math.max(0, imageMB) * 1000.0 / this.bandwidthMBps);
+    }
+
+    /**
+     * @return number of times each command was issued, by command name
+     */
+    public Map<String,Long> getIssued() {
+        return new TreeMap<String,Long>(this.issued);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // SET
+    // -------------------------------------------------------------------------
+
+    public void setPropagateOverheadMs(long propagateOverheadMs) {
+        this.propagateOverheadMs = nonNegative(propagateOverheadMs);
+    }
+
+    public void setBandwidthMBps(double bandwidthMBps) {
+        if (bandwidthMBps <= 0) {
+            throw new IllegalArgumentException("bandwidthMBps must be positive");
+        }
+        this.bandwidthMBps = bandwidthMBps;
+    }
+
+    public void setStartMs(long startMs) {
+        this.startMs = nonNegative(startMs);
+    }
+
+    public void setPauseMs(long pauseMs) {
+        this.pauseMs = nonNegative(pauseMs);
+    }
+
+    public void setRebootMs(long rebootMs) {
+        this.rebootMs = nonNegative(rebootMs);
+    }
+
+    public void setShutdownNormalMs(long shutdownNormalMs) {
+        this.shutdownNormalMs = nonNegative(shutdownNormalMs);
+    }
+
+    public void setShutdownTrashMs(long shutdownTrashMs) {
+        this.shutdownTrashMs = nonNegative(shutdownTrashMs);
+    }
+
+    public void setReadyForTransportMs(long readyForTransportMs) {
+        this.readyForTransportMs = nonNegative(readyForTransportMs);
+    }
+
+    public void setPropagateFailureRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("rate must be between 0 and 1");
+        }
+        this.propagateFailureRate = rate;
+    }
+
+    private static long nonNegative(long ms) {
+        if (ms < 0) {
+            throw new IllegalArgumentException("duration may not be negative");
+        }
+        return ms;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.simulator;
+
+import org.globus.workspace.async.AsyncRequest;
+import org.globus.workspace.persistence.PersistenceAdapter;
+import org.globus.workspace.scheduler.defaults.ResourcepoolEntry;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The resourcepool_entries table kept in memory, exposed as the part of
+ * PersistenceAdapter that DefaultSlotManagement, ResourcepoolUtil and
+ * AsyncRequestManagerImpl use.  Any other PersistenceAdapter method
+ * throws UnsupportedOperationException (see Stubs), so a scheduler change
+ * that starts depending on more of the database shows up here instead of
+ * silently simulating the wrong thing.
+ *
+ * Entries handed out are copies, as they would be from the database.
+ */
+public class SimulatedPool {
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final Map<String,ResourcepoolEntry> entries =
+            new LinkedHashMap<String,ResourcepoolEntry>();
+
+    private PriceListener priceListener;
+
+
+    // -------------------------------------------------------------------------
+    // NODES
+    // -------------------------------------------------------------------------
+
+    public void addNode(String pool, String hostname, String networks,
+                        int memory, int cores, int disk) {
+        if (hostname == null) {
+            throw new IllegalArgumentException("hostname may not be null");
+        }
+        if (memory < 1) {
+            throw new IllegalArgumentException("memory must be positive");
+        }
+        if (this.entries.containsKey(hostname)) {
+            throw new IllegalArgumentException("node '" + hostname +
+                    "' already exists");
+        }
+        this.entries.put(hostname, new ResourcepoolEntry(
+                pool == null ? "default" : pool, hostname, memory, memory, 0,
+                networks == null ? "*" : networks, true,
+                cores, cores, disk, disk));
+    }
+
+    public int getNodeCount() {
+        return this.entries.size();
+    }
+
+    public void setPriceListener(PriceListener priceListener) {
+        this.priceListener = priceListener;
+    }
+
+    /**
+     * One pass over the pool for the report, instead of three queries.
+     *
+     * @return {total memory, memory held by non-preemptible VMs, memory
+     *         held by preemptible VMs}, all MB
+     */
+    int[] memoryUsage() {
+        int total = 0;
+        int used = 0;
+        int preemptible = 0;
+        for (ResourcepoolEntry entry : this.entries.values()) {
+            total += entry.getMemMax();
+            used += entry.getMemMax() - entry.getMemCurrent() -
+                    entry.getMemPreemptable();
+            preemptible += entry.getMemPreemptable();
+        }
+        return new int[]{total, used, preemptible};
+    }
+
+
+    // -------------------------------------------------------------------------
+    // PersistenceAdapter SUBSET
+    // -------------------------------------------------------------------------
+
+    public String[] getResourcePools() {
+        final Set<String> pools = new LinkedHashSet<String>();
+        for (ResourcepoolEntry entry : this.entries.values()) {
+            pools.add(entry.getResourcePool());
+        }
+        return pools.toArray(new String[pools.size()]);
+    }
+
+    public List<ResourcepoolEntry> getAvailableEntriesSortedByFreeMemoryPercentage(
+            int requestedMem, String pool) {
+        final List<ResourcepoolEntry> list = new ArrayList<ResourcepoolEntry>();
+        for (ResourcepoolEntry entry : this.entries.values()) {
+            if (entry.isActive()
+                    && entry.getMemCurrent() >= requestedMem
+                    && (pool == null || pool.equals(entry.getResourcePool()))) {
+                list.add(copy(entry));
+            }
+        }
+        Collections.sort(list, BY_FREE_FRACTION);
+        return list;
+    }
+
+    public boolean isInfeasibleRequest(int mem, int cores, int disk) {
+        for (ResourcepoolEntry entry : this.entries.values()) {
+            if (entry.isActive()
+                    && mem <= entry.getMemMax()
+                    && (!entry.isCoresTracked() || cores <= entry.getCoresMax())
+                    && (!entry.isDiskTracked() || disk <= entry.getDiskMax())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void updateResourcepoolEntryAvailable(String hostname, int mem,
+                                                 int preemptible, int cores,
+                                                 int disk) {
+        final ResourcepoolEntry entry = this.entries.get(hostname);
+        if (entry == null) {
+            throw new IllegalStateException("expected row update");
+        }
+        entry.setMemCurrent(mem);
+        entry.setMemPreemptable(preemptible);
+        entry.setCoresCurrent(cores);
+        entry.setDiskCurrent(disk);
+    }
+
+    public void updateResourcepoolEntriesAvailable(List<ResourcepoolEntry> list) {
+        for (ResourcepoolEntry entry : list) {
+            if (!this.entries.containsKey(entry.getHostname())) {
+                throw new IllegalStateException("expected row update for '" +
+                        entry.getHostname() + "'");
+            }
+        }
+        for (ResourcepoolEntry entry : list) {
+            this.updateResourcepoolEntryAvailable(entry.getHostname(),
+                    entry.getMemCurrent(), entry.getMemPreemptable(),
+                    entry.getCoresCurrent(), entry.getDiskCurrent());
+        }
+    }
+
+    public ResourcepoolEntry getResourcepoolEntry(String hostname) {
+        final ResourcepoolEntry entry = this.entries.get(hostname);
+        return entry == null ? null : copy(entry);
+    }
+
+    public List<ResourcepoolEntry> currentResourcepoolEntries() {
+        final List<ResourcepoolEntry> list =
+                new ArrayList<ResourcepoolEntry>(this.entries.size());
+        for (ResourcepoolEntry entry : this.entries.values()) {
+            list.add(copy(entry));
+        }
+        return list;
+    }
+
+    public Integer getTotalMaxMemory() {
+        int total = 0;
+        for (ResourcepoolEntry entry : this.entries.values()) {
+            total += entry.getMemMax();
+        }
+        return total;
+    }
+
+    public Integer getTotalAvailableMemory() {
+        return this.getTotalAvailableMemory(1);
+    }
+
+    public Integer getTotalAvailableMemory(Integer multipleOf) {
+        final int unit = multipleOf == null || multipleOf < 1 ? 1 : multipleOf;
+        int total = 0;
+        for (ResourcepoolEntry entry : this.entries.values()) {
+            total += entry.getMemCurrent() - entry.getMemCurrent() % unit;
+        }
+        return total;
+    }
+
+    public Integer getTotalPreemptableMemory() {
+        int total = 0;
+        for (ResourcepoolEntry entry : this.entries.values()) {
+            total += entry.getMemPreemptable();
+        }
+        return total;
+    }
+
+    public Integer getUsedNonPreemptableMemory() {
+        int total = 0;
+        for (ResourcepoolEntry entry : this.entries.values()) {
+            total += entry.getMemMax() - entry.getMemCurrent() -
+                     entry.getMemPreemptable();
+        }
+        return total;
+    }
+
+    public Double getLastSpotPrice() {
+        return null;
+    }
+
+    public void addSpotPriceHistory(Calendar timeStamp, Double newPrice) {
+        if (this.priceListener != null) {
+            this.priceListener.priceChanged(newPrice);
+        }
+    }
+
+    public void addAsyncRequest(AsyncRequest asyncRequest) {
+        // nothing to persist
+    }
+
+    public ArrayList<AsyncRequest> getAllAsyncRequests() {
+        return new ArrayList<AsyncRequest>();
+    }
+
+
+    // -------------------------------------------------------------------------
+    // ADAPTER
+    // -------------------------------------------------------------------------
+
+    /**
+     * @return PersistenceAdapter backed by this pool
+     */
+    public PersistenceAdapter adapter() {
+        return Stubs.implement(PersistenceAdapter.class, this);
+    }
+
+    private static ResourcepoolEntry copy(ResourcepoolEntry entry) {
+        return new ResourcepoolEntry(entry.getResourcePool(),
+                entry.getHostname(), entry.getMemMax(), entry.getMemCurrent(),
+                entry.getMemPreemptable(), entry.getSupportedAssociations(),
+                entry.isActive(), entry.getCoresMax(), entry.getCoresCurrent(),
+                entry.getDiskMax(), entry.getDiskCurrent());
+    }
+
+    private static final Comparator<ResourcepoolEntry> BY_FREE_FRACTION =
+            new Comparator<ResourcepoolEntry>() {
+                public int compare(ResourcepoolEntry a, ResourcepoolEntry b) {
+                    return Double.compare(
+                            a.getMemCurrent() / (double) a.getMemMax(),
+                            b.getMemCurrent() / (double) b.getMemMax());
+                }
+            };
+
+    public interface PriceListener {
+        void priceChanged(Double newPrice);
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * What one simulation run measured.  Utilization is memory based and
+ * integrated over virtual time, so an hour at 90% counts six times as much
+ * as ten minutes at 90%.
+ */
+public class SimulationReport {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final double HOUR_MS = 60 * 60 * 1000.0;
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final List<Long> latencies = new ArrayList<Long>();
+    private boolean latenciesSorted = true;
+
+    // MB * ms
+    private double usedIntegral;
+    private double preemptibleIntegral;
+    private double capacityIntegral;
+
+    private double spotRevenue;
+    private double priceIntegral;
+    private double minPrice = Double.MAX_VALUE;
+    private double maxPrice;
+
+    private int started;
+    private int asyncStarted;
+    private int rejected;
+    private int failed;
+    private int spotPreemptions;
+    private int backfillPreemptions;
+
+    private long decisions;
+    private long decisionNanos;
+
+    private long events;
+    private long wallMs;
+    private long spanMs;
+    private Map<String,Long> vmmCommands = new TreeMap<String,Long>();
+
+
+    // -------------------------------------------------------------------------
+    // RECORDING
+    // -------------------------------------------------------------------------
+
+    void advance(long ms, int usedMB, int preemptibleMB, int capacityMB,
+                 double price, int runningSpot) {
+        this.usedIntegral += (double) usedMB * ms;
+        this.preemptibleIntegral += (double) preemptibleMB * ms;
+        this.capacityIntegral += (double) capacityMB * ms;
+        this.priceIntegral += price * ms;
+        this.spotRevenue += price * runningSpot * ms / HOUR_MS;
+    }
+
+    void price(double price) {
+        this.minPrice = Math.min(this.minPrice, price);
+        this.maxPrice = Math.max(this.maxPrice, price);
+    }
+
+    void started(long latencyMs) {
+        this.started++;
+        this.latencies.add(latencyMs);
+        this.latenciesSorted = false;
+    }
+
+    void asyncStarted() {
+        this.asyncStarted++;
+    }
+
+    void rejected(int count) {
+        this.rejected += count;
+    }
+
+    void failed() {
+        this.failed++;
+    }
+
+    void preempted(boolean spot) {
+        if (spot) {
+            this.spotPreemptions++;
+        } else {
+            this.backfillPreemptions++;
+        }
+    }
+
+    void decision(long nanos) {
+        this.decisions++;
+        this.decisionNanos += nanos;
+    }
+
+    void finish(long events, long wallMs, long spanMs,
+                Map<String,Long> vmmCommands) {
+        this.events = events;
+        this.wallMs = wallMs;
+        this.spanMs = spanMs;
+        this.vmmCommands = new TreeMap<String,Long>(vmmCommands);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // GET
+    // -------------------------------------------------------------------------
+
+    /**
+     * @return time averaged fraction of memory held by non-preemptible VMs
+     */
+    public double getUtilization() {
+        return this.capacityIntegral == 0 ? 0 :
+                this.usedIntegral / this.capacityIntegral;
+    }
+
+    /**
+     * @return time averaged fraction of memory held by spot and backfill VMs
+     */
+    public double getPreemptibleUtilization() {
+        return this.capacityIntegral == 0 ? 0 :
+                this.preemptibleIntegral / this.capacityIntegral;
+    }
+
+    /**
+     * @return VMs that ran, not counting spot and backfill
+     */
+    public int getStarted() {
+        return this.started;
+    }
+
+    public int getAsyncStarted() {
+        return this.asyncStarted;
+    }
+
+    public int getRejected() {
+        return this.rejected;
+    }
+
+    public int getFailed() {
+        return this.failed;
+    }
+
+    public int getSpotPreemptions() {
+        return this.spotPreemptions;
+    }
+
+    public int getBackfillPreemptions() {
+        return this.backfillPreemptions;
+    }
+
+    /**
+     * @return money taken from running spot VMs, current price per VM hour
+     */
+    public double getSpotRevenue() {
+        return this.spotRevenue;
+    }
+
+    public double getMeanSpotPrice() {
+        return this.spanMs == 0 ? 0 : this.priceIntegral / this.spanMs;
+    }
+
+    /**
+     * @return virtual ms from request to running, for non-preemptible VMs
+     */
+    public double getMeanLatency() {
+        if (this.latencies.isEmpty()) {
+            return 0;
+        }
+        double total = 0;
+        for (Long latency : this.latencies) {
+            total += latency;
+        }
+        return total / this.latencies.size();
+    }
+
+    /**
+     * @param p percentile, 0 to 100
+     * @return virtual ms from request to running at that percentile
+     */
+    public long getLatencyPercentile(double p) {
+        if (p < 0 || p > 100) {
+            throw new IllegalArgumentException("percentile must be 0 to 100");
+        }
+        if (this.latencies.isEmpty()) {
+            return 0;
+        }
+        if (!this.latenciesSorted) {
+            Collections.sort(this.latencies);
+            this.latenciesSorted = true;
+        }
+        final int idx = (int) Math.ceil(p / 100 * this.latencies.size()) - 1;
+        return this.latencies.get(Math.max(0, idx));
+    }
+
+    /**
+     * @return mean wall-clock ns the slot manager took per reservation
+     */
+    public long getNanosPerDecision() {
+        return this.decisions == 0 ? 0 : this.decisionNanos / this.decisions;
+    }
+
+    public long getEvents() {
+        return this.events;
+    }
+
+    public long getWallMs() {
+        return this.wallMs;
+    }
+
+    public long getSpanMs() {
+        return this.spanMs;
+    }
+
+    /**
+     * @return virtual time simulated per unit of wall-clock time
+     */
+    public double getSpeedup() {
+        return this.spanMs / (double) Math.max(1, this.wallMs);
+    }
+
+    public Map<String,Long> getVmmCommands() {
+        return this.vmmCommands;
+    }
+
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("utilization:  %5.1f%% non-preemptible, " +
+                "%5.1f%% spot and backfill%n",
+                this.getUtilization() * 100,
+                this.getPreemptibleUtilization() * 100));
+        sb.append(String.format("started:      %d, and %d spot and backfill; " +
+                "%d rejected, %d failed propagation%n",
+                this.started, this.asyncStarted, this.rejected, this.failed));
+        sb.append(String.format("latency:      mean %.1fs, p50 %.1fs, " +
+                "p95 %.1fs, max %.1fs%n",
+                this.getMeanLatency() / 1000,
+                this.getLatencyPercentile(50) / 1000.0,
+                this.getLatencyPercentile(95) / 1000.0,
+                this.getLatencyPercentile(100) / 1000.0));
+        sb.append(String.format("preemptions:  %d spot, %d backfill%n",
+                this.spotPreemptions, this.backfillPreemptions));
+        sb.append(String.format("spot price:   mean %.3f, min %.3f, max %.3f, " +
+                "revenue %.2f%n",
+                this.getMeanSpotPrice(),
+                this.minPrice == Double.MAX_VALUE ? 0 : this.minPrice,
+                this.maxPrice, this.spotRevenue));
+        sb.append(String.format("scheduler:    %d reservations, %dns each%n",
+                this.decisions, this.getNanosPerDecision()));
+        sb.append("vmm commands: ").append(this.vmmCommands).append('\n');
+        sb.append(String.format("run:          %d events, %.1fh simulated " +
+                "in %dms (%.0fx)",
+                this.events, this.spanMs / HOUR_MS, this.wallMs,
+                this.getSpeedup()));
+        return sb.toString();
+    }
+}
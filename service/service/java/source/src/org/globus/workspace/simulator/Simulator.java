@@ -0,0 +1,758 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.simulator;
+
+import org.globus.workspace.Lager;
+import org.globus.workspace.WorkspaceConstants;
+import org.globus.workspace.async.AsyncRequest;
+import org.globus.workspace.async.AsyncRequestManagerImpl;
+import org.globus.workspace.async.AsyncRequestMap;
+import org.globus.workspace.async.pricingmodel.MaximizeUtilizationPricingModel;
+import org.globus.workspace.async.pricingmodel.PricingModel;
+import org.globus.workspace.creation.InternalCreationManager;
+import org.globus.workspace.persistence.PersistenceAdapter;
+import org.globus.workspace.scheduler.Reservation;
+import org.globus.workspace.scheduler.defaults.DefaultSlotManagement;
+import org.globus.workspace.scheduler.defaults.NodeRequest;
+import org.globus.workspace.scheduler.defaults.placement.PlacementStrategies;
+import org.globus.workspace.service.InstanceResource;
+import org.globus.workspace.service.WorkspaceGroupHome;
+import org.globus.workspace.service.WorkspaceHome;
+import org.globus.workspace.service.binding.vm.VirtualMachine;
+import org.globus.workspace.service.binding.vm.VirtualMachineDeployment;
+import org.nimbustools.api.repr.Caller;
+import org.nimbustools.api.repr.ctx.Context;
+import org.nimbustools.api.repr.vm.NIC;
+import org.nimbustools.api.services.rm.DoesNotExistException;
+import org.nimbustools.api.services.rm.ManageException;
+import org.nimbustools.api.services.rm.ResourceRequestDeniedException;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a trace (see Trace) against the real DefaultSlotManagement and
+ * AsyncRequestManagerImpl on a virtual clock, with the resource pool held
+ * in memory (SimulatedPool) and every VMM command answered by MockVmm.
+ *
+ * The creation path stands in for CreationManagerImpl the way it reaches
+ * the scheduler: bindings get their IDs from a reservation, preemptible
+ * ones through the InternalCreationManager interface the async manager
+ * uses.  Authorization, metadata, network binding and the state machine
+ * are not simulated.  Destruction is modelled as the service does it: a
+ * preemption frees the space before destroyMultiple returns, and the
+ * DESTROYING notification reaches the async manager afterwards.
+ *
+ * Everything runs on the calling thread, so one Simulator runs one trace
+ * at a time.  Trace ids must be unique across the trace.  The round-robin
+ * and greedy strategies break ties at random, use best-fit or dot-product
+ * when two runs have to be compared VM for VM.
+ *
+ * Run with:
+ *   Simulator trace-file [selection-strategy [pricing-model-class]]
+ */
+public class Simulator {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    private static final String CREATOR = "/CN=simulator";
+
+    // the slot manager does not look at it, but NodeRequest wants one
+    private static final int UNKNOWN_DURATION = 1;
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final SimulatedPool pool;
+    private final MockVmm vmm;
+    private final long epoch;
+
+    private PricingModel pricingModel = new MaximizeUtilizationPricingModel();
+    private String selectionStrategy = PlacementStrategies.ROUND_ROBIN;
+    private double minPrice = 0.1;
+    private int instanceMem = 2048;
+    private int minReservedMem = 2048;
+    private double maxUtilization = 0.7;
+    private boolean spotEnabled = true;
+    private boolean backfillEnabled = true;
+    private int asyncImageMB = 1024;
+
+    // per run
+    private VirtualClock clock;
+    private SimulationReport report;
+    private DefaultSlotManagement slotManager;
+    private AsyncRequestManagerImpl asyncManager;
+    private final Map<Integer,SimVM> vms = new HashMap<Integer,SimVM>();
+    private final Map<String,List<SimVM>> members =
+            new HashMap<String,List<SimVM>>();
+    private int nextId;
+    private int runningSpot;
+    private boolean withdrawing;
+    private double price;
+    private IOException traceFailure;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param pool starting nodes, more can arrive through the trace
+     * @param vmm command timings
+     * @param epoch wall-clock ms the start of the trace maps to
+     */
+    public Simulator(SimulatedPool pool, MockVmm vmm, long epoch) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool may not be null");
+        }
+        if (vmm == null) {
+            throw new IllegalArgumentException("vmm may not be null");
+        }
+        this.pool = pool;
+        this.vmm = vmm;
+        this.epoch = epoch;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // SET
+    // -------------------------------------------------------------------------
+
+    public void setPricingModel(PricingModel pricingModel) {
+        if (pricingModel == null) {
+            throw new IllegalArgumentException("pricingModel may not be null");
+        }
+        this.pricingModel = pricingModel;
+    }
+
+    /**
+     * @param selectionStrategy see DefaultSlotManagement#setSelectionStrategy
+     */
+    public void setSelectionStrategy(String selectionStrategy) {
+        this.selectionStrategy = selectionStrategy;
+    }
+
+    public void setMinPrice(double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public void setInstanceMem(int instanceMem) {
+        if (instanceMem < 1) {
+            throw new IllegalArgumentException("instanceMem must be positive");
+        }
+        this.instanceMem = instanceMem;
+    }
+
+    public void setMinReservedMem(int minReservedMem) {
+        this.minReservedMem = minReservedMem;
+    }
+
+    public void setMaxUtilization(double maxUtilization) {
+        if (maxUtilization <= 0 || maxUtilization > 1) {
+            throw new IllegalArgumentException(
+                    "maxUtilization must be more than 0 and at most 1");
+        }
+        this.maxUtilization = maxUtilization;
+    }
+
+    public void setSpotEnabled(boolean spotEnabled) {
+        this.spotEnabled = spotEnabled;
+    }
+
+    public void setBackfillEnabled(boolean backfillEnabled) {
+        this.backfillEnabled = backfillEnabled;
+    }
+
+    /**
+     * @param asyncImageMB image size propagated for spot and backfill VMs
+     */
+    public void setAsyncImageMB(int asyncImageMB) {
+        this.asyncImageMB = asyncImageMB;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // RUN
+    // -------------------------------------------------------------------------
+
+    public SimulationReport run(Trace trace) throws Exception {
+        return this.run(trace, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param trace events to replay, read as the clock reaches them
+     * @param until last virtual ms to simulate, Long.MAX_VALUE to run
+     *        until nothing is left to happen
+     * @return what was measured
+     * @throws Exception could not set up the service modules, or could
+     *         not read the trace
+     */
+    public SimulationReport run(Trace trace, long until) throws Exception {
+        if (trace == null) {
+            throw new IllegalArgumentException("trace may not be null");
+        }
+        this.setup();
+
+        final long wallStart = System.currentTimeMillis();
+        this.feed(trace);
+        this.clock.run(until);
+        final long wallMs = System.currentTimeMillis() - wallStart;
+
+        if (this.traceFailure != null) {
+            throw this.traceFailure;
+        }
+        this.report.finish(this.clock.getProcessed(), wallMs,
+                this.clock.now(), this.vmm.getIssued());
+        return this.report;
+    }
+
+    private void setup() throws Exception {
+        this.clock = new VirtualClock(this.epoch);
+        this.report = new SimulationReport();
+        this.vms.clear();
+        this.members.clear();
+        this.nextId = 1;
+        this.runningSpot = 0;
+        this.traceFailure = null;
+        this.price = this.minPrice;
+
+        final SimulationReport rep = this.report;
+        this.pool.setPriceListener(new SimulatedPool.PriceListener() {
+            public void priceChanged(Double newPrice) {
+                Simulator.this.price = newPrice;
+                rep.price(newPrice);
+            }
+        });
+        this.clock.setListener(new VirtualClock.Listener() {
+            public void advancing(long from, long to) {
+                final int[] usage = Simulator.this.pool.memoryUsage();
+                rep.advance(to - from, usage[1], usage[2], usage[0],
+                        Simulator.this.price, Simulator.this.runningSpot);
+            }
+        });
+
+        final Lager lager = new Lager();
+        final PersistenceAdapter db = this.pool.adapter();
+        final WorkspaceHome home =
+                Stubs.implement(WorkspaceHome.class, new Home());
+        final WorkspaceGroupHome ghome =
+                Stubs.implement(WorkspaceGroupHome.class, new GroupHome());
+
+        this.slotManager = new DefaultSlotManagement(db, lager);
+        this.slotManager.setSelectionStrategy(this.selectionStrategy);
+        this.slotManager.setHome(home);
+
+        this.asyncManager = new AsyncRequestManagerImpl(db, lager, home, ghome,
+                this.minPrice, this.pricingModel, new AsyncRequestMap(db),
+                this.spotEnabled, this.backfillEnabled);
+        this.asyncManager.setMinReservedMem(this.minReservedMem);
+        this.asyncManager.setMaxUtilization(this.maxUtilization);
+        this.asyncManager.setInstanceMem(this.instanceMem);
+        this.asyncManager.setCreationManager(new Creation());
+
+        this.slotManager.setPreempManager(this.asyncManager);
+        this.asyncManager.init();
+    }
+
+    // reads ahead one event at a time so the queue stays small
+    private void feed(final Trace trace) {
+        final Trace.Event event;
+        try {
+            event = trace.next();
+        } catch (IOException e) {
+            this.traceFailure = e;
+            return;
+        }
+        if (event == null) {
+            return;
+        }
+        this.clock.scheduleAt(event.getAt(), new Runnable() {
+            public void run() {
+                Simulator.this.arrive(event);
+                Simulator.this.feed(trace);
+            }
+        });
+    }
+
+
+    // -------------------------------------------------------------------------
+    // TRACE EVENTS
+    // -------------------------------------------------------------------------
+
+    private void arrive(Trace.Event event) {
+        final String action = event.getAction();
+        if (Trace.NODE.equals(action)) {
+            this.pool.addNode(event.getPool(), event.getId(), null,
+                    event.getMemory(), event.getCores(), event.getDisk());
+            this.asyncManager.recalculateAvailableInstances();
+        } else if (Trace.RUN.equals(action)) {
+            this.runRequest(event);
+        } else if (Trace.TERMINATE.equals(action)) {
+            final List<SimVM> group = this.members.get(event.getId());
+            if (group != null) {
+                for (SimVM vm : new ArrayList<SimVM>(group)) {
+                    this.terminate(vm);
+                }
+            }
+        } else if (Trace.SPOT.equals(action)
+                || Trace.BACKFILL.equals(action)) {
+            this.asyncRequest(event);
+        } else if (Trace.CANCEL.equals(action)) {
+            this.cancel(event.getId());
+        }
+    }
+
+    private void runRequest(Trace.Event event) {
+        this.checkNew(event.getId());
+        final int count = event.getCount();
+        final int[] ids = this.newIds(count);
+        final NodeRequest req = new NodeRequest(ids, event.getMemory(),
+                event.getCores(), 0,
+                (int) Math.max(UNKNOWN_DURATION, event.getRunMs() / 1000),
+                null, null, count > 1 ? event.getId() : null, CREATOR);
+
+        final Reservation res;
+        final long start = System.nanoTime();
+        try {
+            res = this.slotManager.reserveSpace(req, false);
+        } catch (ResourceRequestDeniedException e) {
+            this.report.decision(System.nanoTime() - start);
+            this.report.rejected(count);
+            return;
+        }
+        this.report.decision(System.nanoTime() - start);
+
+        final List<SimVM> group = new ArrayList<SimVM>(count);
+        this.members.put(event.getId(), group);
+        for (int i = 0; i < count; i++) {
+            final SimVM vm = new SimVM(ids[i], res.getIdHostnamePair(i).hostname,
+                    event.getMemory(), event.getCores(), 0, false,
+                    event.getId(), this.clock.now());
+            vm.runMs = event.getRunMs();
+            this.vms.put(vm.id, vm);
+            group.add(vm);
+            this.launch(vm, event.getImageMB());
+        }
+
+        // the service tells the async manager once the VMs exist
+        this.asyncManager.stateNotification(ids,
+                WorkspaceConstants.STATE_FIRST_LEGAL);
+    }
+
+    private void asyncRequest(Trace.Event event) {
+        this.checkNew(event.getId());
+        final boolean spot = Trace.SPOT.equals(event.getAction());
+        final int count = event.getCount();
+        final VirtualMachine[] bindings = new VirtualMachine[count];
+        for (int i = 0; i < count; i++) {
+            final VirtualMachineDeployment dep = new VirtualMachineDeployment();
+            dep.setIndividualPhysicalMemory(this.instanceMem);
+            dep.setIndividualCPUCount(1);
+            dep.setMinDuration(UNKNOWN_DURATION);
+            final VirtualMachine vm = new VirtualMachine();
+            vm.setDeployment(dep);
+            vm.setPreemptable(true);
+            bindings[i] = vm;
+        }
+        final String groupID = count > 1 ? event.getId() : null;
+        this.members.put(event.getId(), new ArrayList<SimVM>(count));
+
+        final AsyncRequest request;
+        if (spot) {
+            request = new AsyncRequest(event.getId(), event.getBid(), false,
+                    null, groupID, bindings, null, null, null,
+                    this.clock.calendar());
+        } else {
+            request = new AsyncRequest(event.getId(), null, groupID,
+                    bindings, null, null, this.clock.calendar());
+        }
+
+        try {
+            this.asyncManager.addRequest(request);
+        } catch (ResourceRequestDeniedException e) {
+            this.report.rejected(count);
+            return;
+        }
+
+        if (spot && event.getRunMs() > 0) {
+            final String id = event.getId();
+            this.clock.schedule(event.getRunMs(), new Runnable() {
+                public void run() {
+                    // the user is done: stop asking, then shut down
+                    Simulator.this.cancel(id);
+                    for (int vmid : request.getAllocatedVMs()) {
+                        final SimVM vm = Simulator.this.vms.get(vmid);
+                        if (vm != null) {
+                            Simulator.this.terminate(vm);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private void cancel(String id) {
+        this.withdrawing = true;
+        try {
+            this.asyncManager.cancelRequest(id);
+        } catch (DoesNotExistException e) {
+            // rejected on arrival, or not an async request
+        } finally {
+            this.withdrawing = false;
+        }
+    }
+
+    private void checkNew(String id) {
+        if (this.members.containsKey(id)) {
+            throw new IllegalArgumentException("trace id '" + id +
+                    "' used twice");
+        }
+    }
+
+    private int[] newIds(int count) {
+        final int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = this.nextId++;
+        }
+        return ids;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // VM LIFECYCLE
+    // -------------------------------------------------------------------------
+
+    private void launch(final SimVM vm, int imageMB) {
+        final long delay = this.vmm.issue(MockVmm.PROPAGATE_START, imageMB);
+        final boolean fails = this.vmm.propagationFails();
+        this.clock.schedule(delay, new Runnable() {
+            public void run() {
+                if (vm.done) {
+                    return;
+                }
+                if (fails) {
+                    Simulator.this.report.failed();
+                    vm.done = true;
+                    Simulator.this.release(vm);
+                    return;
+                }
+                Simulator.this.running(vm);
+            }
+        });
+    }
+
+    private void running(final SimVM vm) {
+        vm.running = true;
+        if (vm.preemptible) {
+            final AsyncRequest request =
+                    this.asyncManager.getRequestFromVM(vm.id);
+            vm.spot = request != null && request.isSpotRequest();
+            if (vm.spot) {
+                this.runningSpot++;
+            }
+            this.report.asyncStarted();
+        } else {
+            this.report.started(this.clock.now() - vm.requested);
+        }
+        if (vm.runMs > 0) {
+            vm.end = this.clock.schedule(vm.runMs, new Runnable() {
+                public void run() {
+                    Simulator.this.terminate(vm);
+                }
+            });
+        }
+    }
+
+    // user initiated: the VM holds its space until shutdown completes
+    private void terminate(final SimVM vm) {
+        if (vm.done) {
+            return;
+        }
+        this.stopped(vm);
+        final long delay = this.vmm.issue(MockVmm.SHUTDOWN_TRASH, 0);
+        this.clock.schedule(delay, new Runnable() {
+            public void run() {
+                Simulator.this.release(vm);
+            }
+        });
+    }
+
+    // service initiated: space is back before destroyMultiple returns
+    private void destroyNow(final SimVM vm) {
+        if (vm.done) {
+            return;
+        }
+        if (!this.withdrawing) {
+            final AsyncRequest request =
+                    this.asyncManager.getRequestFromVM(vm.id);
+            this.report.preempted(request != null && request.isSpotRequest());
+        }
+        this.stopped(vm);
+        this.vmm.issue(MockVmm.SHUTDOWN_TRASH, 0);
+        this.releaseSpace(vm);
+        this.clock.schedule(0, new Runnable() {
+            public void run() {
+                Simulator.this.notifyDestroyed(vm);
+            }
+        });
+    }
+
+    private void stopped(SimVM vm) {
+        vm.done = true;
+        if (vm.end != null) {
+            vm.end.cancel();
+        }
+        if (vm.running && vm.spot) {
+            this.runningSpot--;
+        }
+    }
+
+    private void release(SimVM vm) {
+        this.releaseSpace(vm);
+        this.notifyDestroyed(vm);
+    }
+
+    private void releaseSpace(SimVM vm) {
+        final NodeRequest req = new NodeRequest(new int[]{vm.id}, vm.memory,
+                vm.cores, vm.disk, UNKNOWN_DURATION, null, null, null, CREATOR);
+        final Reservation res = new Reservation(new int[]{vm.id},
+                new String[]{vm.node});
+        try {
+            this.slotManager.releaseSpace(req, res, vm.preemptible);
+        } catch (ManageException e) {
+            throw new IllegalStateException("releasing " + vm + ": " +
+                    e.getMessage(), e);
+        }
+    }
+
+    private void notifyDestroyed(SimVM vm) {
+        this.vms.remove(vm.id);
+        final List<SimVM> group = this.members.get(vm.traceId);
+        if (group != null) {
+            group.remove(vm);
+        }
+        try {
+            this.asyncManager.stateNotification(vm.id,
+                    WorkspaceConstants.STATE_DESTROYING);
+        } catch (ManageException e) {
+            throw new IllegalStateException("notifying destruction of " +
+                    vm + ": " + e.getMessage(), e);
+        }
+    }
+
+
+    // -------------------------------------------------------------------------
+    // SERVICE SIDE
+    // -------------------------------------------------------------------------
+
+    /**
+     * What the async manager sees of CreationManagerImpl.
+     */
+    private class Creation implements InternalCreationManager {
+
+        public InstanceResource[] createVMs(VirtualMachine[] bindings,
+                                            NIC[] nics,
+                                            Caller caller,
+                                            Context context,
+                                            String groupID,
+                                            String coschedID,
+                                            String clientToken,
+                                            boolean spotInstances,
+                                            double chargeRatio)
+                throws ResourceRequestDeniedException {
+
+            final VirtualMachineDeployment dep = bindings[0].getDeployment();
+            final int memory = dep.getIndividualPhysicalMemory();
+            final int cores = dep.getIndividualCPUCount();
+            final int disk = bindings[0].getScratchDisk();
+            final int[] ids = newIds(bindings.length);
+
+            final NodeRequest req = new NodeRequest(ids, memory, cores, disk,
+                    UNKNOWN_DURATION, null, null, groupID, CREATOR);
+            final long start = System.nanoTime();
+            final Reservation res;
+            try {
+                res = slotManager.reserveSpace(req, spotInstances);
+            } finally {
+                report.decision(System.nanoTime() - start);
+            }
+
+            // a group's id is its trace id, single VMs are found through
+            // their request when it matters
+            final InstanceResource[] created =
+                    new InstanceResource[bindings.length];
+            final List<SimVM> group =
+                    groupID == null ? null : members.get(groupID);
+            for (int i = 0; i < bindings.length; i++) {
+                bindings[i].setID(ids[i]);
+                final SimVM vm = new SimVM(ids[i],
+                        res.getIdHostnamePair(i).hostname, memory, cores,
+                        disk, true, groupID, clock.now());
+                vms.put(vm.id, vm);
+                if (group != null) {
+                    group.add(vm);
+                }
+                launch(vm, asyncImageMB);
+                created[i] = Stubs.implement(InstanceResource.class,
+                        new Instance(ids[i], bindings[i]));
+            }
+            return created;
+        }
+    }
+
+    /**
+     * The parts of WorkspaceHome the async manager uses.
+     */
+    private class Home {
+
+        public String destroyMultiple(int[] workspaces, String sourceStr) {
+            return this.destroyMultiple(workspaces, sourceStr, true);
+        }
+
+        public String destroyMultiple(int[] workspaces, String sourceStr,
+                                      boolean block) {
+            for (int id : workspaces) {
+                final SimVM vm = vms.get(id);
+                if (vm != null) {
+                    destroyNow(vm);
+                }
+            }
+            return null;
+        }
+
+        public InstanceResource find(int id) throws DoesNotExistException {
+            final SimVM vm = vms.get(id);
+            if (vm == null) {
+                throw new DoesNotExistException("unknown workspace " + id);
+            }
+            return Stubs.implement(InstanceResource.class,
+                    new Instance(id, null));
+        }
+    }
+
+    /**
+     * The parts of WorkspaceGroupHome the async manager uses.
+     */
+    private class GroupHome {
+
+        public void destroy(String groupid) {
+            final List<SimVM> group = members.get(groupid);
+            if (group == null) {
+                return;
+            }
+            for (SimVM vm : new ArrayList<SimVM>(group)) {
+                destroyNow(vm);
+            }
+        }
+    }
+
+    private static final class Instance {
+
+        private final int id;
+        private final VirtualMachine vm;
+
+        Instance(int id, VirtualMachine vm) {
+            this.id = id;
+            this.vm = vm;
+        }
+
+        public int getID() {
+            return this.id;
+        }
+
+        public VirtualMachine getVM() {
+            return this.vm;
+        }
+    }
+
+    private static final class SimVM {
+
+        final int id;
+        final String node;
+        final int memory;
+        final int cores;
+        final int disk;
+        final boolean preemptible;
+        final long requested;
+
+        String traceId;
+        long runMs;
+        VirtualClock.Timer end;
+        boolean spot;
+        boolean running;
+        boolean done;
+
+        SimVM(int id, String node, int memory, int cores, int disk,
+              boolean preemptible, String traceId, long requested) {
+            this.id = id;
+            this.node = node;
+            this.memory = memory;
+            this.cores = cores;
+            this.disk = disk;
+            this.preemptible = preemptible;
+            this.traceId = traceId;
+            this.requested = requested;
+        }
+
+        public String toString() {
+            return "vm " + this.id + " on " + this.node;
+        }
+    }
+
+
+    // -------------------------------------------------------------------------
+    // MAIN
+    // -------------------------------------------------------------------------
+
+    public static void main(String[] args) {
+
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("usage: Simulator trace-file " +
+                               "[selection-strategy [pricing-model-class]]");
+            System.exit(1);
+        }
+
+        final Simulator sim = new Simulator(new SimulatedPool(),
+                new MockVmm(1), System.currentTimeMillis());
+        try {
+            if (args.length > 1) {
+                sim.setSelectionStrategy(args[1]);
+            }
+            if (args.length > 2) {
+                sim.setPricingModel((PricingModel)
+                        Class.forName(args[2]).newInstance());
+            }
+            final Trace trace = new Trace(new FileReader(args[0]), args[0]);
+            try {
+                System.out.println(sim.run(trace));
+            } finally {
+                trace.close();
+            }
+        } catch (Exception e) {
+            System.err.println("simulation failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
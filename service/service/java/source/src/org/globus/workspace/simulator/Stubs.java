@@ -0,0 +1,84 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.simulator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Implements a service interface with whichever of its methods an object
+ * has public methods of the same signature for.  The rest throw
+ * UnsupportedOperationException, so the simulator fails loudly when the
+ * scheduler starts using a part of the service it does not model.
+ */
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    static <T> T implement(Class<T> iface, final Object impl) {
+        if (iface == null) {
+            throw new IllegalArgumentException("iface may not be null");
+        }
+        if (impl == null) {
+            throw new IllegalArgumentException("impl may not be null");
+        }
+        final Map<String,Method> methods = new HashMap<String,Method>();
+        for (Method method : impl.getClass().getMethods()) {
+            if (method.getDeclaringClass() != Object.class) {
+                method.setAccessible(true);
+                methods.put(signature(method), method);
+            }
+        }
+        final String ifaceName = iface.getSimpleName();
+        final Object proxy = Proxy.newProxyInstance(
+                iface.getClassLoader(),
+                new Class[]{iface},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                                         Object[] args) throws Throwable {
+                        Method target = null;
+                        if (method.getDeclaringClass() == Object.class) {
+                            target = method;
+                        } else {
+                            target = methods.get(signature(method));
+                        }
+                        if (target == null) {
+                            throw new UnsupportedOperationException(
+                                    ifaceName + "." + method.getName() +
+                                    " is not simulated");
+                        }
+                        try {
+                            return target.invoke(impl, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+        return iface.cast(proxy);
+    }
+
+    private static String signature(Method method) {
+        return method.getName() +
+                Arrays.toString(method.getParameterTypes());
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.simulator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a trace of arrivals and terminations one line at a time, so a
+ * week of production traffic never has to be in memory at once.
+ *
+ * One event per line, whitespace separated, '#' starts a comment.  The
+ * first field is seconds since the start of the trace (fractions allowed)
+ * and must not go backwards:
+ *
+ *   seconds  node       hostname memory-MB cores disk-MB [pool]
+ *   seconds  run        id count memory-MB cores run-seconds [image-MB]
+ *   seconds  terminate  id
+ *   seconds  spot       id count max-bid [run-seconds]
+ *   seconds  backfill   id count
+ *   seconds  cancel     id
+ *
+ * A "run" is an ordinary, non-preemptible request that ends by itself
+ * after run-seconds unless terminated first.  A "spot" request without
+ * run-seconds stays until cancelled; cancelling a spot request leaves its
+ * running instances alone, as with EC2, while cancelling backfill
+ * withdraws its VMs.
+ */
+public class Trace {
+
+    // -------------------------------------------------------------------------
+    // STATIC VARIABLES
+    // -------------------------------------------------------------------------
+
+    public static final String NODE = "node";
+    public static final String RUN = "run";
+    public static final String TERMINATE = "terminate";
+    public static final String SPOT = "spot";
+    public static final String BACKFILL = "backfill";
+    public static final String CANCEL = "cancel";
+
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final BufferedReader reader;
+    private final String name;
+
+    private int lineNumber;
+    private long lastAt;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param reader trace source, closed by close()
+     * @param name used in error messages, usually the file name
+     */
+    public Trace(Reader reader, String name) {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader may not be null");
+        }
+        this.reader = reader instanceof BufferedReader ?
+                (BufferedReader) reader : new BufferedReader(reader);
+        this.name = name == null ? "trace" : name;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // READ
+    // -------------------------------------------------------------------------
+
+    /**
+     * @return next event, null at the end of the trace
+     * @throws IOException could not read, or malformed line
+     */
+    public Event next() throws IOException {
+        String line;
+        while ((line = this.reader.readLine()) != null) {
+            this.lineNumber++;
+            final int hash = line.indexOf('#');
+            if (hash >= 0) {
+                line = line.substring(0, hash);
+            }
+            line = line.trim();
+            if (line.length() == 0) {
+                continue;
+            }
+            final Event event = this.parse(line.split("\\s+"));
+            if (event.at < this.lastAt) {
+                throw this.error("time goes backwards (" + event.at +
+                        "ms after " + this.lastAt + "ms)");
+            }
+            this.lastAt = event.at;
+            return event;
+        }
+        return null;
+    }
+
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    private Event parse(String[] f) throws IOException {
+        if (f.length < 3) {
+            throw this.error("expected at least time, action and id");
+        }
+        final long at = this.millis(f[0]);
+        final String action = f[1];
+        final String id = f[2];
+
+        if (NODE.equals(action)) {
+            this.arity(f, 6, 7);
+            return new Event(at, action, id, 0, this.positive(f[3]),
+                    this.integer(f[4]), this.integer(f[5]), 0, 0, 0,
+                    f.length > 6 ? f[6] : null);
+        } else if (RUN.equals(action)) {
+            this.arity(f, 7, 8);
+            return new Event(at, action, id, this.positive(f[3]),
+                    this.positive(f[4]), this.integer(f[5]), 0,
+                    this.millis(f[6]), 0,
+                    f.length > 7 ? this.integer(f[7]) : 0, null);
+        } else if (SPOT.equals(action)) {
+            this.arity(f, 5, 6);
+            final double bid;
+            try {
+                bid = Double.parseDouble(f[4]);
+            } catch (NumberFormatException e) {
+                throw this.error("bad bid '" + f[4] + "'");
+            }
+            return new Event(at, action, id, this.positive(f[3]), 0, 0, 0,
+                    f.length > 5 ? this.millis(f[5]) : 0, bid, 0, null);
+        } else if (BACKFILL.equals(action)) {
+            this.arity(f, 4, 4);
+            return new Event(at, action, id, this.positive(f[3]),
+                    0, 0, 0, 0, 0, 0, null);
+        } else if (TERMINATE.equals(action) || CANCEL.equals(action)) {
+            this.arity(f, 3, 3);
+            return new Event(at, action, id, 0, 0, 0, 0, 0, 0, 0, null);
+        }
+        throw this.error("unknown action '" + action + "'");
+    }
+
+    private void arity(String[] f, int min, int max) throws IOException {
+        if (f.length < min || f.length > max) {
+            throw this.error("'" + f[1] + "' takes " +
+                    (min == max ? "" + (min - 2) : (min - 2) + " to " + (max - 2)) +
+                    " fields after the time, found " + (f.length - 2));
+        }
+    }
+
+    private long millis(String s) throws IOException {
+        try {
+            final double seconds = Double.parseDouble(s);
+            if (seconds < 0) {
+                throw this.error("negative time '" + s + "'");
+            }
+            return Math.round(seconds * 1000);
+        } catch (NumberFormatException e) {
+            throw this.error("bad time '" + s + "'");
+        }
+    }
+
+    private int integer(String s) throws IOException {
+        try {
+            final int i = Integer.parseInt(s);
+            if (i < 0) {
+                throw this.error("negative number '" + s + "'");
+            }
+            return i;
+        } catch (NumberFormatException e) {
+            throw this.error("bad number '" + s + "'");
+        }
+    }
+
+    private int positive(String s) throws IOException {
+        final int i = this.integer(s);
+        if (i == 0) {
+            throw this.error("'" + s + "' must be positive");
+        }
+        return i;
+    }
+
+    private IOException error(String msg) {
+        return new IOException(this.name + ":" + this.lineNumber + ": " + msg);
+    }
+
+
+    // -------------------------------------------------------------------------
+    // EVENT
+    // -------------------------------------------------------------------------
+
+    /**
+     * One line of the trace; fields that do not apply to the action are 0
+     * or null.  For a node, id is the hostname.
+     */
+    public static class Event {
+
+        private final long at;
+        private final String action;
+        private final String id;
+        private final int count;
+        private final int memory;
+        private final int cores;
+        private final int disk;
+        private final long runMs;
+        private final double bid;
+        private final int imageMB;
+        private final String pool;
+
+        Event(long at, String action, String id, int count, int memory,
+              int cores, int disk, long runMs, double bid, int imageMB,
+              String pool) {
+            this.at = at;
+            this.action = action;
+            this.id = id;
+            this.count = count;
+            this.memory = memory;
+            this.cores = cores;
+            this.disk = disk;
+            this.runMs = runMs;
+            this.bid = bid;
+            this.imageMB = imageMB;
+            this.pool = pool;
+        }
+
+        /**
+         * @return virtual ms since the start of the trace
+         */
+        public long getAt() {
+            return this.at;
+        }
+
+        public String getAction() {
+            return this.action;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public int getCount() {
+            return this.count;
+        }
+
+        public int getMemory() {
+            return this.memory;
+        }
+
+        public int getCores() {
+            return this.cores;
+        }
+
+        public int getDisk() {
+            return this.disk;
+        }
+
+        /**
+         * @return ms the VMs run for, 0 for until terminated or cancelled
+         */
+        public long getRunMs() {
+            return this.runMs;
+        }
+
+        public double getBid() {
+            return this.bid;
+        }
+
+        public int getImageMB() {
+            return this.imageMB;
+        }
+
+        public String getPool() {
+            return this.pool;
+        }
+
+        public String toString() {
+            return this.at + "ms " + this.action + " " + this.id;
+        }
+    }
+}
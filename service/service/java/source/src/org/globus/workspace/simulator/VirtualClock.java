@@ -0,0 +1,192 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.simulator;
+
+import java.util.Calendar;
+import java.util.PriorityQueue;
+
+/**
+ * Discrete-event clock: time only moves when the next event is taken off
+ * the queue, so an idle week costs nothing.  Events at the same time run
+ * in the order they were scheduled.
+ *
+ * Not thread safe, the whole simulation runs on one thread.
+ */
+public class VirtualClock {
+
+    // -------------------------------------------------------------------------
+    // INSTANCE VARIABLES
+    // -------------------------------------------------------------------------
+
+    private final PriorityQueue<Event> queue = new PriorityQueue<Event>();
+    private final long epoch;
+
+    private long now;
+    private long sequence;
+    private long processed;
+    private Listener listener;
+
+
+    // -------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param epoch wall-clock milliseconds that virtual time zero maps to,
+     *        only used for the Calendars handed to service classes
+     */
+    public VirtualClock(long epoch) {
+        this.epoch = epoch;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // TIME
+    // -------------------------------------------------------------------------
+
+    /**
+     * @return milliseconds since the start of the simulation
+     */
+    public long now() {
+        return this.now;
+    }
+
+    public Calendar calendar() {
+        final Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(this.epoch + this.now);
+        return cal;
+    }
+
+    public long getProcessed() {
+        return this.processed;
+    }
+
+    public boolean isEmpty() {
+        return this.queue.isEmpty();
+    }
+
+    /**
+     * @param listener told about every advance of time, before the events
+     *        at the new time run (may be null)
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+
+    // -------------------------------------------------------------------------
+    // EVENTS
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param delay milliseconds from now, may be zero
+     * @param task what to run
+     * @return handle to cancel the event with
+     */
+    public Timer schedule(long delay, Runnable task) {
+        return this.scheduleAt(this.now + delay, task);
+    }
+
+    /**
+     * @param at absolute virtual time in milliseconds, not in the past
+     * @param task what to run
+     * @return handle to cancel the event with
+     */
+    public Timer scheduleAt(long at, Runnable task) {
+        if (task == null) {
+            throw new IllegalArgumentException("task may not be null");
+        }
+        if (at < this.now) {
+            throw new IllegalArgumentException("cannot schedule in the past (" +
+                    at + " < " + this.now + ")");
+        }
+        final Event event = new Event(at, this.sequence++, task);
+        this.queue.add(event);
+        return event;
+    }
+
+    /**
+     * Runs events until there are none left or the next one is after
+     * the limit.
+     *
+     * @param until last virtual time to run events at, Long.MAX_VALUE
+     *        for no limit
+     */
+    public void run(long until) {
+        while (!this.queue.isEmpty()) {
+            final Event next = this.queue.peek();
+            if (next.at > until) {
+                break;
+            }
+            this.queue.poll();
+            if (next.cancelled) {
+                // does not move time, a cancelled timeout is not activity
+                continue;
+            }
+            if (next.at != this.now) {
+                if (this.listener != null) {
+                    this.listener.advancing(this.now, next.at);
+                }
+                this.now = next.at;
+            }
+            next.task.run();
+            this.processed++;
+        }
+    }
+
+    public interface Listener {
+
+        /**
+         * @param from time that is ending
+         * @param to new time, events at it have not run yet
+         */
+        void advancing(long from, long to);
+    }
+
+    public interface Timer {
+
+        /**
+         * The event will not run; does nothing if it already has.
+         */
+        void cancel();
+    }
+
+    private static final class Event implements Comparable<Event>, Timer {
+
+        final long at;
+        final long seq;
+        final Runnable task;
+        boolean cancelled;
+
+        Event(long at, long seq, Runnable task) {
+            this.at = at;
+            this.seq = seq;
+            this.task = task;
+        }
+
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        public int compareTo(Event o) {
+            if (this.at != o.at) {
+                return this.at < o.at ? -1 : 1;
+            }
+            return this.seq < o.seq ? -1 : (this.seq == o.seq ? 0 : 1);
+        }
+    }
+}
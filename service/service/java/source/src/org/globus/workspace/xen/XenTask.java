@@ -23,6 +23,7 @@ import org.globus.workspace.ReturnException;
 import org.globus.workspace.WorkspaceConstants;
 import org.globus.workspace.WorkspaceException;
 import org.globus.workspace.WorkspaceUtil;
+import org.globus.workspace.metrics.Metrics;
 import org.globus.workspace.service.binding.vm.VirtualMachine;
 import org.globus.workspace.service.impls.async.ResourceMessage;
 import org.globus.workspace.service.impls.async.WorkspaceRequest;
@@ -33,6 +34,9 @@ public abstract class XenTask implements WorkspaceRequest {
     protected static final Log logger =
                             LogFactory.getLog(XenTask.class.getName());
 
+    // command times per VMM node; WorkspaceUtil keeps them per command
+    private static final String METRICS_GROUP = "command.vmm";
+
     protected WorkspaceRequestContext ctx;
 
     protected String name;
@@ -239,7 +243,13 @@ public abstract class XenTask implements WorkspaceRequest {
             // for the timebeing without using the fakeness infrastructure
             // for other commands...).
             if (this.cmd != null) {
-                WorkspaceUtil.runCommand(this.cmd, eventLog, traceLog, id);
+                final long start = System.nanoTime();
+                try {
+                    WorkspaceUtil.runCommand(this.cmd, eventLog, traceLog, id);
+                } finally {
+                    Metrics.histogram(METRICS_GROUP,
+                                      this.vmmName()).recordSince(start);
+                }
             }
 
             return null;
@@ -250,4 +260,12 @@ public abstract class XenTask implements WorkspaceRequest {
             return e;
         }
     }
+
+    private String vmmName() {
+        final VirtualMachine vm = this.ctx.getVm();
+        if (vm == null || vm.getNode() == null) {
+            return "unknown";
+        }
+        return vm.getNode();
+    }
 }
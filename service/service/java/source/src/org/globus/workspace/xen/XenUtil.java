@@ -131,6 +131,48 @@ public class XenUtil implements WorkspaceConstants {
         return cmd;
     }
 
+    /**
+     * The key workspace-control's image cache knows the VM's root image by.
+     * Only single partition VMs whose image repository knows checksums
+     * use the cache.
+     *
+     * @param vm vm
+     * @return checksum, null if the image is not cacheable
+     * @throws WorkspaceException repository lookup problem
+     */
+    public static String getCacheChecksum(VirtualMachine vm)
+            throws WorkspaceException {
+
+        if (vm == null) {
+            throw new IllegalArgumentException("vm is null");
+        }
+        if (nsTrans == null) {
+            return null;
+        }
+        final VirtualMachinePartition[] partitions = vm.getPartitions();
+        if (partitions == null || partitions.length != 1
+                || !partitions[0].isRootdisk()) {
+            return null;
+        }
+        return nsTrans.getTranslatedChecksum(partitions[0].getImage());
+    }
+
+    // the budget rides along with the lookups, workspace-control keeps it
+    static void addCacheArgs(ArrayList cmd,
+                             VirtualMachine vm,
+                             String md5sum) {
+        if (md5sum == null) {
+            return;
+        }
+        cmd.add("--cachecksum");
+        cmd.add(md5sum);
+        // 0 too: it clears a budget sent earlier
+        if (vm.getImageCacheMax() >= 0) {
+            cmd.add("--cachemax");
+            cmd.add(Integer.toString(vm.getImageCacheMax()));
+        }
+    }
+
     public static ArrayList constructPropagateCommand(VirtualMachine vm,
                                                       String notificationInfo)
             throws WorkspaceException {
@@ -159,24 +201,18 @@ public class XenUtil implements WorkspaceConstants {
         // file movement tools)
         final VirtualMachinePartition[] partitions = vm.getPartitions();
         if (partitions != null) {
-            String md5sum = null;
             cmd.add("--images");
             for (int i = 0; i < partitions.length; i++) {
                 if (partitions[i].isRootdisk()) {
                     String img = partitions[i].getImage();
                     if(nsTrans != null) {
-                        md5sum = nsTrans.getTranslatedChecksum(img);
                         img = nsTrans.translateExternaltoInternal(img, vm);                        
                     }
                     cmd.add("'"+img+"'");
                     break;
                 }
             }
-            if(partitions.length == 1 && md5sum != null)
-            {
-                cmd.add("--cachecksum");
-                cmd.add(md5sum);
-            }
+            addCacheArgs(cmd, vm, getCacheChecksum(vm));
         }     
 
         if (notificationInfo != null) {
@@ -377,6 +413,12 @@ public class XenUtil implements WorkspaceConstants {
         }
 
 
+        // the create command itself propagates: propagate-to-start and
+        // launches on a node believed to hold the image in its cache
+        final boolean propagating = vm.isPropagateRequired() &&
+                (notificationInfo != null || vm.isPropagateFromCache());
+        String cacheChecksum = null;
+
         // todo: generalize when propagating more than just rootdisk
         if (rootdisk != null) {
             
@@ -390,7 +432,7 @@ public class XenUtil implements WorkspaceConstants {
             // hitting the backend always cause the workspace-specific
             // secureimage directory to be consulted first
 
-            if (vm.isPropagateRequired() && notificationInfo == null) {
+            if (vm.isPropagateRequired() && !propagating) {
                 final String newURI = convertToAlreadyPropagated(rootImageURI, vm);
 
                 logger.debug("turned '" + rootImageURI + "' into '" +
@@ -398,6 +440,14 @@ public class XenUtil implements WorkspaceConstants {
 
                 // not handling readonly root partition yet
                 images.add(newURI);
+            } else if (propagating) {
+                // same source and cache key as a propagate-only command
+                if (nsTrans != null) {
+                    rootImageURI =
+                        nsTrans.translateExternaltoInternal(rootImageURI, vm);
+                }
+                cacheChecksum = getCacheChecksum(vm);
+                images.add(rootImageURI);
             } else {
                 // not handling readonly root partition yet
                 images.add(rootImageURI);
@@ -480,6 +530,8 @@ public class XenUtil implements WorkspaceConstants {
         cmd.add("--imagemounts");
         cmd.add("'" + imagemountString + "'");
 
+        addCacheArgs(cmd, vm, cacheChecksum);
+
         if (notificationInfo != null) {
             cmd.add("--notify");                                           
             cmd.add(notificationInfo);
@@ -167,7 +167,9 @@ groupid CHAR(36),
 id INT,
 min_duration INT NOT NULL,
 ind_physmem INT NOT NULL,
-assocs_needed VARCHAR(256)
+assocs_needed VARCHAR(256),
+ind_physcpu INT,
+ind_disk INT
 );
 
 CREATE TABLE default_scheduler_done_ensemb
@@ -177,6 +179,12 @@ coschedid CHAR(36) NOT NULL
 
 -- using REAL for memory attributs to allow
 -- real division operations in ORDER BY statements
+--
+-- cores and disk (MB of scratch space) are optional capacity dimensions,
+-- a NULL or non-positive maximum means the node is not limited by them
+--
+-- image_cache_max is the budget (MB) of the node's image cache, NULL or
+-- non-positive leaves it to the node's workspace-control configuration
 
 CREATE TABLE resourcepool_entries
 (
@@ -186,7 +194,12 @@ associations VARCHAR(512) NOT NULL,
 maximum_memory REAL,
 available_memory REAL,
 active SMALLINT NOT NULL DEFAULT 1,
-preemptable_memory REAL
+preemptable_memory REAL,
+maximum_cores INT,
+available_cores INT,
+maximum_disk INT,
+available_disk INT,
+image_cache_max INT
 );
 
 --
@@ -226,6 +239,16 @@ price DOUBLE NOT NULL,
 PRIMARY KEY(tstamp, price)
 );
 
+CREATE TABLE spot_price_rollups
+(
+resolution BIGINT NOT NULL,
+bucket BIGINT NOT NULL,
+min_price DOUBLE NOT NULL,
+max_price DOUBLE NOT NULL,
+last_price DOUBLE NOT NULL,
+PRIMARY KEY(resolution, bucket)
+);
+
 --
 -- Other:
 
@@ -0,0 +1,131 @@
+package org.globus.workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import edu.emory.mathcs.backport.java.util.concurrent.locks.Lock;
+import org.globus.workspace.metrics.Metrics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DefaultLockManagerTest {
+
+    @Test
+    public void testNumericStringKeysShareIntLock() throws Exception {
+        final DefaultLockManager locks = new DefaultLockManager();
+        final Lock byInt = locks.getLock(5);
+        byInt.lock();
+        try {
+            final AtomicBoolean got = new AtomicBoolean();
+            final Thread t = new Thread() {
+                public void run() {
+                    final Lock byString = locks.getLock("5");
+                    if (byString.tryLock()) {
+                        got.set(true);
+                        byString.unlock();
+                    }
+                }
+            };
+            t.start();
+            t.join();
+            assertFalse(got.get());
+        } finally {
+            byInt.unlock();
+        }
+    }
+
+    @Test
+    public void testUnusedLocksAreReclaimed() {
+        final DefaultLockManager locks = new DefaultLockManager();
+        final Lock lock = locks.getLock("destroy_7");
+        lock.lock();
+        lock.lock();
+        assertEquals(1, locks.getLiveLockCount());
+        lock.unlock();
+        assertEquals(1, locks.getLiveLockCount());
+        lock.unlock();
+        assertEquals(0, locks.getLiveLockCount());
+        assertTrue(lock.tryLock());
+        lock.unlock();
+        assertEquals(0, locks.getLiveLockCount());
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void testUnlockWithoutLock() {
+        new DefaultLockManager().getLock(3).unlock();
+    }
+
+    @Test
+    public void testContentionCounted() throws Exception {
+        final DefaultLockManager locks = new DefaultLockManager(true);
+        final long before = Metrics.counter("locks.contended").get();
+        final Lock lock = locks.getLock(9);
+        lock.lock();
+        final Thread t = new Thread() {
+            public void run() {
+                final Lock mine = locks.getLock(9);
+                mine.lock();
+                mine.unlock();
+            }
+        };
+        t.start();
+        while (Metrics.counter("locks.contended").get() == before) {
+            Thread.sleep(1);
+        }
+        lock.unlock();
+        t.join();
+        assertEquals(0, locks.getLiveLockCount());
+    }
+
+    @Test
+    public void testFairHandoffInOrder() throws Exception {
+        final DefaultLockManager locks = new DefaultLockManager(true);
+        final List<String> order =
+                Collections.synchronizedList(new ArrayList<String>());
+        final Lock lock = locks.getLock(11);
+        lock.lock();
+        final Thread t = new Thread() {
+            public void run() {
+                final Lock mine = locks.getLock(11);
+                mine.lock();
+                order.add("waiter");
+                mine.unlock();
+            }
+        };
+        t.start();
+        // parked in the lock's queue
+        while (t.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        lock.unlock();
+
+        // queues up behind the waiter instead of barging back in
+        lock.lock();
+        order.add("releaser");
+        lock.unlock();
+        t.join();
+
+        assertEquals(Arrays.asList("waiter", "releaser"), order);
+        assertEquals(0, locks.getLiveLockCount());
+    }
+
+    @Test
+    public void testIntKey() {
+        assertEquals(Integer.valueOf(42), DefaultLockManager.intKey("42"));
+        assertEquals(Integer.valueOf(-1), DefaultLockManager.intKey("-1"));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE),
+                     DefaultLockManager.intKey(String.valueOf(Integer.MIN_VALUE)));
+        assertNull(DefaultLockManager.intKey("042"));
+        assertNull(DefaultLockManager.intKey("-0"));
+        assertNull(DefaultLockManager.intKey("2147483648"));
+        assertNull(DefaultLockManager.intKey("group_4"));
+        assertNull(DefaultLockManager.intKey(""));
+    }
+}
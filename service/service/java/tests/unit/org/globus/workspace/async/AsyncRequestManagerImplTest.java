@@ -0,0 +1,91 @@
+package org.globus.workspace.async;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.globus.workspace.Lager;
+import org.globus.workspace.async.pricingmodel.PricingModel;
+import org.globus.workspace.persistence.PersistenceAdapter;
+import org.globus.workspace.service.WorkspaceGroupHome;
+import org.globus.workspace.service.WorkspaceHome;
+import org.globus.workspace.service.binding.vm.VirtualMachine;
+import org.junit.Test;
+
+public class AsyncRequestManagerImplTest {
+
+    private static final Double PRICE = 2.0;
+
+    private static final int MAX_VMS = 10;
+
+    @Test
+    public void testBackfillHeadroom() throws Exception {
+        final PersistenceAdapter db = persistence();
+        final AsyncRequestMap map = new AsyncRequestMap(db);
+        final AsyncRequestManagerImpl manager = new AsyncRequestManagerImpl(
+                db, new Lager(), stub(WorkspaceHome.class),
+                stub(WorkspaceGroupHome.class), 0.1, stub(PricingModel.class),
+                map, true, true) {
+            public synchronized Integer getMaxVMs() {
+                return MAX_VMS;
+            }
+        };
+
+        map.addOrReplace(new AsyncRequest("above", 3.0, getBindings(2)));
+        map.addOrReplace(new AsyncRequest("equal", PRICE, getBindings(1)));
+        map.addOrReplace(new AsyncRequest("below", 1.0, getBindings(3)));
+        final AsyncRequest cancelled =
+                new AsyncRequest("cancelled", 3.0, getBindings(4));
+        cancelled.setStatus(AsyncRequestStatus.CANCELLED);
+        map.addOrReplace(cancelled);
+        map.addOrReplace(new AsyncRequest("backfill", null, null,
+                getBindings(5), null, null, null));
+
+        // equal bid requests get what higher bids leave
+        assertEquals(Integer.valueOf(2), manager.getGreaterBidVMCount());
+        assertEquals(Integer.valueOf(8), manager.getAvailableVMs(
+                manager.getGreaterBidVMCount()));
+
+        // backfill gets what every alive spot request leaves, whatever its bid
+        assertEquals(Integer.valueOf(6), manager.getGreaterOrEqualBidVMCount());
+        assertEquals(Integer.valueOf(4), manager.getAvailableVMs(
+                manager.getGreaterOrEqualBidVMCount()));
+
+        // never below zero
+        map.addOrReplace(new AsyncRequest("flood", 0.5, getBindings(20)));
+        assertEquals(Integer.valueOf(0), manager.getAvailableVMs(
+                manager.getGreaterOrEqualBidVMCount()));
+    }
+
+    private static VirtualMachine[] getBindings(int number) {
+        return new VirtualMachine[number];
+    }
+
+    // the last spot price is PRICE, nothing else is stored
+    private static PersistenceAdapter persistence() {
+        return (PersistenceAdapter) Proxy.newProxyInstance(
+                PersistenceAdapter.class.getClassLoader(),
+                new Class[]{PersistenceAdapter.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getLastSpotPrice")) {
+                            return PRICE;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class[]{type},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                }));
+    }
+}
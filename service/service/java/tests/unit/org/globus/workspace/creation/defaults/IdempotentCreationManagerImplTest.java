@@ -0,0 +1,99 @@
+package org.globus.workspace.creation.defaults;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+import org.globus.workspace.creation.IdempotentReservation;
+import org.globus.workspace.persistence.PersistenceAdapter;
+import org.globus.workspace.service.InstanceResource;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IdempotentCreationManagerImplTest {
+
+    private int lookups;
+    private long now;
+    private IdempotentCreationManagerImpl manager;
+
+    @Before
+    public void setUp() {
+        final PersistenceAdapter persistence = (PersistenceAdapter)
+                Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class[]{PersistenceAdapter.class},
+                        new InvocationHandler() {
+                            public Object invoke(Object proxy, Method method,
+                                                 Object[] args) {
+                                if (method.getName().equals("getIdempotentReservation")) {
+                                    lookups++;
+                                }
+                                return null;
+                            }
+                        });
+        this.manager = new IdempotentCreationManagerImpl(persistence) {
+            long now() {
+                return now;
+            }
+        };
+        this.manager.setCacheTTLSeconds(60);
+    }
+
+    @Test
+    public void testLocks() {
+        assertSame(this.manager.getLock("alice", "t1"),
+                   this.manager.getLock("alice", "t1"));
+    }
+
+    @Test
+    public void testCachedReservation() throws Exception {
+        assertNull(this.manager.getReservation("alice", "t1"));
+        assertNull(this.manager.getReservation("alice", "t1"));
+        assertEquals(1, this.lookups);
+
+        this.manager.addReservation("alice", "t1",
+                Collections.singletonList(instance(7)));
+        final IdempotentReservation res =
+                this.manager.getReservation("alice", "t1");
+        assertEquals(7, res.getInstances().get(0).getID());
+        assertEquals(1, this.lookups);
+    }
+
+    @Test
+    public void testBulkExpiry() throws Exception {
+        this.manager.getReservation("alice", "t1");
+        this.manager.getReservation("alice", "t2");
+        assertEquals(2, this.manager.cacheSize());
+
+        this.now += 61 * 1000;
+        this.manager.getReservation("alice", "t3");
+        assertEquals(1, this.manager.cacheSize());
+
+        this.manager.getReservation("alice", "t1");
+        assertEquals(4, this.lookups);
+    }
+
+    private static InstanceResource instance(final int id) {
+        return (InstanceResource) Proxy.newProxyInstance(
+                IdempotentCreationManagerImplTest.class.getClassLoader(),
+                new Class[]{InstanceResource.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                                         Object[] args) {
+                        final String name = method.getName();
+                        if (name.equals("getID")) {
+                            return id;
+                        } else if (name.equals("getName")) {
+                            return "vm-" + id;
+                        } else if (name.equals("getLaunchIndex")) {
+                            return 0;
+                        }
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,54 @@
+package org.globus.workspace.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBoundsContainValue() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123456, 1L << 30};
+        for (long value : values) {
+            final int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value + " above its bucket",
+                       value <= LatencyHistogram.upperBound(bucket));
+            if (bucket > 0) {
+                assertTrue(value + " in too high a bucket",
+                           value > LatencyHistogram.upperBound(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testPercentilesWithinOneSixteenth() {
+        final LatencyHistogram h = new LatencyHistogram("test");
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 100);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(100000, h.getMax());
+        assertEquals(50050, h.getMean());
+
+        final long p50 = h.getPercentile(50);
+        assertTrue("p50 " + p50, p50 >= 50000 && p50 <= 50000 + 50000 / 16);
+        final long p99 = h.getPercentile(99);
+        assertTrue("p99 " + p99, p99 >= 99000 && p99 <= 99000 + 99000 / 16);
+        assertEquals(100000, h.getPercentile(100));
+    }
+
+    @Test
+    public void testResetAndEmpty() {
+        final LatencyHistogram h = new LatencyHistogram("test");
+        assertEquals(0, h.getPercentile(99));
+        h.record(-5);
+        h.record(7);
+        assertEquals(2, h.getCount());
+        assertEquals(7, h.getPercentile(100));
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getPercentile(50));
+    }
+}
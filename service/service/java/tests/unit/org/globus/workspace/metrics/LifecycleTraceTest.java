@@ -0,0 +1,39 @@
+package org.globus.workspace.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class LifecycleTraceTest {
+
+    @Test
+    public void testFilterById() {
+        final LifecycleTrace trace = new LifecycleTrace(16);
+        trace.record(1, LifecycleTrace.KIND_TARGET_STATE, 5);
+        trace.record(2, LifecycleTrace.KIND_STATE, 3);
+        trace.record(1, LifecycleTrace.KIND_STATE, 5);
+
+        final List<LifecycleTrace.Event> events = trace.events(1);
+        assertEquals(2, events.size());
+        assertEquals(LifecycleTrace.KIND_TARGET_STATE, events.get(0).getKind());
+        assertEquals(LifecycleTrace.KIND_STATE, events.get(1).getKind());
+        assertEquals(5, events.get(1).getState());
+        assertEquals(3, trace.events(-1).size());
+    }
+
+    @Test
+    public void testOldestOverwritten() {
+        final LifecycleTrace trace = new LifecycleTrace(5);
+        assertEquals(8, trace.getCapacity());
+        for (int i = 0; i < 20; i++) {
+            trace.record(i, LifecycleTrace.KIND_STATE, i);
+        }
+        final List<LifecycleTrace.Event> events = trace.events(-1);
+        assertEquals(8, events.size());
+        assertEquals(12, events.get(0).getId());
+        assertEquals(19, events.get(7).getId());
+        assertEquals(0, trace.events(3).size());
+    }
+}
@@ -0,0 +1,95 @@
+package org.globus.workspace.persistence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.globus.workspace.service.binding.vm.VirtualMachine;
+import org.junit.Test;
+import org.nimbustools.api.defaults.repr.vm.DefaultNIC;
+import org.nimbustools.api.repr.ReprFactory;
+import org.nimbustools.api.repr.vm.NIC;
+
+public class DataConvertTest {
+
+    private static final String ONE_NIC =
+            "eth0;public;A2:AA:BB:CC:DD:01;Bridged;AllocateAndConfigure;" +
+            "10.0.0.5;10.0.0.1;10.0.0.255;255.255.255.0;null;vm-5;" +
+            "null;null;null;null";
+
+    private static final String TWO_NICS = ONE_NIC + ";;" +
+            "eth1;private;A2:AA:BB:CC:DD:02;Bridged;AllocateAndConfigure;" +
+            "192.168.0.5;null;null;255.255.0.0;null;vm-5-priv;" +
+            "null;null;null;null";
+
+    private final DataConvert dataConvert = new DataConvert(nicFactory());
+
+    // only NICs are needed here
+    private static ReprFactory nicFactory() {
+        return (ReprFactory) Proxy.newProxyInstance(
+                ReprFactory.class.getClassLoader(),
+                new Class[]{ReprFactory.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                                         Object[] args) {
+                        if (method.getName().equals("_newNIC")) {
+                            return new DefaultNIC();
+                        }
+                        throw new UnsupportedOperationException(
+                                method.getName());
+                    }
+                });
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        final NIC[] nics = this.dataConvert.getNICs(TWO_NICS);
+        assertEquals(2, nics.length);
+        assertEquals("eth0", nics[0].getName());
+        assertEquals("public", nics[0].getNetworkName());
+        assertEquals("10.0.0.5", nics[0].getIpAddress());
+        assertEquals("vm-5", nics[0].getHostname());
+        assertEquals("private", nics[1].getNetworkName());
+        assertNull(nics[1].getGateway());
+        assertEquals("255.255.0.0", nics[1].getNetmask());
+
+        assertNull(this.dataConvert.getNICs("NONE"));
+    }
+
+    @Test
+    public void testParsedOncePerNetwork() throws Exception {
+        final VirtualMachine vm = new VirtualMachine();
+        vm.setNetwork(ONE_NIC);
+
+        final NIC[] first = this.dataConvert.getNICs(vm);
+        final NIC[] second = this.dataConvert.getNICs(vm);
+        assertNotSame(first, second);
+        assertSame(first[0], second[0]);
+
+        vm.setNetwork(TWO_NICS);
+        final NIC[] third = this.dataConvert.getNICs(vm);
+        assertEquals(2, third.length);
+        assertNotSame(first[0], third[0]);
+
+        vm.setNetwork("NONE");
+        assertNull(this.dataConvert.getNICs(vm));
+    }
+
+    @Test
+    public void testSplitMatchesStringSplit() {
+        final String[] inputs = {"", "a", "a;b", "a;;b", ";a", "a;", "a;;",
+                                 ";;", ";;;", "a;;;b", "a;b;;c;d;;", ONE_NIC};
+        for (String input : inputs) {
+            assertArrayEquals(input, input.split(";"),
+                              DataConvert.split(input, ";"));
+            assertArrayEquals(input, input.split(";;"),
+                              DataConvert.split(input, ";;"));
+        }
+    }
+}
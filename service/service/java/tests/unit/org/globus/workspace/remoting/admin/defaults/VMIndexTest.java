@@ -0,0 +1,50 @@
+package org.globus.workspace.remoting.admin.defaults;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class VMIndexTest {
+
+    private static VMIndex index() {
+        return new VMIndex.Builder()
+                .add(7, "vmm2", "/CN=bob", "Running")
+                .add(3, "vmm1", "/CN=alice", "Running")
+                .add(5, "vmm1", "/CN=bob", "Propagated")
+                .add(9, null, "/CN=carol", "Unpropagated")
+                .add(1, "vmm1", "/CN=alice", "Running")
+                .build();
+    }
+
+    @Test
+    public void testIndexesAreSorted() {
+        final VMIndex index = index();
+        assertEquals(5, index.size());
+        assertArrayEquals(new int[]{1, 3, 5, 7, 9}, index.all());
+        assertArrayEquals(new int[]{1, 3, 5}, index.byHost("vmm1"));
+        assertArrayEquals(new int[]{5, 7}, index.byDN("/CN=bob"));
+        assertArrayEquals(new int[]{1, 3, 7}, index.byState("running"));
+        assertArrayEquals(new int[0], index.byHost("nohost"));
+        assertEquals(2, index.hosts().size());
+    }
+
+    @Test
+    public void testGroupUnion() {
+        final VMIndex index = index();
+        assertArrayEquals(new int[]{1, 3, 5, 7},
+                index.byDNs(new String[]{"/CN=bob", "/CN=alice", "/CN=nobody"}));
+        assertArrayEquals(new int[0], index.byDNs(null));
+    }
+
+    @Test
+    public void testPageByCursor() {
+        final int[] ids = {1, 3, 5, 7, 9};
+        assertArrayEquals(new int[]{1, 3}, VMIndex.page(ids, 0, 2));
+        assertArrayEquals(new int[]{5, 7}, VMIndex.page(ids, 3, 2));
+        // the cursor VM went away in between
+        assertArrayEquals(new int[]{5, 7}, VMIndex.page(ids, 4, 2));
+        assertArrayEquals(new int[]{9}, VMIndex.page(ids, 7, 2));
+        assertArrayEquals(new int[0], VMIndex.page(ids, 9, 2));
+    }
+}
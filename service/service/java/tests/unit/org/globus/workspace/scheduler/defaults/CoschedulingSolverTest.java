@@ -0,0 +1,163 @@
+package org.globus.workspace.scheduler.defaults;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.globus.workspace.scheduler.defaults.placement.PlacementStrategies;
+import org.globus.workspace.scheduler.defaults.placement.PlacementStrategy;
+import org.junit.Test;
+import org.nimbustools.api.services.rm.ImpossibleAmountOfMemoryException;
+import org.nimbustools.api.services.rm.NotEnoughMemoryException;
+import org.nimbustools.api.services.rm.ResourceRequestDeniedException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CoschedulingSolverTest {
+
+    // always prefers node "a", so the solver has to undo it
+    private static final PlacementStrategy PREFER_A = new PlacementStrategy() {
+        public String getName() {
+            return "prefer-a";
+        }
+        public ResourcepoolEntry choose(List<ResourcepoolEntry> candidates,
+                                        int mem, int cores, int disk) {
+            for (ResourcepoolEntry entry : candidates) {
+                if (entry.getHostname().equals("a")) {
+                    return entry;
+                }
+            }
+            return candidates.get(0);
+        }
+    };
+
+    private static NodeRequest request(int[] ids, int mem, String[] nets) {
+        return new NodeRequest(ids, mem, 1, 0, 60, nets, null, null, "/CN=test");
+    }
+
+    private static List<ResourcepoolEntry> twoNodes() {
+        final List<ResourcepoolEntry> nodes = new ArrayList<ResourcepoolEntry>();
+        nodes.add(new ResourcepoolEntry("default", "a", 3072, 3072, 0, "private,public", true));
+        nodes.add(new ResourcepoolEntry("default", "b", 3072, 3072, 0, "public", true));
+        return nodes;
+    }
+
+    private static NodeRequest[] needsBacktrack() {
+        return new NodeRequest[] {
+                request(new int[]{2}, 2048, new String[]{"private"}),
+                request(new int[]{1}, 3072, new String[]{"public"}),
+        };
+    }
+
+    @Test
+    public void testBacktracksOutOfBadChoice() throws Exception {
+        final List<ResourcepoolEntry> nodes = twoNodes();
+        final CoschedulingSolver.Placement placement =
+                new CoschedulingSolver(PREFER_A, 10, false).solve(needsBacktrack(), nodes);
+
+        // in order of the requests, not of placement
+        assertEquals("a", placement.getHostnames()[0]);
+        assertEquals("b", placement.getHostnames()[1]);
+        assertTrue(placement.getBacktracks() > 0);
+        assertEquals(2, placement.getChanged().size());
+        assertEquals(1024, nodes.get(0).getMemCurrent());
+        assertEquals(0, nodes.get(1).getMemCurrent());
+    }
+
+    @Test
+    public void testBacktrackLimit() throws Exception {
+        final List<ResourcepoolEntry> nodes = twoNodes();
+        try {
+            new CoschedulingSolver(PREFER_A, 0, false).solve(needsBacktrack(), nodes);
+            fail("placed without backtracking");
+        } catch (NotEnoughMemoryException e) {
+            // expected
+        }
+        // nothing left deducted
+        assertEquals(3072, nodes.get(0).getMemCurrent());
+        assertEquals(3072, nodes.get(1).getMemCurrent());
+    }
+
+    @Test
+    public void testAggregateShortage() throws Exception {
+        final NodeRequest[] requests = {
+                request(new int[]{1, 2, 3}, 2048, null),
+        };
+        try {
+            new CoschedulingSolver(PREFER_A, 10, false).solve(requests, twoNodes());
+            fail("three 2048 MB VMs do not fit on two 3072 MB nodes");
+        } catch (NotEnoughMemoryException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Only room for 2 of 3"));
+        }
+    }
+
+    @Test
+    public void testImpossibleAndUnknownPool() throws Exception {
+        try {
+            new CoschedulingSolver(PREFER_A, 10, false).solve(
+                    new NodeRequest[]{request(new int[]{1}, 4096, null)}, twoNodes());
+            fail("larger than any node");
+        } catch (ImpossibleAmountOfMemoryException e) {
+            // expected
+        }
+
+        final NodeRequest elsewhere = new NodeRequest(new int[]{1}, 1024, 1, 0, 60,
+                null, "nosuchpool", null, "/CN=test");
+        try {
+            new CoschedulingSolver(PREFER_A, 10, false).solve(
+                    new NodeRequest[]{elsewhere}, twoNodes());
+            fail("unknown pool");
+        } catch (NotEnoughMemoryException e) {
+            fail("unknown pool is not a capacity problem");
+        } catch (ResourceRequestDeniedException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLargeEnsembleFillsCluster() throws Exception {
+        final List<ResourcepoolEntry> nodes = new ArrayList<ResourcepoolEntry>();
+        for (int i = 0; i < 256; i++) {
+            nodes.add(new ResourcepoolEntry("default", "node" + i, 8192, 8192, 0, "*", true,
+                                            8, 8, 0, 0));
+        }
+        // about 70% of the cluster is already in use, unevenly
+        int slots = 0;
+        int roomy = 0;
+        for (int i = 0; i < 256; i++) {
+            final int used = i % 10 < 7 ? 6144 : 4096;
+            nodes.get(i).addMemCurrent(-used);
+            nodes.get(i).addCoresCurrent(-used / 1024);
+            slots += (8192 - used) / 2048;
+            if (used == 4096) {
+                roomy++;
+            }
+        }
+
+        // exactly what is left: 4 GB VMs on half the roomy nodes, the
+        // rest in 2 GB VMs, no room to spare anywhere
+        final int[] big = new int[roomy / 2];
+        final int[] small = new int[slots - 2 * big.length];
+        for (int i = 0; i < big.length; i++) {
+            big[i] = i;
+        }
+        for (int i = 0; i < small.length; i++) {
+            small[i] = 1000 + i;
+        }
+        final NodeRequest[] requests = {
+                request(small, 2048, null),
+                request(big, 4096, null),
+        };
+
+        final CoschedulingSolver solver = new CoschedulingSolver(
+                PlacementStrategies.create(PlacementStrategies.BEST_FIT),
+                CoschedulingSolver.DEFAULT_BACKTRACK_LIMIT, false);
+        final CoschedulingSolver.Placement placement = solver.solve(requests, nodes);
+
+        assertEquals(small.length + big.length, placement.getHostnames().length);
+        for (ResourcepoolEntry node : nodes) {
+            assertEquals(node.getHostname(), 0, node.getMemCurrent());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.scheduler.defaults;
+
+import org.globus.workspace.scheduler.defaults.placement.ImageAffinityPlacement;
+import org.globus.workspace.scheduler.defaults.placement.PlacementStrategies;
+import org.globus.workspace.scheduler.defaults.placement.PlacementStrategy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ImageCacheRegistryTest {
+
+    @Test
+    public void testCachedAndEvicted() {
+        final ImageCacheRegistry registry = new ImageCacheRegistry();
+        registry.cached("vmm1", "abc");
+        assertTrue(registry.isCached("vmm1", "abc"));
+        assertFalse(registry.isCached("vmm2", "abc"));
+        assertFalse(registry.isCached("vmm1", null));
+
+        assertTrue(registry.evicted("vmm1", "abc"));
+        assertFalse(registry.evicted("vmm1", "abc"));
+        assertFalse(registry.isCached("vmm1", "abc"));
+
+        registry.cached("vmm1", "abc");
+        registry.forgetNode("vmm1");
+        assertEquals(0, registry.getCachedImages("vmm1").length);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedForgotten() {
+        final ImageCacheRegistry registry = new ImageCacheRegistry();
+        registry.setMaxImagesPerNode(2);
+        registry.cached("vmm1", "a");
+        registry.cached("vmm1", "b");
+        registry.cached("vmm1", "a");
+        registry.cached("vmm1", "c");
+
+        assertArrayEquals(new String[]{"a", "c"},
+                          registry.getCachedImages("vmm1"));
+    }
+
+    @Test
+    public void testBudget() {
+        final ImageCacheRegistry registry = new ImageCacheRegistry();
+        assertEquals(ImageCacheRegistry.NO_BUDGET, registry.getBudget("vmm1"));
+        registry.setBudget("vmm1", 20480);
+        assertEquals(20480, registry.getBudget("vmm1"));
+
+        // cleared, still sent so the node drops the old one
+        registry.setBudget("vmm1", 0);
+        assertEquals(0, registry.getBudget("vmm1"));
+        registry.setBudget("vmm1", -5);
+        assertEquals(0, registry.getBudget("vmm1"));
+
+        registry.setBudget("vmm1", 1024);
+        registry.forgetNode("vmm1");
+        assertEquals(ImageCacheRegistry.NO_BUDGET, registry.getBudget("vmm1"));
+    }
+
+    @Test
+    public void testAffinityPlacement() {
+        final List<ResourcepoolEntry> nodes = new ArrayList<ResourcepoolEntry>();
+        nodes.add(new ResourcepoolEntry("p", "cold", 4096, 1024, 0, "*", true));
+        nodes.add(new ResourcepoolEntry("p", "warm", 4096, 4096, 0, "*", true));
+
+        final ImageCacheRegistry registry = new ImageCacheRegistry();
+        final PlacementStrategy bestFit =
+                PlacementStrategies.create(PlacementStrategies.BEST_FIT);
+
+        assertSame(bestFit, ImageAffinityPlacement.wrap(bestFit, registry, null, 0.25));
+        assertSame(bestFit, ImageAffinityPlacement.wrap(bestFit, null, "abc", 0.25));
+        assertSame(bestFit, ImageAffinityPlacement.wrap(bestFit, registry, "abc", -1));
+
+        final PlacementStrategy affinity =
+                ImageAffinityPlacement.wrap(bestFit, registry, "abc", 0.25);
+        assertEquals("cold", affinity.choose(nodes, 1024, 1, 0).getHostname());
+
+        registry.cached("warm", "abc");
+        assertEquals("warm", affinity.choose(nodes, 1024, 1, 0).getHostname());
+        assertEquals("cold", bestFit.choose(nodes, 1024, 1, 0).getHostname());
+    }
+
+    @Test
+    public void testAffinityMargin() {
+        // sorted by free memory, as the slot manager hands them over; no
+        // two nodes are equally used, so no random tie-break is involved
+        final ResourcepoolEntry busy =
+                new ResourcepoolEntry("p", "busy", 4096, 512, 0, "*", true);
+        final ResourcepoolEntry half =
+                new ResourcepoolEntry("p", "half", 4096, 2048, 0, "*", true);
+        final ResourcepoolEntry idle =
+                new ResourcepoolEntry("p", "idle", 4096, 4096, 0, "*", true);
+        final List<ResourcepoolEntry> nodes =
+                Arrays.asList(busy, half, idle);
+
+        final ImageCacheRegistry registry = new ImageCacheRegistry();
+        registry.cached("busy", "abc");
+        final PlacementStrategy roundRobin =
+                PlacementStrategies.create(PlacementStrategies.ROUND_ROBIN);
+
+        // busy is 87% used against 0% on the spread out choice
+        assertEquals("idle", ImageAffinityPlacement.wrap(roundRobin, registry,
+                "abc", 0.25).choose(nodes, 256, 1, 0).getHostname());
+        assertEquals("busy", ImageAffinityPlacement.wrap(roundRobin, registry,
+                "abc", 1).choose(nodes, 256, 1, 0).getHostname());
+
+        // half is 50% used, within the margin of idle's 25%
+        registry.cached("half", "abc");
+        idle.setMemCurrent(3072);
+        assertEquals("half", ImageAffinityPlacement.wrap(roundRobin, registry,
+                "abc", 0.25).choose(nodes, 256, 1, 0).getHostname());
+
+        // the caller's list is left as it was
+        assertEquals(Arrays.asList(busy, half, idle), nodes);
+    }
+}
@@ -44,4 +44,17 @@ public class ResourcepoolEntryTest {
         ResourcepoolEntry re = new ResourcepoolEntry("aResourcePool", "ahostname", 4096, 4097, 0, "*", true);
         re.percentEmpty();
     }
+
+    @Test
+    public void testFits() {
+        // cores and disk not tracked, only memory counts
+        ResourcepoolEntry re = new ResourcepoolEntry("aResourcePool", "ahostname", 4096, 2048, 0, "*", true);
+        assertEquals(re.fits(2048, 64, 1000000), true);
+        assertEquals(re.fits(2049, 1, 0), false);
+
+        re = new ResourcepoolEntry("aResourcePool", "ahostname", 4096, 2048, 0, "*", true, 8, 2, 10240, 0);
+        assertEquals(re.fits(1024, 2, 0), true);
+        assertEquals(re.fits(1024, 3, 0), false);
+        assertEquals(re.fits(1024, 1, 1), false);
+    }
 }
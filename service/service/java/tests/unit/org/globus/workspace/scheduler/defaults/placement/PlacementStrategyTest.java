@@ -0,0 +1,84 @@
+package org.globus.workspace.scheduler.defaults.placement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.globus.workspace.scheduler.defaults.ResourcepoolEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PlacementStrategyTest {
+
+    // equal free memory, one node has cores left and the other disk
+    private static List<ResourcepoolEntry> nodes() {
+        final List<ResourcepoolEntry> nodes = new ArrayList<ResourcepoolEntry>();
+        nodes.add(new ResourcepoolEntry("p", "diskrich", 16384, 8192, 0, "*", true,
+                                        16, 2, 102400, 90000));
+        nodes.add(new ResourcepoolEntry("p", "cpurich", 16384, 8192, 0, "*", true,
+                                        16, 14, 102400, 20000));
+        return nodes;
+    }
+
+    @Test
+    public void testVectorStrategiesMatchShape() {
+        for (String name : new String[]{PlacementStrategies.DOT_PRODUCT,
+                                        PlacementStrategies.BEST_FIT}) {
+            final PlacementStrategy strategy = PlacementStrategies.create(name);
+            assertEquals(name, strategy.getName());
+            assertEquals(name, "cpurich",
+                         strategy.choose(nodes(), 2048, 2, 0).getHostname());
+            assertEquals(name, "diskrich",
+                         strategy.choose(nodes(), 2048, 1, 15000).getHostname());
+        }
+    }
+
+    @Test
+    public void testMemoryOnlyNodes() {
+        final List<ResourcepoolEntry> nodes = new ArrayList<ResourcepoolEntry>();
+        nodes.add(new ResourcepoolEntry("p", "full", 4096, 1024, 0, "*", true));
+        nodes.add(new ResourcepoolEntry("p", "empty", 4096, 4096, 0, "*", true));
+        final PlacementStrategy bestFit =
+                PlacementStrategies.create(PlacementStrategies.BEST_FIT);
+        assertEquals("full", bestFit.choose(nodes, 1024, 1, 0).getHostname());
+    }
+
+    @Test
+    public void testCreate() {
+        for (String name : PlacementStrategies.NAMES) {
+            assertEquals(name, PlacementStrategies.create(name).getName());
+        }
+        assertEquals(PlacementStrategies.BEST_FIT,
+                     PlacementStrategies.create(BestFitPlacement.class.getName()).getName());
+        try {
+            PlacementStrategies.create("first-fit");
+            fail("unknown strategy accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSimulatedDensity() {
+        final PlacementSimulator sim = new PlacementSimulator(
+                32, 65536, 32, 512000, PlacementSimulator.DEFAULT_MIX);
+
+        final PlacementSimulator.Result roundRobin =
+                sim.run(PlacementStrategies.create(PlacementStrategies.ROUND_ROBIN), 1);
+        final PlacementSimulator.Result dotProduct =
+                sim.run(PlacementStrategies.create(PlacementStrategies.DOT_PRODUCT), 1);
+        final PlacementSimulator.Result bestFit =
+                sim.run(PlacementStrategies.create(PlacementStrategies.BEST_FIT), 1);
+
+        assertTrue(dotProduct.toString(),
+                   dotProduct.getPlaced() > roundRobin.getPlaced());
+        assertTrue(dotProduct.toString(),
+                   dotProduct.getMemDensity() > roundRobin.getMemDensity());
+        assertTrue(dotProduct.toString(),
+                   dotProduct.getCoresStranded() <= roundRobin.getCoresStranded());
+        assertTrue(bestFit.toString(), bestFit.getPlaced() > 0);
+        assertTrue(bestFit.getRejected() > 0);
+    }
+}
@@ -0,0 +1,115 @@
+package org.globus.workspace.service.impls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.globus.workspace.service.InstanceResource;
+import org.junit.Test;
+
+public class InstanceStoreTest {
+
+    private static final int VMS = 100000;
+
+    @Test
+    public void testPutGetRemove() {
+        InstanceStore store = new InstanceStore(4);
+        InstanceResource one = resource();
+        InstanceResource two = resource();
+
+        assertNull(store.get(1));
+        assertNull(store.put(1, one));
+        assertSame(one, store.get(1));
+        assertSame(one, store.putIfAbsent(1, two));
+        assertSame(one, store.get(1));
+        assertSame(one, store.put(1, two));
+        assertSame(two, store.get(1));
+        assertEquals(1, store.size());
+
+        assertSame(two, store.remove(1));
+        assertNull(store.remove(1));
+        assertNull(store.get(1));
+        assertEquals(0, store.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroIDRejected() {
+        new InstanceStore().get(0);
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        InstanceStore store = new InstanceStore(2);
+        Map<Integer, InstanceResource> reference = new HashMap<Integer, InstanceResource>();
+        Random random = new Random(33);
+
+        for (int i = 0; i < 200000; i++) {
+            int id = 1 + random.nextInt(5000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    InstanceResource resource = resource();
+                    assertSame(reference.put(id, resource), store.put(id, resource));
+                    break;
+                case 1:
+                    assertSame(reference.remove(id), store.remove(id));
+                    break;
+                default:
+                    assertSame(reference.get(id), store.get(id));
+            }
+        }
+        assertEquals(reference.size(), store.size());
+        for (Map.Entry<Integer, InstanceResource> entry : reference.entrySet()) {
+            assertSame(entry.getValue(), store.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testNoEviction() {
+        InstanceStore store = new InstanceStore();
+        InstanceResource resource = resource();
+        for (int id = 1; id <= 20000; id++) {
+            store.put(id, resource);
+        }
+        assertEquals(20000, store.size());
+        for (int id = 1; id <= 20000; id++) {
+            assertSame(resource, store.get(id));
+        }
+    }
+
+    @Test
+    public void testCapacity100k() {
+        InstanceResource resource = resource();
+        InstanceStore store = new InstanceStore();
+        for (int id = 1; id <= VMS; id++) {
+            store.put(id, resource);
+        }
+        assertEquals(VMS, store.size());
+        assertTrue(store.capacity() >= VMS);
+        assertTrue(store.capacity() <= 4 * VMS);
+    }
+
+    private static InstanceResource resource() {
+        return (InstanceResource) Proxy.newProxyInstance(
+                InstanceResource.class.getClassLoader(),
+                new Class[]{InstanceResource.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("equals")) {
+                            return proxy == args[0];
+                        }
+                        if (method.getName().equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,168 @@
+package org.globus.workspace.service.impls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.emory.mathcs.backport.java.util.concurrent.CountDownLatch;
+import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
+import edu.emory.mathcs.backport.java.util.concurrent.Executors;
+import edu.emory.mathcs.backport.java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nimbustools.api.repr.vm.State;
+import org.nimbustools.api.services.rm.StateChangeCallback;
+
+public class StateNotificationBusTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testSlowListenerGetsLatestStatePerResource() throws Exception {
+        final StateNotificationBus bus = new StateNotificationBus(this.executor, 100);
+        final Recorder slow = new Recorder(true);
+
+        publish(bus, 1, "Unpropagated", slow);
+        assertTrue(slow.entered.await(10, TimeUnit.SECONDS));
+
+        // the listener is busy with the first call, these queue up
+        publish(bus, 1, "Propagated", slow);
+        publish(bus, 2, "Propagated", slow);
+        publish(bus, 1, "Running", slow);
+        publish(bus, 1, "Cancelled", slow);
+        assertEquals(2, bus.getCoalescedCount());
+        assertEquals(2, bus.getPendingCount());
+
+        slow.release.countDown();
+        slow.await(3);
+
+        assertEquals("[1 Unpropagated, 1 Cancelled, 2 Propagated]",
+                     slow.calls().toString());
+        assertEquals(3, bus.getDeliveredCount());
+        assertEquals(0, bus.getPendingCount());
+    }
+
+    @Test
+    public void testSlowListenerDoesNotHoldUpOthers() throws Exception {
+        final StateNotificationBus bus = new StateNotificationBus(this.executor, 100);
+        final Recorder slow = new Recorder(true);
+        final Recorder fast = new Recorder(false);
+
+        publish(bus, 1, "Propagated", slow);
+        assertTrue(slow.entered.await(10, TimeUnit.SECONDS));
+        publish(bus, 1, "Running", fast);
+
+        fast.await(1);
+        assertEquals("[1 Running]", fast.calls().toString());
+        slow.release.countDown();
+        slow.await(1);
+    }
+
+    @Test
+    public void testFullQueueDrops() throws Exception {
+        final StateNotificationBus bus = new StateNotificationBus(this.executor, 1);
+        bus.setFullWaitMs(0);
+        final Recorder slow = new Recorder(true);
+
+        publish(bus, 1, "Propagated", slow);
+        assertTrue(slow.entered.await(10, TimeUnit.SECONDS));
+        publish(bus, 2, "Propagated", slow);
+        publish(bus, 3, "Propagated", slow);
+        assertEquals(1, bus.getDroppedCount());
+
+        slow.release.countDown();
+        slow.await(2);
+        assertEquals("[1 Propagated, 2 Propagated]", slow.calls().toString());
+    }
+
+    @Test
+    public void testListenerErrorDoesNotStopDelivery() throws Exception {
+        final StateNotificationBus bus = new StateNotificationBus(this.executor, 100);
+        final Recorder recorder = new Recorder(false);
+        recorder.failOn = "1 Propagated";
+
+        publish(bus, 1, "Propagated", recorder);
+        recorder.await(1);
+        publish(bus, 1, "Running", recorder);
+        recorder.await(2);
+        assertEquals("[1 Propagated, 1 Running]", recorder.calls().toString());
+    }
+
+    private static void publish(StateNotificationBus bus, int id,
+                                String name, StateChangeCallback listener) {
+        // the ID is not part of the State, carry it in the name
+        bus.publish(id, state(id + " " + name), listener);
+    }
+
+    private static State state(final String name) {
+        return new State() {
+            public String getState() {
+                return name;
+            }
+            public Throwable getProblem() {
+                return null;
+            }
+        };
+    }
+
+    private static class Recorder implements StateChangeCallback {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        private final boolean blockFirst;
+        private final List<String> calls = new ArrayList<String>();
+        String failOn;
+
+        Recorder(boolean blockFirst) {
+            this.blockFirst = blockFirst;
+        }
+
+        public void newState(State state) {
+            final boolean first;
+            synchronized (this) {
+                first = this.calls.isEmpty();
+                this.calls.add(state.getState());
+                this.notifyAll();
+            }
+            if (first && this.blockFirst) {
+                this.entered.countDown();
+                try {
+                    this.release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (state.getState().equals(this.failOn)) {
+                throw new RuntimeException("listener failure");
+            }
+        }
+
+        synchronized List<String> calls() {
+            return new ArrayList<String>(this.calls);
+        }
+
+        synchronized void await(int count) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (this.calls.size() < count) {
+                final long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    break;
+                }
+                this.wait(left);
+            }
+        }
+    }
+}
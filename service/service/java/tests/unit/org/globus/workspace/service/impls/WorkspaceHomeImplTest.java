@@ -0,0 +1,104 @@
+package org.globus.workspace.service.impls;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import commonj.timers.TimerManager;
+import org.globus.workspace.DefaultLockManager;
+import org.globus.workspace.Lager;
+import org.globus.workspace.LockManager;
+import org.globus.workspace.TempLocator;
+import org.globus.workspace.WorkspaceConstants;
+import org.globus.workspace.persistence.DataConvert;
+import org.globus.workspace.persistence.PersistenceAdapter;
+import org.globus.workspace.scheduler.Scheduler;
+import org.globus.workspace.service.InstanceResource;
+import org.globus.workspace.service.binding.BindNetwork;
+import org.globus.workspace.service.binding.BindingAdapter;
+import org.globus.workspace.service.binding.GlobalPolicies;
+import org.globus.workspace.service.impls.async.RequestFactory;
+import org.junit.Test;
+import org.nimbustools.api.repr.ReprFactory;
+import org.nimbustools.api.services.rm.DoesNotExistException;
+
+public class WorkspaceHomeImplTest {
+
+    @Test
+    public void testAsyncDestroyLeavesHome() throws Exception {
+        final Lager lager = new Lager();
+        final LockManager locks = new DefaultLockManager();
+        final DataConvert convert = new DataConvert(stub(ReprFactory.class));
+        final PersistenceAdapter db = persistence();
+        final StateTransition transition = new StateTransition(
+                stub(RequestFactory.class), convert, stub(GlobalPolicies.class),
+                stub(TempLocator.class), lager);
+
+        final WorkspaceHomeImpl home =
+                new WorkspaceHomeImpl(db, locks, convert, lager) {
+            protected InstanceResource newEmptyResource() {
+                return new OneXenVM(db, stub(BindingAdapter.class),
+                        stub(GlobalPolicies.class), convert, lager,
+                        stub(BindNetwork.class), stub(Scheduler.class), locks,
+                        transition, stub(TimerManager.class));
+            }
+        };
+
+        final InstanceResource resource = home.newInstance(7);
+        resource.setID(7);
+        assertSame(resource, home.find("7"));
+
+        // what a finished destroy task does, without going through the home
+        resource.setState(WorkspaceConstants.STATE_DESTROY_SUCCEEDED, null);
+
+        try {
+            home.find("7");
+            fail("destroyed workspace still found");
+        } catch (DoesNotExistException e) {
+            // expected, it is gone from the database as well
+        }
+    }
+
+    // nothing is in the database
+    private static PersistenceAdapter persistence() {
+        return (PersistenceAdapter) Proxy.newProxyInstance(
+                PersistenceAdapter.class.getClassLoader(),
+                new Class[]{PersistenceAdapter.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        if (method.getName().startsWith("load")) {
+                            throw new DoesNotExistException("not in db");
+                        }
+                        return empty(method.getReturnType());
+                    }
+                });
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class[]{type},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return empty(method.getReturnType());
+                    }
+                }));
+    }
+
+    private static Object empty(Class<?> type) {
+        if (type == Boolean.TYPE) {
+            return Boolean.FALSE;
+        } else if (type == Integer.TYPE) {
+            return 0;
+        } else if (type == Long.TYPE) {
+            return 0L;
+        } else if (type == Double.TYPE) {
+            return 0.0;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,195 @@
+package org.globus.workspace.service.impls.site;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.globus.workspace.Lager;
+import org.globus.workspace.persistence.PersistenceAdapter;
+import org.globus.workspace.service.InstanceResource;
+import org.globus.workspace.service.WorkspaceHome;
+import org.globus.workspace.service.binding.vm.VirtualMachine;
+import org.globus.workspace.service.binding.vm.VirtualMachinePartition;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+public class LantorrentSessionsTest {
+
+    @Test
+    public void testRequestID() {
+        assertEquals("lantorrent://repo:22/images/vm.img?rid=abc",
+                     LantorrentSessions.withRequestID(
+                             "lantorrent://repo:22/images/vm.img", "abc"));
+        assertEquals("lantorrent://repo/vm.img?x=1&rid=abc",
+                     LantorrentSessions.withRequestID(
+                             "lantorrent://repo/vm.img?x=1", "abc"));
+    }
+
+    @Test
+    public void testSourcePath() {
+        assertEquals("/images/vm.img",
+                     LantorrentSessions.sourcePath(
+                             "lantorrent://user@repo:22/images/vm.img"));
+        assertEquals("/vm.img",
+                     LantorrentSessions.sourcePath("lantorrent://repo/vm.img?x=1"));
+        assertNull(LantorrentSessions.sourcePath("lantorrent://repo"));
+    }
+
+    @Test
+    public void testUnquote() {
+        assertEquals("lantorrent://repo/vm.img",
+                     LantorrentSessions.unquote("'lantorrent://repo/vm.img'"));
+        assertEquals("x", LantorrentSessions.unquote("x"));
+    }
+
+    // a session being submitted must not hold up other launches' sessions
+    @Test(timeout = 20000)
+    public void testSubmitOutsideLock() throws Exception {
+        final File dir = File.createTempFile("ltsession", "");
+        dir.delete();
+        dir.mkdir();
+        final File started = new File(dir, "started");
+        final File gate = new File(dir, "gate");
+        final File script = new File(dir, "lt-session");
+        final FileWriter w = new FileWriter(script);
+        w.write("#!/bin/sh\ncat > /dev/null\ncase \"$*\" in *slow*)\n" +
+                "  touch " + started + "\n" +
+                "  while [ ! -e " + gate + " ]; do sleep 0.05; done ;;\n" +
+                "esac\n");
+        w.close();
+        script.setExecutable(true);
+
+        final Map<Integer,InstanceResource> resources =
+                new HashMap<Integer,InstanceResource>();
+        resources.put(1, resource("a", vm(1, "lantorrent://repo/slow.img")));
+        resources.put(2, resource("a", vm(2, "lantorrent://repo/slow.img")));
+        resources.put(3, resource("b", vm(3, "lantorrent://repo/fast.img")));
+        resources.put(4, resource("b", vm(4, "lantorrent://repo/fast.img")));
+
+        final LantorrentSessions sessions = new LantorrentSessions(
+                persistence(), home(resources), new Lager(),
+                script.getAbsolutePath(), 0);
+
+        final ArrayList cmd1 = command("lantorrent://repo/slow.img");
+        final ArrayList cmd2 = command("lantorrent://repo/slow.img");
+        final Thread t1 = propagate(sessions, resources.get(1), cmd1);
+        while (!started.exists()) {
+            Thread.sleep(10);
+        }
+        final Thread t2 = propagate(sessions, resources.get(2), cmd2);
+
+        // group a's lt-session is still running
+        final ArrayList cmd3 = command("lantorrent://repo/fast.img");
+        sessions.addRequestID(resources.get(3).getVM(), cmd3);
+        assertTrue(cmd3.get(1).toString().contains("?rid="));
+        assertTrue(t2.isAlive());
+
+        gate.createNewFile();
+        t1.join();
+        t2.join();
+        assertTrue(cmd1.get(1).toString().contains("?rid="));
+        assertTrue(cmd2.get(1).toString().contains("?rid="));
+        assertFalse(cmd1.get(1).equals(cmd2.get(1)));
+
+        started.delete();
+        gate.delete();
+        script.delete();
+        dir.delete();
+    }
+
+    private static ArrayList command(String url) {
+        final ArrayList cmd = new ArrayList();
+        cmd.add("--images");
+        cmd.add("'" + url + "'");
+        return cmd;
+    }
+
+    private static Thread propagate(final LantorrentSessions sessions,
+                                    final InstanceResource resource,
+                                    final ArrayList cmd) {
+        final Thread t = new Thread() {
+            public void run() {
+                sessions.addRequestID(resource.getVM(), cmd);
+            }
+        };
+        t.start();
+        return t;
+    }
+
+    private static VirtualMachine vm(int id, String url) {
+        final VirtualMachine vm = new VirtualMachine();
+        vm.setID(id);
+        vm.setNode("vmm" + id);
+        vm.setPropagateRequired(true);
+        final VirtualMachinePartition root = new VirtualMachinePartition();
+        root.setRootdisk(true);
+        root.setImage(url);
+        vm.setPartitions(new VirtualMachinePartition[]{root});
+        return vm;
+    }
+
+    private static InstanceResource resource(final String group,
+                                             final VirtualMachine vm) {
+        return (InstanceResource) stub(InstanceResource.class,
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method m, Object[] args) {
+                        if (m.getName().equals("getGroupId")) {
+                            return group;
+                        }
+                        if (m.getName().equals("getVM")) {
+                            return vm;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static WorkspaceHome home(final Map<Integer,InstanceResource> all) {
+        return (WorkspaceHome) stub(WorkspaceHome.class,
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method m, Object[] args) {
+                        if (!m.getName().equals("find")) {
+                            return null;
+                        }
+                        if (args[0] instanceof Integer) {
+                            return all.get(args[0]);
+                        }
+                        final int[] ids = (int[]) args[0];
+                        final InstanceResource[] ret =
+                                new InstanceResource[ids.length];
+                        for (int i = 0; i < ids.length; i++) {
+                            ret[i] = all.get(ids[i]);
+                        }
+                        return ret;
+                    }
+                });
+    }
+
+    private static PersistenceAdapter persistence() {
+        return (PersistenceAdapter) stub(PersistenceAdapter.class,
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method m, Object[] args) {
+                        if (m.getName().equals("findVMsInGroup")) {
+                            return "a".equals(args[0]) ? new int[]{1, 2}
+                                                       : new int[]{3, 4};
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static Object stub(Class iface, InvocationHandler handler) {
+        return Proxy.newProxyInstance(
+                LantorrentSessionsTest.class.getClassLoader(),
+                new Class[]{iface}, handler);
+    }
+}
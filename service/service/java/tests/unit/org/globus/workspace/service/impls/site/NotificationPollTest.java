@@ -0,0 +1,164 @@
+package org.globus.workspace.service.impls.site;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import commonj.timers.TimerManager;
+import org.globus.workspace.Lager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NotificationPollTest {
+
+    private File file;
+    private Callback callback;
+    private RecordingPoll poll;
+
+    @Before
+    public void setUp() throws Exception {
+        this.file = File.createTempFile("notifications", ".txt");
+        this.file.delete();
+        this.callback = new Callback();
+        this.poll = new RecordingPoll(this.file.getAbsolutePath(), this.callback);
+    }
+
+    @After
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    @Test
+    public void testBatchAndCursor() throws Exception {
+        append("one::running::0<eon>\ntwo::failed::1::bad::news<eon>\r\n");
+        this.poll.timerExpired(null);
+
+        assertEquals(1, this.poll.batches.size());
+        assertEquals(2, this.poll.batches.get(0).size());
+        assertEquals("one running 0 null", this.poll.batches.get(0).get(0));
+        assertEquals("two failed 1 bad news", this.poll.batches.get(0).get(1));
+        assertEquals(this.file.length(), this.callback.cursor);
+        assertEquals(2, this.callback.decreased);
+
+        // nothing new
+        this.poll.timerExpired(null);
+        assertEquals(1, this.poll.batches.size());
+    }
+
+    @Test
+    public void testPartialLineWaits() throws Exception {
+        append("one::running::0<eon>\ntwo::runn");
+        this.poll.timerExpired(null);
+        assertEquals(1, this.poll.batches.size());
+        final long cursor = this.callback.cursor;
+
+        append("ing::0<eon>\n");
+        this.poll.timerExpired(null);
+        assertEquals(2, this.poll.batches.size());
+        assertEquals("two running 0 null", this.poll.batches.get(1).get(0));
+        assertTrue(this.callback.cursor > cursor);
+        assertEquals(this.file.length(), this.callback.cursor);
+    }
+
+    @Test
+    public void testUtf8AcrossChunks() throws Exception {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            buf.append("vm").append(i).append("::r\u00e9serv\u00e9::0::\u4e2d<eon>\n");
+        }
+        append(buf.toString());
+        this.poll.timerExpired(null);
+
+        assertEquals(1, this.poll.batches.size());
+        final List<String> batch = this.poll.batches.get(0);
+        assertEquals(5000, batch.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("vm" + i + " r\u00e9serv\u00e9 0 \u4e2d", batch.get(i));
+        }
+        assertEquals(this.file.length(), this.callback.cursor);
+    }
+
+    @Test
+    public void testTruncatedFileStartsOver() throws Exception {
+        append("one::running::0<eon>\ntwo::running::0<eon>\n");
+        this.poll.timerExpired(null);
+
+        this.file.delete();
+        append("three::running::0<eon>\n");
+        final RecordingPoll restarted = new RecordingPoll(
+                this.file.getAbsolutePath(), this.callback, this.callback.cursor);
+        restarted.timerExpired(null);
+        assertEquals("three running 0 null", restarted.batches.get(0).get(0));
+    }
+
+    private void append(String text) throws Exception {
+        final FileOutputStream out = new FileOutputStream(this.file, true);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static TimerManager timerManager() {
+        return (TimerManager) Proxy.newProxyInstance(
+                TimerManager.class.getClassLoader(),
+                new Class[]{TimerManager.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                });
+    }
+
+    private static class RecordingPoll extends NotificationPoll {
+
+        final List<List<String>> batches = new ArrayList<List<String>>();
+
+        RecordingPoll(String path, Callback call) throws Exception {
+            this(path, call, 0);
+        }
+
+        RecordingPoll(String path, Callback call, long filepos) throws Exception {
+            super(timerManager(), new Lager(), 10, path, filepos, call, "test");
+        }
+
+        protected int notifications(List<Notification> batch) {
+            this.batches.add(new ArrayList<String>());
+            return super.notifications(batch);
+        }
+
+        protected boolean oneNotification(String name, String state,
+                                          int code, String message) {
+            this.batches.get(this.batches.size() - 1).add(
+                    name + " " + state + " " + code + " " + message);
+            return true;
+        }
+    }
+
+    private static class Callback implements NotificationPollCallback {
+
+        long cursor = -1;
+        int decreased;
+
+        public int numPendingNotifications() {
+            return 1;
+        }
+
+        public void decreaseNumPending(int n) {
+            this.decreased += n;
+        }
+
+        public void cursorPosition(long pos) {
+            this.cursor = pos;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.globus.workspace.service.impls.site;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import edu.emory.mathcs.backport.java.util.concurrent.CountDownLatch;
+import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
+import edu.emory.mathcs.backport.java.util.concurrent.Executors;
+import edu.emory.mathcs.backport.java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PilotNotificationCoalescerTest {
+
+    private static final String TIMESTAMP = "2010-05-01-12-30-00";
+
+    private ExecutorService executor;
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() throws Exception {
+        this.executor = Executors.newSingleThreadExecutor();
+        this.release = new CountDownLatch(1);
+
+        // hold the only thread so that notifications queue up
+        final CountDownLatch blocked = new CountDownLatch(1);
+        this.executor.submit(new Runnable() {
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        blocked.await();
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testReservedCoalescedPerSlot() throws Exception {
+        final Recorder recorder = new Recorder();
+        final PilotNotificationCoalescer coalescer =
+                new PilotNotificationCoalescer(recorder, this.executor);
+
+        coalescer.add("slot1+++host1", PilotNotificationUtil.STATE_PILOT_RESERVED, 0, TIMESTAMP, "");
+        coalescer.add("slot2+++host9", PilotNotificationUtil.STATE_PILOT_RESERVED, 0, TIMESTAMP, "");
+        coalescer.add("slot1+++host2", PilotNotificationUtil.STATE_PILOT_RESERVED, 0, TIMESTAMP, "");
+        coalescer.add("slot1+++host3", PilotNotificationUtil.STATE_PILOT_RESERVED, 0, TIMESTAMP, "");
+        this.drain();
+
+        assertEquals(2, recorder.calls.size());
+        assertEquals("reserved slot1 [host1, host2, host3]", recorder.calls.get(0));
+        assertEquals("reserved slot2 host9", recorder.calls.get(1));
+    }
+
+    @Test
+    public void testOrderKeptAroundOtherNotifications() throws Exception {
+        final Recorder recorder = new Recorder();
+        final PilotNotificationCoalescer coalescer =
+                new PilotNotificationCoalescer(recorder, this.executor);
+
+        coalescer.add("slot1+++host1", PilotNotificationUtil.STATE_PILOT_RESERVED, 0, TIMESTAMP, "");
+        coalescer.add("slot1+++host1", PilotNotificationUtil.STATE_PILOT_UNRESERVING, 0, null, "");
+        coalescer.add("slot1+++host2", PilotNotificationUtil.STATE_PILOT_RESERVED, 1, "boom", "");
+        coalescer.add("slot1+++host3", PilotNotificationUtil.STATE_PILOT_RESERVED, 0, TIMESTAMP, "");
+        this.drain();
+
+        assertEquals(4, recorder.calls.size());
+        assertEquals("reserved slot1 host1", recorder.calls.get(0));
+        assertEquals("unreserving slot1 host1", recorder.calls.get(1));
+        assertEquals("errorReserving slot1 host2", recorder.calls.get(2));
+        assertEquals("reserved slot1 host3", recorder.calls.get(3));
+    }
+
+    private void drain() throws Exception {
+        this.release.countDown();
+        final CountDownLatch done = new CountDownLatch(1);
+        this.executor.submit(new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        });
+        done.await(10, TimeUnit.SECONDS);
+    }
+
+    private static class Recorder implements SlotPollCallback {
+
+        final List<String> calls = new ArrayList<String>();
+
+        public void reserved(String slotid, String hostname, Calendar timestamp) {
+            this.calls.add("reserved " + slotid + " " + hostname);
+        }
+
+        public void reserved(String slotid, String[] hostnames, Calendar[] timestamps) {
+            final List<String> hosts = new ArrayList<String>();
+            for (String hostname : hostnames) {
+                hosts.add(hostname);
+            }
+            this.calls.add("reserved " + slotid + " " + hosts);
+        }
+
+        public void errorReserving(String slotid, String hostname, String error) {
+            this.calls.add("errorReserving " + slotid + " " + hostname);
+        }
+
+        public void earlyUnreserving(String slotid, String hostname, Calendar timestamp) {
+            this.calls.add("earlyUnreserving " + slotid + " " + hostname);
+        }
+
+        public void errorEarlyUnreserving(String slotid, String hostname, String error) {
+            this.calls.add("errorEarlyUnreserving " + slotid + " " + hostname);
+        }
+
+        public void unreserving(String slotid, String hostname) {
+            this.calls.add("unreserving " + slotid + " " + hostname);
+        }
+
+        public void kills(String slotid, String hostname, String[] killed) {
+            this.calls.add("kills " + slotid + " " + hostname);
+        }
+
+        public void errorUnreserving(String slotid, String hostname, String error) {
+            this.calls.add("errorUnreserving " + slotid + " " + hostname);
+        }
+
+        public int numPendingNotifications() {
+            return 0;
+        }
+
+        public void decreaseNumPending(int n) {
+        }
+
+        public void cursorPosition(long pos) {
+        }
+    }
+}
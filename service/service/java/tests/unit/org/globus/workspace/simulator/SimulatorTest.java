@@ -0,0 +1,153 @@
+package org.globus.workspace.simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SimulatorTest {
+
+    private static final long WEEK_SECONDS = 7 * 24 * 3600;
+
+    private static Trace trace(String text) {
+        return new Trace(new StringReader(text), "test");
+    }
+
+    private static Simulator simulator(MockVmm vmm) {
+        final Simulator sim = new Simulator(new SimulatedPool(), vmm, 0);
+        sim.setSelectionStrategy("best-fit");
+        sim.setInstanceMem(2048);
+        sim.setMinReservedMem(0);
+        sim.setMaxUtilization(1.0);
+        return sim;
+    }
+
+    @Test
+    public void testClockOrder() {
+        final VirtualClock clock = new VirtualClock(0);
+        final List<String> ran = new ArrayList<String>();
+        clock.schedule(20, new Record(ran, "c"));
+        clock.schedule(10, new Record(ran, "a"));
+        clock.schedule(10, new Record(ran, "b"));
+        clock.schedule(30, new Record(ran, "d")).cancel();
+        clock.run(Long.MAX_VALUE);
+
+        assertEquals("[a, b, c]", ran.toString());
+        assertEquals(20, clock.now());
+        assertEquals(3, clock.getProcessed());
+    }
+
+    @Test
+    public void testTraceErrors() throws Exception {
+        try {
+            final Trace trace = trace("10 terminate a\n5 terminate b\n");
+            trace.next();
+            trace.next();
+            fail("time went backwards");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("test:2:"));
+        }
+        try {
+            trace("# comment\n0 reboot a\n").next();
+            fail("unknown action");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("test:2:"));
+        }
+    }
+
+    @Test
+    public void testRunAndTerminate() throws Exception {
+        final MockVmm vmm = new MockVmm(1);
+        vmm.setPropagateOverheadMs(1000);
+        vmm.setBandwidthMBps(100);
+        vmm.setStartMs(4000);
+        final SimulationReport report = simulator(vmm).run(trace(
+                "0 node vmm1 4096 4 0\n" +
+                "0 run r1 1 2048 1 3600 1000\n" +
+                "0 run r2 1 4096 1 3600\n" +
+                "600 terminate r1\n"));
+
+        // propagate overhead, 1000MB at 100MB/s, start
+        assertEquals(1, report.getStarted());
+        assertEquals(15000, report.getLatencyPercentile(100));
+        assertEquals(1, report.getRejected());
+        assertEquals(600000 + 3000, report.getSpanMs());
+        assertEquals(0.5, report.getUtilization(), 0.01);
+        assertEquals(Long.valueOf(1),
+                report.getVmmCommands().get(MockVmm.SHUTDOWN_TRASH));
+    }
+
+    @Test
+    public void testBackfillPreempted() throws Exception {
+        final SimulationReport report = simulator(new MockVmm(1)).run(trace(
+                "0 node vmm1 8192 8 0\n" +
+                "0 backfill b1 4\n" +
+                "100 run r1 1 2048 1 3600\n"));
+
+        // and the preempted one comes back when r1 is done
+        assertEquals(1, report.getStarted());
+        assertEquals(5, report.getAsyncStarted());
+        assertEquals(1, report.getBackfillPreemptions());
+        assertEquals(0, report.getRejected());
+    }
+
+    @Test
+    public void testSpotRevenue() throws Exception {
+        final SimulationReport report = simulator(new MockVmm(1)).run(trace(
+                "0 node vmm1 8192 8 0\n" +
+                "0 spot s1 2 1.0 3600\n"));
+
+        assertEquals(2, report.getAsyncStarted());
+        assertEquals(0, report.getSpotPreemptions());
+        assertTrue(report.getSpotRevenue() > 0);
+    }
+
+    @Test
+    public void testWeekFasterThanWallClock() throws Exception {
+        final Random random = new Random(7);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            sb.append("0 node vmm").append(i).append(" 32768 16 0\n");
+        }
+        double t = 0;
+        int i = 0;
+        while (t < WEEK_SECONDS) {
+            t += -Math.log(1 - random.nextDouble()) * 60;
+            sb.append(String.format("%.1f run r%d %d %d 1 %d\n", t, i++,
+                    1 + random.nextInt(3), 1024 << random.nextInt(3),
+                    600 + random.nextInt(36000)));
+            if (i % 20 == 0) {
+                sb.append(String.format("%.1f spot s%d 4 %.2f 7200\n",
+                        t, i, 0.1 + random.nextInt(5) / 10.0));
+            }
+        }
+
+        final SimulationReport report =
+                simulator(new MockVmm(1)).run(trace(sb.toString()));
+        assertTrue(report.getSpanMs() >= WEEK_SECONDS * 1000);
+        assertTrue("only " + report.getSpeedup() + "x",
+                report.getSpeedup() >= 1000);
+    }
+
+    private static final class Record implements Runnable {
+
+        private final List<String> ran;
+        private final String name;
+
+        Record(List<String> ran, String name) {
+            this.ran = ran;
+            this.name = name;
+        }
+
+        public void run() {
+            this.ran.add(this.name);
+        }
+    }
+}
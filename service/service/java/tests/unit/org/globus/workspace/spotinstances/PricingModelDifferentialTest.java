@@ -0,0 +1,180 @@
+package org.globus.workspace.spotinstances;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.Random;
+
+import org.globus.workspace.async.AsyncRequest;
+import org.globus.workspace.async.AsyncRequestFilter;
+import org.globus.workspace.async.pricingmodel.AbstractPricingModel;
+import org.globus.workspace.async.pricingmodel.MaximizeProfitPricingModel;
+import org.globus.workspace.async.pricingmodel.MaximizeUtilizationPricingModel;
+import org.globus.workspace.service.binding.vm.VirtualMachine;
+import org.junit.Test;
+
+/**
+ * Checks the sweep based pricing models against the original
+ * per-candidate implementations, kept here as reference.
+ */
+public class PricingModelDifferentialTest {
+
+    private static final int ROUNDS = 2000;
+
+    @Test
+    public void testMaximizeProfitMatchesReference() {
+        MaximizeProfitPricingModel model = new MaximizeProfitPricingModel();
+        model.setMinPrice(0.25);
+        Random random = new Random(26);
+        for (int round = 0; round < ROUNDS; round++) {
+            LinkedList<AsyncRequest> requests = randomRequests(random, model.getMinPrice());
+            int reserved = random.nextInt(60);
+            Double expected = referenceNextPrice(model, reserved, requests, false, true);
+            assertEquals("round " + round, expected, model.getNextPrice(reserved, requests, null));
+        }
+    }
+
+    @Test
+    public void testMaximizeUtilizationMatchesReference() {
+        MaximizeUtilizationPricingModel model = new MaximizeUtilizationPricingModel();
+        model.setMinPrice(0.25);
+        Random random = new Random(27);
+        for (int round = 0; round < ROUNDS; round++) {
+            LinkedList<AsyncRequest> requests = randomRequests(random, model.getMinPrice());
+            int reserved = random.nextInt(60);
+            Double expected = referenceNextPrice(model, reserved, requests, true, true);
+            assertEquals("round " + round, expected, model.getNextPrice(reserved, requests, null));
+        }
+    }
+
+    @Test
+    public void testMaximizeUtilizationNoMinPriceMatchesReference() {
+        MaximizeUtilizationPricingModel model = new MaximizeUtilizationPricingModel(false);
+        model.setMinPrice(0.25);
+        Random random = new Random(28);
+        for (int round = 0; round < ROUNDS; round++) {
+            LinkedList<AsyncRequest> requests = randomRequests(random, model.getMinPrice());
+            int reserved = random.nextInt(60);
+            Double expected = referenceNextPrice(model, reserved, requests, true, false);
+            assertEquals("round " + round, expected, model.getNextPrice(reserved, requests, null));
+        }
+    }
+
+    // Bids (and the minimum price set above) are multiples of 0.25 so that
+    // profits are exact and ties resolve the same way in both implementations.
+    private static LinkedList<AsyncRequest> randomRequests(Random random, Double minPrice) {
+        LinkedList<AsyncRequest> requests = new LinkedList<AsyncRequest>();
+        int count = random.nextInt(12);
+        for (int i = 0; i < count; i++) {
+            Double bid = minPrice + 0.25*random.nextInt(10);
+            Calendar creation = Calendar.getInstance();
+            creation.setTimeInMillis(1000L*i);
+            VirtualMachine[] bindings = new VirtualMachine[1+random.nextInt(8)];
+            requests.add(new AsyncRequest("req-" + i, true, bid, random.nextBoolean(),
+                                          null, null, bindings, null, null, null, creation));
+        }
+        return requests;
+    }
+
+    // -------------------------------------------------------------------------
+    // Reference implementations
+    // -------------------------------------------------------------------------
+
+    private static Double referenceNextPrice(AbstractPricingModel model, Integer totalReservedResources,
+                                             Collection<AsyncRequest> requests,
+                                             boolean utilization, boolean setMinPrice) {
+
+        Double minPrice = model.getMinPrice();
+        if(requests.isEmpty()){
+            return minPrice;
+        }
+
+        LinkedList<Double> priceCandidates = new LinkedList<Double>();
+        for (AsyncRequest siRequest : requests) {
+            Double requestBid = siRequest.getMaxBid();
+            if(requestBid >= minPrice){
+                priceCandidates.add(requestBid);
+            }
+        }
+        Collections.sort(priceCandidates);
+
+        if(totalReservedResources < 1 && !priceCandidates.isEmpty()){
+            return priceCandidates.getLast()+0.1;
+        }
+
+        if(utilization){
+            return referenceUtilization(minPrice, totalReservedResources, requests, setMinPrice);
+        }
+        return referenceProfit(totalReservedResources, requests, priceCandidates);
+    }
+
+    private static Double referenceProfit(Integer totalReservedResources,
+                                          Collection<AsyncRequest> requests,
+                                          LinkedList<Double> priceCandidates) {
+
+        Double highestProfitPrice = null;
+        Double highestProfit = -1.0;
+
+        for (Double priceCandidate : priceCandidates) {
+            Collection<AsyncRequest> priorityOffers =
+                    AsyncRequestFilter.getRequestsAbovePrice(priceCandidate, requests);
+            Collection<AsyncRequest> limitOffers =
+                    AsyncRequestFilter.getRequestsEqualPrice(priceCandidate, requests);
+
+            Double demand = 0.0;
+            for (AsyncRequest siRequest : priorityOffers) {
+                demand += siRequest.getNeededInstances();
+            }
+
+            Double profit;
+            if(!priorityOffers.isEmpty() && demand/totalReservedResources >= 1.0){
+                profit = -1.0;
+            } else {
+                profit = 0.0;
+                LinkedList<AsyncRequest> eligibleOffers = new LinkedList<AsyncRequest>(priorityOffers);
+                eligibleOffers.addAll(limitOffers);
+                for (AsyncRequest siRequest : eligibleOffers) {
+                    profit += siRequest.getNeededInstances()*priceCandidate;
+                }
+            }
+
+            if(profit > highestProfit){
+                highestProfit = profit;
+                highestProfitPrice = priceCandidate;
+            }
+        }
+
+        if(highestProfitPrice == null){
+            return priceCandidates.getLast()+1;
+        }
+        return highestProfitPrice;
+    }
+
+    private static Double referenceUtilization(Double minPrice, Integer totalReservedResources,
+                                               Collection<AsyncRequest> requests, boolean setMinPrice) {
+
+        LinkedList<AsyncRequest> reverseOrderedRequests = new LinkedList<AsyncRequest>(requests);
+        Collections.sort(reverseOrderedRequests, Collections.reverseOrder());
+
+        Double nextPrice = minPrice;
+        Integer availableResources = totalReservedResources;
+
+        for (AsyncRequest siRequest : reverseOrderedRequests) {
+            if(siRequest.getMaxBid() >= minPrice){
+                nextPrice = siRequest.getMaxBid();
+                availableResources -= siRequest.getNeededInstances();
+                if(availableResources <= 0){
+                    break;
+                }
+            }
+        }
+
+        if(availableResources > 0 && setMinPrice){
+            nextPrice = minPrice;
+        }
+        return nextPrice;
+    }
+}
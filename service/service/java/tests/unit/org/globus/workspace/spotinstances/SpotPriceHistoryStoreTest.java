@@ -0,0 +1,98 @@
+package org.globus.workspace.spotinstances;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.globus.workspace.persistence.impls.SpotPriceHistoryStore;
+import org.globus.workspace.persistence.impls.SpotPriceHistoryStore.Rollup;
+import org.junit.Test;
+
+public class SpotPriceHistoryStoreTest {
+
+    private static final double DELTA = 0.0;
+
+    @Test
+    public void testAppendClosesRollups() {
+        SpotPriceHistoryStore store = new SpotPriceHistoryStore(1000, new long[]{10, 100});
+
+        assertTrue(store.append(1, 2.0).isEmpty());
+        assertTrue(store.append(5, 1.0).isEmpty());
+        assertTrue(store.append(9, 3.0).isEmpty());
+
+        List<Rollup> closed = store.append(12, 4.0);
+        assertEquals(1, closed.size());
+        assertRollup(closed.get(0), 10, 0, 1.0, 3.0, 3.0);
+
+        closed = store.append(105, 5.0);
+        assertEquals(2, closed.size());
+        assertRollup(closed.get(0), 10, 10, 4.0, 4.0, 4.0);
+        assertRollup(closed.get(1), 100, 0, 1.0, 4.0, 4.0);
+
+        assertRollup(store.getOpen(10), 10, 100, 5.0, 5.0, 5.0);
+        assertRollup(store.getOpen(100), 100, 100, 5.0, 5.0, 5.0);
+    }
+
+    @Test
+    public void testWindowEviction() {
+        SpotPriceHistoryStore store = new SpotPriceHistoryStore(100, new long[]{10});
+        assertTrue(store.covers(Long.MIN_VALUE));
+
+        for (int i = 0; i < 1000; i++) {
+            store.append(i, i);
+        }
+
+        assertFalse(store.covers(898));
+        assertTrue(store.covers(899));
+
+        List<Rollup> recent = store.getRecent(899, Long.MAX_VALUE);
+        assertEquals(101, recent.size());
+        assertEquals(899, recent.get(0).getBucket());
+        assertEquals(999, recent.get(100).getBucket());
+
+        assertEquals(2, store.getRecent(950, 951).size());
+    }
+
+    @Test
+    public void testReplayCoverage() {
+        SpotPriceHistoryStore store = new SpotPriceHistoryStore(100, new long[]{10});
+        store.setCoveredSince(50);
+        store.append(60, 1.0);
+        assertFalse(store.covers(49));
+        assertTrue(store.covers(50));
+    }
+
+    @Test
+    public void testDownsample() {
+        List<Rollup> rollups = new ArrayList<Rollup>();
+        rollups.add(new Rollup(10, 0, 1.0, 2.0, 2.0));
+        rollups.add(new Rollup(10, 10, 0.5, 3.0, 1.5));
+        rollups.add(new Rollup(10, 30, 4.0, 4.0, 4.0));
+
+        List<Rollup> merged = SpotPriceHistoryStore.downsample(rollups, 20);
+        assertEquals(2, merged.size());
+        assertRollup(merged.get(0), 20, 0, 0.5, 3.0, 1.5);
+        assertRollup(merged.get(1), 20, 20, 4.0, 4.0, 4.0);
+    }
+
+    @Test
+    public void testStoredResolution() {
+        SpotPriceHistoryStore store = new SpotPriceHistoryStore(100, new long[]{10, 100});
+        assertEquals(-1, store.getStoredResolution(5));
+        assertEquals(10, store.getStoredResolution(10));
+        assertEquals(10, store.getStoredResolution(99));
+        assertEquals(100, store.getStoredResolution(1000));
+    }
+
+    private static void assertRollup(Rollup rollup, long resolution, long bucket,
+                                     double min, double max, double last) {
+        assertEquals(resolution, rollup.getResolution());
+        assertEquals(bucket, rollup.getBucket());
+        assertEquals(min, rollup.getMin(), DELTA);
+        assertEquals(max, rollup.getMax(), DELTA);
+        assertEquals(last, rollup.getLast(), DELTA);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 1999-2010 University of Chicago
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.globus.workspace.xen;
+
+import org.globus.workspace.service.binding.vm.VirtualMachine;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class XenUtilTest {
+
+    private static ArrayList cacheArgs(int budget) {
+        final VirtualMachine vm = new VirtualMachine();
+        if (budget != Integer.MIN_VALUE) {
+            vm.setImageCacheMax(budget);
+        }
+        final ArrayList cmd = new ArrayList();
+        XenUtil.addCacheArgs(cmd, vm, "abc123");
+        return cmd;
+    }
+
+    @Test
+    public void testBudgetSent() {
+        assertEquals(Arrays.asList("--cachecksum", "abc123",
+                                   "--cachemax", "2048"),
+                     cacheArgs(2048));
+    }
+
+    @Test
+    public void testClearedBudgetSentAsZero() {
+        assertEquals(Arrays.asList("--cachecksum", "abc123",
+                                   "--cachemax", "0"),
+                     cacheArgs(0));
+    }
+
+    @Test
+    public void testNoBudget() {
+        assertEquals(Arrays.asList("--cachecksum", "abc123"),
+                     cacheArgs(Integer.MIN_VALUE));
+        assertEquals(Arrays.asList("--cachecksum", "abc123"),
+                     cacheArgs(-1));
+    }
+
+    @Test
+    public void testNotCacheable() {
+        final ArrayList cmd = new ArrayList();
+        XenUtil.addCacheArgs(cmd, new VirtualMachine(), null);
+        assertEquals(0, cmd.size());
+    }
+}